@@ -12,8 +12,6 @@ import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
-import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
-
 @SpringBootApplication
 @EnableDiscoveryClient
 @EnableScheduling
@@ -22,11 +20,6 @@ public class Application extends SpringBootServletInitializer {
         SpringApplication.run(Application.class, args);
     }
 
-    @Bean
-    public Queue<PostBatchOrderRequest> batchRequestQueue() {
-        return new ConcurrentLinkedQueue<>();
-    }
-
     @Bean
     public Queue<Pair<String, BankResult>> processedResultsPerFileQueue() {
         return new ConcurrentLinkedQueue<>();
@@ -1,6 +1,5 @@
 package com.mybank.payments.batches.integration;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Queue;
@@ -8,6 +7,10 @@ import java.util.Queue;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -16,28 +19,115 @@ import com.backbase.payments.batches.integration.outbound.api.BatchOrdersApi;
 import com.backbase.payments.batches.integration.outbound.model.BatchStatus;
 import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
 import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderResponse;
+import com.mybank.payments.batches.integration.queue.BatchRequestQueueProperties;
+import com.mybank.payments.batches.integration.queue.DeduplicatingQueue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 
 @RestController
-@RequiredArgsConstructor
 @Slf4j
 public class BatchOrderController implements BatchOrdersApi {
 
     private final Queue<PostBatchOrderRequest> batchRequestQueue;
+    private final DeduplicatingQueue<PostBatchOrderRequest> deduplicatingQueue;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int highWaterMark;
+    private final String retryAfterSeconds;
+    private final Counter aboveHighWaterMarkRejections;
+    private final Counter queueFullRejections;
+    private final Counter enqueued;
+    private final Counter enqueueFailures;
+
+    public BatchOrderController(Queue<PostBatchOrderRequest> batchRequestQueue,
+                                ApplicationEventPublisher eventPublisher,
+                                BatchRequestQueueProperties batchRequestQueueProperties,
+                                MeterRegistry meterRegistry) {
+        this.batchRequestQueue = batchRequestQueue;
+        this.deduplicatingQueue = batchRequestQueue instanceof DeduplicatingQueue
+            ? (DeduplicatingQueue<PostBatchOrderRequest>) batchRequestQueue : null;
+        this.eventPublisher = eventPublisher;
+        this.highWaterMark = batchRequestQueueProperties.getHighWaterMark();
+        this.retryAfterSeconds = String.valueOf(Math.max(1, batchRequestQueueProperties.getRetryAfter().getSeconds()));
+        this.aboveHighWaterMarkRejections = rejectionCounter(meterRegistry, "high-water-mark");
+        this.queueFullRejections = rejectionCounter(meterRegistry, "full");
+        this.enqueued = enqueueCounter(meterRegistry, "queued");
+        this.enqueueFailures = enqueueCounter(meterRegistry, "error");
+    }
 
     /**
     * Listen on notification about a batch created. This method just save the request in a queue and the BatchOrderExecutor will process that.
+    * <p>Storing the batch order publishes a {@link BatchOrderQueuedEvent}, which wakes up the ExampleManager.</p>
+    * <p>When the queue is above its high-water mark the batch order is turned away with 429 Too Many Requests, and when
+    * the queue is full with 503 Service Unavailable, both with a Retry-After header so payment-order-service retries
+    * the notification later. A duplicate of a batch order queued or in flight is acknowledged even above the high-water
+    * mark, as it is not queued again.</p>
+    * <p>Stored batch orders are counted in {@code batch.request.queue.enqueued}, its rate being the enqueue rate, next
+    * to the {@code batch.request.queue.depth} gauge of the queue.</p>
     */
     @Override
     public ResponseEntity<PostBatchOrderResponse> postBatches(
             @Valid @NotNull PostBatchOrderRequest postBatchOrderRequest) {
         log.info("Received batch order with id {} payload: {}", postBatchOrderRequest.getId(), postBatchOrderRequest);
+        if (highWaterMark != Integer.MAX_VALUE && batchRequestQueue.size() >= highWaterMark
+            && !isDuplicate(postBatchOrderRequest)) {
+            log.warn("Batch order queue above high-water mark {}, rejecting batch order with id {}", highWaterMark,
+                postBatchOrderRequest.getId());
+            aboveHighWaterMarkRejections.increment();
+            return retryLater(HttpStatus.TOO_MANY_REQUESTS);
+        }
+        boolean stored;
         try {
-            this.batchRequestQueue.offer(postBatchOrderRequest);
+            stored = this.batchRequestQueue.offer(postBatchOrderRequest);
         } catch (Exception e) {
             log.error("Error storing batch request", e);
+            enqueueFailures.increment();
             throw new InternalServerErrorException().withMessage("Saving batch order failed");
         }
+        if (!stored) {
+            log.warn("Batch order queue full, rejecting batch order with id {}", postBatchOrderRequest.getId());
+            queueFullRejections.increment();
+            return retryLater(HttpStatus.SERVICE_UNAVAILABLE);
+        }
         log.info("Batch order stored with id {}", postBatchOrderRequest.getId());
+        enqueued.increment();
+        eventPublisher.publishEvent(new BatchOrderQueuedEvent(postBatchOrderRequest.getId()));
         return ResponseEntity.accepted().body(new PostBatchOrderResponse().status(BatchStatus.ACKNOWLEDGED));
     }
+
+    /**
+     * Forgets a batch order whose processing failed, so the notification payment-order-service sends again for it is
+     * queued instead of dropped as a duplicate.
+     */
+    @EventListener
+    public void onBatchOrderFailed(BatchOrderFailedEvent event) {
+        if (deduplicatingQueue != null) {
+            log.info("Batch order with id {} failed, accepting its next notification", event.getBatchOrderId());
+            deduplicatingQueue.forget(event.getBatchOrderId());
+        }
+    }
+
+    private boolean isDuplicate(PostBatchOrderRequest postBatchOrderRequest) {
+        // a duplicate is acknowledged without being queued, so it is never turned away
+        return deduplicatingQueue != null && deduplicatingQueue.isDuplicate(postBatchOrderRequest);
+    }
+
+    private ResponseEntity<PostBatchOrderResponse> retryLater(HttpStatus status) {
+        return ResponseEntity.status(status)
+            .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+            .build();
+    }
+
+    private static Counter enqueueCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("batch.request.queue.enqueued")
+            .description("Number of batch orders stored in the batch order queue, or failed to be stored")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+
+    private static Counter rejectionCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("batch.request.queue.rejected")
+            .description("Number of batch orders turned away because of a saturated batch order queue")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
 }
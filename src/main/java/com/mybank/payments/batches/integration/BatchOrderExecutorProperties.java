@@ -0,0 +1,21 @@
+package com.mybank.payments.batches.integration;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("service.batch-order-executor")
+public class BatchOrderExecutorProperties {
+
+    /**
+     * Whether batch orders are dispatched as soon as they are queued, instead of only at the fixed rate.
+     */
+    private boolean eventDriven = true;
+
+    /**
+     * Time a run waits after the first queued batch order, so a burst of batch orders is picked up by a single run.
+     */
+    private Duration dispatchWindow = Duration.ofMillis(50);
+
+}
@@ -0,0 +1,14 @@
+package com.mybank.payments.batches.integration;
+
+import lombok.Value;
+
+/**
+ * Published by a batch order executor when processing a batch order failed, so the notification payment-order-service
+ * sends again for it is not dropped as a duplicate.
+ */
+@Value
+public class BatchOrderFailedEvent {
+
+    String batchOrderId;
+
+}
@@ -0,0 +1,13 @@
+package com.mybank.payments.batches.integration;
+
+import lombok.Value;
+
+/**
+ * Published by the BatchOrderController once a batch order has been stored in the queue.
+ */
+@Value
+public class BatchOrderQueuedEvent {
+
+    String batchOrderId;
+
+}
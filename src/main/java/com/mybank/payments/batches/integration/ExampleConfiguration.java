@@ -2,12 +2,22 @@ package com.mybank.payments.batches.integration;
 
 import com.mybank.payments.batches.integration.executor.BatchOrderExecutor;
 import com.mybank.payments.batches.integration.executor.ProcessedResultsExecutor;
+import com.mybank.payments.batches.integration.executor.nachafile.NachaFileAggregationProperties;
+import com.mybank.payments.batches.integration.executor.nachafile.NachaFileSplitProperties;
+import com.mybank.payments.batches.integration.executor.nachafile.NachaSequenceProperties;
+import com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaInboxProperties;
+import com.mybank.payments.batches.integration.executor.resttemplate.RestTemplateExecutorProperties;
+import com.mybank.payments.batches.integration.executor.webclient.WebClientExecutorProperties;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@EnableConfigurationProperties({BatchOrderExecutorProperties.class, RestTemplateExecutorProperties.class,
+    WebClientExecutorProperties.class, NachaFileSplitProperties.class, NachaFileAggregationProperties.class,
+    NachaSequenceProperties.class, NachaInboxProperties.class})
 public class ExampleConfiguration {
 
     @Bean("selectedBatchOrderExecutor")
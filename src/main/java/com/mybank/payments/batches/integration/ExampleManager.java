@@ -2,37 +2,110 @@ package com.mybank.payments.batches.integration;
 
 import static java.util.Optional.ofNullable;
 
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
 import com.mybank.payments.batches.integration.executor.BatchOrderExecutor;
-import com.mybank.payments.batches.integration.executor.Executor;
+import com.mybank.payments.batches.integration.executor.ExecutorLoop;
 import com.mybank.payments.batches.integration.executor.ProcessedResultsExecutor;
-import lombok.extern.slf4j.Slf4j;
+import com.mybank.payments.batches.integration.executor.StripedWorkerPool;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Queue;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 @Component
-@Slf4j
 public class ExampleManager {
 
+    private static final long INITIAL_DELAY = 10000;
+
     private final BatchOrderExecutor batchOrderExecutor;
     private final ProcessedResultsExecutor processedResultsExecutor;
+    private final Queue<PostBatchOrderRequest> batchRequestQueue;
+    private final StripedWorkerPool workerPool;
+    private final boolean eventDriven;
+    private final long dispatchWindowMillis;
+    private final long batchOrderFixedRate;
+    private final long processedResultsFixedRate;
+
+    private final ExecutorLoop batchOrderLoop;
+    private final ExecutorLoop processedResultsLoop;
 
     public ExampleManager(
         @Qualifier("selectedBatchOrderExecutor") BatchOrderExecutor batchOrderExecutor,
-        @Qualifier("selectedProcessedResultsExecutor") ObjectProvider<ProcessedResultsExecutor> processedResultsExecutorProvider) {
+        @Qualifier("selectedProcessedResultsExecutor") ObjectProvider<ProcessedResultsExecutor> processedResultsExecutorProvider,
+        Queue<PostBatchOrderRequest> batchRequestQueue,
+        StripedWorkerPool workerPool,
+        MeterRegistry meterRegistry,
+        BatchOrderExecutorProperties batchOrderExecutorProperties,
+        @Value("${service.batchOrderExecutor.fixedRate}") long batchOrderFixedRate,
+        @Value("${service.batchOrderExecutor.loopConcurrency:1}") int batchOrderLoopConcurrency,
+        @Value("${service.processedResultsExecutor.fixedRate:30000}") long processedResultsFixedRate,
+        @Value("${service.processedResultsExecutor.loopConcurrency:1}") int processedResultsLoopConcurrency) {
         this.batchOrderExecutor = batchOrderExecutor;
         this.processedResultsExecutor = processedResultsExecutorProvider.getIfAvailable();
+        this.batchRequestQueue = batchRequestQueue;
+        this.workerPool = workerPool;
+        this.eventDriven = batchOrderExecutorProperties.isEventDriven();
+        this.dispatchWindowMillis = batchOrderExecutorProperties.getDispatchWindow().toMillis();
+        this.batchOrderFixedRate = batchOrderFixedRate;
+        this.processedResultsFixedRate = processedResultsFixedRate;
+        this.batchOrderLoop = new ExecutorLoop("batch-orders", this::runBatchOrderExecutor,
+            batchOrderLoopConcurrency, meterRegistry);
+        if (processedResultsExecutor != null) {
+            this.processedResultsLoop = new ExecutorLoop("processed-results", processedResultsExecutor::execute,
+                processedResultsLoopConcurrency, meterRegistry);
+        } else {
+            this.processedResultsLoop = null;
+        }
+    }
+
+    /**
+     * Starts the fixed rate runs of the loops once the bean is initialized.
+     */
+    @PostConstruct
+    public void start() {
+        batchOrderLoop.start(batchOrderFixedRate, INITIAL_DELAY);
+        ofNullable(processedResultsLoop).ifPresent(loop -> loop.start(processedResultsFixedRate, INITIAL_DELAY));
     }
 
     /**
-     * Scheduled method, periodically picking up all the batch orders from the queue created by the BatchOrderController
-     * then processing it according to activeExample strategy.
+     * Wakes the batch order loop as soon as the BatchOrderController queued a batch order. The run is delayed by the
+     * dispatch window, so a burst of batch orders is picked up by a single run of the executor.
      */
-    @Scheduled(fixedRateString = "${service.batchOrderExecutor.fixedRate}", initialDelay = 10000)
-    public void execute() {
-        batchOrderExecutor.execute();
-        ofNullable(processedResultsExecutor).ifPresent(Executor::execute);
+    @EventListener
+    public void onBatchOrderQueued(BatchOrderQueuedEvent event) {
+        if (eventDriven) {
+            batchOrderLoop.trigger(dispatchWindowMillis);
+        }
+    }
+
+    /**
+     * Picks up all the batch orders from the queue created by the BatchOrderController then processes them according
+     * to activeExample strategy. Runs on the batch order loop, every {@code service.batchOrderExecutor.fixedRate}
+     * milliseconds and whenever a batch order is queued. With event driven dispatching enabled the fixed rate run is
+     * only a safety net for batch orders queued without an event, e.g. replayed from a journal after a restart.
+     * <p>When worker lanes are configured the batch orders are only handed over to the StripedWorkerPool here.</p>
+     * <p>Processed results are applied on a loop of their own, every
+     * {@code service.processedResultsExecutor.fixedRate} milliseconds and after every batch order run, so a slow run
+     * of either executor does not delay the other one.</p>
+     */
+    private void runBatchOrderExecutor() {
+        if (workerPool.isEnabled()) {
+            workerPool.dispatch(batchRequestQueue, batchOrderExecutor);
+        } else {
+            batchOrderExecutor.execute();
+        }
+        ofNullable(processedResultsLoop).ifPresent(loop -> loop.trigger(0));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchOrderLoop.shutdown();
+        ofNullable(processedResultsLoop).ifPresent(ExecutorLoop::shutdown);
     }
 
 }
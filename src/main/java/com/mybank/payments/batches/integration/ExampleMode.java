@@ -2,14 +2,17 @@ package com.mybank.payments.batches.integration;
 
 import java.util.Arrays;
 import lombok.AllArgsConstructor;
+import lombok.Getter;
 
 @AllArgsConstructor
 public enum ExampleMode {
 
     NACHA_FILE("NachaFile"),
     REST_TEMPLATE("RestTemplate"),
-    WEB_CLIENT("WebClient");
+    WEB_CLIENT("WebClient"),
+    VIRTUAL_THREADS("VirtualThreads");
 
+    @Getter
     String propertyValue;
 
     public static ExampleMode from(String value) {
@@ -0,0 +1,16 @@
+package com.mybank.payments.batches.integration.account;
+
+import java.util.Optional;
+
+/**
+ * Resolves the originator account number of a company, typically by a lookup in the core banking system.
+ * <p>Declare a bean implementing it to replace the example resolver. Lookups are cached by the
+ * {@link AccountResolverCache}, so implementations do not need to cache themselves.</p>
+ */
+public interface AccountResolver {
+
+    /**
+     * @return the account number of the company, empty when the company has no account
+     */
+    Optional<String> resolveAccountNumber(String companyId);
+}
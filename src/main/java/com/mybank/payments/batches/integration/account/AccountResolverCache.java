@@ -0,0 +1,244 @@
+package com.mybank.payments.batches.integration.account;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Bounded cache of the account numbers resolved by the {@link AccountResolver}.
+ * <ul>
+ *     <li>At most {@code maxSize} companies are cached, the least recently requested company is evicted first.</li>
+ *     <li>Account numbers expire after {@code timeToLive}, companies without account after the shorter
+ *     {@code negativeTimeToLive}, so a company which just got an account does not wait long for it.</li>
+ *     <li>An account number older than {@code refreshAfter} is still returned when requested, and resolved again in the
+ *     background, so companies requested often are never left waiting for a lookup.</li>
+ *     <li>Concurrent requests for a company which is not cached wait for a single lookup.</li>
+ * </ul>
+ * <p>Failed lookups are not cached. Requests are counted in {@code account.resolver.cache.requests}, tagged with a hit
+ * or miss result, and lookups timed in {@code account.resolver.lookup}, tagged with their outcome.</p>
+ */
+@Slf4j
+public class AccountResolverCache {
+
+    private final AccountResolver accountResolver;
+    private final int maxSize;
+    private final long timeToLiveMillis;
+    private final long negativeTimeToLiveMillis;
+    private final long refreshAfterMillis;
+    private final Clock clock;
+    private final Executor refreshExecutor;
+
+    // guarded by itself, in access order
+    private final LinkedHashMap<String, CachedAccount> accounts = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Optional<String>>> lookups = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Timer foundLookups;
+    private final Timer notFoundLookups;
+    private final Timer failedLookups;
+
+    public AccountResolverCache(AccountResolver accountResolver, AccountResolverProperties properties,
+                                MeterRegistry meterRegistry, Clock clock) {
+        this(accountResolver, properties, meterRegistry, clock, refreshExecutor());
+    }
+
+    AccountResolverCache(AccountResolver accountResolver, AccountResolverProperties properties,
+                         MeterRegistry meterRegistry, Clock clock, Executor refreshExecutor) {
+        this.accountResolver = accountResolver;
+        this.maxSize = properties.getMaxSize();
+        this.timeToLiveMillis = properties.getTimeToLive().toMillis();
+        this.negativeTimeToLiveMillis = properties.getNegativeTimeToLive().toMillis();
+        this.refreshAfterMillis = properties.getRefreshAfter() == null
+            ? Long.MAX_VALUE
+            : properties.getRefreshAfter().toMillis();
+        this.clock = clock;
+        this.refreshExecutor = refreshExecutor;
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.evictions = Counter.builder("account.resolver.cache.evictions")
+            .description("Companies evicted from the account number cache to stay within its maximum size")
+            .register(meterRegistry);
+        this.foundLookups = lookups(meterRegistry, "found");
+        this.notFoundLookups = lookups(meterRegistry, "notFound");
+        this.failedLookups = lookups(meterRegistry, "error");
+        Gauge.builder("account.resolver.cache.size", this, AccountResolverCache::size)
+            .description("Companies in the account number cache")
+            .register(meterRegistry);
+    }
+
+    /**
+     * @return the account number of the company, empty when the company has no account
+     */
+    public Optional<String> resolveAccountNumber(String companyId) {
+        long now = clock.millis();
+        CachedAccount cached = getCached(companyId, now);
+        if (cached != null) {
+            hits.increment();
+            if (cached.accountNumber.isPresent() && now - cached.resolvedAt >= refreshAfterMillis) {
+                refresh(companyId);
+            }
+            return cached.accountNumber;
+        }
+        misses.increment();
+        return lookUpOnce(companyId);
+    }
+
+    public int size() {
+        synchronized (accounts) {
+            return accounts.size();
+        }
+    }
+
+    public void shutdown() {
+        if (refreshExecutor instanceof ExecutorService) {
+            ((ExecutorService) refreshExecutor).shutdownNow();
+        }
+    }
+
+    private CachedAccount getCached(String companyId, long now) {
+        synchronized (accounts) {
+            CachedAccount cached = accounts.get(companyId);
+            if (cached != null && now >= cached.expiresAt) {
+                accounts.remove(companyId);
+                return null;
+            }
+            return cached;
+        }
+    }
+
+    private Optional<String> lookUpOnce(String companyId) {
+        CompletableFuture<Optional<String>> lookup = new CompletableFuture<>();
+        CompletableFuture<Optional<String>> pendingLookup = lookups.putIfAbsent(companyId, lookup);
+        if (pendingLookup != null) {
+            return await(pendingLookup);
+        }
+        try {
+            Optional<String> accountNumber = timed(() -> accountResolver.resolveAccountNumber(companyId));
+            put(companyId, accountNumber);
+            lookup.complete(accountNumber);
+            return accountNumber;
+        } catch (RuntimeException e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            lookups.remove(companyId, lookup);
+        }
+    }
+
+    private void refresh(String companyId) {
+        CompletableFuture<Optional<String>> lookup = new CompletableFuture<>();
+        if (lookups.putIfAbsent(companyId, lookup) != null) {
+            // refreshed or looked up already
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    Optional<String> accountNumber = timed(() -> accountResolver.resolveAccountNumber(companyId));
+                    put(companyId, accountNumber);
+                    lookup.complete(accountNumber);
+                } catch (RuntimeException e) {
+                    log.warn("Refreshing account number of company {} failed, keeping the cached one", companyId, e);
+                    lookup.completeExceptionally(e);
+                } finally {
+                    lookups.remove(companyId, lookup);
+                }
+            });
+        } catch (RuntimeException e) {
+            // refresh executor shut down
+            lookups.remove(companyId, lookup);
+            lookup.cancel(false);
+        }
+    }
+
+    private <T> T timed(Supplier<T> lookup) {
+        long startedAt = System.nanoTime();
+        Timer timer = failedLookups;
+        try {
+            T result = lookup.get();
+            timer = result instanceof Optional && ((Optional<?>) result).isEmpty() ? notFoundLookups : foundLookups;
+            return result;
+        } finally {
+            timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void put(String companyId, Optional<String> accountNumber) {
+        if (maxSize <= 0) {
+            return;
+        }
+        long now = clock.millis();
+        long timeToLive = accountNumber.isPresent() ? timeToLiveMillis : negativeTimeToLiveMillis;
+        synchronized (accounts) {
+            accounts.put(companyId, new CachedAccount(accountNumber, now, now + timeToLive));
+            Iterator<String> eldest = accounts.keySet().iterator();
+            while (accounts.size() > maxSize) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private static Optional<String> await(CompletableFuture<Optional<String>> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("account.resolver.cache.requests")
+            .description("Account number requests, by whether they were served from the cache")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private static Timer lookups(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("account.resolver.lookup")
+            .description("Time taken to look up account numbers with the account resolver")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+
+    private static ExecutorService refreshExecutor() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("account-refresh-");
+        threadFactory.setDaemon(true);
+        return Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    private static final class CachedAccount {
+
+        private final Optional<String> accountNumber;
+        private final long resolvedAt;
+        private final long expiresAt;
+
+        private CachedAccount(Optional<String> accountNumber, long resolvedAt, long expiresAt) {
+            this.accountNumber = accountNumber;
+            this.resolvedAt = resolvedAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
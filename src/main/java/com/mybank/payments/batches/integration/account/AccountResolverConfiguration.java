@@ -0,0 +1,37 @@
+package com.mybank.payments.batches.integration.account;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.file.Paths;
+import java.time.Clock;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(AccountResolverProperties.class)
+public class AccountResolverConfiguration {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "service.accountResolver.snapshot.enabled", havingValue = "true")
+    public SnapshotAccountResolver snapshotAccountResolver(AccountResolverProperties properties) {
+        AccountResolverProperties.Snapshot snapshot = properties.getSnapshot();
+        return new SnapshotAccountResolver(Paths.get(snapshot.getFile()), Paths.get(snapshot.getIndexDirectory()),
+            snapshot.getCheckInterval(), snapshot.getCompletion());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AccountResolver accountResolver() {
+        return new CompanyIdAccountResolver();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public AccountResolverCache accountResolverCache(AccountResolver accountResolver,
+                                                     AccountResolverProperties properties,
+                                                     MeterRegistry meterRegistry) {
+        return new AccountResolverCache(accountResolver, properties, meterRegistry, Clock.systemUTC());
+    }
+
+}
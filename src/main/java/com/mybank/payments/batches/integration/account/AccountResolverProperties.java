@@ -0,0 +1,64 @@
+package com.mybank.payments.batches.integration.account;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("service.account-resolver")
+public class AccountResolverProperties {
+
+    /**
+     * Number of companies the account numbers are cached for, 0 disables the cache.
+     */
+    private int maxSize = 10000;
+
+    /**
+     * Time an account number is cached for.
+     */
+    private Duration timeToLive = Duration.ofMinutes(10);
+
+    /**
+     * Time a company without account is cached for.
+     */
+    private Duration negativeTimeToLive = Duration.ofMinutes(1);
+
+    /**
+     * Age from which a cached account number is refreshed in the background when requested, so companies requested
+     * often never wait for a lookup. Not refreshed ahead when not shorter than the time to live.
+     */
+    private Duration refreshAfter = Duration.ofMinutes(8);
+
+    private Snapshot snapshot = new Snapshot();
+
+    @Data
+    public static class Snapshot {
+
+        /**
+         * Whether account numbers are resolved from a snapshot export of the company accounts.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Snapshot export, a CSV file with a company id and an account number per line, replaced by every export.
+         */
+        private String file = "account-snapshot.csv";
+
+        /**
+         * Directory the memory-mapped index of the snapshot is kept in.
+         */
+        private String indexDirectory = "account-index";
+
+        /**
+         * Interval the snapshot is checked for a new export.
+         */
+        private Duration checkInterval = Duration.ofMinutes(1);
+
+        /**
+         * How a complete export is told from one still being written: {@code renamed}, {@code done-marker} or
+         * {@code stable}.
+         */
+        private SnapshotAccountResolver.Completion completion = SnapshotAccountResolver.Completion.STABLE;
+
+    }
+}
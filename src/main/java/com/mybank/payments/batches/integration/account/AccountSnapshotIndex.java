@@ -0,0 +1,200 @@
+package com.mybank.payments.batches.integration.account;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-only index of the account numbers of the companies, in a memory-mapped file built from a snapshot export.
+ * <p>The index file holds the companies sorted by company id, in fixed width entries padded with zero bytes, after a
+ * header with the number of entries and the widths. A lookup is a binary search comparing the company id straight
+ * against the mapped bytes, so millions of companies are served with a few dozen memory reads, without allocating
+ * anything but the account number found, and without keeping the companies on the heap.</p>
+ * <p>The snapshot export is a CSV file with a company id and an account number per line, optionally starting with a
+ * {@code companyId,accountNumber} header. Both are ASCII, the last line of a company wins.</p>
+ */
+public final class AccountSnapshotIndex {
+
+    private static final int MAGIC = 0x41434958;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+    private static final String HEADER_LINE = "companyId,accountNumber";
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final int keyWidth;
+    private final int valueWidth;
+    private final int entryWidth;
+
+    private AccountSnapshotIndex(Path file, MappedByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not an account snapshot index: " + file);
+        }
+        this.size = buffer.getInt(8);
+        this.keyWidth = buffer.getInt(12);
+        this.valueWidth = buffer.getInt(16);
+        this.entryWidth = keyWidth + valueWidth;
+        if ((long) HEADER_SIZE + (long) size * entryWidth > buffer.capacity()) {
+            throw new IllegalArgumentException("Truncated account snapshot index: " + file);
+        }
+    }
+
+    /**
+     * Maps an index file built by {@link #build(Path, Path)}.
+     */
+    public static AccountSnapshotIndex open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new AccountSnapshotIndex(file, channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open account snapshot index " + file, e);
+        }
+    }
+
+    /**
+     * Builds the index file of a snapshot export. The index is written next to its final name and moved in place once
+     * complete, so an index file is never seen half written.
+     */
+    public static void build(Path snapshot, Path file) {
+        Map<String, String> accountNumbers = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(snapshot, StandardCharsets.US_ASCII)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.trim().equalsIgnoreCase(HEADER_LINE))) {
+                    continue;
+                }
+                int separator = line.indexOf(',');
+                String companyId = separator < 0 ? "" : line.substring(0, separator).trim();
+                String accountNumber = separator < 0 ? "" : line.substring(separator + 1).trim();
+                if (companyId.isEmpty() || accountNumber.isEmpty()) {
+                    throw new IllegalArgumentException("Invalid line " + lineNumber + " of account snapshot "
+                        + snapshot);
+                }
+                accountNumbers.put(companyId, accountNumber);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read account snapshot " + snapshot, e);
+        }
+        write(accountNumbers, file);
+    }
+
+    static void write(Map<String, String> accountNumbers, Path file) {
+        String[] companyIds = accountNumbers.keySet().toArray(new String[0]);
+        Arrays.sort(companyIds);
+        int keyWidth = 1;
+        int valueWidth = 1;
+        for (String companyId : companyIds) {
+            keyWidth = Math.max(keyWidth, companyId.length());
+            valueWidth = Math.max(valueWidth, accountNumbers.get(companyId).length());
+        }
+        long length = HEADER_SIZE + (long) companyIds.length * (keyWidth + valueWidth);
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Account snapshot too large for a single index file");
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                ByteBuffer entries = ByteBuffer.allocate(64 * 1024);
+                entries.putInt(MAGIC).putInt(VERSION).putInt(companyIds.length).putInt(keyWidth).putInt(valueWidth);
+                for (String companyId : companyIds) {
+                    if (entries.remaining() < keyWidth + valueWidth) {
+                        out.write(entries.array(), 0, entries.position());
+                        entries.clear();
+                    }
+                    putPadded(entries, companyId, keyWidth);
+                    putPadded(entries, accountNumbers.get(companyId), valueWidth);
+                }
+                out.write(entries.array(), 0, entries.position());
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write account snapshot index " + file, e);
+        }
+    }
+
+    /**
+     * @return the account number of the company, empty when the company is not in the snapshot
+     */
+    public Optional<String> find(String companyId) {
+        if (companyId.length() > keyWidth) {
+            return Optional.empty();
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(companyId, HEADER_SIZE + middle * entryWidth);
+            if (comparison > 0) {
+                low = middle + 1;
+            } else if (comparison < 0) {
+                high = middle - 1;
+            } else {
+                return Optional.of(value(HEADER_SIZE + middle * entryWidth + keyWidth));
+            }
+        }
+        return Optional.empty();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    private int compare(String companyId, int offset) {
+        for (int i = 0; i < keyWidth; i++) {
+            int stored = buffer.get(offset + i) & 0xff;
+            int requested = i < companyId.length() ? companyId.charAt(i) : 0;
+            if (requested != stored) {
+                return requested - stored;
+            }
+        }
+        return 0;
+    }
+
+    private String value(int offset) {
+        int length = 0;
+        while (length < valueWidth && buffer.get(offset + length) != 0) {
+            length++;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static void putPadded(ByteBuffer entries, String value, int width) {
+        for (int i = 0; i < width; i++) {
+            char c = i < value.length() ? value.charAt(i) : 0;
+            if (c > 0x7f) {
+                throw new IllegalArgumentException("Not ASCII: " + value);
+            }
+            entries.put((byte) c);
+        }
+    }
+}
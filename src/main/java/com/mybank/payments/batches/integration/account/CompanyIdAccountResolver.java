@@ -0,0 +1,15 @@
+package com.mybank.payments.batches.integration.account;
+
+import java.util.Optional;
+
+/**
+ * Example resolver, returning the company id as the account number.
+ */
+public class CompanyIdAccountResolver implements AccountResolver {
+
+    @Override
+    public Optional<String> resolveAccountNumber(String companyId) {
+        // Implement here the proper business logic to resolve account number
+        return Optional.of(companyId);
+    }
+}
@@ -0,0 +1,147 @@
+package com.mybank.payments.batches.integration.account;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Resolves account numbers from the {@link AccountSnapshotIndex} of the latest snapshot export of the company accounts.
+ * <p>Every {@code checkInterval} the snapshot file is checked, and a changed snapshot is indexed into a new index file
+ * once the export is complete, see {@link Completion}. The new index then replaces the current one atomically: lookups
+ * in progress finish on the previous index, following lookups use the new one. Index files other than the current one,
+ * including the ones left behind by a previous run, are deleted. Until the first snapshot arrives no company has an
+ * account.</p>
+ */
+@Slf4j
+public class SnapshotAccountResolver implements AccountResolver {
+
+    private final Path snapshot;
+    private final Path indexDirectory;
+    private final Completion completion;
+    private final ScheduledExecutorService checker;
+
+    private volatile AccountSnapshotIndex index;
+    private FileTime indexedSnapshotTime;
+    private FileTime checkedSnapshotTime;
+    private long checkedSnapshotSize = -1;
+
+    public SnapshotAccountResolver(Path snapshot, Path indexDirectory, Duration checkInterval, Completion completion) {
+        this.snapshot = snapshot;
+        this.indexDirectory = indexDirectory;
+        this.completion = completion;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("account-snapshot-");
+        threadFactory.setDaemon(true);
+        this.checker = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        deleteIndexFilesExcept(null);
+        checkSnapshot();
+        if (checkInterval != null && !checkInterval.isZero()) {
+            long interval = checkInterval.toMillis();
+            checker.scheduleWithFixedDelay(this::checkSnapshot, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Optional<String> resolveAccountNumber(String companyId) {
+        AccountSnapshotIndex current = index;
+        return current == null ? Optional.empty() : current.find(companyId);
+    }
+
+    /**
+     * Indexes the snapshot if it changed since it was last indexed and the export is complete, and swaps the index.
+     */
+    synchronized void checkSnapshot() {
+        try {
+            if (!Files.isRegularFile(snapshot)) {
+                return;
+            }
+            FileTime snapshotTime = Files.getLastModifiedTime(snapshot);
+            if (snapshotTime.equals(indexedSnapshotTime)) {
+                return;
+            }
+            if (!isComplete(snapshotTime, Files.size(snapshot))) {
+                log.debug("Snapshot {} not complete yet", snapshot);
+                return;
+            }
+            long startedAt = System.nanoTime();
+            Path file = indexDirectory.resolve("accounts-" + snapshotTime.toMillis() + ".idx");
+            AccountSnapshotIndex.build(snapshot, file);
+            index = AccountSnapshotIndex.open(file);
+            indexedSnapshotTime = snapshotTime;
+            log.info("Indexed {} company accounts of snapshot {} in {} ms", index.size(), snapshot,
+                (System.nanoTime() - startedAt) / 1_000_000);
+            // the previous index stays mapped until collected, removing its file only releases the name
+            deleteIndexFilesExcept(file);
+        } catch (IOException | RuntimeException e) {
+            log.error("Indexing account snapshot {} failed, keeping the current index", snapshot, e);
+            deleteIndexFilesExcept(index == null ? null : index.getFile());
+        }
+    }
+
+    private boolean isComplete(FileTime snapshotTime, long snapshotSize) throws IOException {
+        switch (completion) {
+            case RENAMED:
+                return true;
+            case DONE_MARKER:
+                Path marker = snapshot.resolveSibling(snapshot.getFileName() + ".done");
+                return Files.isRegularFile(marker) && Files.getLastModifiedTime(marker).compareTo(snapshotTime) >= 0;
+            default:
+                boolean stable = snapshotTime.equals(checkedSnapshotTime) && snapshotSize == checkedSnapshotSize;
+                checkedSnapshotTime = snapshotTime;
+                checkedSnapshotSize = snapshotSize;
+                return stable;
+        }
+    }
+
+    /**
+     * Deletes the index files, and the temporary files of an interrupted build, other than the current index file.
+     */
+    private void deleteIndexFilesExcept(Path current) {
+        if (!Files.isDirectory(indexDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(indexDirectory, "accounts-*.idx*")) {
+            for (Path file : files) {
+                if (!file.equals(current)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Deleting stale index files in {} failed", indexDirectory, e);
+        }
+    }
+
+    public void close() {
+        checker.shutdownNow();
+    }
+
+    /**
+     * How a complete snapshot export is told from one still being written.
+     */
+    public enum Completion {
+
+        /**
+         * The export is written next to the snapshot and renamed into place, a changed snapshot is always complete.
+         */
+        RENAMED,
+
+        /**
+         * The export writes a marker file named after the snapshot with a {@code .done} suffix once done, the snapshot
+         * is complete when the marker is not older than it.
+         */
+        DONE_MARKER,
+
+        /**
+         * The snapshot is complete once its size and modification time did not change between two checks.
+         */
+        STABLE
+    }
+}
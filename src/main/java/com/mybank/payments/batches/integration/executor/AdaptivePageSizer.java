@@ -0,0 +1,131 @@
+package com.mybank.payments.batches.integration.executor;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import lombok.Data;
+
+/**
+ * Chooses the page size batch payments are downloaded with.
+ * <p>The page size of a batch order is chosen when its download starts and kept for all its pages, since page numbers
+ * are relative to the page size. When adaptive, every downloaded page is fed back: a full page answered within half the
+ * target latency doubles the page size, a page slower than the target latency halves it, always within the minimum and
+ * maximum page size accepted by payment-order-service. The page size with the best throughput so far is remembered and
+ * returned to when a larger page turns out slow, so the page size settles on what suits the deployment.</p>
+ * <p>The page size is exported as the {@code batch.payments.page.size} gauge and the latency of every page as the
+ * {@code batch.payments.page.latency} timer, both tagged with the example mode.</p>
+ */
+public class AdaptivePageSizer {
+
+    private final Settings settings;
+    private final long targetLatencyNanos;
+    private final Timer pageLatency;
+
+    private volatile int pageSize;
+    private int bestPageSize;
+    private double bestThroughput;
+
+    public AdaptivePageSizer(Settings settings, MeterRegistry meterRegistry, String mode) {
+        if (settings.getMinPageSize() < 1 || settings.getMinPageSize() > settings.getMaxPageSize()) {
+            throw new IllegalArgumentException("Invalid page size range: " + settings.getMinPageSize() + ".."
+                + settings.getMaxPageSize());
+        }
+        this.settings = settings;
+        this.targetLatencyNanos = settings.getTargetLatency().toNanos();
+        this.pageSize = clamp(settings.getPageSize());
+        this.bestPageSize = pageSize;
+        this.pageLatency = Timer.builder("batch.payments.page.latency")
+            .description("Time taken to download a page of batch payments")
+            .tag("mode", mode)
+            .register(meterRegistry);
+        Gauge.builder("batch.payments.page.size", this, AdaptivePageSizer::getPageSize)
+            .description("Page size batch payments are downloaded with")
+            .tag("mode", mode)
+            .register(meterRegistry);
+    }
+
+    /**
+     * @return the page size to download the next batch order with
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Feeds back a downloaded page.
+     *
+     * @param requestedPageSize page size the page was requested with
+     * @param latencyNanos      time taken to download the page
+     * @param paymentItems      number of batch payments on the page
+     */
+    public void record(int requestedPageSize, long latencyNanos, int paymentItems) {
+        pageLatency.record(latencyNanos, TimeUnit.NANOSECONDS);
+        if (!settings.isAdaptive()) {
+            return;
+        }
+        synchronized (this) {
+            if (requestedPageSize != pageSize) {
+                // page of a batch order started with an earlier page size
+                return;
+            }
+            boolean fullPage = paymentItems >= requestedPageSize;
+            if (latencyNanos > targetLatencyNanos) {
+                if (bestPageSize < requestedPageSize) {
+                    pageSize = bestPageSize;
+                } else {
+                    // the best page size got slow as well, conditions changed
+                    pageSize = clamp(requestedPageSize / 2);
+                    bestPageSize = pageSize;
+                    bestThroughput = 0;
+                }
+            } else if (fullPage) {
+                double throughput = (double) paymentItems / Math.max(1, latencyNanos);
+                if (throughput > bestThroughput) {
+                    bestThroughput = throughput;
+                    bestPageSize = requestedPageSize;
+                }
+                if (latencyNanos < targetLatencyNanos / 2 && bestPageSize == requestedPageSize) {
+                    pageSize = clamp(requestedPageSize * 2);
+                } else {
+                    pageSize = bestPageSize;
+                }
+            }
+        }
+    }
+
+    private int clamp(int size) {
+        return Math.max(settings.getMinPageSize(), Math.min(settings.getMaxPageSize(), size));
+    }
+
+    @Data
+    public static class Settings {
+
+        /**
+         * Page size batch payments are downloaded with, the initial page size when adaptive.
+         */
+        private int pageSize = 100;
+
+        /**
+         * Whether the page size is adjusted to the observed page latency and page size.
+         */
+        private boolean adaptive = false;
+
+        /**
+         * Smallest page size the adaptive page size shrinks to.
+         */
+        private int minPageSize = 100;
+
+        /**
+         * Largest page size accepted by payment-order-service.
+         */
+        private int maxPageSize = 1000;
+
+        /**
+         * Page latency above which the adaptive page size shrinks.
+         */
+        private Duration targetLatency = Duration.ofMillis(500);
+
+    }
+}
@@ -0,0 +1,153 @@
+package com.mybank.payments.batches.integration.executor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the stages a batch order goes through in an example mode, all tagged with the mode and the outcome.
+ * <ul>
+ *     <li>{@code batch.stage.latency}: latency histogram of the {@code getBatchOrder} call, of every
+ *     {@code getBatchPayments} page, of processing the payments and of every {@code putBatchPayments} call, tagged
+ *     with the stage</li>
+ *     <li>{@code batch.status.transition.latency}: latency histogram of every {@code putBatchOrder} call, tagged with
+ *     the status the batch order is moved to</li>
+ *     <li>{@code batch.orders.completed} and {@code batch.payments.completed}: batch orders and payment items done,
+ *     their rate being the batches and items per second of the mode</li>
+ * </ul>
+ * <p>Thread safe, the timers are registered on first use and kept.</p>
+ */
+public class BatchLifecycleMeters {
+
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+    public static final String PROCESSED = "processed";
+    public static final String REJECTED = "rejected";
+
+    private final MeterRegistry meterRegistry;
+    private final String mode;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public BatchLifecycleMeters(MeterRegistry meterRegistry, String mode) {
+        this.meterRegistry = meterRegistry;
+        this.mode = mode;
+    }
+
+    /**
+     * Calls the stage, recording its latency with the {@value #ERROR} outcome when it throws.
+     */
+    public <T> T time(Stage stage, Supplier<T> call) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } finally {
+            record(stage, System.nanoTime() - start, success);
+        }
+    }
+
+    public void record(Stage stage, long latencyNanos, boolean success) {
+        String outcome = outcome(success);
+        timers.computeIfAbsent("stage:" + stage.getTagValue() + ":" + outcome, key -> Timer.builder(
+                    "batch.stage.latency")
+                .description("Time taken by a stage of processing a batch order")
+                .tag("mode", mode)
+                .tag("stage", stage.getTagValue())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Calls {@code putBatchOrder} moving a batch order to the status, recording its latency with the {@value #ERROR}
+     * outcome when it throws.
+     */
+    public <T> T timeTransition(String status, Supplier<T> call) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.get();
+            success = true;
+            return result;
+        } finally {
+            recordTransition(status, System.nanoTime() - start, success);
+        }
+    }
+
+    public void recordTransition(String status, long latencyNanos, boolean success) {
+        String outcome = outcome(success);
+        timers.computeIfAbsent("transition:" + status + ":" + outcome, key -> Timer.builder(
+                    "batch.status.transition.latency")
+                .description("Time taken to move a batch order to a status")
+                .tag("mode", mode)
+                .tag("status", status)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a batch order done.
+     *
+     * @param outcome           {@value #PROCESSED}, {@value #REJECTED} or {@value #ERROR}
+     * @param processedPayments payment items processed
+     * @param rejectedPayments  payment items rejected
+     */
+    public void batchOrderCompleted(String outcome, long processedPayments, long rejectedPayments) {
+        batchOrdersCompleted(outcome, 1, processedPayments, rejectedPayments);
+    }
+
+    /**
+     * Counts batch orders done together, e.g. the batch orders of a nacha file.
+     */
+    public void batchOrdersCompleted(String outcome, int batchOrders, long processedPayments, long rejectedPayments) {
+        counter("batch.orders.completed", "Number of batch orders done", outcome).increment(batchOrders);
+        if (processedPayments > 0) {
+            counter("batch.payments.completed", "Number of payment items done", PROCESSED)
+                .increment(processedPayments);
+        }
+        if (rejectedPayments > 0) {
+            counter("batch.payments.completed", "Number of payment items done", REJECTED)
+                .increment(rejectedPayments);
+        }
+    }
+
+    private Counter counter(String name, String description, String outcome) {
+        return counters.computeIfAbsent(name + ":" + outcome, key -> Counter.builder(name)
+            .description(description)
+            .tag("mode", mode)
+            .tag("outcome", outcome)
+            .register(meterRegistry));
+    }
+
+    private static String outcome(boolean success) {
+        return success ? SUCCESS : ERROR;
+    }
+
+    public enum Stage {
+
+        GET_BATCH_ORDER("getBatchOrder"),
+        GET_BATCH_PAYMENTS("getBatchPayments"),
+        PROCESSING("processing"),
+        PUT_BATCH_PAYMENTS("putBatchPayments");
+
+        private final String tagValue;
+
+        Stage(String tagValue) {
+            this.tagValue = tagValue;
+        }
+
+        public String getTagValue() {
+            return tagValue;
+        }
+    }
+}
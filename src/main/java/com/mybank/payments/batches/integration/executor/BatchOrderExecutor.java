@@ -1,5 +1,15 @@
 package com.mybank.payments.batches.integration.executor;
 
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import java.util.Queue;
+
 public interface BatchOrderExecutor extends Executor {
 
+    /**
+     * Processes all the batch orders from the given queue, instead of the queue filled by the BatchOrderController.
+     *
+     * @param batchOrders queue to drain
+     */
+    void execute(Queue<PostBatchOrderRequest> batchOrders);
+
 }
@@ -0,0 +1,112 @@
+package com.mybank.payments.batches.integration.executor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Runs a task on its own scheduler threads, at a fixed rate and whenever it is triggered, so a slow run of one loop
+ * never holds up another one.
+ * <p>Triggers arriving while a run is scheduled but not started yet are coalesced into that run. A loop runs its task
+ * on up to {@code concurrency} threads: with a single thread a trigger arriving during a run waits for it to finish,
+ * with more threads it starts the next run right away, as long as a thread is free. Every run is recorded
+ * in the {@code batch.executor.loop.run} timer and its duration added to the {@code batch.executor.loop.busy} counter,
+ * both tagged with the loop name. The rate of the busy counter, in seconds per second, is the utilisation of the loop:
+ * close to 1 the loop cannot keep up with its triggers.</p>
+ */
+@Slf4j
+public class ExecutorLoop {
+
+    private final String name;
+    private final Runnable task;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean runScheduled = new AtomicBoolean();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final Timer runs;
+
+    public ExecutorLoop(String name, Runnable task, MeterRegistry meterRegistry) {
+        this(name, task, 1, meterRegistry);
+    }
+
+    /**
+     * @param concurrency number of runs of the task in flight at most, the task must be safe to run concurrently when
+     *                    more than 1
+     */
+    public ExecutorLoop(String name, Runnable task, int concurrency, MeterRegistry meterRegistry) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency of executor loop " + name + " must be at least 1");
+        }
+        this.name = name;
+        this.task = task;
+        this.scheduler = Executors.newScheduledThreadPool(concurrency, new CustomizableThreadFactory(name + "-loop-"));
+        this.runs = Timer.builder("batch.executor.loop.run")
+            .description("Time taken by a run of an executor loop")
+            .tag("loop", name)
+            .register(meterRegistry);
+        FunctionCounter.builder("batch.executor.loop.busy", busyNanos, busy -> busy.get() / 1e9)
+            .description("Time an executor loop spent running, its rate is the utilisation of the loop")
+            .baseUnit("seconds")
+            .tag("loop", name)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Triggers the loop every {@code fixedRate} milliseconds, a non-positive rate only runs it when triggered.
+     */
+    public void start(long fixedRate, long initialDelay) {
+        if (fixedRate > 0) {
+            scheduler.scheduleAtFixedRate(() -> trigger(0), initialDelay, fixedRate, TimeUnit.MILLISECONDS);
+            log.info("Running executor loop {} every {} ms", name, fixedRate);
+        }
+    }
+
+    /**
+     * Schedules a run after the delay, unless a run is already scheduled and not started yet. Ignored once the loop is
+     * shut down.
+     */
+    public void trigger(long delay) {
+        if (scheduler.isShutdown() || !runScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shut down in the meantime, no run is scheduled
+            runScheduled.set(false);
+            log.debug("Executor loop {} shut down, trigger ignored", name);
+        }
+    }
+
+    private void run() {
+        runScheduled.set(false);
+        long startedAt = System.nanoTime();
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("Run of executor loop {} failed", name, e);
+        } finally {
+            long elapsed = System.nanoTime() - startedAt;
+            busyNanos.addAndGet(elapsed);
+            runs.record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stops the fixed rate runs, runs already triggered still take place and later triggers are ignored.
+     */
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    boolean awaitTermination() throws InterruptedException {
+        return scheduler.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
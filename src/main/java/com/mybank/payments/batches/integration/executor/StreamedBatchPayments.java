@@ -0,0 +1,60 @@
+package com.mybank.payments.batches.integration.executor;
+
+import com.backbase.payments.batches.integration.inbound.model.IntegrationBatchPayment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Running outcome of processing the payments of a batch order page by page, while they are downloaded.
+ * <p>Visible payments are handed to the payment processor right away and only counted, only the IDs of the payments
+ * which failed to process and the hidden payments (batch balancing information) are kept. Memory therefore stays flat
+ * no matter how many payments the batch order has.</p>
+ * <p>Not thread safe, pages have to be accepted one after the other.</p>
+ */
+public class StreamedBatchPayments {
+
+    private final Predicate<IntegrationBatchPayment> paymentItemProcessor;
+    private final List<IntegrationBatchPayment> hiddenPayments = new ArrayList<>();
+    private final List<String> failedPaymentItemIds = new ArrayList<>();
+    private long visiblePayments;
+
+    /**
+     * @param paymentItemProcessor returns false if the payment item is not processable
+     */
+    public StreamedBatchPayments(Predicate<IntegrationBatchPayment> paymentItemProcessor) {
+        this.paymentItemProcessor = paymentItemProcessor;
+    }
+
+    public void acceptPage(List<IntegrationBatchPayment> paymentItems) {
+        paymentItems.forEach(this::accept);
+    }
+
+    public StreamedBatchPayments accept(IntegrationBatchPayment paymentItem) {
+        if (Boolean.TRUE.equals(paymentItem.getHidden())) {
+            hiddenPayments.add(paymentItem);
+        } else {
+            visiblePayments++;
+            if (!paymentItemProcessor.test(paymentItem)) {
+                failedPaymentItemIds.add(paymentItem.getId());
+            }
+        }
+        return this;
+    }
+
+    public long getVisiblePayments() {
+        return visiblePayments;
+    }
+
+    public long getReceivedPayments() {
+        return visiblePayments + hiddenPayments.size();
+    }
+
+    public List<IntegrationBatchPayment> getHiddenPayments() {
+        return hiddenPayments;
+    }
+
+    public List<String> getFailedPaymentItemIds() {
+        return failedPaymentItemIds;
+    }
+}
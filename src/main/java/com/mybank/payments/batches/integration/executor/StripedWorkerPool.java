@@ -0,0 +1,121 @@
+package com.mybank.payments.batches.integration.executor;
+
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Processes batch orders on a fixed number of worker lanes, striped by company id.
+ * <p>Every lane is a single thread draining its own queue, so batch orders of the same company are processed one
+ * after the other in arrival order, while batch orders of companies on different lanes are processed in parallel.
+ * A large batch order therefore only holds up the companies sharing its lane.</p>
+ * <p>A lane holds at most {@code service.batchOrderExecutor.laneCapacity} batch orders. Dispatching stops at the first
+ * batch order whose lane is full and leaves it, and the batch orders behind it, in the queue filled by the
+ * BatchOrderController. The queue depth therefore keeps reflecting the backlog, which the high-water mark of the
+ * BatchOrderController is checked against, and with a journal queue only the batch orders taken into the lanes are
+ * lost on a crash. A lane dispatches again once it has drained its batch orders.</p>
+ * <p>The pool is disabled when {@code service.batchOrderExecutor.workers} is 0, which is the default.</p>
+ */
+@Component
+@Slf4j
+public class StripedWorkerPool {
+
+    private final Lane[] lanes;
+
+    public StripedWorkerPool(@Value("${service.batchOrderExecutor.workers:0}") int workers,
+                             @Value("${service.batchOrderExecutor.laneCapacity:100}") int laneCapacity) {
+        this.lanes = new Lane[Math.max(0, workers)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i, Math.max(1, laneCapacity));
+        }
+    }
+
+    public boolean isEnabled() {
+        return lanes.length > 0;
+    }
+
+    /**
+     * Moves the batch orders from the queue to the lane of their company, until the lane of the next batch order is
+     * full, and wakes up the lanes which received work. Returns without waiting for the batch orders to be processed.
+     *
+     * @param batchRequestQueue  queue filled by the BatchOrderController
+     * @param batchOrderExecutor executor processing the batch orders of a lane
+     */
+    public synchronized void dispatch(Queue<PostBatchOrderRequest> batchRequestQueue,
+                                      BatchOrderExecutor batchOrderExecutor) {
+        boolean[] received = new boolean[lanes.length];
+        PostBatchOrderRequest batchOrder;
+        // the only consumer of the queue, the batch order peeked is the one polled
+        while ((batchOrder = batchRequestQueue.peek()) != null) {
+            int lane = Math.floorMod(Objects.hashCode(batchOrder.getCompanyId()), lanes.length);
+            if (lanes[lane].batchOrders.remainingCapacity() == 0) {
+                break;
+            }
+            lanes[lane].batchOrders.offer(batchRequestQueue.poll());
+            received[lane] = true;
+        }
+        for (int i = 0; i < lanes.length; i++) {
+            if (received[i]) {
+                lanes[i].wakeUp(batchOrderExecutor, () -> {
+                    if (!batchRequestQueue.isEmpty()) {
+                        dispatch(batchRequestQueue, batchOrderExecutor);
+                    }
+                });
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.worker.shutdown();
+        }
+    }
+
+    private static final class Lane {
+
+        private final int index;
+        private final BlockingQueue<PostBatchOrderRequest> batchOrders;
+        private final ExecutorService worker;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Lane(int index, int capacity) {
+            this.index = index;
+            this.batchOrders = new LinkedBlockingQueue<>(capacity);
+            this.worker = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("batch-worker-" + index + "-"));
+        }
+
+        /**
+         * @param drained called once the lane processed its batch orders, to dispatch the batch orders left behind
+         */
+        private void wakeUp(BatchOrderExecutor batchOrderExecutor, Runnable drained) {
+            // a lane which is already scheduled picks up the new batch orders in its run
+            if (!worker.isShutdown() && scheduled.compareAndSet(false, true)) {
+                worker.execute(() -> {
+                    scheduled.set(false);
+                    try {
+                        batchOrderExecutor.execute(batchOrders);
+                    } catch (RuntimeException e) {
+                        log.error("Processing batch orders on worker lane {} failed", index, e);
+                    }
+                    try {
+                        drained.run();
+                    } catch (RuntimeException e) {
+                        log.error("Dispatching batch orders after worker lane {} failed", index, e);
+                    }
+                });
+            }
+        }
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Daily file sequence of every company, stored in a file shared by all the nodes (or processes) using it, e.g. on a
+ * shared volume.
+ * <p>The file is an open addressing hash table of fixed size slots, each holding a company id, the day of its sequence
+ * and the next free sequence index. {@link #reserve(String, long, int, int)} reads the slot of the company under an
+ * exclusive lock of the file, writes the updated slot back and forces it to disk before releasing the lock, so a
+ * reserved block is never handed out again, neither after a restart nor to another node.</p>
+ * <p>The slots are read and written with positional I/O rather than through a memory mapping, as network file systems
+ * do not keep the mapped pages of different hosts in sync. The lock is an advisory file lock though: nodes on different
+ * hosts are only kept apart on a file system honouring file locks across hosts, e.g. NFSv4 or NFSv3 with a running lock
+ * manager. On other file systems, and on SMB shares mounted without byte range locking, keep all the nodes sharing the
+ * file on a single host.</p>
+ */
+public class FileSequenceStore implements Closeable {
+
+    static final int MAX_COMPANY_ID_LENGTH = 64;
+
+    private static final int MAGIC = 0x4e534551;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 16 + MAX_COMPANY_ID_LENGTH;
+    private static final int EPOCH_DAY_OFFSET = 0;
+    private static final int NEXT_INDEX_OFFSET = 8;
+    private static final int KEY_LENGTH_OFFSET = 12;
+    private static final int KEY_OFFSET = 16;
+
+    // file locks are held by the whole JVM, stores of the same file in one JVM take turns on this lock first
+    private static final Map<Path, ReentrantLock> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int slots;
+    private final ReentrantLock processLock;
+
+    /**
+     * Opens (or creates) the store.
+     *
+     * @param file  file holding the sequences
+     * @param slots number of companies the store can hold when it is created, ignored for an existing file
+     */
+    public FileSequenceStore(Path file, int slots) {
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            this.file = file.toAbsolutePath().normalize();
+            this.processLock = PROCESS_LOCKS.computeIfAbsent(this.file, path -> new ReentrantLock());
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            processLock.lock();
+            try (FileLock ignored = channel.lock()) {
+                if (channel.size() < HEADER_SIZE) {
+                    this.slots = slots;
+                    // zero filled slots are free, writing the last byte sizes the file
+                    write(ByteBuffer.allocate(1), HEADER_SIZE + (long) slots * SLOT_SIZE - 1);
+                    write(ByteBuffer.allocate(HEADER_SIZE).putInt(0, MAGIC).putInt(4, slots), 0);
+                    channel.force(true);
+                } else {
+                    ByteBuffer header = read(0, HEADER_SIZE);
+                    if (header.getInt(0) != MAGIC) {
+                        throw new IllegalStateException("Not a sequence store: " + file);
+                    }
+                    this.slots = header.getInt(4);
+                }
+            } finally {
+                processLock.unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open sequence store " + file, e);
+        }
+    }
+
+    /**
+     * Reserves the next block of sequence indexes of the company for the day. The sequence of a company starts over
+     * from 0 on every new day.
+     *
+     * @param companyId      company id, at most 64 bytes long
+     * @param epochDay       day of the sequence
+     * @param blockSize      number of indexes to reserve
+     * @param sequenceLength number of indexes available per day
+     * @return the reserved indexes, from (inclusive) and to (exclusive), fewer than requested when the sequence is
+     * nearly exhausted and empty once it is
+     */
+    public int[] reserve(String companyId, long epochDay, int blockSize, int sequenceLength) {
+        byte[] key = companyId.getBytes(StandardCharsets.UTF_8);
+        if (key.length > MAX_COMPANY_ID_LENGTH) {
+            throw new IllegalArgumentException("Company id longer than " + MAX_COMPANY_ID_LENGTH + " bytes: "
+                + companyId);
+        }
+        processLock.lock();
+        try (FileLock ignored = channel.lock()) {
+            long position = findSlot(key);
+            ByteBuffer slot = read(position, SLOT_SIZE);
+            int nextIndex = slot.getInt(NEXT_INDEX_OFFSET);
+            if (slot.getLong(EPOCH_DAY_OFFSET) != epochDay) {
+                nextIndex = 0;
+            }
+            int from = Math.min(nextIndex, sequenceLength);
+            int to = Math.min(from + blockSize, sequenceLength);
+            slot.putLong(EPOCH_DAY_OFFSET, epochDay);
+            slot.putInt(NEXT_INDEX_OFFSET, to);
+            slot.putInt(KEY_LENGTH_OFFSET, key.length + 1);
+            slot.position(KEY_OFFSET);
+            slot.put(key);
+            write(slot.clear(), position);
+            channel.force(false);
+            return new int[]{from, to};
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to update sequence store " + file, e);
+        } finally {
+            processLock.unlock();
+        }
+    }
+
+    /**
+     * @return the position of the slot of the company, or of the free slot the company is stored in
+     */
+    private long findSlot(byte[] key) throws IOException {
+        int start = Math.floorMod(Arrays.hashCode(key), slots);
+        for (int i = 0; i < slots; i++) {
+            long position = HEADER_SIZE + (long) ((start + i) % slots) * SLOT_SIZE;
+            ByteBuffer slot = read(position, SLOT_SIZE);
+            // key length is stored plus one, 0 marks a free slot
+            int keyLength = slot.getInt(KEY_LENGTH_OFFSET) - 1;
+            if (keyLength < 0) {
+                return position;
+            }
+            if (keyLength == key.length && keyEquals(slot, key)) {
+                return position;
+            }
+        }
+        throw new IllegalStateException("Sequence store " + file + " is full, holding " + slots + " companies");
+    }
+
+    private boolean keyEquals(ByteBuffer slot, byte[] key) {
+        for (int b = 0; b < key.length; b++) {
+            if (slot.get(KEY_OFFSET + b) != key[b]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the bytes at the position, bytes past the end of the file read as 0.
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining() && channel.read(bytes, position + bytes.position()) >= 0) {
+            // read until the buffer is full or the end of the file is reached
+        }
+        return bytes.clear();
+    }
+
+    private void write(ByteBuffer bytes, long position) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes, position + bytes.position());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,103 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import com.backbase.batches.nacha.dataprovider.FileSequenceProvider;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * File sequence provider for services running on several nodes, handing out daily IDs leased in blocks from a
+ * {@link FileSequenceStore} shared by the nodes.
+ * <p>A lease is a block of consecutive sequence indexes of a company for a day. Daily IDs are taken from the current
+ * lease without any lock, the shared store is only locked to take the next lease. Indexes of a lease which are not used
+ * before a restart, or before the day ends, are skipped, so a daily ID is never handed out twice. A lease size of 1
+ * keeps the daily IDs of a company gapless, at the cost of locking the store for every file.</p>
+ * <p>Nodes on different hosts only share the store safely on a file system honouring file locks across hosts, see
+ * {@link FileSequenceStore}, otherwise the nodes sharing the file must run on a single host.</p>
+ * <p>Active with {@code service.nacha.sequence.store} set to {@code MappedFile}.</p>
+ */
+@Component
+@ConditionalOnProperty(name = "service.nacha.sequence.store", havingValue = "MappedFile")
+@Slf4j
+public class LeasedFileSequenceProvider implements FileSequenceProvider {
+
+    private final FileSequenceStore store;
+    private final int leaseSize;
+    private final Clock clock;
+    private final ConcurrentMap<@NonNull String, @NonNull Lease> leases = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LeasedFileSequenceProvider(NachaSequenceProperties properties) {
+        this(new FileSequenceStore(Paths.get(properties.getFile()), properties.getSlots()), properties.getLeaseSize(),
+            Clock.system(properties.getZone() == null ? ZoneId.systemDefault() : ZoneId.of(properties.getZone())));
+    }
+
+    LeasedFileSequenceProvider(FileSequenceStore store, int leaseSize, Clock clock) {
+        this.store = store;
+        this.leaseSize = Math.max(1, leaseSize);
+        this.clock = clock;
+    }
+
+    @Override
+    public @NonNull Character getDailyId(@NonNull String companyId) {
+        return FileSequenceProvider.SEQUENCE_VALUES.charAt(nextIndex(companyId));
+    }
+
+    @Override
+    public void next(@NonNull String companyId) {
+        nextIndex(companyId);
+    }
+
+    private int nextIndex(String companyId) {
+        long today = LocalDate.now(clock).toEpochDay();
+        while (true) {
+            Lease lease = leases.get(companyId);
+            if (lease != null && lease.epochDay == today) {
+                int index = lease.next.getAndIncrement();
+                if (index < lease.to) {
+                    return index;
+                }
+            }
+            leases.compute(companyId, (cId, current) -> current != null && current != lease
+                ? current : takeLease(cId, today));
+        }
+    }
+
+    private Lease takeLease(String companyId, long epochDay) {
+        int[] indexes = store.reserve(companyId, epochDay, leaseSize, FileSequenceProvider.SEQUENCE_VALUES.length());
+        if (indexes[0] >= indexes[1]) {
+            throw new RuntimeException("Daily file sequence has exhausted, no more NACHA file generation possible with unique sequence");
+        }
+        log.debug("Leased daily IDs {} to {} of company {}", indexes[0], indexes[1] - 1, companyId);
+        return new Lease(epochDay, indexes[0], indexes[1]);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        store.close();
+    }
+
+    private static final class Lease {
+
+        private final long epochDay;
+        private final AtomicInteger next;
+        private final int to;
+
+        private Lease(long epochDay, int from, int to) {
+            this.epochDay = epochDay;
+            this.next = new AtomicInteger(from);
+            this.to = to;
+        }
+    }
+}
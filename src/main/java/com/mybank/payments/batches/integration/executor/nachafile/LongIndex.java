@@ -0,0 +1,126 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash index from primitive long keys to non-negative int values, e.g. from the trace numbers of a
+ * nacha file to the slots of their payment item IDs.
+ * <p>Keys and values are kept in two flat arrays with linear probing, at most half full. An entry takes 12 to 24
+ * bytes instead of a map node with a string key, and looking up a key allocates nothing. Not thread safe while being
+ * filled, safe to read concurrently once filled.</p>
+ */
+final class LongIndex {
+
+    static final int ABSENT = -1;
+
+    /**
+     * Longest decimal number {@link #parseKey(CharSequence)} turns into a key, which always fits a long.
+     */
+    private static final int MAX_KEY_DIGITS = 18;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        Arrays.fill(values, ABSENT);
+    }
+
+    /**
+     * @param value non-negative value, replacing the value of the key if present
+     */
+    void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length << 1);
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (values[slot] != ABSENT && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == ABSENT) {
+            size++;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    /**
+     * @return value of the key, {@link #ABSENT} when the key is not indexed
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (values[slot] != ABSENT) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ABSENT;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (values[slot] != ABSENT) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Turns a trace or batch number into a key, without allocating. Leading zeros are not significant.
+     *
+     * @return the key, -1 when the number is empty, not decimal or longer than 18 digits
+     */
+    static long parseKey(CharSequence number) {
+        int length = number.length();
+        if (length == 0 || length > MAX_KEY_DIGITS) {
+            return -1;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, ABSENT);
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] != ABSENT) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+
+        void accept(long key, int value);
+    }
+}
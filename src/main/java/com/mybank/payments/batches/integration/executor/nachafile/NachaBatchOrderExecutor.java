@@ -4,8 +4,6 @@ import static com.backbase.batches.nacha.model.FileRequest.FileMode.USER;
 
 import com.backbase.batches.nacha.NachaHandler;
 import com.backbase.batches.nacha.dataprovider.FileSequenceProvider;
-import com.backbase.batches.nacha.exception.UnableToCreateFileWriter;
-import com.backbase.batches.nacha.exception.UnableToCreateTempFile;
 import com.backbase.batches.nacha.model.FileRequest;
 import com.backbase.batches.nacha.model.FileRequest.FileRequestBuilder;
 import com.backbase.batches.nacha.model.result.BankResult;
@@ -14,88 +12,258 @@ import com.backbase.batches.nacha.model.result.BankResult.BankPaymentItemResult;
 import com.backbase.batches.nacha.model.result.HandlerResult;
 import com.backbase.batches.nacha.model.result.StatusInfo;
 import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.mybank.payments.batches.integration.BatchOrderFailedEvent;
+import com.mybank.payments.batches.integration.executor.BatchLifecycleMeters;
 import com.mybank.payments.batches.integration.executor.BatchOrderExecutor;
 import com.mybank.payments.batches.integration.ExampleMode;
-import java.io.File;
-import java.io.FileWriter;
+import com.mybank.payments.batches.integration.executor.nachafile.output.NachaOutput;
+import com.mybank.payments.batches.integration.executor.nachafile.output.NachaOutputSink;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
-import java.io.Writer;
-import java.util.HashMap;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import lombok.RequiredArgsConstructor;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 /**
  * This implementation uses Spring RestTemplate API client and NachaWriter library to work with nacha files.
+ * <p>The nacha files of the companies are generated concurrently, with at most
+ * {@code service.nacha.generationConcurrency} files in progress. The batch orders of a company are rolled into as
+ * many files as the {@link NachaFileSplitPolicy} requires, every file with its own daily ID and file reference code.
+ * Daily IDs are taken while grouping, so the daily IDs of a company keep following each other in the order its files
+ * are requested. As the reference codes of different companies are the same, every file is correlated with its bank
+ * result by its {@link NachaFileKey}.</p>
+ * <p>With the {@link NachaFileAggregator} enabled, batch orders are held across runs and only turned into nacha files
+ * at the ACH cut-off of their company or once enough of them are held. They stay held until their file is generated,
+ * the batch orders of a file which failed to be generated are released again on the next run. Without aggregation they
+ * are published as {@link BatchOrderFailedEvent}s instead.</p>
+ * <p>The generation time of every nacha file is recorded in the {@code nacha.file.generation} timer, and the batch
+ * orders and payment items of the generated files are counted in the {@link BatchLifecycleMeters}. The bytes written
+ * are counted by the {@link NachaOutputSink}.</p>
+ * <p>Only active in the NachaFile example, together with the {@link NachaOutputSink} it writes into.</p>
  */
 @Component
-@RequiredArgsConstructor
+@ConditionalOnProperty(name = "service.activeExample", havingValue = "NachaFile")
 @Slf4j
 public class NachaBatchOrderExecutor implements BatchOrderExecutor {
 
     private final Queue<PostBatchOrderRequest> batchRequestQueue;
+    private final ApplicationEventPublisher eventPublisher;
 
     private final NachaHandler nachaHandler;
     private final ProcessedNachaFilesResultsExecutor processedNachaFilesExecutor;
     private final FileSequenceProvider fileSequenceProvider;
+    private final NachaOutputSink nachaOutputSink;
+    private final NachaFileSplitPolicy nachaFileSplitPolicy;
+    private final Optional<NachaFileAggregator> nachaFileAggregator;
+    private final ExecutorService fileGenerationExecutorService;
+    private final BatchLifecycleMeters meters;
+    private final Timer generation;
+    private final Timer failedGeneration;
+
+    public NachaBatchOrderExecutor(Queue<PostBatchOrderRequest> batchRequestQueue,
+                                   ApplicationEventPublisher eventPublisher,
+                                   NachaHandler nachaHandler,
+                                   ProcessedNachaFilesResultsExecutor processedNachaFilesExecutor,
+                                   FileSequenceProvider fileSequenceProvider,
+                                   NachaOutputSink nachaOutputSink,
+                                   NachaFileSplitPolicy nachaFileSplitPolicy,
+                                   Optional<NachaFileAggregator> nachaFileAggregator,
+                                   @Value("${service.nacha.generationConcurrency:4}") int generationConcurrency,
+                                   MeterRegistry meterRegistry) {
+        this.batchRequestQueue = batchRequestQueue;
+        this.eventPublisher = eventPublisher;
+        this.nachaHandler = nachaHandler;
+        this.processedNachaFilesExecutor = processedNachaFilesExecutor;
+        this.fileSequenceProvider = fileSequenceProvider;
+        this.nachaOutputSink = nachaOutputSink;
+        this.nachaFileSplitPolicy = nachaFileSplitPolicy;
+        this.nachaFileAggregator = nachaFileAggregator;
+        this.meters = new BatchLifecycleMeters(meterRegistry, ExampleMode.NACHA_FILE.getPropertyValue());
+        this.generation = generationTimer(meterRegistry, BatchLifecycleMeters.SUCCESS);
+        this.failedGeneration = generationTimer(meterRegistry, BatchLifecycleMeters.ERROR);
+        if (generationConcurrency > 1) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("nacha-file-generation-");
+            threadFactory.setDaemon(true);
+            this.fileGenerationExecutorService = Executors.newFixedThreadPool(generationConcurrency, threadFactory);
+        } else {
+            this.fileGenerationExecutorService = null;
+        }
+    }
 
     /**
      * Scheduled method, periodically picking up all the batch orders from the queue created by the BatchOrderController
-     * then generating and processing nacha file
+     * then generating and processing nacha file. Returns when the nacha files of all the companies are processed.
      */
     @Override
     public void execute() {
-        log.info("Batch scheduler start with {} batch orders", batchRequestQueue.size());
-        List<FileRequest> groupedFileRequests = groupByUsers(batchRequestQueue);
+        execute(batchRequestQueue);
+    }
+
+    @Override
+    public void execute(Queue<PostBatchOrderRequest> batchOrders) {
+        Queue<PostBatchOrderRequest> dueBatchOrders = nachaFileAggregator
+            .<Queue<PostBatchOrderRequest>>map(aggregator -> new LinkedList<>(aggregator.aggregate(batchOrders)))
+            .orElse(batchOrders);
+        log.info("Batch scheduler start with {} batch orders", dueBatchOrders.size());
+        LocalDate fileCreationDate = LocalDate.now();
+        List<FileRequest> groupedFileRequests = groupByUsers(dueBatchOrders, fileCreationDate);
         log.debug("Grouped fileRequests: {}", groupedFileRequests);
-        groupedFileRequests.forEach(fileRequest -> {
-            log.debug("Nacha file generation started with request {}", fileRequest);
-            //getFileWriter() can be replaced with proper Writer implementation
-            Writer writer = getFileWriter(createTempFile(fileRequest));
-            HandlerResult handlerResult = nachaHandler.handle(fileRequest, writer, this::processGeneratedNachaFile);
-            log.debug("Handler result after generating and uploading file {}", handlerResult);
-            processedNachaFilesExecutor.saveNachaHandlerResult(handlerResult);
-        });
-        log.info("Batch process scheduler end");
+        Executor fileGenerationExecutor = fileGenerationExecutorService != null && groupedFileRequests.size() > 1
+            ? fileGenerationExecutorService : Runnable::run;
+        CompletableFuture.allOf(groupedFileRequests.stream()
+            .map(fileRequest -> {
+                String fileKey = NachaFileKey.of(fileRequest, fileCreationDate);
+                return CompletableFuture.runAsync(() -> generateNachaFile(fileRequest, fileKey), fileGenerationExecutor)
+                    .thenRun(() -> nachaFileAggregator.ifPresent(aggregator ->
+                        aggregator.acknowledge(fileRequest.getBatchOrderIds())))
+                    .exceptionally(e -> {
+                        log.error("Nacha file {} generation failed for company {}", fileRequest.getFileReferenceCode(),
+                            fileRequest.getCompanyId(), e);
+                        processedNachaFilesExecutor.discardFilePart(fileKey);
+                        nachaFileAggregator.ifPresentOrElse(
+                            aggregator -> aggregator.retry(fileRequest.getBatchOrderIds()),
+                            () -> fileRequest.getBatchOrderIds().forEach(batchOrderId ->
+                                eventPublisher.publishEvent(new BatchOrderFailedEvent(batchOrderId))));
+                        return null;
+                    });
+            })
+            .toArray(CompletableFuture[]::new))
+            .join();
+        log.info("Batch process scheduler end, generated {} nacha files", groupedFileRequests.size());
+    }
+
+    private void generateNachaFile(FileRequest fileRequest, String fileKey) {
+        log.debug("Nacha file generation started with request {}", fileRequest);
+        long start = System.nanoTime();
+        HandlerResult handlerResult;
+        try {
+            //the NachaOutputSink can be replaced with a sink delivering the file to the bank
+            NachaOutput output = nachaOutputSink.open(fileRequest);
+            try {
+                handlerResult = nachaHandler.handle(fileRequest, output,
+                    writer -> processGeneratedNachaFile(output));
+            } catch (RuntimeException e) {
+                // a partially generated file is never delivered
+                output.discard();
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            failedGeneration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            meters.batchOrdersCompleted(BatchLifecycleMeters.ERROR, fileRequest.getBatchOrderIds().size(), 0, 0);
+            throw e;
+        }
+        generation.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        meters.batchOrdersCompleted(BatchLifecycleMeters.PROCESSED, handlerResult.getBatches().size(),
+            handlerResult.getBatches().values().stream()
+                .mapToLong(batch -> batch.getPaymentItems().size())
+                .sum(), 0);
+        log.debug("Handler result after generating and uploading file {}", handlerResult);
+        processedNachaFilesExecutor.saveNachaHandlerResult(fileKey, handlerResult);
+    }
+
+    private static Timer generationTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("nacha.file.generation")
+            .description("Time taken to generate a nacha file and hand it over to the bank")
+            .tag("mode", ExampleMode.NACHA_FILE.getPropertyValue())
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
     }
 
     public List<FileRequest> groupByUsers(Queue<PostBatchOrderRequest> batchOrderRequestsQueue) {
-        //Generating new fileRequest for every bank user companyId
-        Map<String, FileRequestBuilder> fileRequestMap = new HashMap<>(batchOrderRequestsQueue.size());
+        return groupByUsers(batchOrderRequestsQueue, LocalDate.now());
+    }
+
+    /**
+     * @param fileCreationDate date the nacha files are created on, completing the {@link NachaFileKey} of every file
+     */
+    List<FileRequest> groupByUsers(Queue<PostBatchOrderRequest> batchOrderRequestsQueue, LocalDate fileCreationDate) {
+        //Generating new fileRequests for every bank user companyId, split according to the NachaFileSplitPolicy
+        Map<String, List<PostBatchOrderRequest>> batchOrdersPerCompany = new LinkedHashMap<>();
         while (!batchOrderRequestsQueue.isEmpty()) {
             PostBatchOrderRequest batchItem = batchOrderRequestsQueue.poll();
-            Character dailyId = fileSequenceProvider.getDailyId(batchItem.getCompanyId());
-            FileRequestBuilder fileRequestBuilder = fileRequestMap.computeIfAbsent(batchItem.getCompanyId(),
-                companyIdKey -> FileRequest.builder()
-                    .fileMode(USER)
-                    .companyId(companyIdKey)
-                    .companyName(batchItem.getCompanyName())
-                    .fileDailyId(dailyId)
-                    .fileReferenceCode("BFT000" + dailyId));
-            fileRequestBuilder.batchOrderId(batchItem.getId());
+            batchOrdersPerCompany.computeIfAbsent(batchItem.getCompanyId(), companyIdKey -> new ArrayList<>())
+                .add(batchItem);
+        }
+        List<FileRequest> fileRequests = new ArrayList<>();
+        batchOrdersPerCompany.forEach((companyId, companyBatchOrders) -> {
+            List<FileRequest> companyFileRequests = nachaFileSplitPolicy.split(companyBatchOrders).stream()
+                .map(fileBatchOrders -> createFileRequest(companyId, fileBatchOrders, fileCreationDate))
+                .collect(Collectors.toList());
+            if (companyFileRequests.size() > 1) {
+                log.info("Batch orders of company {} split into {} nacha files", companyId, companyFileRequests.size());
+                processedNachaFilesExecutor.registerFileParts(companyFileRequests.stream()
+                    .map(fileRequest -> NachaFileKey.of(fileRequest, fileCreationDate))
+                    .collect(Collectors.toList()));
+            }
+            fileRequests.addAll(companyFileRequests);
+        });
+        return fileRequests;
+    }
+
+    /**
+     * Takes the next daily ID of the company whose file key is not used by a file still waiting for its bank result.
+     * Daily IDs kept in memory start over after a restart, while the mappings of the files generated earlier that day
+     * may be kept in the mapping store, so the daily IDs of those files are skipped before anything is generated.
+     */
+    private FileRequest createFileRequest(String companyId, List<PostBatchOrderRequest> fileBatchOrders,
+                                          LocalDate fileCreationDate) {
+        Character dailyId = fileSequenceProvider.getDailyId(companyId);
+        while (processedNachaFilesExecutor.isWaitingForResult(
+            NachaFileKey.of(companyId, fileCreationDate, fileReferenceCode(dailyId)))) {
+            log.warn("Daily ID {} of company {} used by a nacha file waiting for its bank result, skipped", dailyId,
+                companyId);
+            dailyId = fileSequenceProvider.getDailyId(companyId);
         }
-        return fileRequestMap.values().stream()
-            .map(FileRequestBuilder::build)
-            .collect(Collectors.toList());
+        FileRequestBuilder fileRequestBuilder = FileRequest.builder()
+            .fileMode(USER)
+            .companyId(companyId)
+            .companyName(fileBatchOrders.get(0).getCompanyName())
+            .fileDailyId(dailyId)
+            .fileReferenceCode(fileReferenceCode(dailyId));
+        fileBatchOrders.forEach(batchItem -> fileRequestBuilder.batchOrderId(batchItem.getId()));
+        return fileRequestBuilder.build();
+    }
+
+    private static String fileReferenceCode(Character dailyId) {
+        return "BFT000" + dailyId;
     }
 
     /**
      * Dummy method for processing nacha file by the client
      *
-     * @param writer with all the nacha file data generated by NachaWriter based on fileRequest
+     * @param output with all the nacha file data generated by NachaWriter based on fileRequest
      * @return result of client processing with batches and payment statuses
      */
-    private BankResult processGeneratedNachaFile(Writer writer) {
+    private BankResult processGeneratedNachaFile(NachaOutput output) {
         log.info("Client processing started");
         try {
-            writer.close();
+            output.close();
         } catch (IOException e) {
             throw new RuntimeException("Unable to close writer", e);
+        } finally {
+            output.release();
         }
+        log.debug("Nacha file of {} bytes written to {} sink", output.getBytesWritten(), nachaOutputSink.getType());
 
         return BankResult.builder()
             .batch("BATCH1REF", BankBatchOrderResult.builder()
@@ -124,21 +292,10 @@ public class NachaBatchOrderExecutor implements BatchOrderExecutor {
             .build();
     }
 
-    private File createTempFile(FileRequest fileRequest) {
-        try {
-            return File.createTempFile(
-                String.format("%s_%s_", fileRequest.getFileReferenceCode(), fileRequest.getFileDailyId()),
-                ".ach");
-        } catch (IOException e) {
-            throw new UnableToCreateTempFile(e);
-        }
-    }
-
-    private Writer getFileWriter(File tempFile) {
-        try {
-            return new FileWriter(tempFile);
-        } catch (IOException e) {
-            throw new UnableToCreateFileWriter(e);
+    @PreDestroy
+    public void shutdown() {
+        if (fileGenerationExecutorService != null) {
+            fileGenerationExecutorService.shutdown();
         }
     }
 
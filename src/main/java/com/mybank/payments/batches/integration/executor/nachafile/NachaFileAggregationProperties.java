@@ -0,0 +1,42 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("service.nacha.aggregation")
+public class NachaFileAggregationProperties {
+
+    /**
+     * Whether batch orders are held per company until a cut-off or a release threshold, instead of being turned into
+     * nacha files on every run.
+     */
+    private boolean enabled = false;
+
+    /**
+     * ACH cut-off times of the day, as HH:mm, at which the held batch orders of a company are released.
+     */
+    private List<String> cutOffTimes = List.of("10:00", "14:00", "17:00");
+
+    /**
+     * Time zone of the cut-off times.
+     */
+    private String zone = "America/New_York";
+
+    /**
+     * Number of entries held for a company from which its batch orders are released before the cut-off.
+     */
+    private int releaseEntries = 10000;
+
+    /**
+     * Number of batch orders held for a company from which they are released before the cut-off.
+     */
+    private int releaseBatches = 500;
+
+    /**
+     * File the held batch orders are stored in, so they survive a restart.
+     */
+    private String bufferFile = "nacha-aggregation-buffer.json";
+
+}
@@ -0,0 +1,234 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the batch orders of every company across runs of the NachaBatchOrderExecutor, so a company gets one nacha
+ * file per ACH cut-off instead of one per run.
+ * <p>The batch orders of a company are released at the first cut-off after its first held batch order, or earlier
+ * once the held entries or batch orders reach the release thresholds. Released batch orders stay held until their nacha
+ * file is generated and {@link #acknowledge(Collection) acknowledged}, batch orders of a file which failed to be
+ * generated are {@link #retry(Collection) released again} on the next run. Held batch orders are stored in the buffer
+ * file on every change, written to a temp file and atomically moved over the previous one, and read back on start, so
+ * the batch orders of the files in progress during a crash are released again as well.</p>
+ * <p>Only active with {@code service.nacha.aggregation.enabled}.</p>
+ */
+@Component
+@ConditionalOnProperty(name = "service.nacha.aggregation.enabled", havingValue = "true")
+@Slf4j
+public class NachaFileAggregator {
+
+    private final List<LocalTime> cutOffTimes;
+    private final ZoneId zone;
+    private final int releaseEntries;
+    private final int releaseBatches;
+    private final Path bufferFile;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    private final Map<String, HeldBatchOrders> heldBatchOrders = new LinkedHashMap<>();
+    private final Set<String> releasedBatchOrderIds = new HashSet<>();
+
+    @Autowired
+    public NachaFileAggregator(NachaFileAggregationProperties properties, ObjectMapper objectMapper) {
+        this(properties, objectMapper, Clock.systemUTC());
+    }
+
+    NachaFileAggregator(NachaFileAggregationProperties properties, ObjectMapper objectMapper, Clock clock) {
+        this.cutOffTimes = properties.getCutOffTimes().stream()
+            .map(LocalTime::parse)
+            .sorted()
+            .collect(Collectors.toList());
+        if (cutOffTimes.isEmpty()) {
+            throw new IllegalArgumentException("At least one cut-off time is required");
+        }
+        this.zone = ZoneId.of(properties.getZone());
+        this.releaseEntries = properties.getReleaseEntries();
+        this.releaseBatches = properties.getReleaseBatches();
+        this.bufferFile = Paths.get(properties.getBufferFile());
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        load();
+    }
+
+    /**
+     * Takes all the batch orders from the queue and returns the batch orders of the companies due for a nacha file,
+     * grouped by company. Batch orders already released and not acknowledged or retried yet are not returned again.
+     */
+    public synchronized List<PostBatchOrderRequest> aggregate(Queue<PostBatchOrderRequest> batchOrders) {
+        Instant now = clock.instant();
+        boolean changed = false;
+        while (!batchOrders.isEmpty()) {
+            PostBatchOrderRequest batchItem = batchOrders.poll();
+            heldBatchOrders.computeIfAbsent(batchItem.getCompanyId(), companyId -> {
+                HeldBatchOrders held = new HeldBatchOrders();
+                held.setCompanyId(companyId);
+                held.setReleaseAt(nextCutOff(now).toEpochMilli());
+                return held;
+            }).add(batchItem);
+            changed = true;
+        }
+        List<PostBatchOrderRequest> released = new ArrayList<>();
+        heldBatchOrders.values().stream()
+            .filter(held -> isDue(held, now))
+            .forEach(held -> {
+                List<PostBatchOrderRequest> companyReleased = held.getBatchOrders().stream()
+                    .filter(batchOrder -> releasedBatchOrderIds.add(batchOrder.getId()))
+                    .collect(Collectors.toList());
+                if (!companyReleased.isEmpty()) {
+                    log.info("Releasing {} batch orders with {} entries of company {}", companyReleased.size(),
+                        held.getEntries(), held.getCompanyId());
+                    released.addAll(companyReleased);
+                }
+            });
+        if (changed) {
+            store();
+        }
+        return released;
+    }
+
+    /**
+     * Stops holding released batch orders, once their nacha file is generated.
+     */
+    public synchronized void acknowledge(Collection<String> batchOrderIds) {
+        Set<String> acknowledged = new HashSet<>(batchOrderIds);
+        releasedBatchOrderIds.removeAll(acknowledged);
+        boolean changed = false;
+        for (Iterator<HeldBatchOrders> iterator = heldBatchOrders.values().iterator(); iterator.hasNext(); ) {
+            HeldBatchOrders held = iterator.next();
+            changed |= held.removeIf(batchOrder -> acknowledged.contains(batchOrder.getId()));
+            if (held.getBatchOrders().isEmpty()) {
+                iterator.remove();
+            }
+        }
+        if (changed) {
+            store();
+        }
+    }
+
+    /**
+     * Keeps holding released batch orders whose nacha file failed to be generated, so they are released again on the
+     * next run.
+     */
+    public synchronized void retry(Collection<String> batchOrderIds) {
+        log.warn("Holding {} batch orders again, their nacha file failed to be generated", batchOrderIds.size());
+        releasedBatchOrderIds.removeAll(batchOrderIds);
+    }
+
+    /**
+     * @return number of batch orders held
+     */
+    public synchronized int getHeldBatchOrders() {
+        return heldBatchOrders.values().stream()
+            .mapToInt(held -> held.getBatchOrders().size())
+            .sum();
+    }
+
+    Instant nextCutOff(Instant now) {
+        ZonedDateTime localNow = now.atZone(zone);
+        LocalDate date = localNow.toLocalDate();
+        for (LocalTime cutOffTime : cutOffTimes) {
+            if (cutOffTime.isAfter(localNow.toLocalTime())) {
+                return date.atTime(cutOffTime).atZone(zone).toInstant();
+            }
+        }
+        return date.plusDays(1).atTime(cutOffTimes.get(0)).atZone(zone).toInstant();
+    }
+
+    private boolean isDue(HeldBatchOrders held, Instant now) {
+        return now.toEpochMilli() >= held.getReleaseAt()
+            || held.getEntries() >= releaseEntries
+            || held.getBatchOrders().size() >= releaseBatches;
+    }
+
+    private void load() {
+        if (!Files.exists(bufferFile)) {
+            return;
+        }
+        try {
+            HeldBatchOrders[] stored = objectMapper.readValue(bufferFile.toFile(), HeldBatchOrders[].class);
+            Arrays.stream(stored).forEach(held -> heldBatchOrders.put(held.getCompanyId(), held));
+            log.info("Restored {} held batch orders from {}", getHeldBatchOrders(), bufferFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read aggregation buffer " + bufferFile, e);
+        }
+    }
+
+    private void store() {
+        Path tempFile = bufferFile.resolveSibling(bufferFile.getFileName() + ".tmp");
+        try {
+            Path directory = bufferFile.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            Files.write(tempFile, objectMapper.writeValueAsBytes(heldBatchOrders.values()),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE,
+                StandardOpenOption.DSYNC);
+            Files.move(tempFile, bufferFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to store aggregation buffer " + bufferFile, e);
+        }
+    }
+
+    @Data
+    static class HeldBatchOrders {
+
+        private String companyId;
+        private long releaseAt;
+        private long entries;
+        private List<PostBatchOrderRequest> batchOrders = new ArrayList<>();
+
+        void add(PostBatchOrderRequest batchOrder) {
+            batchOrders.add(batchOrder);
+            if (batchOrder.getTotalTransactionsCount() != null) {
+                entries += batchOrder.getTotalTransactionsCount();
+            }
+        }
+
+        boolean removeIf(Predicate<PostBatchOrderRequest> filter) {
+            boolean removed = false;
+            for (Iterator<PostBatchOrderRequest> iterator = batchOrders.iterator(); iterator.hasNext(); ) {
+                PostBatchOrderRequest batchOrder = iterator.next();
+                if (filter.test(batchOrder)) {
+                    iterator.remove();
+                    if (batchOrder.getTotalTransactionsCount() != null) {
+                        entries -= batchOrder.getTotalTransactionsCount();
+                    }
+                    removed = true;
+                }
+            }
+            return removed;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import com.backbase.batches.nacha.model.FileRequest;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Builds the key correlating a generated nacha file with the result the bank sends back for it.
+ * <p>The file reference code follows the daily ID of the company, so every company starts again at the same reference
+ * code every day. A file is only identified by its company, its creation date and its reference code together.</p>
+ */
+public final class NachaFileKey {
+
+    private NachaFileKey() {
+    }
+
+    public static String of(String companyId, LocalDate fileCreationDate, String fileReferenceCode) {
+        return companyId + "/" + fileCreationDate.format(DateTimeFormatter.BASIC_ISO_DATE) + "/" + fileReferenceCode;
+    }
+
+    public static String of(FileRequest fileRequest, LocalDate fileCreationDate) {
+        return of(fileRequest.getCompanyId(), fileCreationDate, fileRequest.getFileReferenceCode());
+    }
+
+    public static boolean isOfCompany(String fileKey, String companyId) {
+        return fileKey.startsWith(companyId + "/");
+    }
+}
@@ -0,0 +1,520 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import com.mybank.payments.batches.integration.executor.nachafile.NachaFileMappings.BatchMappings;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thread safe store of the {@link NachaFileMappings} of the nacha files waiting for the bank, by {@link NachaFileKey}.
+ * A file is stored once, storing another file with the same key is rejected instead of replacing it.
+ * <p>Every stored file is appended to a log of memory-mapped segment files in a compact binary encoding, and removing
+ * a file appends a tombstone, so the store is rebuilt from the log after a restart. Recently stored files are kept
+ * decoded on the heap as well, up to {@code maxHotMappings} batch and payment item mappings. Older files are spilled:
+ * only their position in the log stays on the heap, and they are decoded from the log when the bank result arrives.
+ * Segments at the head of the log are deleted once all their files are removed.</p>
+ * <p>Files not removed within the time to live, e.g. because the bank never acknowledged them, are evicted by
+ * {@link #evictExpired()}. Without a directory the store is kept on the heap only.</p>
+ */
+@Slf4j
+public class NachaFileMappingStore implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxHotMappings;
+    private final long timeToLiveMillis;
+    private final Clock clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, NachaFileMappings> hot = new HashMap<>();
+    private final Queue<String> hotOrder = new ArrayDeque<>();
+    private long hotMappings;
+    private final NavigableMap<Long, Segment> segments = new TreeMap<>();
+    private Segment writeSegment;
+
+    /**
+     * @param directory      directory of the log segments, the store is kept on the heap only when null
+     * @param segmentSize    size of a log segment file
+     * @param maxHotMappings number of mappings kept decoded on the heap, older files are spilled to the log
+     * @param timeToLive     time after which a file not removed is evicted
+     */
+    public NachaFileMappingStore(Path directory, int segmentSize, long maxHotMappings, Duration timeToLive,
+                                 Clock clock) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxHotMappings = maxHotMappings;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.clock = clock;
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+                recover();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to open nacha file mapping store in " + directory, e);
+            }
+            log.info("Opened nacha file mapping store in {} with {} files", directory, entries.size());
+        }
+    }
+
+    /**
+     * @throws IllegalStateException when the mappings of a file with the same {@link NachaFileKey} are already stored
+     */
+    public void put(NachaFileMappings mappings) {
+        lock.lock();
+        try {
+            String fileKey = mappings.getFileKey();
+            if (entries.containsKey(fileKey)) {
+                throw new IllegalStateException("Mappings of nacha file " + fileKey + " already stored");
+            }
+            Entry entry = new Entry(clock.millis());
+            if (directory != null) {
+                append(entry, encode(entry.storedAt, mappings));
+            }
+            entries.put(fileKey, entry);
+            hot.put(fileKey, mappings);
+            hotOrder.add(fileKey);
+            hotMappings += mappings.getMappingCount();
+            spill();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return whether the mappings of a file with the key are stored
+     */
+    public boolean contains(String fileKey) {
+        lock.lock();
+        try {
+            return entries.containsKey(fileKey);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return keys of the stored files, the most recently stored first
+     */
+    public List<String> getFileKeys() {
+        lock.lock();
+        try {
+            return entries.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Entry> entry) -> entry.getValue().storedAt)
+                    .reversed())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the mappings of the file, which stays stored, null when the file is not stored
+     */
+    public NachaFileMappings get(String fileKey) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(fileKey);
+            if (entry == null) {
+                return null;
+            }
+            NachaFileMappings mappings = hot.get(fileKey);
+            return mappings != null ? mappings : decode(payload(entry.segment, entry.position, entry.length));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the mappings of the file, null when the file is not stored
+     */
+    public NachaFileMappings remove(String fileKey) {
+        lock.lock();
+        try {
+            return removeEntry(fileKey, true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return time since the mappings of the file were stored, null when the file is not stored
+     */
+    public Duration getAge(String fileKey) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(fileKey);
+            return entry == null ? null : Duration.ofMillis(clock.millis() - entry.storedAt);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evicts the files stored longer than the time to live.
+     *
+     * @return keys of the evicted files
+     */
+    public List<String> evictExpired() {
+        lock.lock();
+        try {
+            long expiredBefore = clock.millis() - timeToLiveMillis;
+            List<String> expired = entries.entrySet().stream()
+                .filter(entry -> entry.getValue().storedAt < expiredBefore)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+            expired.forEach(fileKey -> removeEntry(fileKey, false));
+            return expired;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getHotMappings() {
+        lock.lock();
+        try {
+            return hotMappings;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getSegmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            segments.values().forEach(segment -> segment.buffer.force());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private NachaFileMappings removeEntry(String fileKey, boolean read) {
+        Entry entry = entries.remove(fileKey);
+        if (entry == null) {
+            return null;
+        }
+        NachaFileMappings mappings = hot.remove(fileKey);
+        if (mappings != null) {
+            hotMappings -= mappings.getMappingCount();
+        } else if (read) {
+            mappings = decode(payload(entry.segment, entry.position, entry.length));
+        }
+        if (directory != null) {
+            append(null, encodeRemove(fileKey));
+            entry.segment.liveFiles--;
+            compact();
+        }
+        return mappings;
+    }
+
+    private void spill() {
+        if (directory == null) {
+            return;
+        }
+        while (hotMappings > maxHotMappings && !hotOrder.isEmpty()) {
+            NachaFileMappings spilled = hot.remove(hotOrder.poll());
+            if (spilled != null) {
+                hotMappings -= spilled.getMappingCount();
+                log.debug("Spilled mappings of nacha file {} to disk", spilled.getFileKey());
+            }
+        }
+        if (hot.isEmpty()) {
+            hotOrder.clear();
+        }
+    }
+
+    private void append(Entry entry, byte[] payload) {
+        if (writeSegment.remaining() < RECORD_HEADER_SIZE + payload.length) {
+            rollSegment(RECORD_HEADER_SIZE + payload.length);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = writeSegment.buffer;
+        int position = writeSegment.writePosition;
+        buffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+        buffer.duplicate().position(position + RECORD_HEADER_SIZE).put(payload);
+        // the length is written last, so a torn record is never mistaken for data
+        buffer.putInt(position, payload.length);
+        writeSegment.writePosition = position + RECORD_HEADER_SIZE + payload.length;
+        writeSegment.buffer.force();
+        if (entry != null) {
+            entry.segment = writeSegment;
+            entry.position = position;
+            entry.length = payload.length;
+            writeSegment.liveFiles++;
+        }
+    }
+
+    private void compact() {
+        while (segments.size() > 1) {
+            Segment head = segments.firstEntry().getValue();
+            if (head == writeSegment || head.liveFiles > 0) {
+                return;
+            }
+            segments.remove(head.id);
+            try {
+                Files.deleteIfExists(head.file);
+                log.debug("Deleted nacha file mapping segment {}", head.file);
+            } catch (IOException e) {
+                log.warn("Unable to delete nacha file mapping segment {}", head.file, e);
+            }
+        }
+    }
+
+    private void rollSegment(int minimumSize) {
+        long id = writeSegment.id + 1;
+        try {
+            writeSegment = openSegment(id, Math.max(segmentSize, minimumSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create nacha file mapping segment " + id + " in " + directory,
+                e);
+        }
+        segments.put(id, writeSegment);
+    }
+
+    private void recover() throws IOException {
+        List<Path> segmentFiles;
+        try (Stream<Path> files = Files.list(directory)) {
+            segmentFiles = files
+                .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+        for (Path file : segmentFiles) {
+            long id = segmentId(file);
+            segments.put(id, openSegment(id, (int) Files.size(file)));
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, openSegment(0, segmentSize));
+        }
+        for (Segment segment : segments.values()) {
+            int position = 0;
+            int length;
+            while ((length = validRecordLength(segment, position)) > 0) {
+                replay(segment, position, length);
+                position += RECORD_HEADER_SIZE + length;
+            }
+            segment.writePosition = position;
+        }
+        writeSegment = segments.lastEntry().getValue();
+        // anything past the last valid record is a torn write, clear it so it is never mistaken for data
+        ByteBuffer tail = writeSegment.buffer;
+        for (int i = writeSegment.writePosition; i < tail.capacity(); i++) {
+            if (tail.get(i) != 0) {
+                log.warn("Truncating torn nacha file mapping record in segment {} at position {}", writeSegment.id,
+                    writeSegment.writePosition);
+                for (int j = writeSegment.writePosition; j < tail.capacity(); j++) {
+                    tail.put(j, (byte) 0);
+                }
+                writeSegment.buffer.force();
+                break;
+            }
+        }
+        compact();
+    }
+
+    private void replay(Segment segment, int position, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload(segment, position, length)));
+        byte type = in.readByte();
+        String fileKey = in.readUTF();
+        Entry previous = entries.remove(fileKey);
+        if (previous != null) {
+            previous.segment.liveFiles--;
+        }
+        if (type == PUT) {
+            Entry entry = new Entry(in.readLong());
+            entry.segment = segment;
+            entry.position = position;
+            entry.length = length;
+            segment.liveFiles++;
+            entries.put(fileKey, entry);
+        }
+    }
+
+    private static byte[] encode(long storedAt, NachaFileMappings mappings) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + mappings.getMappingCount() * 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(PUT);
+            out.writeUTF(mappings.getFileKey());
+            out.writeLong(storedAt);
+            out.writeInt(mappings.getBatches().size());
+            for (BatchMappings batch : mappings.getBatches()) {
+                out.writeUTF(batch.getBatchNachaId());
+                out.writeUTF(batch.getBatchOrderId());
+                out.writeInt(batch.getPaymentItemCount());
+                batch.forEachPaymentItem(
+                    (traceNumber, paymentItemId) -> writePaymentItem(out, true, traceNumber, null, paymentItemId),
+                    (traceNumber, paymentItemId) -> writePaymentItem(out, false, 0, traceNumber, paymentItemId));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to encode nacha file mappings", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a numeric trace number as a long, saving the digits, and others as they are.
+     */
+    private static void writePaymentItem(DataOutputStream out, boolean numeric, long traceNumber,
+                                         String otherTraceNumber, String paymentItemId) {
+        try {
+            out.writeBoolean(numeric);
+            if (numeric) {
+                out.writeLong(traceNumber);
+            } else {
+                out.writeUTF(otherTraceNumber);
+            }
+            out.writeUTF(paymentItemId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to encode nacha file mappings", e);
+        }
+    }
+
+    private static byte[] encodeRemove(String fileKey) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(REMOVE);
+            out.writeUTF(fileKey);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to encode nacha file mappings", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static NachaFileMappings decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            in.readByte();
+            String fileKey = in.readUTF();
+            in.readLong();
+            int batchCount = in.readInt();
+            NachaFileMappings.Builder builder = NachaFileMappings.builder(fileKey);
+            for (int b = 0; b < batchCount; b++) {
+                builder.batch(in.readUTF(), in.readUTF());
+                int paymentItemCount = in.readInt();
+                for (int p = 0; p < paymentItemCount; p++) {
+                    String traceNumber = in.readBoolean() ? Long.toString(in.readLong()) : in.readUTF();
+                    builder.paymentItem(traceNumber, in.readUTF());
+                }
+            }
+            return builder.build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to decode nacha file mappings", e);
+        }
+    }
+
+    private int validRecordLength(Segment segment, int position) {
+        ByteBuffer buffer = segment.buffer;
+        if (position + RECORD_HEADER_SIZE > buffer.capacity()) {
+            return 0;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload(segment, position, length));
+        return (int) crc.getValue() == buffer.getInt(position + Integer.BYTES) ? length : 0;
+    }
+
+    private static byte[] payload(Segment segment, int position, int length) {
+        byte[] payload = new byte[length];
+        segment.buffer.duplicate().position(position + RECORD_HEADER_SIZE).get(payload);
+        return payload;
+    }
+
+    private Segment openSegment(long id, int capacity) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            return new Segment(id, file, channel.map(MapMode.READ_WRITE, 0, Math.max(capacity, channel.size())));
+        }
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static final class Entry {
+
+        private final long storedAt;
+        private Segment segment;
+        private int position;
+        private int length;
+
+        private Entry(long storedAt) {
+            this.storedAt = storedAt;
+        }
+    }
+
+    private static final class Segment {
+
+        private final long id;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int liveFiles;
+
+        private Segment(long id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        private int remaining() {
+            return buffer.capacity() - writePosition;
+        }
+    }
+}
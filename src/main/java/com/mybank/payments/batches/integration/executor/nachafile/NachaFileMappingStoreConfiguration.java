@@ -0,0 +1,23 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import java.nio.file.Paths;
+import java.time.Clock;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(NachaFileMappingStoreProperties.class)
+public class NachaFileMappingStoreConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public NachaFileMappingStore nachaFileMappingStore(NachaFileMappingStoreProperties properties) {
+        return new NachaFileMappingStore(
+            properties.getDirectory() == null ? null : Paths.get(properties.getDirectory()),
+            Math.toIntExact(properties.getSegmentSize().toBytes()),
+            properties.getMaxHotMappings(),
+            properties.getTimeToLive(),
+            Clock.systemUTC());
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties("service.nacha.mappings")
+public class NachaFileMappingStoreProperties {
+
+    /**
+     * Directory of the log the mappings of the nacha files waiting for the bank are stored in, kept on the heap only
+     * when not set.
+     */
+    private String directory;
+
+    /**
+     * Size of a single memory-mapped log segment file.
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Number of batch and payment item mappings kept on the heap, the mappings of older files are read back from the
+     * log when needed.
+     */
+    private long maxHotMappings = 100000;
+
+    /**
+     * Time after which the mappings of a nacha file the bank never processed are evicted.
+     */
+    private Duration timeToLive = Duration.ofDays(7);
+
+}
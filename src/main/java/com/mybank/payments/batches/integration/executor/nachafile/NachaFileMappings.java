@@ -0,0 +1,269 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import com.backbase.batches.nacha.model.result.HandlerResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * What the NachaHandler result of a generated nacha file is kept for until the bank processed the file: the batch order
+ * behind every batch of the file and the payment item behind every entry.
+ * <p>Batch and trace numbers are numeric, so they are indexed as primitive longs in a {@link LongIndex}, pointing into
+ * the batches of the file and into a pool of payment item IDs shared by all the batches of the file. A file with a
+ * hundred thousand entries then takes a few arrays instead of a hundred thousand map entries with string keys, and
+ * looking up a batch or payment item allocates nothing. Leading zeros of the numbers are not significant. Numbers which
+ * are not decimal are indexed by string.</p>
+ */
+public final class NachaFileMappings {
+
+    private final String fileKey;
+    private final List<BatchMappings> batches;
+    private final LongIndex batchNumbers;
+    private final Map<String, Integer> otherBatchNumbers;
+    private final int mappingCount;
+
+    private NachaFileMappings(String fileKey, List<BatchMappings> batches, int paymentItemCount) {
+        this.fileKey = fileKey;
+        this.batches = Collections.unmodifiableList(batches);
+        this.batchNumbers = new LongIndex(batches.size());
+        Map<String, Integer> otherNumbers = null;
+        for (int i = 0; i < batches.size(); i++) {
+            String batchNachaId = batches.get(i).getBatchNachaId();
+            long batchNumber = LongIndex.parseKey(batchNachaId);
+            if (batchNumber >= 0) {
+                batchNumbers.put(batchNumber, i);
+            } else {
+                otherNumbers = otherNumbers == null ? new HashMap<>() : otherNumbers;
+                otherNumbers.put(batchNachaId, i);
+            }
+        }
+        this.otherBatchNumbers = otherNumbers;
+        this.mappingCount = batches.size() + paymentItemCount;
+    }
+
+    /**
+     * @param fileKey {@link NachaFileKey} of the generated file
+     */
+    public static NachaFileMappings from(String fileKey, HandlerResult handlerResult) {
+        Builder builder = builder(fileKey);
+        handlerResult.getBatches().forEach((batchNachaId, handlerBatchResult) -> {
+            builder.batch(batchNachaId, handlerBatchResult.getBatchOrderId());
+            handlerBatchResult.getPaymentItems().forEach((traceNumber, handlerPaymentResult) ->
+                builder.paymentItem(traceNumber, handlerPaymentResult.getPaymentItemId()));
+        });
+        return builder.build();
+    }
+
+    public static Builder builder(String fileKey) {
+        return new Builder(fileKey);
+    }
+
+    /**
+     * @return {@link NachaFileKey} of the file
+     */
+    public String getFileKey() {
+        return fileKey;
+    }
+
+    /**
+     * @return the batches of the file, in the order they were added
+     */
+    public List<BatchMappings> getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return the batch with the batch number in the nacha file, null when the file has no such batch
+     */
+    public BatchMappings getBatch(String batchNachaId) {
+        int index = lookUp(batchNumbers, otherBatchNumbers, batchNachaId);
+        return index == LongIndex.ABSENT ? null : batches.get(index);
+    }
+
+    /**
+     * @return number of batch and payment item mappings
+     */
+    public int getMappingCount() {
+        return mappingCount;
+    }
+
+    private static int lookUp(LongIndex numbers, Map<String, Integer> otherNumbers, String number) {
+        long key = LongIndex.parseKey(number);
+        if (key >= 0) {
+            return numbers.get(key);
+        }
+        return otherNumbers == null ? LongIndex.ABSENT : otherNumbers.getOrDefault(number, LongIndex.ABSENT);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof NachaFileMappings)) {
+            return false;
+        }
+        NachaFileMappings that = (NachaFileMappings) o;
+        return fileKey.equals(that.fileKey) && batches.equals(that.batches);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fileKey, batches);
+    }
+
+    @Override
+    public String toString() {
+        return "NachaFileMappings(fileKey=" + fileKey + ", batches=" + batches + ")";
+    }
+
+    /**
+     * The batch order behind a batch of the nacha file and the payment items behind its entries.
+     */
+    public static final class BatchMappings {
+
+        private final String batchNachaId;
+        private final String batchOrderId;
+        private final String[] paymentItemIds;
+        private final LongIndex traceNumbers;
+        private final Map<String, Integer> otherTraceNumbers;
+
+        private BatchMappings(String batchNachaId, String batchOrderId, String[] paymentItemIds,
+                              LongIndex traceNumbers, Map<String, Integer> otherTraceNumbers) {
+            this.batchNachaId = batchNachaId;
+            this.batchOrderId = batchOrderId;
+            this.paymentItemIds = paymentItemIds;
+            this.traceNumbers = traceNumbers;
+            this.otherTraceNumbers = otherTraceNumbers;
+        }
+
+        public String getBatchNachaId() {
+            return batchNachaId;
+        }
+
+        public String getBatchOrderId() {
+            return batchOrderId;
+        }
+
+        /**
+         * @return ID of the payment item behind the entry with the trace number, null when the batch has no such entry
+         */
+        public String getPaymentItemId(String traceNumber) {
+            int slot = lookUp(traceNumbers, otherTraceNumbers, traceNumber);
+            return slot == LongIndex.ABSENT ? null : paymentItemIds[slot];
+        }
+
+        public int getPaymentItemCount() {
+            return traceNumbers.size() + (otherTraceNumbers == null ? 0 : otherTraceNumbers.size());
+        }
+
+        /**
+         * Hands every payment item over with its numeric trace number, or with its trace number as is when not numeric.
+         */
+        void forEachPaymentItem(NumericPaymentItemConsumer numericConsumer,
+                                BiConsumer<String, String> otherConsumer) {
+            traceNumbers.forEach((traceNumber, slot) -> numericConsumer.accept(traceNumber, paymentItemIds[slot]));
+            if (otherTraceNumbers != null) {
+                otherTraceNumbers.forEach((traceNumber, slot) ->
+                    otherConsumer.accept(traceNumber, paymentItemIds[slot]));
+            }
+        }
+
+        private Map<Object, String> paymentItems() {
+            Map<Object, String> paymentItems = new HashMap<>();
+            forEachPaymentItem(paymentItems::put, paymentItems::put);
+            return paymentItems;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BatchMappings)) {
+                return false;
+            }
+            BatchMappings that = (BatchMappings) o;
+            return batchNachaId.equals(that.batchNachaId) && Objects.equals(batchOrderId, that.batchOrderId)
+                && paymentItems().equals(that.paymentItems());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(batchNachaId, batchOrderId, getPaymentItemCount());
+        }
+
+        @Override
+        public String toString() {
+            return "BatchMappings(batchNachaId=" + batchNachaId + ", batchOrderId=" + batchOrderId + ", paymentItems="
+                + getPaymentItemCount() + ")";
+        }
+    }
+
+    @FunctionalInterface
+    interface NumericPaymentItemConsumer {
+
+        void accept(long traceNumber, String paymentItemId);
+    }
+
+    /**
+     * Builds the mappings of a file batch by batch, every payment item going to the batch added last.
+     */
+    public static final class Builder {
+
+        private final String fileKey;
+        private final List<PendingBatch> pendingBatches = new ArrayList<>();
+        private final List<String> paymentItemIds = new ArrayList<>();
+
+        private Builder(String fileKey) {
+            this.fileKey = fileKey;
+        }
+
+        public Builder batch(String batchNachaId, String batchOrderId) {
+            pendingBatches.add(new PendingBatch(batchNachaId, batchOrderId));
+            return this;
+        }
+
+        public Builder paymentItem(String traceNumber, String paymentItemId) {
+            if (pendingBatches.isEmpty()) {
+                throw new IllegalStateException("Payment item " + paymentItemId + " added before any batch");
+            }
+            PendingBatch batch = pendingBatches.get(pendingBatches.size() - 1);
+            int slot = paymentItemIds.size();
+            paymentItemIds.add(paymentItemId);
+            long key = LongIndex.parseKey(traceNumber);
+            if (key >= 0) {
+                batch.traceNumbers.put(key, slot);
+            } else {
+                batch.otherTraceNumbers = batch.otherTraceNumbers == null ? new HashMap<>() : batch.otherTraceNumbers;
+                batch.otherTraceNumbers.put(traceNumber, slot);
+            }
+            return this;
+        }
+
+        public NachaFileMappings build() {
+            String[] pool = paymentItemIds.toArray(new String[0]);
+            List<BatchMappings> batches = new ArrayList<>(pendingBatches.size());
+            pendingBatches.forEach(batch -> batches.add(new BatchMappings(batch.batchNachaId, batch.batchOrderId, pool,
+                batch.traceNumbers, batch.otherTraceNumbers)));
+            return new NachaFileMappings(fileKey, batches, pool.length);
+        }
+
+        private static final class PendingBatch {
+
+            private final String batchNachaId;
+            private final String batchOrderId;
+            private final LongIndex traceNumbers = new LongIndex(16);
+            private Map<String, Integer> otherTraceNumbers;
+
+            private PendingBatch(String batchNachaId, String batchOrderId) {
+                this.batchNachaId = batchNachaId;
+                this.batchOrderId = batchOrderId;
+            }
+        }
+    }
+}
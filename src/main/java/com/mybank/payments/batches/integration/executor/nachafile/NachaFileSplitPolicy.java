@@ -0,0 +1,73 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rolls the batch orders of a company into several nacha files once a file would exceed the maximum number of
+ * entries, estimated size or number of batches.
+ * <p>Batch orders are kept in their order and are never split themselves, a batch order exceeding a limit on its own
+ * gets a file of its own. The size of a file is estimated from the NACHA layout: 94 character records, a header and
+ * control record per file and per batch, one record per entry, padded to blocks of 10 records.</p>
+ */
+@Component
+public class NachaFileSplitPolicy {
+
+    static final int RECORD_SIZE = 94 + 1;
+    static final int BLOCKING_FACTOR = 10;
+
+    private final long maxEntries;
+    private final long maxBytes;
+    private final long maxBatches;
+
+    public NachaFileSplitPolicy(NachaFileSplitProperties properties) {
+        this.maxEntries = limit(properties.getMaxEntries());
+        this.maxBytes = limit(properties.getMaxBytes().toBytes());
+        this.maxBatches = limit(properties.getMaxBatches());
+    }
+
+    /**
+     * @param batchOrders batch orders of a company, in the order they were received
+     * @return the batch orders of every file, in order
+     */
+    public List<List<PostBatchOrderRequest>> split(List<PostBatchOrderRequest> batchOrders) {
+        List<List<PostBatchOrderRequest>> files = new ArrayList<>();
+        List<PostBatchOrderRequest> file = new ArrayList<>();
+        long entries = 0;
+        for (PostBatchOrderRequest batchOrder : batchOrders) {
+            long batchOrderEntries = entries(batchOrder);
+            if (!file.isEmpty() && exceedsLimits(file.size() + 1, entries + batchOrderEntries)) {
+                files.add(file);
+                file = new ArrayList<>();
+                entries = 0;
+            }
+            file.add(batchOrder);
+            entries += batchOrderEntries;
+        }
+        if (!file.isEmpty()) {
+            files.add(file);
+        }
+        return files;
+    }
+
+    static long estimateFileSize(long batches, long entries) {
+        long records = 2 + batches * 2 + entries;
+        long blocks = (records + BLOCKING_FACTOR - 1) / BLOCKING_FACTOR;
+        return blocks * BLOCKING_FACTOR * RECORD_SIZE;
+    }
+
+    private boolean exceedsLimits(long batches, long entries) {
+        return batches > maxBatches || entries > maxEntries || estimateFileSize(batches, entries) > maxBytes;
+    }
+
+    private static long entries(PostBatchOrderRequest batchOrder) {
+        Integer totalTransactionsCount = batchOrder.getTotalTransactionsCount();
+        return totalTransactionsCount == null ? 0 : totalTransactionsCount;
+    }
+
+    private static long limit(long limit) {
+        return limit > 0 ? limit : Long.MAX_VALUE;
+    }
+}
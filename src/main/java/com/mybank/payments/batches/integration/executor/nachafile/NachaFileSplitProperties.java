@@ -0,0 +1,26 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties("service.nacha.split")
+public class NachaFileSplitProperties {
+
+    /**
+     * Maximum number of entries in a nacha file, 0 for no limit.
+     */
+    private int maxEntries = 10000;
+
+    /**
+     * Maximum estimated size of a nacha file, 0 for no limit.
+     */
+    private DataSize maxBytes = DataSize.ofMegabytes(2);
+
+    /**
+     * Maximum number of batches in a nacha file, 0 for no limit.
+     */
+    private int maxBatches = 500;
+
+}
@@ -0,0 +1,36 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("service.nacha.sequence")
+public class NachaSequenceProperties {
+
+    /**
+     * Where the daily file sequences are kept, InMemory or MappedFile.
+     */
+    private String store = "InMemory";
+
+    /**
+     * Sequence store file of the MappedFile store, on a volume shared by all the nodes which honours file locks across
+     * hosts.
+     */
+    private String file = "nacha-sequence.dat";
+
+    /**
+     * Number of companies the MappedFile store is created for.
+     */
+    private int slots = 4096;
+
+    /**
+     * Number of daily IDs a node leases from the MappedFile store at once.
+     */
+    private int leaseSize = 4;
+
+    /**
+     * Time zone the daily sequences start over in, the system time zone when not set.
+     */
+    private String zone;
+
+}
@@ -5,104 +5,486 @@ import static java.util.Optional.ofNullable;
 
 import com.backbase.batches.nacha.model.result.BankResult;
 import com.backbase.batches.nacha.model.result.BankResult.BankBatchOrderResult;
+import com.backbase.batches.nacha.model.result.BankResult.BankPaymentItemResult;
 import com.backbase.batches.nacha.model.result.HandlerResult;
-import com.backbase.batches.nacha.model.result.HandlerResult.HandlerBatchOrderResult;
-import com.backbase.batches.nacha.model.result.HandlerResult.HandlerPaymentItemResult;
 import com.backbase.batches.nacha.model.result.StatusInfo;
 import com.backbase.batches.nacha.statusmanager.BatchStatusManager;
 import com.mybank.payments.batches.integration.executor.ProcessedResultsExecutor;
 import com.mybank.payments.batches.integration.ExampleMode;
+import com.mybank.payments.batches.integration.executor.nachafile.NachaFileMappings.BatchMappings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
+/**
+ * Applies the results the bank sent for the generated nacha files to the batch orders and payment items. Files are
+ * identified by their {@link NachaFileKey}, in the store of their mappings as well as in the results queue.
+ * <p>The batches of a file are updated concurrently, with at most {@code service.nacha.notificationConcurrency}
+ * updates in flight. The rejected payment items of an accepted batch are updated after the batch, in chunks of at most
+ * {@value #MAX_PAYMENT_ITEMS_PER_UPDATE} payment items sent in parallel. A batch failing to be updated is logged and
+ * does not stop the other batches of the file. The steps of the batch left to update are queued again and the mappings
+ * of the file are kept, so they are retried by the next run: the batch status when it failed, otherwise only the
+ * chunks of rejected payment items which failed. The file is done once all its batches are updated, or once its result
+ * failed {@code service.nacha.maxResultAttempts} times.</p>
+ * <p>The time from storing the mappings of a generated file until its bank result is applied is recorded in the
+ * {@code nacha.result.lag} timer, with the {@code error} outcome when a batch of the file failed to be updated. Files
+ * evicted without a bank result are counted in {@code nacha.result.evicted}, files given up on after their last attempt
+ * in {@code nacha.result.abandoned}.</p>
+ */
 @Component
 @Slf4j
-@RequiredArgsConstructor
 public class ProcessedNachaFilesResultsExecutor implements ProcessedResultsExecutor {
 
+    /**
+     * Most payment items payment-order-service accepts in a single update.
+     */
+    static final int MAX_PAYMENT_ITEMS_PER_UPDATE = 1000;
+
     @Getter
     private final Queue<Pair<String, BankResult>> processedResultsPerFileQueue;
 
     private final BatchStatusManager batchStatusManager;
 
-    private final Map<String, HandlerResult> nachaHandlerResultsPersistenceStore = new HashMap<>();
+    private final NachaFileMappingStore nachaFileMappingStore;
+
+    private final Map<String, FileParts> filePartsPerFile = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> attemptsPerFile = new ConcurrentHashMap<>();
+
+    private final int maxResultAttempts;
+
+    private final ExecutorService notificationExecutorService;
 
-    public void saveNachaHandlerResult(HandlerResult handlerResult) {
-        log.debug("Saved result for fileId {} after NachaHandler generated nacha file: {}",
-            handlerResult.getFileInfo().getFileReferenceCode(), handlerResult);
-        nachaHandlerResultsPersistenceStore.put(handlerResult.getFileInfo().getFileReferenceCode(), handlerResult);
+    private final Timer resultLag;
+
+    private final Timer failedResultLag;
+
+    private final Counter evictedResults;
+
+    private final Counter abandonedResults;
+
+    public ProcessedNachaFilesResultsExecutor(Queue<Pair<String, BankResult>> processedResultsPerFileQueue,
+                                              BatchStatusManager batchStatusManager,
+                                              NachaFileMappingStore nachaFileMappingStore,
+                                              @Value("${service.nacha.notificationConcurrency:8}") int notificationConcurrency,
+                                              @Value("${service.nacha.maxResultAttempts:10}") int maxResultAttempts,
+                                              MeterRegistry meterRegistry) {
+        this.processedResultsPerFileQueue = processedResultsPerFileQueue;
+        this.batchStatusManager = batchStatusManager;
+        this.nachaFileMappingStore = nachaFileMappingStore;
+        this.maxResultAttempts = maxResultAttempts;
+        this.resultLag = resultLagTimer(meterRegistry, "success");
+        this.failedResultLag = resultLagTimer(meterRegistry, "error");
+        this.evictedResults = Counter.builder("nacha.result.evicted")
+            .description("Number of generated nacha files evicted without a bank result")
+            .tag("mode", ExampleMode.NACHA_FILE.getPropertyValue())
+            .register(meterRegistry);
+        this.abandonedResults = Counter.builder("nacha.result.abandoned")
+            .description("Number of nacha files whose bank result failed to be applied in all its attempts")
+            .tag("mode", ExampleMode.NACHA_FILE.getPropertyValue())
+            .register(meterRegistry);
+        if (notificationConcurrency > 1) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("nacha-result-notification-");
+            threadFactory.setDaemon(true);
+            this.notificationExecutorService = Executors.newFixedThreadPool(notificationConcurrency, threadFactory);
+        } else {
+            this.notificationExecutorService = null;
+        }
+    }
+
+    /**
+     * @param fileKey {@link NachaFileKey} of the generated file
+     */
+    public void saveNachaHandlerResult(String fileKey, HandlerResult handlerResult) {
+        log.debug("Saved result for file {} after NachaHandler generated nacha file: {}", fileKey, handlerResult);
+        nachaFileMappingStore.put(NachaFileMappings.from(fileKey, handlerResult));
+    }
+
+    /**
+     * @param fileKey {@link NachaFileKey} of a file about to be generated
+     * @return whether a generated file with the key is still waiting for its result
+     */
+    public boolean isWaitingForResult(String fileKey) {
+        return nachaFileMappingStore.contains(fileKey);
     }
 
+    /**
+     * Registers the nacha files the batch orders of a company were split into, so their results are correlated as
+     * parts of the same split.
+     *
+     * @param fileKeys {@link NachaFileKey} of all the parts, in order
+     */
+    public void registerFileParts(List<String> fileKeys) {
+        FileParts fileParts = new FileParts(fileKeys);
+        fileKeys.forEach(fileKey -> filePartsPerFile.put(fileKey, fileParts));
+    }
+
+    /**
+     * Drops a part which failed to be generated, no result is expected for it.
+     */
+    public void discardFilePart(String fileKey) {
+        if (filePartsPerFile.containsKey(fileKey)) {
+            log.warn("Part {} of split nacha file discarded, no result expected", fileKey);
+            completeFilePart(fileKey);
+        }
+    }
+
+    /**
+     * @return keys of the parts of the split of the file which are still waiting for their result, empty when the file
+     * was not split or all its parts are done
+     */
+    Set<String> getPendingFileParts(String fileKey) {
+        FileParts fileParts = filePartsPerFile.get(fileKey);
+        return fileParts == null ? Collections.emptySet() : Set.copyOf(fileParts.pending);
+    }
+
+    /**
+     * Applies the queued bank results. Synchronized with {@link #applyResult(String, BankResult)} and
+     * {@link #applyReturnedEntries(String, Map)}, since the NachaInboxWatcher applies results as soon as a response file
+     * lands, besides the scheduled runs. The results re-queued by this run are left to the next one.
+     */
     @Override
-    public void execute() {
-        while(!processedResultsPerFileQueue.isEmpty()) {
+    public synchronized void execute() {
+        nachaFileMappingStore.evictExpired().forEach(fileKey -> {
+            log.warn("Evicted nacha handler result of file {}, no bank result received in time", fileKey);
+            evictedResults.increment();
+            attemptsPerFile.remove(fileKey);
+            discardFilePart(fileKey);
+        });
+        for (int queued = processedResultsPerFileQueue.size(); queued > 0; queued--) {
             Pair<String, BankResult> processedResult = processedResultsPerFileQueue.poll();
-            log.debug("Polled proccessed nacha file result {} for file reference {}", processedResult.getValue(), processedResult.getKey());
-            HandlerResult nachaHandlerResult = ofNullable(nachaHandlerResultsPersistenceStore.remove(processedResult.getKey()))
-                .orElseThrow(() -> new RuntimeException("Nacha handler result not found for file " + processedResult.getKey()));
-            log.debug("Found result saved by NachaHandler after generating: {}", nachaHandlerResult);
-            notifyBatchService(processedResult.getValue(), nachaHandlerResult);
+            if (processedResult == null) {
+                return;
+            }
+            log.debug("Polled proccessed nacha file result {} for file {}", processedResult.getValue(), processedResult.getKey());
+            try {
+                applyResult(processedResult.getKey(), processedResult.getValue());
+            } catch (RuntimeException e) {
+                log.error("Applying bank result of nacha file {} failed", processedResult.getKey(), e);
+            }
         }
     }
 
-    private void notifyBatchService(BankResult bankResult, HandlerResult nachaHandlerResult) {
-        bankResult.getBatches().forEach((batchNachaId, bankBatchResult) -> {
-            HandlerBatchOrderResult handlerBatchResult = findHandlerBatch(nachaHandlerResult, batchNachaId);
-            log.debug("Marking batch result: {}", bankBatchResult);
-            markBatch(handlerBatchResult, bankBatchResult);
-            if (!bankBatchResult.isRejected()) {
-                log.debug("Marking rejected payment result: {}", bankBatchResult);
-                markRejectedPayments(bankBatchResult, handlerBatchResult);
+    /**
+     * Applies the bank result of a single file, leaving the queued results to the scheduled runs.
+     * <p>The mappings of the file are only removed once all its batches are updated. The steps of the batches which
+     * failed to be updated are queued again and retried by the next run, up to {@code service.nacha.maxResultAttempts}
+     * attempts of the file (a non-positive limit retries them until the mappings are evicted). After the last attempt
+     * the failed steps are logged and dropped, and the file is done.</p>
+     *
+     * @param fileKey {@link NachaFileKey} of the file
+     * @throws RuntimeException when no file with the key is waiting for its result
+     */
+    public synchronized void applyResult(String fileKey, BankResult bankResult) {
+        NachaFileMappings nachaFileMappings = ofNullable(nachaFileMappingStore.get(fileKey))
+            .orElseThrow(() -> new RuntimeException("Nacha handler result not found for file " + fileKey));
+        log.debug("Found result saved by NachaHandler after generating: {}", nachaFileMappings);
+        Map<String, BankBatchOrderResult> failedBatches = notifyBatchService(fileKey, bankResult, nachaFileMappings);
+        Duration age = nachaFileMappingStore.getAge(fileKey);
+        if (failedBatches.isEmpty()) {
+            resultLag.record(age);
+        } else {
+            failedResultLag.record(age);
+            int attempts = attemptsPerFile.merge(fileKey, 1, Integer::sum);
+            if (maxResultAttempts <= 0 || attempts < maxResultAttempts) {
+                processedResultsPerFileQueue.offer(Pair.of(fileKey, BankResult.builder().batches(failedBatches).build()));
+                log.warn("Queued the results of {} failed batches of nacha file {} again, after attempt {}",
+                    failedBatches.size(), fileKey, attempts);
+                return;
             }
-        });
+            log.error("Gave up on the results of {} failed batches of nacha file {} after {} attempts: {}",
+                failedBatches.size(), fileKey, attempts, failedBatches.values());
+            abandonedResults.increment();
+        }
+        attemptsPerFile.remove(fileKey);
+        nachaFileMappingStore.remove(fileKey);
+        completeFilePart(fileKey);
     }
 
-    private void markBatch(HandlerBatchOrderResult handlerBatchResult, BankBatchOrderResult bankBatchResult) {
+    /**
+     * Applies the entries a return file of the bank returned for a company. Return files refer to the entries by their
+     * original trace number only, so the entries are correlated with the batches of the files of the company still
+     * waiting for their bank result, the most recently generated file first. Only the payment items of the returned
+     * entries are rejected: the status of their batches is left to the bank result of their file, and the mappings of
+     * the file stay stored until then.
+     *
+     * @param returnedEntries returned entries, by their original trace number
+     * @return keys of the files the entries were correlated with
+     * @throws RuntimeException when a batch with returned entries failed to be updated
+     */
+    public synchronized List<String> applyReturnedEntries(String companyId,
+                                                          Map<String, BankPaymentItemResult> returnedEntries) {
+        Map<String, BankPaymentItemResult> uncorrelated = new HashMap<>(returnedEntries);
+        List<String> fileKeys = new ArrayList<>();
+        Set<String> failedFiles = new LinkedHashSet<>();
+        for (String fileKey : nachaFileMappingStore.getFileKeys()) {
+            if (uncorrelated.isEmpty()) {
+                break;
+            }
+            NachaFileMappings nachaFileMappings = NachaFileKey.isOfCompany(fileKey, companyId)
+                ? nachaFileMappingStore.get(fileKey) : null;
+            if (nachaFileMappings == null) {
+                continue;
+            }
+            BankResult returnedResult = correlate(nachaFileMappings, uncorrelated);
+            if (returnedResult.getBatches().isEmpty()) {
+                continue;
+            }
+            fileKeys.add(fileKey);
+            if (!notifyBatchService(fileKey, returnedResult, nachaFileMappings).isEmpty()) {
+                failedFiles.add(fileKey);
+            }
+        }
+        if (!uncorrelated.isEmpty()) {
+            log.warn("{} returned entries of company {} not found in the nacha files waiting for their bank result: {}",
+                uncorrelated.size(), companyId, uncorrelated.keySet());
+        }
+        if (!failedFiles.isEmpty()) {
+            throw new RuntimeException("Returned entries of nacha files " + failedFiles + " failed to be applied");
+        }
+        return fileKeys;
+    }
+
+    /**
+     * Moves the entries found in the batches of the file out of the uncorrelated entries.
+     *
+     * @return the entries of the file, in batch results without a batch status
+     */
+    private static BankResult correlate(NachaFileMappings nachaFileMappings,
+                                        Map<String, BankPaymentItemResult> uncorrelated) {
+        BankResult.BankResultBuilder result = BankResult.builder();
+        for (BatchMappings batchMappings : nachaFileMappings.getBatches()) {
+            BankBatchOrderResult.BankBatchOrderResultBuilder batchResult = null;
+            for (Iterator<Map.Entry<String, BankPaymentItemResult>> entries = uncorrelated.entrySet().iterator();
+                 entries.hasNext(); ) {
+                Map.Entry<String, BankPaymentItemResult> entry = entries.next();
+                if (batchMappings.getPaymentItemId(entry.getKey()) != null) {
+                    batchResult = batchResult != null ? batchResult
+                        : BankBatchOrderResult.builder().batchNumber(batchMappings.getBatchNachaId());
+                    batchResult.entry(entry.getKey(), entry.getValue());
+                    entries.remove();
+                }
+            }
+            if (batchResult != null) {
+                result.batch(batchMappings.getBatchNachaId(), batchResult.build());
+            }
+        }
+        return result.build();
+    }
+
+    private void completeFilePart(String fileKey) {
+        FileParts fileParts = filePartsPerFile.get(fileKey);
+        if (fileParts == null || !fileParts.pending.remove(fileKey)) {
+            return;
+        }
+        log.debug("Nacha file {} done, {} of {} parts pending", fileKey, fileParts.pending.size(),
+            fileParts.fileKeys.size());
+        if (fileParts.pending.isEmpty()) {
+            fileParts.fileKeys.forEach(filePartsPerFile::remove);
+            log.info("All {} parts {} of the split nacha file done", fileParts.fileKeys.size(), fileParts.fileKeys);
+        }
+    }
+
+    /**
+     * @return steps left to update of the batches which failed to be updated, by their batch number
+     */
+    private Map<String, BankBatchOrderResult> notifyBatchService(String fileKey, BankResult bankResult,
+                                                              NachaFileMappings nachaFileMappings) {
+        Executor executor = notificationExecutorService == null ? Runnable::run : notificationExecutorService;
+        Map<String, BankBatchOrderResult> failedBatches = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] batchUpdates = bankResult.getBatches().entrySet().stream()
+            .map(batchResult -> notifyBatch(fileKey, batchResult.getKey(), batchResult.getValue(), nachaFileMappings,
+                executor)
+                .thenAccept(failedSteps -> {
+                    if (failedSteps != null) {
+                        failedBatches.put(batchResult.getKey(), failedSteps);
+                    }
+                }))
+            .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(batchUpdates).join();
+        if (!failedBatches.isEmpty()) {
+            log.error("{} of {} batches of nacha file {} failed to be updated: {}", failedBatches.size(),
+                batchUpdates.length, fileKey, failedBatches.keySet());
+        }
+        return failedBatches;
+    }
+
+    /**
+     * Marks the batch, then rejects its rejected payment items. A batch status which was sent is not sent again: when
+     * only rejecting payment items failed, the steps left hold the failed payment items without a batch status.
+     *
+     * @return steps of the batch left to update, null once the batch is updated
+     */
+    private CompletableFuture<BankBatchOrderResult> notifyBatch(String fileKey, String batchNachaId,
+                                                                BankBatchOrderResult bankBatchResult,
+                                                                NachaFileMappings nachaFileMappings,
+                                                                Executor executor) {
+        return CompletableFuture
+            .supplyAsync(() -> {
+                BatchMappings batchMappings = findHandlerBatch(nachaFileMappings, batchNachaId);
+                // a batch result without status, e.g. of a return file, only reports entries
+                if (bankBatchResult.getStatusInfo() != null) {
+                    log.debug("Marking batch result: {}", bankBatchResult);
+                    markBatch(batchMappings, bankBatchResult);
+                }
+                return batchMappings;
+            }, executor)
+            .handle((batchMappings, e) -> {
+                if (e != null) {
+                    log.error("Updating batch {} of nacha file {} failed", batchNachaId, fileKey,
+                        e instanceof CompletionException ? e.getCause() : e);
+                    return CompletableFuture.completedFuture(bankBatchResult);
+                }
+                if (bankBatchResult.isRejected()) {
+                    return CompletableFuture.<BankBatchOrderResult>completedFuture(null);
+                }
+                log.debug("Marking rejected payment result: {}", bankBatchResult);
+                return markRejectedPayments(fileKey, bankBatchResult, batchMappings, executor)
+                    .thenApply(failedEntries -> failedEntries.isEmpty() ? null : BankBatchOrderResult.builder()
+                        .batchNumber(bankBatchResult.getBatchNumber())
+                        .entries(failedEntries)
+                        .build());
+            })
+            .thenCompose(Function.identity());
+    }
+
+    private void markBatch(BatchMappings batchMappings, BankBatchOrderResult bankBatchResult) {
         if (bankBatchResult.isRejected()) {
-            batchStatusManager.rejectBatch(ACCEPTED, handlerBatchResult.getBatchOrderId(), bankBatchResult.getStatusInfo());
+            batchStatusManager.rejectBatch(ACCEPTED, batchMappings.getBatchOrderId(), bankBatchResult.getStatusInfo());
         } else {
-            batchStatusManager.markBatchProcessed(handlerBatchResult.getBatchOrderId(), bankBatchResult.getStatusInfo());
+            batchStatusManager.markBatchProcessed(batchMappings.getBatchOrderId(), bankBatchResult.getStatusInfo());
+        }
+    }
+
+    /**
+     * @return rejected entries which failed to be updated, by their trace number
+     */
+    private CompletableFuture<Map<String, BankPaymentItemResult>> markRejectedPayments(
+        String fileKey, BankBatchOrderResult acceptedBatch, BatchMappings batchMappings, Executor executor) {
+        List<Map<String, BankPaymentItemResult>> chunks = new ArrayList<>();
+        Map<String, BankPaymentItemResult> chunk = new HashMap<>();
+        for (Map.Entry<String, BankPaymentItemResult> paymentEntry : acceptedBatch.getEntries().entrySet()) {
+            if (!paymentEntry.getValue().isRejected()) {
+                continue;
+            }
+            chunk.put(paymentEntry.getKey(), paymentEntry.getValue());
+            if (chunk.size() == MAX_PAYMENT_ITEMS_PER_UPDATE) {
+                chunks.add(chunk);
+                chunk = new HashMap<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        if (chunks.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
         }
+        if (chunks.size() == 1) {
+            return CompletableFuture.completedFuture(rejectPaymentItems(fileKey, batchMappings, chunks.get(0)));
+        }
+        Map<String, BankPaymentItemResult> failedEntries = new ConcurrentHashMap<>();
+        return CompletableFuture.allOf(chunks.stream()
+                .map(paymentsChunk -> CompletableFuture.runAsync(
+                    () -> failedEntries.putAll(rejectPaymentItems(fileKey, batchMappings, paymentsChunk)), executor))
+                .toArray(CompletableFuture[]::new))
+            .thenApply(done -> failedEntries);
     }
 
-    private void markRejectedPayments(BankBatchOrderResult acceptedBatch, HandlerBatchOrderResult handlerBatchResult) {
-        Map<String, StatusInfo> rejectedPaymentsStatuses = acceptedBatch.getEntries().entrySet().stream()
-            .filter(paymentEntry -> paymentEntry.getValue().isRejected())
-            .collect(Collectors.toMap(
-                entry -> {
-                    HandlerPaymentItemResult handlerPaymentResult =
-                        findHandlerPayment(handlerBatchResult, entry.getValue().getTraceNumber());
-                    return handlerPaymentResult.getPaymentItemId();
-                },
-                entry ->
-                    ofNullable(entry.getValue().getStatusInfo())
-                        .orElse(StatusInfo.builder().rejected(Boolean.TRUE).build())
-                ));
-        batchStatusManager.rejectPaymentItems(ACCEPTED, handlerBatchResult.getBatchOrderId(), rejectedPaymentsStatuses);
+    /**
+     * @return the rejected entries when they failed to be updated, empty otherwise
+     */
+    private Map<String, BankPaymentItemResult> rejectPaymentItems(String fileKey, BatchMappings batchMappings,
+                                                                  Map<String, BankPaymentItemResult> rejectedEntries) {
+        try {
+            Map<String, StatusInfo> rejectedPaymentsStatuses = rejectedEntries.values().stream()
+                .collect(Collectors.toMap(
+                    entry -> findHandlerPayment(batchMappings, entry.getTraceNumber()),
+                    entry ->
+                        ofNullable(entry.getStatusInfo())
+                            .orElse(StatusInfo.builder().rejected(Boolean.TRUE).build())
+                    ));
+            batchStatusManager.rejectPaymentItems(ACCEPTED, batchMappings.getBatchOrderId(), rejectedPaymentsStatuses);
+            return Collections.emptyMap();
+        } catch (RuntimeException e) {
+            log.error("Rejecting {} payment items of batch {} of nacha file {} failed", rejectedEntries.size(),
+                batchMappings.getBatchOrderId(), fileKey, e);
+            return rejectedEntries;
+        }
     }
 
-    private HandlerBatchOrderResult findHandlerBatch(HandlerResult nachaHandlerResult, String batchNachaId) {
+    private BatchMappings findHandlerBatch(NachaFileMappings nachaFileMappings, String batchNachaId) {
         return ofNullable(
-            nachaHandlerResult.getBatches().get(batchNachaId))
+            nachaFileMappings.getBatch(batchNachaId))
             .orElseThrow(() -> new RuntimeException(
                 String.format("Batch %s not found in nacha handler result.", batchNachaId)));
     }
 
-    private HandlerPaymentItemResult findHandlerPayment(HandlerBatchOrderResult handlerBatchResult, String paymentNachaId) {
-        return ofNullable(handlerBatchResult.getPaymentItems().get(paymentNachaId))
-            .orElseThrow(() -> new RuntimeException("Mappings not found for payment "
-                + paymentNachaId + " at batch " + handlerBatchResult.getBatchOrderId()));
+    private String findHandlerPayment(BatchMappings batchMappings, String paymentNachaId) {
+        String paymentItemId = batchMappings.getPaymentItemId(paymentNachaId);
+        if (paymentItemId == null) {
+            throw new RuntimeException("Mappings not found for payment "
+                + paymentNachaId + " at batch " + batchMappings.getBatchOrderId());
+        }
+        return paymentItemId;
+    }
+
+    private static Timer resultLagTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("nacha.result.lag")
+            .description("Time from generating a nacha file until its bank result is applied")
+            .tag("mode", ExampleMode.NACHA_FILE.getPropertyValue())
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            // bank results come back within minutes to days
+            .minimumExpectedValue(Duration.ofSeconds(1))
+            .maximumExpectedValue(Duration.ofDays(7))
+            .register(meterRegistry);
     }
 
     @Override
     public ExampleMode getType() {
         return ExampleMode.NACHA_FILE;
     }
+
+    @PreDestroy
+    public void shutdown() {
+        if (notificationExecutorService != null) {
+            notificationExecutorService.shutdown();
+        }
+    }
+
+    private static final class FileParts {
+
+        private final List<String> fileKeys;
+        private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+        private FileParts(List<String> fileKeys) {
+            this.fileKeys = List.copyOf(fileKeys);
+            this.pending.addAll(fileKeys);
+        }
+    }
 }
@@ -8,18 +8,20 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 /**
- * WARNING: This implementation is not suitable for distributed services.
+ * WARNING: This implementation is not suitable for distributed services, see {@link LeasedFileSequenceProvider}.
  */
 @Component
+@ConditionalOnProperty(name = "service.nacha.sequence.store", havingValue = "InMemory", matchIfMissing = true)
 public class SimpleFileSequenceProvider implements FileSequenceProvider {
     private @Nullable LocalDate date = null;
     private @NonNull ConcurrentMap<@NonNull String, @NonNull AtomicInteger> indexMap = new ConcurrentHashMap<>();
 
     @Override
-    public @NonNull Character getDailyId(@NonNull String companyId) {
+    public synchronized @NonNull Character getDailyId(@NonNull String companyId) {
         AtomicInteger index = indexMap.computeIfAbsent(companyId, (cId) -> new AtomicInteger(0));
         int idx = index.get();
         LocalDate currentDate = LocalDate.now();
@@ -28,7 +30,7 @@ public class SimpleFileSequenceProvider implements FileSequenceProvider {
             index.compareAndSet(idx, 0);
         }
         if (FileSequenceProvider.SEQUENCE_VALUES.length() <= index.get()) {
-            throw new RuntimeException("Dayly file sequence has exhausted, no more NACHA file generation possible with unique sequence");
+            throw new RuntimeException("Daily file sequence has exhausted, no more NACHA file generation possible with unique sequence");
         }
         return FileSequenceProvider.SEQUENCE_VALUES.charAt(index.getAndAdd(1));
     }
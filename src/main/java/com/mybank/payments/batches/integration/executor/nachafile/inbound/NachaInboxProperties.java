@@ -0,0 +1,20 @@
+package com.mybank.payments.batches.integration.executor.nachafile.inbound;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("service.nacha.inbox")
+public class NachaInboxProperties {
+
+    /**
+     * Whether bank response files are picked up from the inbox directory as soon as they land.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Directory the bank response files are delivered into, renamed into it once completely written.
+     */
+    private String directory = "nacha-inbox";
+
+}
@@ -0,0 +1,176 @@
+package com.mybank.payments.batches.integration.executor.nachafile.inbound;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Picks up the bank response files as soon as they land in the inbox directory, instead of waiting for the next run of
+ * the ProcessedNachaFilesResultsExecutor.
+ * <p>Response files are expected to be written elsewhere (or under a name starting with a dot or ending with
+ * {@code .part} or {@code .tmp}) and renamed into the inbox once complete. A file is claimed by moving it into the
+ * {@code processing} sub-directory, parsed, its result applied by the results executor and moved into
+ * {@code processed}, or into {@code failed} when it could not be parsed or its result not be applied. Only the result
+ * of the file is applied, the queued results are left to the scheduled runs of the results executor. Files left in
+ * {@code processing} by a crash are processed again on start, as are the files which landed while the service was
+ * down.</p>
+ * <p>The inbox is watched once the bean is initialized, until it is destroyed.</p>
+ */
+@Component
+@ConditionalOnProperty(name = "service.nacha.inbox.enabled", havingValue = "true")
+@Slf4j
+public class NachaInboxWatcher {
+
+    static final String PROCESSING = "processing";
+    static final String PROCESSED = "processed";
+    static final String FAILED = "failed";
+
+    private final Path inbox;
+    private final Path processing;
+    private final Path processed;
+    private final Path failed;
+    private final NachaReturnFileProcessor nachaReturnFileProcessor;
+    private final WatchService watchService;
+    private final Thread watcher;
+
+    @Autowired
+    public NachaInboxWatcher(NachaInboxProperties nachaInboxProperties,
+                             NachaReturnFileProcessor nachaReturnFileProcessor) {
+        this(Paths.get(nachaInboxProperties.getDirectory()), nachaReturnFileProcessor);
+    }
+
+    NachaInboxWatcher(Path inbox, NachaReturnFileProcessor nachaReturnFileProcessor) {
+        this.inbox = inbox;
+        this.processing = inbox.resolve(PROCESSING);
+        this.processed = inbox.resolve(PROCESSED);
+        this.failed = inbox.resolve(FAILED);
+        this.nachaReturnFileProcessor = nachaReturnFileProcessor;
+        try {
+            Files.createDirectories(processing);
+            Files.createDirectories(processed);
+            Files.createDirectories(failed);
+            this.watchService = inbox.getFileSystem().newWatchService();
+            // registered before the initial scan, so no file landing in between is missed
+            inbox.register(watchService, ENTRY_CREATE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to watch nacha inbox " + inbox, e);
+        }
+        this.watcher = new CustomizableThreadFactory("nacha-inbox-").newThread(this::watch);
+        watcher.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        watcher.start();
+        log.info("Watching nacha inbox {}", inbox);
+    }
+
+    private void watch() {
+        processLeftovers();
+        scanInbox();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        scanInbox();
+                    } else {
+                        pickUp(inbox.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    log.error("Nacha inbox {} no longer accessible, stopped watching", inbox);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processLeftovers() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(processing)) {
+            for (Path file : files) {
+                log.warn("Processing response file {} again, left over by an earlier run", file.getFileName());
+                process(file);
+            }
+        } catch (IOException e) {
+            log.error("Unable to list nacha inbox {}", processing, e);
+        }
+    }
+
+    private void scanInbox() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inbox, Files::isRegularFile)) {
+            for (Path file : files) {
+                pickUp(file);
+            }
+        } catch (IOException e) {
+            log.error("Unable to list nacha inbox {}", inbox, e);
+        }
+    }
+
+    private void pickUp(Path file) {
+        String fileName = file.getFileName().toString();
+        if (fileName.startsWith(".") || fileName.endsWith(".part") || fileName.endsWith(".tmp")
+            || !Files.isRegularFile(file)) {
+            return;
+        }
+        Path claimed = processing.resolve(fileName);
+        try {
+            Files.move(file, claimed, ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            // claimed already, the same file reported by several events
+            return;
+        } catch (IOException e) {
+            log.error("Unable to claim response file {}", file, e);
+            return;
+        }
+        process(claimed);
+    }
+
+    private void process(Path file) {
+        Path target;
+        try {
+            nachaReturnFileProcessor.process(file);
+            target = processed;
+        } catch (IOException | RuntimeException e) {
+            log.error("Processing response file {} failed", file.getFileName(), e);
+            target = failed;
+        }
+        try {
+            Files.move(file, target.resolve(file.getFileName()), ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Unable to move response file {} into {}", file, target, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watcher.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Unable to close the watch service of nacha inbox {}", inbox, e);
+        }
+    }
+}
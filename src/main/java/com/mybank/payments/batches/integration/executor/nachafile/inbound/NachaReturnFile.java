@@ -0,0 +1,27 @@
+package com.mybank.payments.batches.integration.executor.nachafile.inbound;
+
+import com.backbase.batches.nacha.model.result.BankResult.BankPaymentItemResult;
+import java.time.LocalDate;
+import java.util.Map;
+import lombok.Value;
+
+/**
+ * Entries the bank returned, or reported a change for, in a return file, by the company of their original nacha file.
+ * The header of the return file identifies the return file itself, not the original file.
+ */
+@Value
+public class NachaReturnFile {
+
+    String fileReferenceCode;
+
+    LocalDate fileCreationDate;
+
+    /**
+     * Returned entries of every company, by their original trace number.
+     */
+    Map<String, Map<String, BankPaymentItemResult>> entriesPerCompany;
+
+    public int getEntryCount() {
+        return entriesPerCompany.values().stream().mapToInt(Map::size).sum();
+    }
+}
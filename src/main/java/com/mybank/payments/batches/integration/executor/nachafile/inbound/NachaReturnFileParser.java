@@ -0,0 +1,147 @@
+package com.mybank.payments.batches.integration.executor.nachafile.inbound;
+
+import com.backbase.batches.nacha.model.result.BankResult.BankPaymentItemResult;
+import com.backbase.batches.nacha.model.result.StatusInfo;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses the return files sent back by the bank for the generated nacha files into a {@link NachaReturnFile}.
+ * <p>The file is read in a single pass over its 94 character records, straight from the memory-mapped file. Only the
+ * fields which end up in the result are turned into strings, so entries which were not returned cost no allocation.
+ * Records may be separated by line breaks or not at all.</p>
+ * <ul>
+ *     <li>The file header and the batch headers belong to the return file, only the company identification of the
+ *     batch headers refers to the original files: the returned entries are collected per company.</li>
+ *     <li>A return addenda (type 99) rejects the entry with its original trace number, with the return reason code,
+ *     a notification of change addenda (type 98) reports the change code without rejecting the entry.</li>
+ * </ul>
+ * <p>A return file neither accepts nor rejects batches, so the batches of the original files are left as they are.</p>
+ */
+public class NachaReturnFileParser {
+
+    static final int RECORD_LENGTH = 94;
+
+    private static final byte FILE_HEADER = '1';
+    private static final byte BATCH_HEADER = '5';
+    private static final byte ADDENDA = '7';
+
+    private static final DateTimeFormatter FILE_CREATION_DATE = DateTimeFormatter.ofPattern("yyMMdd");
+
+    private static final Map<String, String> RETURN_REASONS = Map.ofEntries(
+        Map.entry("R01", "Insufficient Funds"),
+        Map.entry("R02", "Account Closed"),
+        Map.entry("R03", "No Account/Unable to Locate Account"),
+        Map.entry("R04", "Invalid Account Number Structure"),
+        Map.entry("R05", "Unauthorized Debit to Consumer Account"),
+        Map.entry("R06", "Returned per ODFI's Request"),
+        Map.entry("R07", "Authorization Revoked by Customer"),
+        Map.entry("R08", "Payment Stopped"),
+        Map.entry("R09", "Uncollected Funds"),
+        Map.entry("R10", "Customer Advises Originator is Not Known to Receiver"),
+        Map.entry("R16", "Account Frozen"),
+        Map.entry("R20", "Non-Transaction Account"),
+        Map.entry("R29", "Corporate Customer Advises Not Authorized"));
+
+    public NachaReturnFile parse(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return parse(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @param records content of the file, from its position to its limit
+     */
+    public NachaReturnFile parse(ByteBuffer records) {
+        String fileReferenceCode = null;
+        LocalDate fileCreationDate = null;
+        Map<String, Map<String, BankPaymentItemResult>> entriesPerCompany = new LinkedHashMap<>();
+        Map<String, BankPaymentItemResult> companyEntries = null;
+        int position = records.position();
+        int limit = records.limit();
+        while (position < limit) {
+            byte recordType = records.get(position);
+            if (recordType == '\n' || recordType == '\r') {
+                position++;
+                continue;
+            }
+            if (position + RECORD_LENGTH > limit) {
+                throw new IllegalArgumentException("Truncated nacha record at position " + position);
+            }
+            if (recordType == FILE_HEADER) {
+                fileReferenceCode = field(records, position, 87, 94);
+                fileCreationDate = fileCreationDate(field(records, position, 24, 29));
+            } else if (recordType == BATCH_HEADER) {
+                companyEntries = entriesPerCompany.computeIfAbsent(field(records, position, 41, 50),
+                    companyId -> new LinkedHashMap<>());
+            } else if (recordType == ADDENDA && companyEntries != null) {
+                addEntry(records, position, companyEntries);
+            }
+            position += RECORD_LENGTH;
+        }
+        if (fileReferenceCode == null) {
+            throw new IllegalArgumentException("Nacha file header not found");
+        }
+        if (entriesPerCompany.isEmpty()) {
+            throw new IllegalArgumentException("Nacha batch header not found in file " + fileReferenceCode);
+        }
+        return new NachaReturnFile(fileReferenceCode, fileCreationDate, entriesPerCompany);
+    }
+
+    private static LocalDate fileCreationDate(String value) {
+        try {
+            return LocalDate.parse(value, FILE_CREATION_DATE);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid nacha file creation date " + value, e);
+        }
+    }
+
+    private static void addEntry(ByteBuffer records, int position, Map<String, BankPaymentItemResult> entries) {
+        byte typeCode = records.get(position + 2);
+        if (records.get(position + 1) != '9' || (typeCode != '9' && typeCode != '8')) {
+            return;
+        }
+        boolean returned = typeCode == '9';
+        String reasonCode = field(records, position, 4, 6);
+        String originalTraceNumber = field(records, position, 7, 21);
+        StatusInfo statusInfo = returned
+            ? new StatusInfo(true, "Returned", reasonCode, RETURN_REASONS.getOrDefault(reasonCode, "Returned"),
+                field(records, position, 36, 79))
+            : new StatusInfo(false, "NotificationOfChange", reasonCode, "Notification of Change",
+                field(records, position, 36, 79));
+        entries.put(originalTraceNumber, BankPaymentItemResult.builder()
+            .traceNumber(originalTraceNumber)
+            .statusInfo(statusInfo)
+            .build());
+    }
+
+    /**
+     * @param from first position of the field in the record, starting at 1 like the NACHA record layouts
+     * @param to   last position of the field in the record
+     */
+    private static String field(ByteBuffer records, int position, int from, int to) {
+        int start = position + from - 1;
+        int end = position + to;
+        while (start < end && records.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && records.get(end - 1) == ' ') {
+            end--;
+        }
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = records.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
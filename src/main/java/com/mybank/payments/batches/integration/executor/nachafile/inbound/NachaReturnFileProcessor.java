@@ -0,0 +1,63 @@
+package com.mybank.payments.batches.integration.executor.nachafile.inbound;
+
+import com.backbase.batches.nacha.model.result.BankResult.BankPaymentItemResult;
+import com.mybank.payments.batches.integration.executor.nachafile.NachaFileKey;
+import com.mybank.payments.batches.integration.executor.nachafile.ProcessedNachaFilesResultsExecutor;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the return files received from the bank through the ProcessedNachaFilesResultsExecutor, one file at a time,
+ * without draining the results queued for its scheduled runs. The returned entries of every company are correlated
+ * with the generated files by their original trace number.
+ */
+@Component
+@Slf4j
+public class NachaReturnFileProcessor {
+
+    private final ProcessedNachaFilesResultsExecutor processedNachaFilesResultsExecutor;
+    private final NachaReturnFileParser parser = new NachaReturnFileParser();
+
+    public NachaReturnFileProcessor(ProcessedNachaFilesResultsExecutor processedNachaFilesResultsExecutor) {
+        this.processedNachaFilesResultsExecutor = processedNachaFilesResultsExecutor;
+    }
+
+    /**
+     * Parses the file and applies its returned entries.
+     *
+     * @return {@link NachaFileKey} of the original nacha files the returned entries belong to
+     * @throws RuntimeException when returned entries of a company failed to be applied, after the entries of the
+     *                          other companies are applied
+     */
+    public List<String> process(Path file) throws IOException {
+        long startedAt = System.nanoTime();
+        NachaReturnFile returnFile = parser.parse(file);
+        List<String> fileKeys = new ArrayList<>();
+        RuntimeException failure = null;
+        for (Map.Entry<String, Map<String, BankPaymentItemResult>> companyEntries
+            : returnFile.getEntriesPerCompany().entrySet()) {
+            try {
+                fileKeys.addAll(processedNachaFilesResultsExecutor.applyReturnedEntries(companyEntries.getKey(),
+                    companyEntries.getValue()));
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        log.info("Applied {} returned entries of return file {} from {} to nacha files {} in {} ms",
+            returnFile.getEntryCount(), returnFile.getFileReferenceCode(), file, fileKeys,
+            (System.nanoTime() - startedAt) / 1_000_000);
+        return fileKeys;
+    }
+}
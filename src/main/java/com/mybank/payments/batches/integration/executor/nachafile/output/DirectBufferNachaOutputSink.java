@@ -0,0 +1,126 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+import com.backbase.batches.nacha.model.FileRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps every nacha file in memory, in a chain of fixed size direct buffer chunks taken from a pool, so small files
+ * never touch the disk nor allocate once the pool is warm.
+ * <p>Chunks return to the pool when the output is {@link NachaOutput#release() released}. The pool keeps at most
+ * {@code maxPooledChunks} idle chunks, chunks needed beyond that are allocated and left to the garbage collector.</p>
+ */
+public class DirectBufferNachaOutputSink implements NachaOutputSink {
+
+    private final int chunkSize;
+    private final int maxPooledChunks;
+    private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledChunks = new AtomicInteger();
+    private final NachaOutputMeters meters;
+
+    public DirectBufferNachaOutputSink(int chunkSize, int maxPooledChunks, MeterRegistry meterRegistry) {
+        this.chunkSize = chunkSize;
+        this.maxPooledChunks = maxPooledChunks;
+        this.meters = new NachaOutputMeters(meterRegistry, NachaOutputSinkType.DIRECT_BUFFER);
+    }
+
+    @Override
+    public NachaOutput open(FileRequest fileRequest) {
+        return new DirectBufferNachaOutput(acquire());
+    }
+
+    @Override
+    public NachaOutputSinkType getType() {
+        return NachaOutputSinkType.DIRECT_BUFFER;
+    }
+
+    int getPooledChunks() {
+        return pooledChunks.get();
+    }
+
+    private ByteBuffer acquire() {
+        ByteBuffer chunk = pool.poll();
+        if (chunk == null) {
+            return ByteBuffer.allocateDirect(chunkSize);
+        }
+        pooledChunks.decrementAndGet();
+        return chunk;
+    }
+
+    private void release(ByteBuffer chunk) {
+        if (pooledChunks.incrementAndGet() <= maxPooledChunks) {
+            chunk.clear();
+            pool.offer(chunk);
+        } else {
+            pooledChunks.decrementAndGet();
+        }
+    }
+
+    public class DirectBufferNachaOutput extends NachaOutput {
+
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private ByteBuffer current;
+
+        private DirectBufferNachaOutput(ByteBuffer chunk) {
+            super(chunk, meters);
+            this.current = chunk;
+        }
+
+        /**
+         * @return read-only views of the chunks holding the nacha file, valid until the output is released
+         */
+        public List<ByteBuffer> getContent() {
+            return Collections.unmodifiableList(chunks.stream()
+                .map(ByteBuffer::asReadOnlyBuffer)
+                .collect(Collectors.toList()));
+        }
+
+        public void writeTo(WritableByteChannel channel) throws IOException {
+            for (ByteBuffer chunk : getContent()) {
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            // nothing to flush in memory
+        }
+
+        @Override
+        protected ByteBuffer drain(ByteBuffer buffer) {
+            buffer.flip();
+            chunks.add(buffer);
+            current = acquire();
+            return current;
+        }
+
+        @Override
+        protected void complete() {
+            DirectBufferNachaOutputSink.this.release(current);
+            current = null;
+        }
+
+        @Override
+        protected void abort() {
+            complete();
+            release();
+        }
+
+        @Override
+        public void release() {
+            chunks.forEach(DirectBufferNachaOutputSink.this::release);
+            chunks.clear();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+import com.backbase.batches.nacha.exception.UnableToCreateFileWriter;
+import com.backbase.batches.nacha.exception.UnableToCreateTempFile;
+import com.backbase.batches.nacha.model.FileRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes every nacha file into a temp file through a {@link FileChannel}, from a large direct buffer so that a file of
+ * a few megabytes only takes a handful of system calls. The temp file is deleted when the output is aborted, or
+ * {@link NachaOutput#release() released} once the nacha file is delivered.
+ */
+@Slf4j
+public class FileChannelNachaOutputSink implements NachaOutputSink {
+
+    private final Path directory;
+    private final int bufferSize;
+    private final NachaOutputMeters meters;
+
+    /**
+     * @param directory  directory of the temp files, the default temp directory when null
+     * @param bufferSize size of the direct buffer of every open file
+     */
+    public FileChannelNachaOutputSink(Path directory, int bufferSize, MeterRegistry meterRegistry) {
+        this.directory = directory;
+        this.bufferSize = bufferSize;
+        this.meters = new NachaOutputMeters(meterRegistry, NachaOutputSinkType.FILE_CHANNEL);
+    }
+
+    @Override
+    public NachaOutput open(FileRequest fileRequest) {
+        Path file = createTempFile(fileRequest);
+        try {
+            return new FileChannelNachaOutput(file,
+                FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        } catch (IOException e) {
+            throw new UnableToCreateFileWriter(e);
+        }
+    }
+
+    @Override
+    public NachaOutputSinkType getType() {
+        return NachaOutputSinkType.FILE_CHANNEL;
+    }
+
+    private Path createTempFile(FileRequest fileRequest) {
+        String prefix = String.format("%s_%s_", fileRequest.getFileReferenceCode(), fileRequest.getFileDailyId());
+        try {
+            if (directory == null) {
+                return Files.createTempFile(prefix, ".ach");
+            }
+            Files.createDirectories(directory);
+            return Files.createTempFile(directory, prefix, ".ach");
+        } catch (IOException e) {
+            throw new UnableToCreateTempFile(e);
+        }
+    }
+
+    public class FileChannelNachaOutput extends NachaOutput {
+
+        private final Path file;
+        private final FileChannel channel;
+
+        private FileChannelNachaOutput(Path file, FileChannel channel) {
+            super(ByteBuffer.allocateDirect(bufferSize), meters);
+            this.file = file;
+            this.channel = channel;
+        }
+
+        /**
+         * @return the temp file the nacha file is written into, deleted once the output is aborted or released
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        @Override
+        protected ByteBuffer drain(ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+            return buffer;
+        }
+
+        @Override
+        protected void complete() throws IOException {
+            channel.close();
+        }
+
+        @Override
+        protected void abort() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // already failing
+            }
+            deleteFile();
+        }
+
+        @Override
+        public void release() {
+            deleteFile();
+        }
+
+        private void deleteFile() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Unable to delete nacha temp file {}", file, e);
+            }
+        }
+    }
+}
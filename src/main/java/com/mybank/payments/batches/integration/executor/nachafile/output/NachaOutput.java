@@ -0,0 +1,134 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link Writer} a nacha file is generated into, opened by a {@link NachaOutputSink}.
+ * <p>NACHA files are plain ASCII, so characters are encoded straight into a byte buffer (characters outside of ASCII
+ * become {@code ?}) instead of going through the platform charset. Full buffers are handed to the sink specific
+ * {@link #drain(ByteBuffer)}, and closing the writer completes the output and reports the bytes written and the
+ * throughput to the sink metrics.</p>
+ * <p>Not thread safe, like the nacha writer generating the file.</p>
+ */
+public abstract class NachaOutput extends Writer {
+
+    private final NachaOutputMeters meters;
+    private final long openedAt = System.nanoTime();
+    private ByteBuffer buffer;
+    private long bytesWritten;
+    private boolean closed;
+
+    protected NachaOutput(ByteBuffer buffer, NachaOutputMeters meters) {
+        this.buffer = buffer;
+        this.meters = meters;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        for (int i = off; i < off + len; i++) {
+            put(cbuf[i]);
+        }
+        bytesWritten += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        for (int i = off; i < off + len; i++) {
+            put(str.charAt(i));
+        }
+        bytesWritten += len;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+        put((char) c);
+        bytesWritten++;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (buffer.position() > 0) {
+            buffer = drain(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            try {
+                if (buffer.position() > 0) {
+                    buffer = drain(buffer);
+                }
+            } catch (IOException | RuntimeException e) {
+                abort();
+                throw e;
+            }
+            complete();
+        } finally {
+            meters.record(bytesWritten, System.nanoTime() - openedAt);
+        }
+    }
+
+    /**
+     * Discards the output when the nacha file failed to be generated, calling {@link #abort()} instead of completing
+     * it. Does nothing once the writer is closed.
+     */
+    public void discard() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        abort();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Hands over a full (or, on flush and close, partially filled) buffer, in write mode.
+     *
+     * @return the buffer to continue writing into, cleared
+     */
+    protected abstract ByteBuffer drain(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Called once all the bytes are drained, when the writer is closed.
+     */
+    protected abstract void complete() throws IOException;
+
+    /**
+     * Called instead of {@link #complete()} when draining the last bytes failed or the output is discarded, releases
+     * the resources of the output.
+     */
+    protected abstract void abort();
+
+    /**
+     * Releases what the output still holds once the nacha file is delivered, by default nothing.
+     */
+    public void release() {
+    }
+
+    private void put(char c) throws IOException {
+        if (!buffer.hasRemaining()) {
+            buffer = drain(buffer);
+        }
+        buffer.put(c < 0x80 ? (byte) c : (byte) '?');
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Nacha output already closed");
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Bytes written and write throughput of the nacha files of a sink, tagged with the sink type.
+ */
+public class NachaOutputMeters {
+
+    private final Counter bytes;
+    private final DistributionSummary throughput;
+
+    public NachaOutputMeters(MeterRegistry meterRegistry, NachaOutputSinkType sinkType) {
+        this.bytes = Counter.builder("nacha.output.bytes")
+            .description("Bytes of nacha files written")
+            .baseUnit("bytes")
+            .tag("sink", sinkType.name())
+            .register(meterRegistry);
+        this.throughput = DistributionSummary.builder("nacha.output.throughput")
+            .description("Bytes per second a nacha file was written with, from opening to closing its output")
+            .baseUnit("bytes/s")
+            .tag("sink", sinkType.name())
+            .register(meterRegistry);
+    }
+
+    void record(long bytesWritten, long elapsedNanos) {
+        bytes.increment(bytesWritten);
+        throughput.record(bytesWritten * 1_000_000_000d / Math.max(1, elapsedNanos));
+    }
+}
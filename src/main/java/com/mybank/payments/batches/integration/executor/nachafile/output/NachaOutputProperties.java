@@ -0,0 +1,38 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties("service.nacha.output")
+public class NachaOutputProperties {
+
+    private NachaOutputSinkType sink = NachaOutputSinkType.FILE_CHANNEL;
+
+    /**
+     * Size of the buffer a nacha file is written through, for the FILE_CHANNEL and STREAMING_UPLOAD sinks.
+     */
+    private DataSize bufferSize = DataSize.ofMegabytes(1);
+
+    /**
+     * Directory of the nacha files written by the FILE_CHANNEL sink, the default temp directory when not set.
+     */
+    private String directory;
+
+    /**
+     * Size of the off-heap chunks nacha files are written into by the DIRECT_BUFFER sink.
+     */
+    private DataSize chunkSize = DataSize.ofKilobytes(64);
+
+    /**
+     * Number of released chunks the DIRECT_BUFFER sink keeps for reuse.
+     */
+    private int maxPooledChunks = 256;
+
+    /**
+     * Directory the STREAMING_UPLOAD sink delivers nacha files into.
+     */
+    private String outbox = "nacha-outbox";
+
+}
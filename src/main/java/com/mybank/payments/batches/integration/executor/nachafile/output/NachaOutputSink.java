@@ -0,0 +1,17 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+import com.backbase.batches.nacha.model.FileRequest;
+
+/**
+ * Destination of the nacha files generated by the NachaBatchOrderExecutor.
+ */
+public interface NachaOutputSink {
+
+    /**
+     * Opens the output the nacha file of the file request is generated into. Closing the output completes the file.
+     */
+    NachaOutput open(FileRequest fileRequest);
+
+    NachaOutputSinkType getType();
+
+}
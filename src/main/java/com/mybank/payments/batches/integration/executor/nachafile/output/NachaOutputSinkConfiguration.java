@@ -0,0 +1,46 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.file.Paths;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "service.activeExample", havingValue = "NachaFile")
+@EnableConfigurationProperties(NachaOutputProperties.class)
+public class NachaOutputSinkConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public NachaUploadTransport nachaUploadTransport(NachaOutputProperties properties) {
+        return new OutboxDirectoryUploadTransport(Paths.get(properties.getOutbox()));
+    }
+
+    @Bean
+    public NachaOutputSink nachaOutputSink(NachaOutputProperties properties,
+                                           NachaUploadTransport nachaUploadTransport,
+                                           MeterRegistry meterRegistry) {
+        switch (properties.getSink()) {
+            case DIRECT_BUFFER:
+                return new DirectBufferNachaOutputSink(
+                    Math.toIntExact(properties.getChunkSize().toBytes()),
+                    properties.getMaxPooledChunks(),
+                    meterRegistry);
+            case STREAMING_UPLOAD:
+                return new StreamingUploadNachaOutputSink(
+                    nachaUploadTransport,
+                    Math.toIntExact(properties.getBufferSize().toBytes()),
+                    meterRegistry);
+            case FILE_CHANNEL:
+            default:
+                return new FileChannelNachaOutputSink(
+                    properties.getDirectory() == null ? null : Paths.get(properties.getDirectory()),
+                    Math.toIntExact(properties.getBufferSize().toBytes()),
+                    meterRegistry);
+        }
+    }
+
+}
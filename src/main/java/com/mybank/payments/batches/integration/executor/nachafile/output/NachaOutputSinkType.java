@@ -0,0 +1,23 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+/**
+ * Implementations available for writing the generated nacha files.
+ */
+public enum NachaOutputSinkType {
+
+    /**
+     * Temp file written through a large buffer, see {@link FileChannelNachaOutputSink}.
+     */
+    FILE_CHANNEL,
+
+    /**
+     * In-memory chunks of pooled direct buffers, for small files, see {@link DirectBufferNachaOutputSink}.
+     */
+    DIRECT_BUFFER,
+
+    /**
+     * Straight into the upload transport while the file is generated, see {@link StreamingUploadNachaOutputSink}.
+     */
+    STREAMING_UPLOAD
+
+}
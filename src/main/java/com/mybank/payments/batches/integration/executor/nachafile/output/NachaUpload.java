@@ -0,0 +1,28 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Upload of a single nacha file started by a {@link NachaUploadTransport}. Closing the stream completes the upload,
+ * {@link #abort()} discards it instead.
+ */
+public abstract class NachaUpload extends FilterOutputStream {
+
+    protected NachaUpload(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
+    /**
+     * Discards the upload after the nacha file failed to be generated or sent, so the bank never receives the partial
+     * file. The stream must not be closed afterwards.
+     */
+    public abstract void abort() throws IOException;
+
+}
@@ -0,0 +1,17 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+import com.backbase.batches.nacha.model.FileRequest;
+import java.io.IOException;
+
+/**
+ * Transport delivering nacha files to the bank, e.g. an SFTP or HTTP upload.
+ */
+public interface NachaUploadTransport {
+
+    /**
+     * Starts the upload of the nacha file of the file request, closing the stream completes the upload and
+     * {@link NachaUpload#abort()} discards it.
+     */
+    NachaUpload openUpload(FileRequest fileRequest) throws IOException;
+
+}
@@ -0,0 +1,48 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+import com.backbase.batches.nacha.model.FileRequest;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Sample {@link NachaUploadTransport} delivering nacha files into an outbox directory, e.g. one synchronized with the
+ * bank. A file is written with a {@code .part} suffix and renamed when the upload completes, or deleted when it is
+ * aborted, so the other side never picks up a partial file.
+ */
+public class OutboxDirectoryUploadTransport implements NachaUploadTransport {
+
+    private final Path outbox;
+
+    public OutboxDirectoryUploadTransport(Path outbox) {
+        this.outbox = outbox;
+    }
+
+    @Override
+    public NachaUpload openUpload(FileRequest fileRequest) throws IOException {
+        Files.createDirectories(outbox);
+        // the reference codes of different companies are the same
+        String fileName = String.format("%s_%s_%s.ach", fileRequest.getCompanyId(), fileRequest.getFileReferenceCode(),
+            fileRequest.getFileDailyId());
+        Path file = outbox.resolve(fileName);
+        Path partFile = outbox.resolve(fileName + ".part");
+        return new NachaUpload(Files.newOutputStream(partFile)) {
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                Files.move(partFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            @Override
+            public void abort() throws IOException {
+                try {
+                    out.close();
+                } finally {
+                    Files.deleteIfExists(partFile);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+import com.backbase.batches.nacha.exception.UnableToCreateFileWriter;
+import com.backbase.batches.nacha.model.FileRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Streams every nacha file straight into the {@link NachaUploadTransport} while it is generated, so the upload is done
+ * as soon as the file is, without a local copy.
+ */
+public class StreamingUploadNachaOutputSink implements NachaOutputSink {
+
+    private final NachaUploadTransport uploadTransport;
+    private final int bufferSize;
+    private final NachaOutputMeters meters;
+
+    /**
+     * @param bufferSize number of bytes sent to the transport at once
+     */
+    public StreamingUploadNachaOutputSink(NachaUploadTransport uploadTransport, int bufferSize,
+                                          MeterRegistry meterRegistry) {
+        this.uploadTransport = uploadTransport;
+        this.bufferSize = bufferSize;
+        this.meters = new NachaOutputMeters(meterRegistry, NachaOutputSinkType.STREAMING_UPLOAD);
+    }
+
+    @Override
+    public NachaOutput open(FileRequest fileRequest) {
+        try {
+            return new StreamingUploadNachaOutput(uploadTransport.openUpload(fileRequest));
+        } catch (IOException e) {
+            throw new UnableToCreateFileWriter(e);
+        }
+    }
+
+    @Override
+    public NachaOutputSinkType getType() {
+        return NachaOutputSinkType.STREAMING_UPLOAD;
+    }
+
+    private class StreamingUploadNachaOutput extends NachaOutput {
+
+        private final NachaUpload upload;
+
+        private StreamingUploadNachaOutput(NachaUpload upload) {
+            super(ByteBuffer.allocate(bufferSize), meters);
+            this.upload = upload;
+        }
+
+        @Override
+        protected ByteBuffer drain(ByteBuffer buffer) throws IOException {
+            upload.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+            buffer.clear();
+            return buffer;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            super.flush();
+            upload.flush();
+        }
+
+        @Override
+        protected void complete() throws IOException {
+            upload.close();
+        }
+
+        @Override
+        protected void abort() {
+            try {
+                upload.abort();
+            } catch (IOException e) {
+                // already failing
+            }
+        }
+    }
+}
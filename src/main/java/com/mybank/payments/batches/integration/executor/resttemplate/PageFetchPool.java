@@ -0,0 +1,36 @@
+package com.mybank.payments.batches.integration.executor.resttemplate;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.PreDestroy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded pool the batch payment pages prefetched by the RestTemplate example are downloaded on.
+ * <p>Shared by all the batch orders downloaded in parallel, e.g. on the lanes of the striped worker pool, so at most
+ * {@code service.restTemplate.pageFetchConcurrency} prefetches are in flight for the whole service.</p>
+ * <p>Not an {@link Executor} bean itself, as that would replace the task executor configured by Spring Boot.</p>
+ */
+@Component
+public class PageFetchPool {
+
+    private final ExecutorService executorService;
+
+    public PageFetchPool(RestTemplateExecutorProperties restTemplateExecutorProperties) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("batch-page-fetch-");
+        threadFactory.setDaemon(true);
+        this.executorService = Executors.newFixedThreadPool(
+            Math.max(1, restTemplateExecutorProperties.getPageFetchConcurrency()), threadFactory);
+    }
+
+    public Executor getExecutor() {
+        return executorService;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdown();
+    }
+}
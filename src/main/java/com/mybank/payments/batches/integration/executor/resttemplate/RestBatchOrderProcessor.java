@@ -0,0 +1,365 @@
+package com.mybank.payments.batches.integration.executor.resttemplate;
+
+import com.mybank.payments.batches.integration.BatchOrderFailedEvent;
+import com.mybank.payments.batches.integration.ExampleMode;
+import com.mybank.payments.batches.integration.executor.AdaptivePageSizer;
+import com.mybank.payments.batches.integration.executor.BatchLifecycleMeters;
+import com.mybank.payments.batches.integration.executor.BatchLifecycleMeters.Stage;
+import com.mybank.payments.batches.integration.executor.StreamedBatchPayments;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+import com.backbase.payments.batches.integration.inbound.model.BatchPaymentStatus;
+import com.backbase.payments.batches.integration.inbound.model.BatchStatus;
+import com.backbase.payments.batches.integration.inbound.model.GetBatchOrderResponse;
+import com.backbase.payments.batches.integration.inbound.model.GetBatchPaymentsResponse;
+import com.backbase.payments.batches.integration.inbound.model.IntegrationBatchPayment;
+import com.backbase.payments.batches.integration.inbound.model.IntegrationMultipleUpdatableBatchPayment;
+import com.backbase.payments.batches.integration.inbound.model.OriginatorAccountIdentification;
+import com.backbase.payments.batches.integration.inbound.model.PutBatchOrderRequest;
+import com.backbase.payments.batches.integration.inbound.model.PutBatchPaymentsRequest;
+import com.backbase.payments.batches.integration.inbound.resttemplate.api.BatchOrdersApi;
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * Processes a single batch order with the Spring RestTemplate API client: retrieves the batch information and
+ * payments, then marks the batch done.
+ * <p>Not a bean, the batch order executors using the RestTemplate API client each compose their own, overriding the
+ * outbound call hooks where they need to.</p>
+ */
+@Slf4j
+public class RestBatchOrderProcessor {
+
+    private final BatchOrdersApi batchOrdersApi;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final int pageFetchConcurrency;
+
+    private final boolean streaming;
+
+    private final Executor pageFetchExecutor;
+
+    private final AdaptivePageSizer pageSizer;
+
+    private final BatchLifecycleMeters meters;
+
+    /**
+     * @param batchOrdersApi
+     * @param eventPublisher    publishes a {@link BatchOrderFailedEvent} when processing a batch order failed
+     * @param restTemplateExecutorProperties
+     * @param meterRegistry
+     * @param mode              the example mode the meters are tagged with
+     * @param pageFetchExecutor executor the prefetched batch payment pages are downloaded on
+     */
+    public RestBatchOrderProcessor(BatchOrdersApi batchOrdersApi, ApplicationEventPublisher eventPublisher,
+        RestTemplateExecutorProperties restTemplateExecutorProperties, MeterRegistry meterRegistry, ExampleMode mode,
+        Executor pageFetchExecutor) {
+        this.batchOrdersApi = batchOrdersApi;
+        this.eventPublisher = eventPublisher;
+        this.pageFetchConcurrency = Math.max(1, restTemplateExecutorProperties.getPageFetchConcurrency());
+        this.streaming = restTemplateExecutorProperties.isStreaming();
+        this.pageFetchExecutor = pageFetchExecutor;
+        this.pageSizer = new AdaptivePageSizer(restTemplateExecutorProperties.getPaging(), meterRegistry,
+            mode.getPropertyValue());
+        this.meters = new BatchLifecycleMeters(meterRegistry, mode.getPropertyValue());
+    }
+
+    /**
+     * Retrieves the batch information and payments of a single batch order, then marks the batch done. The outcome of
+     * the batch order is counted in the {@link BatchLifecycleMeters}, and a failed batch order is published as a
+     * {@link BatchOrderFailedEvent}.
+     * @param batchItem
+     */
+    public void processBatchOrder(PostBatchOrderRequest batchItem) {
+        try {
+            doProcessBatchOrder(batchItem);
+        } catch (RuntimeException e) {
+            meters.batchOrderCompleted(BatchLifecycleMeters.ERROR, 0, 0);
+            eventPublisher.publishEvent(new BatchOrderFailedEvent(batchItem.getId()));
+            throw e;
+        }
+    }
+
+    private void doProcessBatchOrder(PostBatchOrderRequest batchItem) {
+        log.info("Batch scheduler process item {}", batchItem.getId());
+        GetBatchOrderResponse getBatchOrderResponse = call(() -> meters.time(Stage.GET_BATCH_ORDER,
+            () -> batchOrdersApi.getBatchOrder(batchItem.getId())));
+        BatchStatus batchStatus = getBatchOrderResponse.getStatus();
+        int totalTransactionsCount = getBatchOrderResponse.getTotalTransactionsCount().intValue();
+
+        // Update batch status to DOWNLOADING
+        batchStatus = setBatchStatus(batchItem.getId(), batchStatus, BatchStatus.DOWNLOADING, null);
+        if (streaming) {
+            processBatchPaymentsStreaming(getBatchOrderResponse, batchStatus);
+            return;
+        }
+        // Get all payments from the batch
+        List<IntegrationBatchPayment> paymentItems = new ArrayList<>();
+        long totalBatchPayments = fetchBatchPayments(batchItem.getId(), paymentItems::addAll);
+
+        List<IntegrationBatchPayment> hiddenPayments = paymentItems.stream()
+            .filter(IntegrationBatchPayment::getHidden)
+            .collect(Collectors.toList());
+
+        List<IntegrationBatchPayment> actualPayments =
+            paymentItems.stream()
+                .filter(Predicate.not(IntegrationBatchPayment::getHidden))
+                .collect(Collectors.toList());
+
+        if (paymentItems.size() != totalBatchPayments || actualPayments.size() != totalTransactionsCount) {
+            // Update batch status to REJECTED
+            batchStatus = setBatchStatus(batchItem.getId(), batchStatus, BatchStatus.REJECTED,
+                    "Payment item count mismatch");
+            meters.batchOrderCompleted(BatchLifecycleMeters.REJECTED, 0, 0);
+        } else {
+            // Update batch status to ACCEPTED
+            batchStatus = setBatchStatus(batchItem.getId(), batchStatus, BatchStatus.ACCEPTED, null);
+
+            // Handle information delivered in hidden payments here
+            processHiddenBatchPayments(hiddenPayments);
+
+            // "Process" payments
+            List<IntegrationBatchPayment> failedPaymentItems = meters.time(Stage.PROCESSING,
+                    () -> processBatchPayments(batchItem.getId(), getBatchOrderResponse.getAccount(), actualPayments));
+            // Handle failed payment items (set the individual paymentItem status to rejected
+            // Note: the batchOrdersApi.putBatchPayments has limit 1000 on paymentItems, e.g the failedPaymentItems must be partitioned by 1000
+            List<String> failedPaymentItemIds = failedPaymentItems.stream()
+                    .map(it -> it.getId()).collect(Collectors.toList());
+            rejectPaymentItems(batchItem.getId(), Lists.partition(failedPaymentItemIds, 1000));
+            // Update batch status to PROCESSED
+            batchStatus = setBatchStatus(batchItem.getId(), batchStatus, BatchStatus.PROCESSED, null);
+            meters.batchOrderCompleted(BatchLifecycleMeters.PROCESSED,
+                    actualPayments.size() - failedPaymentItemIds.size(), failedPaymentItemIds.size());
+        }
+    }
+
+    /**
+     * Processes the payments of a batch order page by page while they are downloaded, keeping only the failed payment
+     * item IDs. As the payment count can only be checked once all pages are received, the processed payments are
+     * compensated when the count turns out wrong.
+     * @param batchOrder
+     * @param batchStatus the current status of the batch order
+     */
+    private void processBatchPaymentsStreaming(GetBatchOrderResponse batchOrder, BatchStatus batchStatus) {
+        log.info("Processing batch with batchId: {} while downloading", batchOrder.getId());
+        StreamedBatchPayments streamedBatchPayments =
+                new StreamedBatchPayments(paymentItem -> processPaymentItem(batchOrder.getAccount(), paymentItem));
+        long totalBatchPayments = fetchBatchPayments(batchOrder.getId(), page -> meters.time(Stage.PROCESSING, () -> {
+            streamedBatchPayments.acceptPage(page);
+            return null;
+        }));
+        log.info("Processed batch with batchId: {} size: {}", batchOrder.getId(),
+                streamedBatchPayments.getVisiblePayments());
+
+        if (streamedBatchPayments.getReceivedPayments() != totalBatchPayments
+                || streamedBatchPayments.getVisiblePayments() != batchOrder.getTotalTransactionsCount().longValue()) {
+            compensateBatchPayments(batchOrder.getId(), batchOrder.getAccount(), streamedBatchPayments);
+            // Update batch status to REJECTED
+            batchStatus = setBatchStatus(batchOrder.getId(), batchStatus, BatchStatus.REJECTED,
+                    "Payment item count mismatch");
+            meters.batchOrderCompleted(BatchLifecycleMeters.REJECTED, 0, 0);
+        } else {
+            // Update batch status to ACCEPTED
+            batchStatus = setBatchStatus(batchOrder.getId(), batchStatus, BatchStatus.ACCEPTED, null);
+
+            // Handle information delivered in hidden payments here
+            processHiddenBatchPayments(streamedBatchPayments.getHiddenPayments());
+
+            // Handle failed payment items (set the individual paymentItem status to rejected
+            rejectPaymentItems(batchOrder.getId(),
+                    Lists.partition(streamedBatchPayments.getFailedPaymentItemIds(), 1000));
+            // Update batch status to PROCESSED
+            batchStatus = setBatchStatus(batchOrder.getId(), batchStatus, BatchStatus.PROCESSED, null);
+            int failedPayments = streamedBatchPayments.getFailedPaymentItemIds().size();
+            meters.batchOrderCompleted(BatchLifecycleMeters.PROCESSED,
+                    streamedBatchPayments.getVisiblePayments() - failedPayments, failedPayments);
+        }
+    }
+
+    /** Dummy method reverting the payments processed while a batch order was downloaded, called when the batch order
+     * is rejected afterwards
+     * @param batchOrderId
+     * @param account
+     * @param streamedBatchPayments
+     */
+    private void compensateBatchPayments(String batchOrderId, OriginatorAccountIdentification account,
+            StreamedBatchPayments streamedBatchPayments) {
+        // Revert everything booked for the batch order here, e.g. by batch order ID as the processed payment IDs are not kept
+        log.warn("Payment item count mismatch, reverting {} processed payments with batchId: {}",
+                streamedBatchPayments.getVisiblePayments() - streamedBatchPayments.getFailedPaymentItemIds().size(),
+                batchOrderId);
+    }
+
+    /**
+     * Downloads the payments of a batch order page by page and hands the pages to the consumer in page order.
+     * <p>The first page tells the total number of batch payments, the remaining pages are then downloaded with at most
+     * {@code service.restTemplate.pageFetchConcurrency} requests in flight. Pages are still requested until all the
+     * batch payments are received or an empty page is returned, in case the total changed meanwhile. A short page does
+     * not stop the download, as the server may cap the page size below the requested one. Once all the batch payments
+     * are received or an empty page is returned the prefetches still in flight are cancelled and their pages dropped.</p>
+     * <p>All the pages of a batch order are downloaded with the page size chosen by the {@link AdaptivePageSizer} when
+     * the download starts.</p>
+     * @param batchOrderId
+     * @param pageConsumer
+     * @return the total number of batch payments reported by the last page
+     */
+    long fetchBatchPayments(String batchOrderId, Consumer<List<IntegrationBatchPayment>> pageConsumer) {
+        int pageSize = pageSizer.getPageSize();
+        GetBatchPaymentsResponse batchPaymentsResponse = fetchBatchPaymentsPage(batchOrderId, 0, pageSize);
+        long totalBatchPayments = batchPaymentsResponse.getTotalBatchPayments();
+        long received = batchPaymentsResponse.getBatchPayments().size();
+        pageConsumer.accept(batchPaymentsResponse.getBatchPayments());
+        int pageNumber = 1;
+
+        int pageCount = (int) Math.min(Integer.MAX_VALUE,
+            (totalBatchPayments + pageSize - 1) / pageSize);
+        if (pageFetchConcurrency > 1 && pageCount > 2) {
+            // sliding window of prefetched pages, joined in page order
+            Deque<CompletableFuture<GetBatchPaymentsResponse>> window = new ArrayDeque<>(pageFetchConcurrency);
+            try {
+                while ((received < totalBatchPayments) && (batchPaymentsResponse.getBatchPayments().size() > 0)
+                    && (!window.isEmpty() || pageNumber < pageCount)) {
+                    while (window.size() < pageFetchConcurrency && pageNumber < pageCount) {
+                        int page = pageNumber++;
+                        window.add(CompletableFuture.supplyAsync(
+                            () -> fetchBatchPaymentsPage(batchOrderId, page, pageSize), pageFetchExecutor));
+                    }
+                    batchPaymentsResponse = window.poll().join();
+                    totalBatchPayments = batchPaymentsResponse.getTotalBatchPayments();
+                    received += batchPaymentsResponse.getBatchPayments().size();
+                    pageConsumer.accept(batchPaymentsResponse.getBatchPayments());
+                }
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            } finally {
+                window.forEach(page -> page.cancel(true));
+            }
+        }
+        while ((received < totalBatchPayments) && (batchPaymentsResponse.getBatchPayments().size() > 0)) {
+            batchPaymentsResponse = fetchBatchPaymentsPage(batchOrderId, pageNumber++, pageSize);
+            totalBatchPayments = batchPaymentsResponse.getTotalBatchPayments();
+            received += batchPaymentsResponse.getBatchPayments().size();
+            pageConsumer.accept(batchPaymentsResponse.getBatchPayments());
+        }
+        return totalBatchPayments;
+    }
+
+    private GetBatchPaymentsResponse fetchBatchPaymentsPage(String batchOrderId, int pageNumber, int pageSize) {
+        return call(() -> {
+            long start = System.nanoTime();
+            GetBatchPaymentsResponse batchPaymentsResponse;
+            try {
+                batchPaymentsResponse = batchOrdersApi.getBatchPayments(batchOrderId, pageNumber, pageSize);
+            } catch (RuntimeException e) {
+                meters.record(Stage.GET_BATCH_PAYMENTS, System.nanoTime() - start, false);
+                throw e;
+            }
+            long latency = System.nanoTime() - start;
+            meters.record(Stage.GET_BATCH_PAYMENTS, latency, true);
+            pageSizer.record(pageSize, latency, batchPaymentsResponse.getBatchPayments().size());
+            return batchPaymentsResponse;
+        });
+    }
+
+    /**
+     * Sends a request to the payment-order-service, extension point to wrap all the outbound calls
+     * @param request
+     * @return the response of the request
+     */
+    protected <T> T call(Supplier<T> request) {
+        return request.get();
+    }
+
+    /** Set the individual paymentItem status to rejected, one request per partition
+     * @param batchOrderId
+     * @param partitionedFailedPaymentItemIds failed payment item IDs partitioned by the putBatchPayments limit
+     */
+    protected void rejectPaymentItems(String batchOrderId, List<List<String>> partitionedFailedPaymentItemIds) {
+        partitionedFailedPaymentItemIds.forEach(partition -> rejectPaymentItemsPartition(batchOrderId, partition));
+    }
+
+    protected void rejectPaymentItemsPartition(String batchOrderId, List<String> partition) {
+        call(() -> meters.time(Stage.PUT_BATCH_PAYMENTS, () -> batchOrdersApi.putBatchPayments(
+                batchOrderId,
+                BatchStatus.ACCEPTED.getValue(),
+                new PutBatchPaymentsRequest().batchPayments(
+                        Collections.singletonList(
+                                new IntegrationMultipleUpdatableBatchPayment()
+                                        .ids(partition)
+                                        .status(BatchPaymentStatus.REJECTED))))));
+    }
+
+    /** Set the batchOrder status based if the expectedStatus match
+     * @param batchOrderId
+     * @param expectedStatus
+     * @param status
+     * @param reasonText
+     * @return the updated status (same as the status incoming parameter)
+     */
+    private BatchStatus setBatchStatus(String batchOrderId, BatchStatus expectedStatus, BatchStatus status,
+            String reasonText) {
+        return call(() -> meters.timeTransition(status.getValue(), () -> batchOrdersApi.putBatchOrder(
+                batchOrderId,
+                expectedStatus.getValue(),
+                new PutBatchOrderRequest().status(status).reasonText(reasonText))))
+                .getStatus();
+    }
+
+    /**
+     * Dummy hidden payments processor
+     */
+    private void processHiddenBatchPayments(List<IntegrationBatchPayment> paymentItems) {
+        log.info("Processing hidden batch with size: {}", paymentItems.size());
+    }
+
+    /** Dummy method for processing payments
+     * @param batchOrderId
+     * @param account
+     * @param paymentItems
+     * @return the list of items failed to process
+     */
+    private List<IntegrationBatchPayment> processBatchPayments(String batchOrderId,
+            OriginatorAccountIdentification account, List<IntegrationBatchPayment> paymentItems) {
+        List<IntegrationBatchPayment> invalidItems = new ArrayList<>();
+        log.info("Processing batch with batchId: {} size: {}", batchOrderId, paymentItems.size());
+        paymentItems.forEach(paymentItem -> {
+            if (processPaymentItem(account, paymentItem)) {
+                log.info("Payment processed with batchId: {} paymentId: {}", batchOrderId, paymentItem.getId());
+            } else {
+                invalidItems.add(paymentItem);
+                log.info("Unable to process payment with batchId: {} paymentId: {}", batchOrderId, paymentItem.getId());
+            }
+        });
+        log.info("Processed batch with batchId: {} size: {}", batchOrderId, paymentItems.size());
+        return invalidItems;
+    }
+
+    /** Dummy payment item processor
+     * @param account
+     * @param paymentItem
+     * @return false if the payment item not processable
+     */
+    private boolean processPaymentItem(OriginatorAccountIdentification account, IntegrationBatchPayment paymentItem) {
+        // This method always "success" (returns true) on processing payment items, you should return false if the item is not processable
+        // Note: you may implement retry instead of return false if temporary error occurred
+        return true;
+    }
+}
@@ -0,0 +1,25 @@
+package com.mybank.payments.batches.integration.executor.resttemplate;
+
+import com.mybank.payments.batches.integration.executor.AdaptivePageSizer;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("service.rest-template")
+public class RestTemplateExecutorProperties {
+
+    /**
+     * Maximum number of batch payment pages downloaded in parallel once the first page told the total number of batch
+     * payments. 1 downloads the pages one after the other.
+     */
+    private int pageFetchConcurrency = 4;
+
+    /**
+     * Whether the payments of a batch order are processed page by page while they are downloaded, instead of after the
+     * whole batch order is downloaded and its payment count checked.
+     */
+    private boolean streaming = false;
+
+    private AdaptivePageSizer.Settings paging = new AdaptivePageSizer.Settings();
+
+}
@@ -0,0 +1,171 @@
+package com.mybank.payments.batches.integration.executor.virtualthread;
+
+import com.backbase.payments.batches.integration.inbound.resttemplate.api.BatchOrdersApi;
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.mybank.payments.batches.integration.ExampleMode;
+import com.mybank.payments.batches.integration.executor.BatchOrderExecutor;
+import com.mybank.payments.batches.integration.executor.resttemplate.RestBatchOrderProcessor;
+import com.mybank.payments.batches.integration.executor.resttemplate.RestTemplateExecutorProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * This implementation uses the blocking Spring RestTemplate API client of the RestTemplate example, but processes
+ * every batch order on its own virtual thread, and prefetches the batch payment pages and rejects the failed payment
+ * items of a batch order on virtual threads as well.
+ * <p>Virtual threads make blocking calls cheap, so the number of outbound requests in flight is capped by a semaphore
+ * ({@code service.virtualThreads.maxConcurrentRequests}) instead of by the size of a thread pool.</p>
+ * <p>Virtual threads are available from Java 21 on. On older runtimes the executor falls back to two fixed pools of
+ * {@code service.virtualThreads.maxConcurrentRequests} platform threads each, one processing the batch orders and one
+ * sending the page fetches and rejections the batch orders wait for, so a batch order never waits on a request queued
+ * behind other batch orders.</p>
+ */
+@Component
+@Slf4j
+public class VirtualThreadBatchOrderExecutor implements BatchOrderExecutor {
+
+    private final Queue<PostBatchOrderRequest> batchRequestQueue;
+    private final Semaphore outboundRequests;
+    private final ExecutorService batchOrderExecutorService;
+    private final ExecutorService requestExecutorService;
+    private final RestBatchOrderProcessor batchOrderProcessor;
+
+    public VirtualThreadBatchOrderExecutor(
+        @Qualifier("restTemplateBatchOrdersApi") BatchOrdersApi batchOrdersApi,
+        Queue<PostBatchOrderRequest> batchRequestQueue,
+        ApplicationEventPublisher eventPublisher,
+        RestTemplateExecutorProperties restTemplateExecutorProperties,
+        MeterRegistry meterRegistry,
+        @Value("${service.virtualThreads.maxConcurrentRequests:64}") int maxConcurrentRequests) {
+        this.batchRequestQueue = batchRequestQueue;
+        this.outboundRequests = new Semaphore(maxConcurrentRequests);
+        this.batchOrderExecutorService = newVirtualThreadPerTaskExecutor("batch-order-", maxConcurrentRequests);
+        this.requestExecutorService = newVirtualThreadPerTaskExecutor("batch-order-request-", maxConcurrentRequests);
+        this.batchOrderProcessor = new VirtualThreadBatchOrderProcessor(batchOrdersApi, eventPublisher,
+            restTemplateExecutorProperties, meterRegistry);
+    }
+
+    /**
+     * Scheduled method, picking up the batch orders from the queue created by the BatchOrderController and processing
+     * each of them on its own virtual thread. Returns when all the picked up batch orders are processed.
+     */
+    @Override
+    public void execute() {
+        execute(batchRequestQueue);
+    }
+
+    /**
+     * Batch orders of the same company are processed one after the other in queue order, each one starts on its own
+     * virtual thread once the previous one of its company is done.
+     */
+    @Override
+    public void execute(Queue<PostBatchOrderRequest> batchOrders) {
+        log.info("Batch scheduler start");
+        List<CompletableFuture<Void>> batchOrderFutures = new ArrayList<>();
+        Map<String, CompletableFuture<Void>> lastBatchOrderOfCompany = new HashMap<>();
+        while (!batchOrders.isEmpty()) {
+            PostBatchOrderRequest batchItem = batchOrders.poll();
+            CompletableFuture<Void> previous = lastBatchOrderOfCompany.get(batchItem.getCompanyId());
+            Runnable processing = () -> batchOrderProcessor.processBatchOrder(batchItem);
+            CompletableFuture<Void> batchOrderFuture = (previous == null
+                    ? CompletableFuture.runAsync(processing, batchOrderExecutorService)
+                    : previous.thenRunAsync(processing, batchOrderExecutorService))
+                .exceptionally(e -> {
+                    log.error("Processing batch order with id {} failed", batchItem.getId(), e);
+                    return null;
+                });
+            lastBatchOrderOfCompany.put(batchItem.getCompanyId(), batchOrderFuture);
+            batchOrderFutures.add(batchOrderFuture);
+        }
+        CompletableFuture.allOf(batchOrderFutures.toArray(new CompletableFuture[0])).join();
+        log.info("Batch process scheduler end, processed {} messages", batchOrderFutures.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchOrderExecutorService.shutdown();
+        requestExecutorService.shutdown();
+    }
+
+    @Override
+    public ExampleMode getType() {
+        return ExampleMode.VIRTUAL_THREADS;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String threadNamePrefix, int fallbackPoolSize) {
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                .invoke();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            log.warn("Virtual threads are not available on Java {}, falling back to {} platform threads",
+                System.getProperty("java.specification.version"), fallbackPoolSize);
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+            threadFactory.setDaemon(true);
+            return Executors.newFixedThreadPool(fallbackPoolSize, threadFactory);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to create virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Caps the outbound requests in flight and rejects the failed payment item partitions in parallel.
+     */
+    private class VirtualThreadBatchOrderProcessor extends RestBatchOrderProcessor {
+
+        VirtualThreadBatchOrderProcessor(BatchOrdersApi batchOrdersApi, ApplicationEventPublisher eventPublisher,
+            RestTemplateExecutorProperties restTemplateExecutorProperties, MeterRegistry meterRegistry) {
+            super(batchOrdersApi, eventPublisher, restTemplateExecutorProperties, meterRegistry, ExampleMode.VIRTUAL_THREADS,
+                requestExecutorService);
+        }
+
+        @Override
+        protected <T> T call(Supplier<T> request) {
+            outboundRequests.acquireUninterruptibly();
+            try {
+                return request.get();
+            } finally {
+                outboundRequests.release();
+            }
+        }
+
+        @Override
+        protected void rejectPaymentItems(String batchOrderId, List<List<String>> partitionedFailedPaymentItemIds) {
+            if (partitionedFailedPaymentItemIds.size() < 2) {
+                super.rejectPaymentItems(batchOrderId, partitionedFailedPaymentItemIds);
+                return;
+            }
+            try {
+                CompletableFuture.allOf(partitionedFailedPaymentItemIds.stream()
+                    .map(partition -> CompletableFuture.runAsync(
+                        () -> rejectPaymentItemsPartition(batchOrderId, partition), requestExecutorService))
+                    .toArray(CompletableFuture[]::new))
+                    .join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.mybank.payments.batches.integration.executor.webclient;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpResources;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Measures how long the Netty event loops of the WebClient are blocked.
+ * <p>Every {@code service.webClient.eventLoopProbeInterval} a probe task is submitted to each event loop, and the time
+ * until it runs is recorded in the {@code batch.event.loop.blocked} timer. An event loop busy with blocking or CPU-bound
+ * work delays the probe, together with every HTTP exchange it serves. A loop whose previous probe is still pending is
+ * not probed again, the pending probe records the whole delay.</p>
+ * <p>Only active in the WebClient example, probing the shared event loops of Reactor Netty.</p>
+ */
+@Component
+@ConditionalOnProperty(name = "service.activeExample", havingValue = "WebClient")
+@Slf4j
+public class EventLoopBlockingMonitor {
+
+    private final List<Probe> probes = new ArrayList<>();
+    private final Timer blocked;
+    private final ScheduledExecutorService prober;
+
+    @Autowired
+    public EventLoopBlockingMonitor(WebClientExecutorProperties webClientExecutorProperties,
+                                    MeterRegistry meterRegistry) {
+        this(HttpResources.get().onClient(LoopResources.DEFAULT_NATIVE),
+            webClientExecutorProperties.getEventLoopProbeInterval(), meterRegistry);
+    }
+
+    EventLoopBlockingMonitor(EventLoopGroup eventLoopGroup, Duration probeInterval, MeterRegistry meterRegistry) {
+        for (EventExecutor eventLoop : eventLoopGroup) {
+            probes.add(new Probe(eventLoop));
+        }
+        this.blocked = Timer.builder("batch.event.loop.blocked")
+            .description("Time a task submitted to a Netty event loop waited for the event loop")
+            .register(meterRegistry);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("event-loop-probe-");
+        threadFactory.setDaemon(true);
+        this.prober = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        if (probeInterval != null && !probeInterval.isZero()) {
+            long interval = probeInterval.toNanos();
+            prober.scheduleAtFixedRate(this::probe, interval, interval, TimeUnit.NANOSECONDS);
+            log.info("Probing {} event loops every {}", probes.size(), probeInterval);
+        }
+    }
+
+    private void probe() {
+        for (Probe probe : probes) {
+            if (probe.pending.compareAndSet(false, true)) {
+                long submittedAt = System.nanoTime();
+                try {
+                    probe.eventLoop.execute(() -> {
+                        blocked.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                        probe.pending.set(false);
+                    });
+                } catch (RuntimeException e) {
+                    // event loop shutting down
+                    probe.pending.set(false);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prober.shutdownNow();
+    }
+
+    private static final class Probe {
+
+        private final EventExecutor eventLoop;
+        private final AtomicBoolean pending = new AtomicBoolean();
+
+        private Probe(EventExecutor eventLoop) {
+            this.eventLoop = eventLoop;
+        }
+    }
+}
@@ -1,17 +1,29 @@
 package com.mybank.payments.batches.integration.executor.webclient;
 
+import com.mybank.payments.batches.integration.executor.AdaptivePageSizer;
+import com.mybank.payments.batches.integration.executor.BatchLifecycleMeters;
+import com.mybank.payments.batches.integration.executor.BatchLifecycleMeters.Stage;
 import com.mybank.payments.batches.integration.executor.BatchOrderExecutor;
+import com.mybank.payments.batches.integration.executor.StreamedBatchPayments;
+import com.mybank.payments.batches.integration.BatchOrderFailedEvent;
 import com.mybank.payments.batches.integration.ExampleMode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 
 import org.springframework.stereotype.Component;
 
@@ -26,6 +38,8 @@ import com.backbase.payments.batches.integration.inbound.model.PutBatchPaymentsR
 import com.backbase.payments.batches.integration.inbound.webclient.api.BatchOrdersApi;
 import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
 import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 /**
  * @author balazst
@@ -36,17 +50,58 @@ import com.google.common.collect.Lists;
 @Component
 @Slf4j
 public class WebClientBatchOrderExecutor implements BatchOrderExecutor {
-    private final int PAYMENT_ITEMS_PAGE_SIZE = 100;
-
     private final Queue<PostBatchOrderRequest> batchRequestQueue;
 
     private final BatchOrdersApi batchOrdersApi;
 
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final boolean streaming;
+
+    private final AdaptivePageSizer pageSizer;
+
+    private final int batchOrderConcurrency;
+
+    private final int pageConcurrency;
+
+    private final int paymentUpdateConcurrency;
+
+    private final int processingThreads;
+
+    private final int parallelThreshold;
+
+    private final Scheduler processingScheduler;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Timer processingTimer;
+
+    private final BatchLifecycleMeters meters;
+
     public WebClientBatchOrderExecutor(
         @Qualifier("webClientBatchOrdersApi") BatchOrdersApi batchOrdersApi,
-        Queue<PostBatchOrderRequest> batchRequestQueue) {
+        Queue<PostBatchOrderRequest> batchRequestQueue,
+        ApplicationEventPublisher eventPublisher,
+        WebClientExecutorProperties webClientExecutorProperties,
+        MeterRegistry meterRegistry) {
         this.batchRequestQueue = batchRequestQueue;
         this.batchOrdersApi = batchOrdersApi;
+        this.eventPublisher = eventPublisher;
+        this.streaming = webClientExecutorProperties.isStreaming();
+        this.batchOrderConcurrency = Math.max(1, webClientExecutorProperties.getBatchOrderConcurrency());
+        this.pageConcurrency = Math.max(1, webClientExecutorProperties.getPageConcurrency());
+        this.paymentUpdateConcurrency = Math.max(1, webClientExecutorProperties.getPaymentUpdateConcurrency());
+        this.processingThreads = Math.max(1, webClientExecutorProperties.getProcessingThreads());
+        this.parallelThreshold = webClientExecutorProperties.getParallelThreshold();
+        this.processingScheduler = Schedulers.newParallel("batch-payment-processing", processingThreads, true);
+        this.meterRegistry = meterRegistry;
+        this.processingTimer = Timer.builder("batch.payments.processing")
+            .description("Time taken to process the payments of a batch order")
+            .tag("mode", ExampleMode.WEB_CLIENT.getPropertyValue())
+            .register(meterRegistry);
+        this.pageSizer = new AdaptivePageSizer(webClientExecutorProperties.getPaging(), meterRegistry,
+            ExampleMode.WEB_CLIENT.getPropertyValue());
+        this.meters = new BatchLifecycleMeters(meterRegistry, ExampleMode.WEB_CLIENT.getPropertyValue());
     }
 
     /**
@@ -55,99 +110,277 @@ public class WebClientBatchOrderExecutor implements BatchOrderExecutor {
      */
     @Override
     public void execute() {
-        int cnt = 0;
-        log.info("Batch scheduler start", batchRequestQueue);
-        while (!batchRequestQueue.isEmpty()) {
-            PostBatchOrderRequest queuedBatchOrder = batchRequestQueue.poll();
-            log.info("Batch scheduler process item {}", queuedBatchOrder.getId());
-
-            batchOrdersApi.getBatchOrder(queuedBatchOrder.getId()).subscribe(
-                    batchOrder -> {
-                        // Update batch status to DOWNLOADING
-                        setBatchStatus(batchOrder, BatchStatus.DOWNLOADING,
-                                null).subscribe(batchStatus -> {
-                                    // Get all payments from the batch (Note: we must keep the order)
-                                    int lastPageNumber =
-                                            (int) Math.ceil(batchOrder.getTotalTransactionsCount().doubleValue()
-                                                    / PAYMENT_ITEMS_PAGE_SIZE);
-                                    Flux.range(0, lastPageNumber).flatMapSequential(
-                                            pageNumber -> batchOrdersApi
-                                                    .getBatchPayments(batchOrder.getId(), pageNumber,
-                                                            PAYMENT_ITEMS_PAGE_SIZE)
-                                                    .flatMapIterable(pageResponse -> pageResponse.getBatchPayments()))
-                                            .collectList()
-                                            .subscribe(paymentItems -> processDownloadedBatch(
-                                                    batchOrder.status(batchStatus),
-                                                    paymentItems));
-                                });
-                    },
-                    error -> {
-                        // Real word scenario the batch order should be rescheduled or least marked failed depending on the nature of the problem
-                        // and which stage the problem occurred
-                        log.warn("Error processing batch order with ID {}", queuedBatchOrder.getId(), error);
-                    });
-
-            cnt++;
-        }
+        execute(batchRequestQueue);
+    }
+
+    /**
+     * Processes the batch orders of the queue as one composed pipeline, with at most
+     * {@code service.webClient.batchOrderConcurrency} batch orders in flight. Batch orders are only taken from the queue
+     * when the pipeline has room for them, and the method returns when all of them are done, so a tick never overlaps
+     * with the next one. Batch orders of the same company are processed one after the other in queue order, only
+     * batch orders of different companies run in parallel.
+     */
+    @Override
+    public void execute(Queue<PostBatchOrderRequest> batchOrders) {
+        log.info("Batch scheduler start");
+        Map<String, Mono<Void>> lastBatchOrderOfCompany = new ConcurrentHashMap<>();
+        Long cnt = Flux.<PostBatchOrderRequest>generate(sink -> {
+                    PostBatchOrderRequest queuedBatchOrder = batchOrders.poll();
+                    if (queuedBatchOrder == null) {
+                        sink.complete();
+                    } else {
+                        sink.next(queuedBatchOrder);
+                    }
+                })
+                .flatMap(queuedBatchOrder -> processAfterCompany(lastBatchOrderOfCompany, queuedBatchOrder)
+                                .thenReturn(queuedBatchOrder),
+                        batchOrderConcurrency)
+                .count()
+                .block();
         log.info("Batch process scheduler end, processed {} messages", cnt);
     }
 
+    /**
+     * Processes the batch order once the previous batch order of its company taken from the queue is done.
+     * @param lastBatchOrderOfCompany the last batch order taken from the queue per company, until it is done
+     */
+    private Mono<Void> processAfterCompany(Map<String, Mono<Void>> lastBatchOrderOfCompany,
+            PostBatchOrderRequest queuedBatchOrder) {
+        String companyId = String.valueOf(queuedBatchOrder.getCompanyId());
+        Mono<Void> previous = lastBatchOrderOfCompany.get(companyId);
+        // batch orders never fail, processBatchOrder handles the errors
+        Mono<Void> batchOrder = (previous == null ? processBatchOrder(queuedBatchOrder)
+                : previous.then(Mono.defer(() -> processBatchOrder(queuedBatchOrder)))).cache();
+        lastBatchOrderOfCompany.put(companyId, batchOrder);
+        return batchOrder.doFinally(signal -> lastBatchOrderOfCompany.remove(companyId, batchOrder));
+    }
+
+    private Mono<Void> processBatchOrder(PostBatchOrderRequest queuedBatchOrder) {
+        log.info("Batch scheduler process item {}", queuedBatchOrder.getId());
+        return timed(Stage.GET_BATCH_ORDER, batchOrdersApi.getBatchOrder(queuedBatchOrder.getId()))
+                // Update batch status to DOWNLOADING
+                .flatMap(batchOrder -> setBatchStatus(batchOrder, BatchStatus.DOWNLOADING, null)
+                        .flatMap(batchStatus -> {
+                            Flux<IntegrationBatchPayment> paymentItems = downloadBatchPayments(batchOrder);
+                            if (streaming) {
+                                return paymentItems
+                                        // keep payment processing off the Netty event loops
+                                        .publishOn(processingScheduler)
+                                        .reduce(new StreamedBatchPayments(paymentItem -> processPaymentItem(
+                                                batchOrder.getAccount(), paymentItem)),
+                                                StreamedBatchPayments::accept)
+                                        .flatMap(streamedBatchPayments -> processStreamedBatch(batchOrder,
+                                                streamedBatchPayments));
+                            }
+                            return paymentItems
+                                    .collectList()
+                                    .flatMap(collectedPaymentItems -> processDownloadedBatch(batchOrder,
+                                            collectedPaymentItems));
+                        }))
+                .doOnError(error -> {
+                    // Real word scenario the batch order should be rescheduled or least marked failed depending on the nature of the problem
+                    // and which stage the problem occurred
+                    log.warn("Error processing batch order with ID {}", queuedBatchOrder.getId(), error);
+                    batchOrderFailed(queuedBatchOrder.getId());
+                })
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    /**
+     * Get all payments from the batch (Note: we must keep the order), with at most
+     * {@code service.webClient.pageConcurrency} pages requested at a time
+     */
+    private Flux<IntegrationBatchPayment> downloadBatchPayments(GetBatchOrderResponse batchOrder) {
+        int pageSize = pageSizer.getPageSize();
+        int lastPageNumber = (int) Math.ceil(batchOrder.getTotalTransactionsCount().doubleValue() / pageSize);
+        return Flux.range(0, lastPageNumber)
+                .flatMapSequential(
+                        pageNumber -> timed(Stage.GET_BATCH_PAYMENTS, batchOrdersApi
+                                .getBatchPayments(batchOrder.getId(), pageNumber, pageSize))
+                                .elapsed()
+                                .doOnNext(page -> pageSizer.record(pageSize,
+                                        TimeUnit.MILLISECONDS.toNanos(page.getT1()),
+                                        page.getT2().getBatchPayments().size())),
+                        pageConcurrency)
+                .flatMapIterable(page -> page.getT2().getBatchPayments());
+    }
+
+    /**
+     * Records the latency of the call in the {@link BatchLifecycleMeters} once it completes or fails
+     */
+    private <T> Mono<T> timed(Stage stage, Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                    .doOnSuccess(result -> meters.record(stage, System.nanoTime() - start, true))
+                    .doOnError(e -> meters.record(stage, System.nanoTime() - start, false));
+        });
+    }
+
     /** Set the batchOrder status based if the expectedStatus match
-     * @param batchOrderId
-     * @param expectedStatus
+     * @param batchOrder the batch order, its status is the expected status and is updated on success
      * @param status
      * @param reasonText
-     * @return the updated status (same as the status incoming parameter)
+     * @return the updated status (same as the status incoming parameter), empty if the update failed
      */
     private Mono<BatchStatus> setBatchStatus(GetBatchOrderResponse batchOrder, BatchStatus status,
             String reasonText) {
-        return batchOrdersApi.putBatchOrder(
-                batchOrder.getId(),
-                batchOrder.getStatus().getValue(),
-                new PutBatchOrderRequest().status(status).reasonText(reasonText))
+        return Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return batchOrdersApi.putBatchOrder(
+                                    batchOrder.getId(),
+                                    batchOrder.getStatus().getValue(),
+                                    new PutBatchOrderRequest().status(status).reasonText(reasonText))
+                            .doOnSuccess(response -> meters.recordTransition(status.getValue(),
+                                    System.nanoTime() - start, true))
+                            .doOnError(e -> meters.recordTransition(status.getValue(),
+                                    System.nanoTime() - start, false));
+                })
                 .doOnError(e -> {
                     log.error("Unable to set batch order {} status to {} (expected status: {})", batchOrder.getId(),
                             status.getValue(), batchOrder.getStatus().getValue(), e);
                 }).onErrorResume(e -> Mono.empty())
-                .map(it -> it.getStatus()).doOnSuccess(batchStatus -> batchOrder.status(batchStatus));
+                .map(it -> it.getStatus()).doOnNext(batchStatus -> batchOrder.status(batchStatus));
     }
 
-    private void processDownloadedBatch(GetBatchOrderResponse batchOrder, List<IntegrationBatchPayment> paymentItems) {
+    private Mono<Void> processDownloadedBatch(GetBatchOrderResponse batchOrder,
+            List<IntegrationBatchPayment> paymentItems) {
         if (paymentItems.size() != batchOrder.getTotalTransactionsCount().intValue()) {
             // Update batch status to REJECTED
-            setBatchStatus(batchOrder, BatchStatus.REJECTED,
-                    "Payment item count mismatch");
-        } else {
-            // Update batch status to ACCEPTED
-            setBatchStatus(batchOrder, BatchStatus.ACCEPTED, null).subscribe(batchStaus -> {
+            return rejectBatchOrder(batchOrder);
+        }
+        // Update batch status to ACCEPTED
+        return setBatchStatus(batchOrder, BatchStatus.ACCEPTED, null).flatMap(batchStaus ->
                 // "Process" payments
-                List<IntegrationBatchPayment> failedPaymentItems = processBatchPayments(batchOrder.getId(),
-                        batchOrder.getAccount(), paymentItems);
-                // Handle failed payment items (set the individual paymentItem status to rejected
-                // Note: the batchOrdersApi.putBatchPayments has limit 1000 on paymentItems, e.g the failedPaymentItems must be partitioned by 1000
-                Lists.partition(failedPaymentItems, 1000).forEach(partitionedFailedPaymentItems -> {
-                    if (!failedPaymentItems.isEmpty()) {
-                        List<String> failedPaymentItemIds = partitionedFailedPaymentItems.stream()
-                                .map(it -> it.getId())
-                                .collect(Collectors.toList());
+                processBatchPaymentsOffEventLoop(batchOrder.getId(), batchOrder.getAccount(), paymentItems)
+                        .flatMap(failedPaymentItemIds ->
+                                rejectPaymentItemsAndComplete(batchOrder, batchStaus, paymentItems.size(),
+                                        failedPaymentItemIds)));
+    }
+
+    /**
+     * Processes the payments on the bounded processing scheduler instead of the Netty event loop thread which received
+     * the last page. Batches of at least {@code service.webClient.parallelThreshold} payments are split into parallel
+     * rails, one per processing thread.
+     * @return the IDs of the payment items failed to process
+     */
+    private Mono<List<String>> processBatchPaymentsOffEventLoop(String batchOrderId,
+            OriginatorAccountIdentification account, List<IntegrationBatchPayment> paymentItems) {
+        Mono<List<String>> failedPaymentItemIds;
+        if (paymentItems.size() < parallelThreshold) {
+            failedPaymentItemIds = Mono.fromCallable(() -> processBatchPayments(batchOrderId, account, paymentItems)
+                            .stream()
+                            .map(it -> it.getId())
+                            .collect(Collectors.toList()))
+                    .subscribeOn(processingScheduler);
+        } else {
+            failedPaymentItemIds = Flux.fromIterable(paymentItems)
+                    .parallel(processingThreads)
+                    .runOn(processingScheduler)
+                    .filter(paymentItem -> !processPaymentItem(batchOrderId, account, paymentItem))
+                    .map(it -> it.getId())
+                    .sequential()
+                    .collectList()
+                    .doOnSubscribe(subscription -> log.info("Processing batch with batchId: {} size: {} on {} rails",
+                            batchOrderId, paymentItems.size(), processingThreads))
+                    .doOnNext(failed -> log.info("Processed batch with batchId: {} size: {}", batchOrderId,
+                            paymentItems.size()));
+        }
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return timed(Stage.PROCESSING, failedPaymentItemIds).doFinally(signal -> sample.stop(processingTimer));
+        });
+    }
+
+    /**
+     * Completes a batch order whose payments were processed while they were downloaded. As the payment count can only
+     * be checked once all the payments are received, the processed payments are compensated when the count turns out
+     * wrong.
+     */
+    private Mono<Void> processStreamedBatch(GetBatchOrderResponse batchOrder,
+            StreamedBatchPayments streamedBatchPayments) {
+        log.info("Processed batch with batchId: {} size: {} while downloading", batchOrder.getId(),
+                streamedBatchPayments.getVisiblePayments());
+        if (streamedBatchPayments.getReceivedPayments() != batchOrder.getTotalTransactionsCount().longValue()) {
+            compensateBatchPayments(batchOrder.getId(), batchOrder.getAccount(), streamedBatchPayments);
+            // Update batch status to REJECTED
+            return rejectBatchOrder(batchOrder);
+        }
+        // Update batch status to ACCEPTED
+        return setBatchStatus(batchOrder, BatchStatus.ACCEPTED, null).flatMap(batchStaus ->
+                rejectPaymentItemsAndComplete(batchOrder, batchStaus, streamedBatchPayments.getVisiblePayments(),
+                        streamedBatchPayments.getFailedPaymentItemIds()));
+    }
+
+    /**
+     * Update batch status to REJECTED, counting the batch order as rejected, or failed when the update failed
+     */
+    private Mono<Void> rejectBatchOrder(GetBatchOrderResponse batchOrder) {
+        return setBatchStatus(batchOrder, BatchStatus.REJECTED, "Payment item count mismatch")
+                .hasElement()
+                .doOnNext(rejected -> {
+                    if (rejected) {
+                        meters.batchOrderCompleted(BatchLifecycleMeters.REJECTED, 0, 0);
+                    } else {
+                        batchOrderFailed(batchOrder.getId());
+                    }
+                })
+                .then();
+    }
+
+    private Mono<Void> rejectPaymentItemsAndComplete(GetBatchOrderResponse batchOrder, BatchStatus batchStaus,
+            long visiblePayments, List<String> failedPaymentItemIds) {
+        // Handle failed payment items (set the individual paymentItem status to rejected
+        // Note: the batchOrdersApi.putBatchPayments has limit 1000 on paymentItems, e.g the failedPaymentItems must be partitioned by 1000
+        return Flux.fromIterable(Lists.partition(failedPaymentItemIds, 1000))
+                .flatMap(partitionedFailedPaymentItemIds -> timed(Stage.PUT_BATCH_PAYMENTS,
                         batchOrdersApi.putBatchPayments(
                                 batchOrder.getId(),
                                 batchStaus.getValue(),
                                 new PutBatchPaymentsRequest().batchPayments(
                                         Collections.singletonList(
                                                 new IntegrationMultipleUpdatableBatchPayment()
-                                                        .ids(failedPaymentItemIds)
-                                                        .status(BatchPaymentStatus.REJECTED))))
-                                .doOnError(
-                                        e -> log.error("Unable to mark batch order {} payment items [{}] as REJECTED",
-                                                batchOrder.getId(), String.join(", ", failedPaymentItemIds), e))
-                                .onErrorResume(e -> Mono.empty());
-                    }
-                });
+                                                        .ids(partitionedFailedPaymentItemIds)
+                                                        .status(BatchPaymentStatus.REJECTED)))))
+                        .doOnError(
+                                e -> log.error("Unable to mark batch order {} payment items [{}] as REJECTED",
+                                        batchOrder.getId(), String.join(", ", partitionedFailedPaymentItemIds), e))
+                        .onErrorResume(e -> Mono.empty()),
+                        paymentUpdateConcurrency)
                 // Update batch status to PROCESSED
-                setBatchStatus(batchOrder, BatchStatus.PROCESSED, null);
-            });
-        }
+                .then(Mono.defer(() -> setBatchStatus(batchOrder, BatchStatus.PROCESSED, null)))
+                .hasElement()
+                .doOnNext(processed -> {
+                    if (processed) {
+                        meters.batchOrderCompleted(BatchLifecycleMeters.PROCESSED,
+                                visiblePayments - failedPaymentItemIds.size(), failedPaymentItemIds.size());
+                    } else {
+                        batchOrderFailed(batchOrder.getId());
+                    }
+                })
+                .then();
+    }
+
+    /**
+     * Counts the batch order as failed and publishes a {@link BatchOrderFailedEvent} for it
+     */
+    private void batchOrderFailed(String batchOrderId) {
+        meters.batchOrderCompleted(BatchLifecycleMeters.ERROR, 0, 0);
+        eventPublisher.publishEvent(new BatchOrderFailedEvent(batchOrderId));
+    }
+
+    /** Dummy method reverting the payments processed while a batch order was downloaded, called when the batch order
+     * is rejected afterwards
+     * @param batchOrderId
+     * @param account
+     * @param streamedBatchPayments
+     */
+    private void compensateBatchPayments(String batchOrderId, OriginatorAccountIdentification account,
+            StreamedBatchPayments streamedBatchPayments) {
+        // Revert everything booked for the batch order here, e.g. by batch order ID as the processed payment IDs are not kept
+        log.warn("Payment item count mismatch, reverting {} processed payments with batchId: {}",
+                streamedBatchPayments.getVisiblePayments() - streamedBatchPayments.getFailedPaymentItemIds().size(),
+                batchOrderId);
     }
 
     /** Dummy method for processing payments
@@ -161,17 +394,24 @@ public class WebClientBatchOrderExecutor implements BatchOrderExecutor {
         List<IntegrationBatchPayment> invalidItems = new ArrayList<>();
         log.info("Processing batch with batchId: {} size: {}", batchOrderId, paymentItems.size());
         paymentItems.forEach(paymentItem -> {
-            if (processPaymentItem(account, paymentItem)) {
-                log.info("Payment processed with batchId: {} paymentId: {}", batchOrderId, paymentItem.getId());
-            } else {
+            if (!processPaymentItem(batchOrderId, account, paymentItem)) {
                 invalidItems.add(paymentItem);
-                log.info("Unable to process payment with batchId: {} paymentId: {}", batchOrderId, paymentItem.getId());
             }
         });
         log.info("Processed batch with batchId: {} size: {}", batchOrderId, paymentItems.size());
         return invalidItems;
     }
 
+    private boolean processPaymentItem(String batchOrderId, OriginatorAccountIdentification account,
+            IntegrationBatchPayment paymentItem) {
+        if (processPaymentItem(account, paymentItem)) {
+            log.info("Payment processed with batchId: {} paymentId: {}", batchOrderId, paymentItem.getId());
+            return true;
+        }
+        log.info("Unable to process payment with batchId: {} paymentId: {}", batchOrderId, paymentItem.getId());
+        return false;
+    }
+
     /** Dummy payment item processor
      * @param account
      * @param paymentItem
@@ -183,6 +423,11 @@ public class WebClientBatchOrderExecutor implements BatchOrderExecutor {
         return true;
     }
 
+    @PreDestroy
+    public void shutdown() {
+        processingScheduler.dispose();
+    }
+
     @Override
     public ExampleMode getType() {
         return ExampleMode.WEB_CLIENT;
@@ -0,0 +1,51 @@
+package com.mybank.payments.batches.integration.executor.webclient;
+
+import com.mybank.payments.batches.integration.executor.AdaptivePageSizer;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("service.web-client")
+public class WebClientExecutorProperties {
+
+    /**
+     * Maximum number of batch orders processed at the same time.
+     */
+    private int batchOrderConcurrency = 8;
+
+    /**
+     * Maximum number of batch payment pages of a batch order requested at the same time.
+     */
+    private int pageConcurrency = 4;
+
+    /**
+     * Maximum number of requests marking failed payment items of a batch order as rejected at the same time.
+     */
+    private int paymentUpdateConcurrency = 2;
+
+    /**
+     * Number of threads processing payments, so that processing never runs on the Netty event loops.
+     */
+    private int processingThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of payments from which the payments of a batch order are processed on parallel rails, one per processing
+     * thread.
+     */
+    private int parallelThreshold = 10000;
+
+    /**
+     * Interval the Netty event loops are probed at for the time they are blocked. Probing is disabled when empty.
+     */
+    private Duration eventLoopProbeInterval = Duration.ofMillis(100);
+
+    /**
+     * Whether the payments of a batch order are processed one by one while they are downloaded, instead of after the
+     * whole batch order is collected and its payment count checked.
+     */
+    private boolean streaming = false;
+
+    private AdaptivePageSizer.Settings paging = new AdaptivePageSizer.Settings();
+
+}
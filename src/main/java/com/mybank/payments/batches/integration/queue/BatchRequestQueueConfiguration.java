@@ -0,0 +1,67 @@
+package com.mybank.payments.batches.integration.queue;
+
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(BatchRequestQueueProperties.class)
+public class BatchRequestQueueConfiguration {
+
+    @Bean
+    public Queue<PostBatchOrderRequest> batchRequestQueue(BatchRequestQueueProperties properties,
+                                                          ObjectMapper objectMapper,
+                                                          MeterRegistry meterRegistry) {
+        Queue<PostBatchOrderRequest> queue = createQueue(properties, objectMapper);
+        BatchRequestQueueProperties.Deduplication deduplication = properties.getDeduplication();
+        if (deduplication.isEnabled()) {
+            DeduplicatingQueue<PostBatchOrderRequest> deduplicatingQueue = new DeduplicatingQueue<>(
+                queue,
+                PostBatchOrderRequest::getId,
+                deduplication.getTimeToLive(),
+                deduplication.getInitialCapacity(),
+                Clock.systemUTC());
+            FunctionCounter.builder("batch.request.queue.duplicates", deduplicatingQueue,
+                    DeduplicatingQueue::getDuplicates)
+                .description("Number of duplicate batch order notifications acknowledged without queueing them")
+                .register(meterRegistry);
+            queue = deduplicatingQueue;
+        }
+        Gauge.builder("batch.request.queue.depth", queue, Queue::size)
+            .description("Number of batch orders waiting to be picked up by the batch order executor")
+            .tag("type", properties.getType().name())
+            .register(meterRegistry);
+        return queue;
+    }
+
+    private Queue<PostBatchOrderRequest> createQueue(BatchRequestQueueProperties properties,
+                                                     ObjectMapper objectMapper) {
+        switch (properties.getType()) {
+            case RING_BUFFER:
+                return new RingBufferQueue<>(properties.getRingBuffer().getCapacity());
+            case JOURNAL:
+                BatchRequestQueueProperties.Journal journal = properties.getJournal();
+                return new JournalQueue<>(
+                    Paths.get(journal.getDirectory()),
+                    Math.toIntExact(journal.getSegmentSize().toBytes()),
+                    journal.getFlushInterval(),
+                    journal.isAwaitFlush(),
+                    objectMapper,
+                    PostBatchOrderRequest.class);
+            case IN_MEMORY:
+            default:
+                // constant time size, checked against the high-water mark on every batch order
+                return new LinkedBlockingQueue<>();
+        }
+    }
+
+}
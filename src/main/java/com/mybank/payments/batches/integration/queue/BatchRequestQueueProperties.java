@@ -0,0 +1,85 @@
+package com.mybank.payments.batches.integration.queue;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties("service.batch-request-queue")
+public class BatchRequestQueueProperties {
+
+    private BatchRequestQueueType type = BatchRequestQueueType.IN_MEMORY;
+
+    /**
+     * Queue depth from which new batch orders are turned away with 429 Too Many Requests.
+     */
+    private int highWaterMark = 10000;
+
+    /**
+     * Value of the Retry-After header sent back when a batch order is turned away.
+     */
+    private Duration retryAfter = Duration.ofSeconds(30);
+
+    private Deduplication deduplication = new Deduplication();
+
+    private RingBuffer ringBuffer = new RingBuffer();
+
+    private Journal journal = new Journal();
+
+    @Data
+    public static class Deduplication {
+
+        /**
+         * Whether batch orders with an ID which is queued, in flight or recently processed are dropped.
+         */
+        private boolean enabled = true;
+
+        /**
+         * How long the ID of a batch order is remembered after it has been picked up for processing.
+         */
+        private Duration timeToLive = Duration.ofHours(1);
+
+        /**
+         * Number of batch order IDs the deduplication index is initially sized for.
+         */
+        private int initialCapacity = 65536;
+
+    }
+
+    @Data
+    public static class RingBuffer {
+
+        /**
+         * Number of batch orders the ring buffer can hold, rounded up to the next power of two.
+         */
+        private int capacity = 16384;
+
+    }
+
+    @Data
+    public static class Journal {
+
+        /**
+         * Directory holding the journal segments and the read cursor.
+         */
+        private String directory = "batch-request-journal";
+
+        /**
+         * Size of a single memory-mapped segment file.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Maximum time a journaled batch order stays in the page cache before it is forced to disk.
+         */
+        private Duration flushInterval = Duration.ofMillis(10);
+
+        /**
+         * Whether acknowledging a batch order waits for the group fsync covering it.
+         */
+        private boolean awaitFlush = true;
+
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.mybank.payments.batches.integration.queue;
+
+/**
+ * Implementations available for the queue between the BatchOrderController and the batch order executors.
+ */
+public enum BatchRequestQueueType {
+
+    /**
+     * Unbounded on-heap queue, queued batch orders are lost on restart.
+     */
+    IN_MEMORY,
+
+    /**
+     * Bounded lock-free ring buffer, see {@link RingBufferQueue}.
+     */
+    RING_BUFFER,
+
+    /**
+     * Durable journal of memory-mapped segment files, see {@link JournalQueue}.
+     */
+    JOURNAL
+
+}
@@ -0,0 +1,127 @@
+package com.mybank.payments.batches.integration.queue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.AbstractQueue;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link Queue} decorator which drops elements whose identifier has been seen recently.
+ * <p>An identifier is remembered, in an {@link OffHeapIdSet}, from the moment its element is offered until the
+ * configured time-to-live after it has been polled. Offering a duplicate within that window is reported as successful
+ * without queueing it again, so retried notifications are acknowledged for free and a duplicate arriving while its
+ * batch order is being processed collapses onto the work already in flight.</p>
+ * <p>An identifier is {@link #forget(String) forgotten} when processing its element failed, so the notification
+ * re-sent for it is queued again.</p>
+ * <p>Identifiers of elements already in the delegate (e.g. replayed from a journal) are registered on creation.</p>
+ */
+@Slf4j
+public class DeduplicatingQueue<E> extends AbstractQueue<E> {
+
+    private final Queue<E> delegate;
+    private final Function<E, String> idExtractor;
+    private final long timeToLiveMillis;
+    private final Clock clock;
+    private final OffHeapIdSet seenIds;
+    private final AtomicLong duplicates = new AtomicLong();
+
+    /**
+     * @param delegate        queue holding the elements
+     * @param idExtractor     extracts the identifier elements are deduplicated on
+     * @param timeToLive      how long an identifier is remembered after its element has been polled
+     * @param initialCapacity initial number of identifiers the set is sized for
+     * @param clock           clock used for expiry
+     */
+    public DeduplicatingQueue(Queue<E> delegate, Function<E, String> idExtractor, Duration timeToLive,
+                              int initialCapacity, Clock clock) {
+        this.delegate = delegate;
+        this.idExtractor = idExtractor;
+        this.timeToLiveMillis = timeToLive.toMillis();
+        this.clock = clock;
+        this.seenIds = new OffHeapIdSet(initialCapacity * 2);
+        long now = clock.millis();
+        delegate.forEach(element -> seenIds.add(idExtractor.apply(element), OffHeapIdSet.NEVER, now));
+    }
+
+    /**
+     * Queues the element unless an element with the same identifier is queued, in flight or was polled within the
+     * time-to-live.
+     *
+     * @return {@code true} if the element was queued or is a duplicate, {@code false} if the delegate refused it
+     */
+    @Override
+    public boolean offer(E element) {
+        String id = idExtractor.apply(element);
+        if (!seenIds.add(id, OffHeapIdSet.NEVER, clock.millis())) {
+            log.info("Dropping duplicate of queued or recently processed element {}", id);
+            duplicates.incrementAndGet();
+            return true;
+        }
+        boolean queued = false;
+        try {
+            queued = delegate.offer(element);
+        } finally {
+            if (!queued) {
+                // the caller is told to retry, so the retry must not be mistaken for a duplicate
+                seenIds.remove(id);
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * @return {@code true} if an element with the same identifier is queued, in flight or was polled within the
+     * time-to-live, so offering it would drop it
+     */
+    public boolean isDuplicate(E element) {
+        return seenIds.contains(idExtractor.apply(element), clock.millis());
+    }
+
+    /**
+     * Forgets the identifier of an element whose processing failed, so offering it again queues it.
+     */
+    public void forget(String id) {
+        seenIds.remove(id);
+    }
+
+    @Override
+    public E poll() {
+        E element = delegate.poll();
+        if (element != null) {
+            seenIds.expireAt(idExtractor.apply(element), clock.millis() + timeToLiveMillis);
+        }
+        return element;
+    }
+
+    @Override
+    public E peek() {
+        return delegate.peek();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return Collections.unmodifiableCollection(delegate).iterator();
+    }
+
+    /**
+     * @return number of duplicates dropped since creation
+     */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+}
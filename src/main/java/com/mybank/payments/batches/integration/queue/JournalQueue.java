@@ -0,0 +1,479 @@
+package com.mybank.payments.batches.integration.queue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Durable {@link java.util.Queue} backed by an append-only journal of memory-mapped segment files.
+ * <p>Every offered element is appended to the current segment as a length and checksum prefixed JSON record. A
+ * background flusher forces the written segments to disk in groups, so concurrent producers share one fsync instead
+ * of paying one each. The read cursor lives in its own mapped file, which means elements polled before a restart are
+ * not handed out again (unless the cursor had not been flushed yet), and segments the cursor has moved past are
+ * deleted.</p>
+ * <p>Delivery is at-most-once: the cursor moves past an element as soon as it is polled, so an element polled but not
+ * yet processed when the process crashes is not handed out again.</p>
+ * <p>Every record is checked against its checksum when it is read. Records torn by a crash are truncated when the
+ * journal is reopened, and the rest of a segment following a corrupt record is skipped.</p>
+ */
+@Slf4j
+public class JournalQueue<E> extends AbstractQueue<E> implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String CURSOR_FILE_NAME = "cursor";
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int CURSOR_SIZE = 2 * Long.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long flushIntervalMillis;
+    private final boolean awaitFlush;
+    private final ObjectMapper objectMapper;
+    private final Class<E> elementType;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final NavigableMap<Long, Segment> segments = new TreeMap<>();
+    private final Set<Segment> unflushedSegments = new LinkedHashSet<>();
+    private final MappedByteBuffer cursor;
+    private Segment writeSegment;
+    private Segment readSegment;
+    private int readPosition;
+    private boolean cursorChanged;
+    private long appendedSequence;
+    private volatile int size;
+
+    private final Object flushMonitor = new Object();
+    private volatile long flushedSequence;
+    private volatile boolean closed;
+    private final Thread flusher;
+
+    /**
+     * Opens (or creates) the journal in the given directory and replays the elements not yet polled.
+     *
+     * @param directory     directory holding the segment and cursor files
+     * @param segmentSize   size of a single segment file in bytes
+     * @param flushInterval maximum time a written record stays in the page cache before it is forced to disk
+     * @param awaitFlush    whether {@link #offer(Object)} waits for the group fsync covering its record
+     * @param objectMapper  mapper used to encode the elements
+     * @param elementType   type of the elements
+     */
+    public JournalQueue(Path directory, int segmentSize, Duration flushInterval, boolean awaitFlush,
+                        ObjectMapper objectMapper, Class<E> elementType) {
+        if (segmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Journal segment size is too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushIntervalMillis = Math.max(1, flushInterval.toMillis());
+        this.awaitFlush = awaitFlush;
+        this.objectMapper = objectMapper;
+        this.elementType = elementType;
+        try {
+            Files.createDirectories(directory);
+            this.cursor = map(directory.resolve(CURSOR_FILE_NAME), CURSOR_SIZE);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open journal in " + directory, e);
+        }
+        this.flusher = new Thread(this::flushLoop, "journal-flusher-" + directory.getFileName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        log.info("Opened journal queue in {} with {} pending elements", directory, size);
+    }
+
+    @Override
+    public boolean offer(E element) {
+        byte[] payload = encode(element);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        long sequence;
+        lock.lock();
+        try {
+            ensureOpen();
+            if (writeSegment.remaining() < RECORD_HEADER_SIZE + payload.length) {
+                rollSegment(RECORD_HEADER_SIZE + payload.length);
+            }
+            ByteBuffer buffer = writeSegment.buffer;
+            int position = writeSegment.writePosition;
+            buffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+            buffer.duplicate().position(position + RECORD_HEADER_SIZE).put(payload);
+            // the length is written last, so a reader never observes a record without its payload
+            buffer.putInt(position, payload.length);
+            writeSegment.writePosition = position + RECORD_HEADER_SIZE + payload.length;
+            unflushedSegments.add(writeSegment);
+            sequence = ++appendedSequence;
+            size++;
+        } finally {
+            lock.unlock();
+        }
+        synchronized (flushMonitor) {
+            flushMonitor.notifyAll();
+            while (awaitFlush && flushedSequence < sequence && !closed) {
+                try {
+                    flushMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        byte[] payload;
+        lock.lock();
+        try {
+            payload = readNext(true);
+        } finally {
+            lock.unlock();
+        }
+        return payload == null ? null : decode(payload);
+    }
+
+    @Override
+    public E peek() {
+        byte[] payload;
+        lock.lock();
+        try {
+            payload = readNext(false);
+        } finally {
+            lock.unlock();
+        }
+        return payload == null ? null : decode(payload);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the pending elements, taken when this method is called.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<byte[]> payloads = new ArrayList<>(size);
+        lock.lock();
+        try {
+            Segment segment = readSegment;
+            int position = readPosition;
+            while (segment != null) {
+                byte[] payload = validPayload(segment, position);
+                if (payload != null) {
+                    payloads.add(payload);
+                    position += RECORD_HEADER_SIZE + payload.length;
+                } else {
+                    Map.Entry<Long, Segment> next = segments.higherEntry(segment.id);
+                    segment = next == null ? null : next.getValue();
+                    position = 0;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return Collections.unmodifiableList(payloads.stream()
+            .map(this::decode)
+            .collect(Collectors.toList()))
+            .iterator();
+    }
+
+    /**
+     * Forces all written records and the read cursor to disk.
+     */
+    public void flush() {
+        long target;
+        List<Segment> dirty;
+        boolean forceCursor;
+        lock.lock();
+        try {
+            target = appendedSequence;
+            dirty = new ArrayList<>(unflushedSegments);
+            unflushedSegments.clear();
+            forceCursor = cursorChanged;
+            cursorChanged = false;
+        } finally {
+            lock.unlock();
+        }
+        dirty.forEach(segment -> segment.buffer.force());
+        if (forceCursor) {
+            cursor.force();
+        }
+        synchronized (flushMonitor) {
+            if (target > flushedSequence) {
+                flushedSequence = target;
+            }
+            flushMonitor.notifyAll();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (flushMonitor) {
+            flushMonitor.notifyAll();
+        }
+        try {
+            flusher.join(flushIntervalMillis * 10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("Closed journal queue in {} with {} pending elements", directory, size);
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            synchronized (flushMonitor) {
+                if (flushedSequence == appendedSequenceSnapshot() && !closed) {
+                    try {
+                        flushMonitor.wait(flushIntervalMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("Unable to flush journal in {}", directory, e);
+            }
+        }
+    }
+
+    private long appendedSequenceSnapshot() {
+        lock.lock();
+        try {
+            return appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private byte[] readNext(boolean advance) {
+        while (true) {
+            byte[] payload = validPayload(readSegment, readPosition);
+            if (payload != null) {
+                if (advance) {
+                    readPosition += RECORD_HEADER_SIZE + payload.length;
+                    size--;
+                    storeCursor();
+                }
+                return payload;
+            }
+            if (readSegment == writeSegment) {
+                return null;
+            }
+            if (recordLength(readSegment, readPosition) > 0) {
+                log.warn("Skipping corrupt journal record in segment {} at position {} and the rest of the segment",
+                    readSegment.id, readPosition);
+            }
+            // the current segment is exhausted, it can be compacted away once the cursor moves on
+            Segment exhausted = readSegment;
+            readSegment = segments.higherEntry(exhausted.id).getValue();
+            readPosition = 0;
+            storeCursor();
+            segments.remove(exhausted.id);
+            unflushedSegments.remove(exhausted);
+            deleteSegment(exhausted);
+        }
+    }
+
+    private void storeCursor() {
+        cursor.putLong(0, readSegment.id);
+        cursor.putLong(Long.BYTES, readPosition);
+        cursorChanged = true;
+    }
+
+    private void rollSegment(int minimumSize) {
+        long id = writeSegment.id + 1;
+        try {
+            writeSegment = openSegment(id, Math.max(segmentSize, minimumSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create journal segment " + id + " in " + directory, e);
+        }
+        segments.put(id, writeSegment);
+    }
+
+    private void recover() throws IOException {
+        List<Path> segmentFiles;
+        try (Stream<Path> files = Files.list(directory)) {
+            segmentFiles = files
+                .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+        long cursorSegment = cursor.getLong(0);
+        int cursorPosition = (int) cursor.getLong(Long.BYTES);
+        for (Path file : segmentFiles) {
+            long id = segmentId(file);
+            if (id < cursorSegment) {
+                Files.deleteIfExists(file);
+            } else {
+                segments.put(id, openSegment(id, (int) Files.size(file)));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(cursorSegment, openSegment(cursorSegment, segmentSize));
+        }
+        readSegment = segments.firstEntry().getValue();
+        readPosition = readSegment.id == cursorSegment ? cursorPosition : 0;
+        storeCursor();
+
+        int pending = 0;
+        int position = readPosition;
+        for (Segment segment : segments.values()) {
+            int length;
+            while ((length = validRecordLength(segment, position)) > 0) {
+                position += RECORD_HEADER_SIZE + length;
+                pending++;
+            }
+            segment.writePosition = position;
+            position = 0;
+        }
+        writeSegment = segments.lastEntry().getValue();
+        // anything past the last valid record is a torn write, clear it so it is never mistaken for data
+        ByteBuffer tail = writeSegment.buffer;
+        for (int i = writeSegment.writePosition; i < tail.capacity(); i++) {
+            if (tail.get(i) != 0) {
+                log.warn("Truncating torn journal record in segment {} at position {}", writeSegment.id,
+                    writeSegment.writePosition);
+                for (int j = writeSegment.writePosition; j < tail.capacity(); j++) {
+                    tail.put(j, (byte) 0);
+                }
+                writeSegment.buffer.force();
+                break;
+            }
+        }
+        size = pending;
+    }
+
+    private int validRecordLength(Segment segment, int position) {
+        byte[] payload = validPayload(segment, position);
+        return payload == null ? 0 : payload.length;
+    }
+
+    /**
+     * @return the payload of the record at the position, null when there is no record or its checksum does not match
+     */
+    private static byte[] validPayload(Segment segment, int position) {
+        int length = recordLength(segment, position);
+        if (length <= 0) {
+            return null;
+        }
+        byte[] payload = payload(segment, position, length);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == segment.buffer.getInt(position + Integer.BYTES) ? payload : null;
+    }
+
+    private static int recordLength(Segment segment, int position) {
+        ByteBuffer buffer = segment.buffer;
+        if (position + RECORD_HEADER_SIZE > buffer.capacity()) {
+            return 0;
+        }
+        int length = buffer.getInt(position);
+        return length > 0 && position + RECORD_HEADER_SIZE + length <= buffer.capacity() ? length : 0;
+    }
+
+    private static byte[] payload(Segment segment, int position, int length) {
+        byte[] payload = new byte[length];
+        segment.buffer.duplicate().position(position + RECORD_HEADER_SIZE).get(payload);
+        return payload;
+    }
+
+    private Segment openSegment(long id, int capacity) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+        return new Segment(id, file, map(file, capacity));
+    }
+
+    private void deleteSegment(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.file);
+            log.debug("Deleted consumed journal segment {}", segment.file);
+        } catch (IOException e) {
+            log.warn("Unable to delete consumed journal segment {}", segment.file, e);
+        }
+    }
+
+    private static MappedByteBuffer map(Path file, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            return channel.map(MapMode.READ_WRITE, 0, Math.max(capacity, channel.size()));
+        }
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Journal queue in " + directory + " is closed");
+        }
+    }
+
+    private byte[] encode(E element) {
+        try {
+            return objectMapper.writeValueAsBytes(element);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to encode journal element", e);
+        }
+    }
+
+    private E decode(byte[] payload) {
+        try {
+            return objectMapper.readValue(payload, elementType);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to decode journal element", e);
+        }
+    }
+
+    private static final class Segment {
+
+        private final long id;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        private Segment(long id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        private int remaining() {
+            return buffer.capacity() - writePosition;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.mybank.payments.batches.integration.queue;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compact set of string identifiers with per-entry expiry, kept outside of the Java heap.
+ * <p>Identifiers are not stored themselves: each one is reduced to a 128-bit fingerprint, so an entry takes 24 bytes
+ * (fingerprint plus expiry timestamp) in an open-addressing table held by a direct buffer. With 128 bits the chance
+ * of two distinct batch order IDs colliding is negligible, unlike with a Bloom filter, which would silently drop
+ * genuine batch orders as duplicates.</p>
+ * <p>Expired entries are reused in place and purged whenever the table is rebuilt.</p>
+ */
+public class OffHeapIdSet {
+
+    /**
+     * Expiry of entries which stay in the set until they are explicitly expired.
+     */
+    public static final long NEVER = Long.MAX_VALUE;
+
+    private static final int SLOT_SIZE = 3 * Long.BYTES;
+    private static final int FINGERPRINT_LOW = 0;
+    private static final int FINGERPRINT_HIGH = Long.BYTES;
+    private static final int EXPIRES_AT = 2 * Long.BYTES;
+    private static final long EMPTY = 0;
+    private static final long EXPIRED = 1;
+
+    private ByteBuffer table;
+    private int capacity;
+    private int used;
+
+    /**
+     * @param initialCapacity number of slots to start with, rounded up to the next power of two
+     */
+    public OffHeapIdSet(int initialCapacity) {
+        allocate(Math.max(16, Integer.highestOneBit(Math.max(1, initialCapacity - 1)) << 1));
+    }
+
+    /**
+     * Adds the identifier unless it is already present and not expired.
+     *
+     * @param id        identifier to add
+     * @param expiresAt epoch millisecond from which the entry no longer counts, or {@link #NEVER}
+     * @param now       current epoch millisecond
+     * @return {@code true} if the identifier was added, {@code false} if it was already present
+     */
+    public synchronized boolean add(String id, long expiresAt, long now) {
+        long low = fingerprint(id, 0x9E3779B97F4A7C15L);
+        long high = fingerprint(id, 0xC2B2AE3D27D4EB4FL);
+        int mask = capacity - 1;
+        int reusable = -1;
+        int slot = (int) low & mask;
+        while (true) {
+            long slotExpiresAt = expiresAt(slot);
+            if (slotExpiresAt == EMPTY) {
+                break;
+            }
+            if (matches(slot, low, high)) {
+                if (slotExpiresAt > now) {
+                    return false;
+                }
+                table.putLong(offset(slot) + EXPIRES_AT, expiresAt);
+                return true;
+            }
+            if (reusable < 0 && slotExpiresAt <= now) {
+                reusable = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (reusable >= 0) {
+            slot = reusable;
+        } else {
+            used++;
+        }
+        int offset = offset(slot);
+        table.putLong(offset + FINGERPRINT_LOW, low);
+        table.putLong(offset + FINGERPRINT_HIGH, high);
+        table.putLong(offset + EXPIRES_AT, expiresAt);
+        if (used > capacity / 2) {
+            rebuild(now);
+        }
+        return true;
+    }
+
+    /**
+     * Changes the expiry of an identifier already in the set.
+     *
+     * @return {@code false} if the identifier is not in the set
+     */
+    public synchronized boolean expireAt(String id, long expiresAt) {
+        int slot = find(id);
+        if (slot < 0) {
+            return false;
+        }
+        table.putLong(offset(slot) + EXPIRES_AT, Math.max(EXPIRED, expiresAt));
+        return true;
+    }
+
+    /**
+     * Removes the identifier from the set straight away.
+     */
+    public boolean remove(String id) {
+        return expireAt(id, EXPIRED);
+    }
+
+    public synchronized boolean contains(String id, long now) {
+        int slot = find(id);
+        return slot >= 0 && expiresAt(slot) > now;
+    }
+
+    /**
+     * @return number of slots in use, including entries which expired but were not purged yet
+     */
+    public synchronized int getUsedSlots() {
+        return used;
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    private int find(String id) {
+        long low = fingerprint(id, 0x9E3779B97F4A7C15L);
+        long high = fingerprint(id, 0xC2B2AE3D27D4EB4FL);
+        int mask = capacity - 1;
+        int slot = (int) low & mask;
+        while (expiresAt(slot) != EMPTY) {
+            if (matches(slot, low, high)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rebuild(long now) {
+        ByteBuffer previous = table;
+        int previousCapacity = capacity;
+        int live = 0;
+        for (int slot = 0; slot < previousCapacity; slot++) {
+            if (previous.getLong(offset(slot) + EXPIRES_AT) > now) {
+                live++;
+            }
+        }
+        // grow only when live entries would keep the table above a quarter full, otherwise purging is enough
+        allocate(live > previousCapacity / 4 ? previousCapacity << 1 : previousCapacity);
+        int mask = capacity - 1;
+        for (int slot = 0; slot < previousCapacity; slot++) {
+            int offset = offset(slot);
+            long expiresAt = previous.getLong(offset + EXPIRES_AT);
+            if (expiresAt > now) {
+                long low = previous.getLong(offset + FINGERPRINT_LOW);
+                int target = (int) low & mask;
+                while (expiresAt(target) != EMPTY) {
+                    target = (target + 1) & mask;
+                }
+                int targetOffset = offset(target);
+                table.putLong(targetOffset + FINGERPRINT_LOW, low);
+                table.putLong(targetOffset + FINGERPRINT_HIGH, previous.getLong(offset + FINGERPRINT_HIGH));
+                table.putLong(targetOffset + EXPIRES_AT, expiresAt);
+                used++;
+            }
+        }
+    }
+
+    private void allocate(int slots) {
+        if ((long) slots * SLOT_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Identifier set cannot grow beyond " + capacity + " slots");
+        }
+        table = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+        capacity = slots;
+        used = 0;
+    }
+
+    private boolean matches(int slot, long low, long high) {
+        int offset = offset(slot);
+        return table.getLong(offset + FINGERPRINT_LOW) == low && table.getLong(offset + FINGERPRINT_HIGH) == high;
+    }
+
+    private long expiresAt(int slot) {
+        return table.getLong(offset(slot) + EXPIRES_AT);
+    }
+
+    private static int offset(int slot) {
+        return slot * SLOT_SIZE;
+    }
+
+    private static long fingerprint(String id, long seed) {
+        long hash = seed ^ id.length();
+        for (int i = 0; i < id.length(); i++) {
+            hash = (hash ^ id.charAt(i)) * 0x100000001B3L;
+            hash = Long.rotateLeft(hash, 27) * seed;
+        }
+        // murmur3 finalizer, spreads the bits so the low ones can be used as table index
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
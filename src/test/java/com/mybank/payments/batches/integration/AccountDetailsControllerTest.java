@@ -4,23 +4,36 @@ import static org.hamcrest.core.Is.is;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.mybank.payments.batches.integration.account.AccountResolver;
+import com.mybank.payments.batches.integration.account.AccountResolverConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 @WebMvcTest(AccountDetailsController.class)
 @AutoConfigureMockMvc(addFilters = false)
+@Import({AccountResolverConfiguration.class, SimpleMeterRegistry.class})
 class AccountDetailsControllerTest {
 
     private static final String TEST_COMPANY_ID = "1234567890";
 
+    private static final String NO_ACCOUNT_COMPANY_ID = "9999999999";
+
     @Autowired
     MockMvc mockMvc;
 
+    @SpyBean
+    AccountResolver accountResolver;
+
     @Test
     void testGetAccountDetails() throws Exception {
 
@@ -35,4 +48,18 @@ class AccountDetailsControllerTest {
 
     }
 
+    @Test
+    void testGetAccountDetailsNotFound() throws Exception {
+        Mockito.doReturn(Optional.empty()).when(accountResolver).resolveAccountNumber(NO_ACCOUNT_COMPANY_ID);
+
+        mockMvc.perform(
+                MockMvcRequestBuilders
+                    .get("/service-api/v2/account-details")
+                    .param("companyId", NO_ACCOUNT_COMPANY_ID)
+                    .param("companyName", "TEST")
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isNotFound());
+
+    }
+
 }
@@ -1,6 +1,9 @@
 package com.mybank.payments.batches.integration;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.LinkedList;
 import java.util.Queue;
 import java.util.UUID;
 
@@ -10,10 +13,15 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
@@ -24,11 +32,19 @@ import com.backbase.payments.batches.integration.outbound.model.IntegrationSchem
 import com.backbase.payments.batches.integration.outbound.model.OriginatorAccountIdentification;
 import com.backbase.payments.batches.integration.outbound.model.OriginatorAccountIdentificationIdentification;
 import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mybank.payments.batches.integration.queue.BatchRequestQueueProperties;
+import com.mybank.payments.batches.integration.queue.DeduplicatingQueue;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
-@WebMvcTest(BatchOrderController.class)
+@WebMvcTest(value = BatchOrderController.class, properties = {
+        "service.batchRequestQueue.highWaterMark=10",
+        "service.batchRequestQueue.retryAfter=15s"
+})
 @AutoConfigureMockMvc(addFilters = false)
 class BatchOrderControllerTest {
 
@@ -49,6 +65,75 @@ class BatchOrderControllerTest {
 
         String batchOrderId = UUID.randomUUID().toString();
 
+        MockHttpServletResponse response = postBatchOrder(batchOrderId);
+
+        Assertions.assertEquals(HttpStatus.ACCEPTED.value(), response.getStatus());
+
+        ArgumentCaptor<PostBatchOrderRequest> postBatchOrderRequestCaptor =
+                ArgumentCaptor.forClass(PostBatchOrderRequest.class);
+        Mockito.verify(batchRequestQueue).offer(postBatchOrderRequestCaptor.capture());
+
+        Assertions.assertEquals(batchOrderId, postBatchOrderRequestCaptor.getValue().getId());
+    }
+
+    @Test
+    void testRejectedAboveHighWaterMark() throws Exception {
+        Mockito.when(batchRequestQueue.size()).thenReturn(10);
+
+        MockHttpServletResponse response = postBatchOrder(UUID.randomUUID().toString());
+
+        Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+        Assertions.assertEquals("15", response.getHeader(HttpHeaders.RETRY_AFTER));
+        Mockito.verify(batchRequestQueue, Mockito.never()).offer(Mockito.any());
+    }
+
+    @Test
+    void testRejectedWhenQueueFull() throws Exception {
+        Mockito.when(batchRequestQueue.offer(Mockito.any())).thenReturn(false);
+
+        MockHttpServletResponse response = postBatchOrder(UUID.randomUUID().toString());
+
+        Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+        Assertions.assertEquals("15", response.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void testDuplicateAcknowledgedAboveHighWaterMark() {
+        DeduplicatingQueue<PostBatchOrderRequest> queue = new DeduplicatingQueue<>(new LinkedList<>(),
+                PostBatchOrderRequest::getId, Duration.ofHours(1), 16, Clock.systemUTC());
+        BatchRequestQueueProperties properties = new BatchRequestQueueProperties();
+        properties.setHighWaterMark(1);
+        BatchOrderController controller = new BatchOrderController(queue, event -> { }, properties,
+                new SimpleMeterRegistry());
+
+        Assertions.assertEquals(HttpStatus.ACCEPTED, controller.postBatches(new PostBatchOrderRequest().id("BATCH1"))
+                .getStatusCode());
+        Assertions.assertEquals(HttpStatus.ACCEPTED, controller.postBatches(new PostBatchOrderRequest().id("BATCH1"))
+                .getStatusCode());
+        Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS, controller.postBatches(
+                new PostBatchOrderRequest().id("BATCH2")).getStatusCode());
+        Assertions.assertEquals(1, queue.size());
+        Assertions.assertEquals(1, queue.getDuplicates());
+    }
+
+    @Test
+    void testFailedBatchOrderQueuedAgain() {
+        DeduplicatingQueue<PostBatchOrderRequest> queue = new DeduplicatingQueue<>(new LinkedList<>(),
+                PostBatchOrderRequest::getId, Duration.ofHours(1), 16, Clock.systemUTC());
+        BatchOrderController controller = new BatchOrderController(queue, event -> { },
+                new BatchRequestQueueProperties(), new SimpleMeterRegistry());
+        controller.postBatches(new PostBatchOrderRequest().id("BATCH1"));
+        queue.poll();
+
+        controller.onBatchOrderFailed(new BatchOrderFailedEvent("BATCH1"));
+        ResponseEntity<PostBatchOrderResponse> response = controller.postBatches(
+                new PostBatchOrderRequest().id("BATCH1"));
+
+        Assertions.assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        Assertions.assertEquals("BATCH1", queue.poll().getId());
+    }
+
+    private MockHttpServletResponse postBatchOrder(String batchOrderId) throws Exception {
         PostBatchOrderRequest postBatchOrderRequest = new PostBatchOrderRequest()
                 .id(batchOrderId)
                 .status(BatchStatus.READY)
@@ -68,21 +153,24 @@ class BatchOrderControllerTest {
                 .requestedExecutionDate(LocalDate.now())
                 .type("T1");
 
-        MockHttpServletResponse response = mockMvc.perform(
+        return mockMvc.perform(
                 MockMvcRequestBuilders
                         .post("/service-api/v2/batch-orders")
                         .content(om.writeValueAsBytes(postBatchOrderRequest))
                         .accept(MediaType.APPLICATION_JSON)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andReturn().getResponse();
+    }
 
-        Assertions.assertEquals(HttpStatus.ACCEPTED.value(), response.getStatus());
+    @TestConfiguration
+    @EnableConfigurationProperties(BatchRequestQueueProperties.class)
+    static class BatchOrderControllerTestConfiguration {
 
-        ArgumentCaptor<PostBatchOrderRequest> postBatchOrderRequestCaptor =
-                ArgumentCaptor.forClass(PostBatchOrderRequest.class);
-        Mockito.verify(batchRequestQueue).offer(postBatchOrderRequestCaptor.capture());
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
 
-        Assertions.assertEquals(batchOrderId, postBatchOrderRequestCaptor.getValue().getId());
     }
 
 }
@@ -0,0 +1,87 @@
+package com.mybank.payments.batches.integration;
+
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.mybank.payments.batches.integration.executor.BatchOrderExecutor;
+import com.mybank.payments.batches.integration.executor.ProcessedResultsExecutor;
+import com.mybank.payments.batches.integration.executor.StripedWorkerPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.LinkedList;
+import java.util.Queue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+class ExampleManagerTest {
+
+    private final BatchOrderExecutor batchOrderExecutor = mock(BatchOrderExecutor.class);
+    private final Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+    private ExampleManager exampleManager;
+
+    @AfterEach
+    void tearDown() {
+        exampleManager.shutdown();
+    }
+
+    @Test
+    void testBurstOfBatchOrdersDispatchedInOneRun() {
+        exampleManager = createExampleManager(true, Duration.ofMillis(200));
+
+        for (int i = 0; i < 5; i++) {
+            exampleManager.onBatchOrderQueued(new BatchOrderQueuedEvent("BATCH" + i));
+        }
+
+        verify(batchOrderExecutor, after(100).never()).execute();
+        verify(batchOrderExecutor, timeout(2000)).execute();
+        verify(batchOrderExecutor, after(300).times(1)).execute();
+    }
+
+    @Test
+    void testBatchOrderQueuedAfterRunDispatchedAgain() {
+        exampleManager = createExampleManager(true, Duration.ofMillis(10));
+
+        exampleManager.onBatchOrderQueued(new BatchOrderQueuedEvent("BATCH1"));
+        verify(batchOrderExecutor, timeout(2000)).execute();
+        exampleManager.onBatchOrderQueued(new BatchOrderQueuedEvent("BATCH2"));
+
+        verify(batchOrderExecutor, timeout(2000).times(2)).execute();
+    }
+
+    @Test
+    void testNotDispatchedWhenNotEventDriven() {
+        exampleManager = createExampleManager(false, Duration.ofMillis(10));
+
+        exampleManager.onBatchOrderQueued(new BatchOrderQueuedEvent("BATCH1"));
+
+        verify(batchOrderExecutor, after(300).never()).execute();
+    }
+
+    @Test
+    void testBatchOrderQueuedAfterShutdownIgnored() {
+        exampleManager = createExampleManager(true, Duration.ofMillis(10));
+        exampleManager.shutdown();
+
+        exampleManager.onBatchOrderQueued(new BatchOrderQueuedEvent("BATCH1"));
+
+        verify(batchOrderExecutor, after(300).never()).execute();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ExampleManager createExampleManager(boolean eventDriven, Duration dispatchWindow) {
+        BatchOrderExecutorProperties properties = new BatchOrderExecutorProperties();
+        properties.setEventDriven(eventDriven);
+        properties.setDispatchWindow(dispatchWindow);
+        // no fixed rate runs, only the dispatched ones
+        ExampleManager exampleManager = new ExampleManager(batchOrderExecutor, mock(ObjectProvider.class),
+            batchRequestQueue, new StripedWorkerPool(0, 0), new SimpleMeterRegistry(), properties, 0, 1, 0, 1);
+        exampleManager.start();
+        return exampleManager;
+    }
+}
@@ -0,0 +1,151 @@
+package com.mybank.payments.batches.integration.account;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class AccountResolverCacheTest {
+
+    private Instant now = Instant.parse("2022-01-03T10:00:00Z");
+
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    };
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AccountResolverProperties properties = new AccountResolverProperties();
+
+    @Test
+    void testAccountNumbersCachedUntilExpired() {
+        AccountResolverCache cache = cache(companyId -> Optional.of("ACC" + companyId));
+
+        Assertions.assertEquals(Optional.of("ACC1"), cache.resolveAccountNumber("1"));
+        now = now.plus(Duration.ofMinutes(5));
+        Assertions.assertEquals(Optional.of("ACC1"), cache.resolveAccountNumber("1"));
+        Assertions.assertEquals(1, lookups.get());
+
+        now = now.plus(Duration.ofMinutes(6));
+        Assertions.assertEquals(Optional.of("ACC1"), cache.resolveAccountNumber("1"));
+        Assertions.assertEquals(2, lookups.get());
+        Assertions.assertEquals(1, meterRegistry.get("account.resolver.cache.requests").tag("result", "hit")
+            .counter().count());
+        Assertions.assertEquals(2, meterRegistry.get("account.resolver.lookup").tag("outcome", "found")
+            .timer().count());
+    }
+
+    @Test
+    void testCompaniesWithoutAccountCachedShorter() {
+        AccountResolverCache cache = cache(companyId -> Optional.empty());
+
+        Assertions.assertEquals(Optional.empty(), cache.resolveAccountNumber("1"));
+        Assertions.assertEquals(Optional.empty(), cache.resolveAccountNumber("1"));
+        Assertions.assertEquals(1, lookups.get());
+
+        now = now.plus(Duration.ofMinutes(2));
+        Assertions.assertEquals(Optional.empty(), cache.resolveAccountNumber("1"));
+        Assertions.assertEquals(2, lookups.get());
+    }
+
+    @Test
+    void testLeastRecentlyRequestedEvicted() {
+        properties.setMaxSize(2);
+        AccountResolverCache cache = cache(companyId -> Optional.of("ACC" + companyId));
+
+        cache.resolveAccountNumber("1");
+        cache.resolveAccountNumber("2");
+        cache.resolveAccountNumber("1");
+        cache.resolveAccountNumber("3");
+        Assertions.assertEquals(3, lookups.get());
+
+        cache.resolveAccountNumber("1");
+        Assertions.assertEquals(3, lookups.get());
+        cache.resolveAccountNumber("2");
+        Assertions.assertEquals(4, lookups.get());
+        Assertions.assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testRequestedAccountNumbersRefreshedAhead() {
+        AccountResolverCache cache = cache(companyId -> Optional.of("ACC" + companyId + "-" + lookups.get()));
+
+        Assertions.assertEquals(Optional.of("ACC1-1"), cache.resolveAccountNumber("1"));
+        now = now.plus(Duration.ofMinutes(9));
+
+        // served from the cache while refreshed
+        Assertions.assertEquals(Optional.of("ACC1-1"), cache.resolveAccountNumber("1"));
+        Assertions.assertEquals(2, lookups.get());
+        now = now.plus(Duration.ofMinutes(5));
+        Assertions.assertEquals(Optional.of("ACC1-2"), cache.resolveAccountNumber("1"));
+        Assertions.assertEquals(2, lookups.get());
+    }
+
+    @Test
+    void testConcurrentMissesLookedUpOnce() throws Exception {
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch releaseLookup = new CountDownLatch(1);
+        AccountResolverCache cache = cache(companyId -> {
+            lookupStarted.countDown();
+            await(releaseLookup);
+            return Optional.of("ACC" + companyId);
+        });
+        ExecutorService requests = Executors.newFixedThreadPool(4);
+        try {
+            Future<Optional<String>> first = requests.submit(() -> cache.resolveAccountNumber("1"));
+            Assertions.assertTrue(lookupStarted.await(5, TimeUnit.SECONDS));
+            List<Future<Optional<String>>> others = List.of(
+                requests.submit(() -> cache.resolveAccountNumber("1")),
+                requests.submit(() -> cache.resolveAccountNumber("1")));
+            Thread.sleep(50);
+            releaseLookup.countDown();
+
+            Assertions.assertEquals(Optional.of("ACC1"), first.get(5, TimeUnit.SECONDS));
+            for (Future<Optional<String>> other : others) {
+                Assertions.assertEquals(Optional.of("ACC1"), other.get(5, TimeUnit.SECONDS));
+            }
+            Assertions.assertEquals(1, lookups.get());
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    private AccountResolverCache cache(AccountResolver accountResolver) {
+        return new AccountResolverCache(companyId -> {
+            lookups.incrementAndGet();
+            return accountResolver.resolveAccountNumber(companyId);
+        }, properties, meterRegistry, clock, Runnable::run);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.mybank.payments.batches.integration.account;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures a lookup in the account snapshot index of millions of companies, half of the lookups for companies which
+ * are not in the snapshot.
+ * <p>Run it from the main method.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccountSnapshotIndexBenchmark {
+
+    private static final int LOOKUPS = 1 << 16;
+
+    @Param({"1000000", "5000000"})
+    int companies;
+
+    private final String[] companyIds = new String[LOOKUPS];
+    private Path directory;
+    private AccountSnapshotIndex index;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("account-index-");
+        Map<String, String> accountNumbers = new HashMap<>(companies * 2);
+        for (int i = 0; i < companies; i++) {
+            accountNumbers.put(companyId(i * 2L), "ACC" + i);
+        }
+        Path file = directory.resolve("accounts.idx");
+        AccountSnapshotIndex.write(accountNumbers, file);
+        index = AccountSnapshotIndex.open(file);
+        Random random = new Random(42);
+        for (int i = 0; i < LOOKUPS; i++) {
+            companyIds[i] = companyId(random.nextInt(companies * 2));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Optional<String> find() {
+        return index.find(companyIds[next++ & (LOOKUPS - 1)]);
+    }
+
+    private static String companyId(long i) {
+        return String.format("%010d", 1_000_000_000L + i);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(AccountSnapshotIndexBenchmark.class.getSimpleName())
+            .build())
+            .run();
+    }
+}
@@ -0,0 +1,47 @@
+package com.mybank.payments.batches.integration.account;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AccountSnapshotIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testAccountNumbersFoundInIndex() throws Exception {
+        Path snapshot = directory.resolve("accounts.csv");
+        Files.writeString(snapshot, "companyId,accountNumber\n"
+            + "1000000002,ACC2\n"
+            + "1000000001,ACC1\n"
+            + "100,ACC100\n"
+            + "\n"
+            + "1000000002,ACC2-NEW\n");
+        Path file = directory.resolve("accounts.idx");
+
+        AccountSnapshotIndex.build(snapshot, file);
+        AccountSnapshotIndex index = AccountSnapshotIndex.open(file);
+
+        Assertions.assertEquals(3, index.size());
+        Assertions.assertEquals(Optional.of("ACC1"), index.find("1000000001"));
+        Assertions.assertEquals(Optional.of("ACC2-NEW"), index.find("1000000002"));
+        Assertions.assertEquals(Optional.of("ACC100"), index.find("100"));
+        Assertions.assertEquals(Optional.empty(), index.find("10"));
+        Assertions.assertEquals(Optional.empty(), index.find("1000000003"));
+        Assertions.assertEquals(Optional.empty(), index.find("10000000010"));
+        Assertions.assertFalse(Files.exists(directory.resolve("accounts.idx.tmp")));
+    }
+
+    @Test
+    void testInvalidSnapshotRejected() throws Exception {
+        Path snapshot = directory.resolve("accounts.csv");
+        Files.writeString(snapshot, "1000000001,ACC1\n1000000002\n");
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> AccountSnapshotIndex.build(snapshot, directory.resolve("accounts.idx")));
+    }
+}
@@ -0,0 +1,122 @@
+package com.mybank.payments.batches.integration.account;
+
+import com.mybank.payments.batches.integration.account.SnapshotAccountResolver.Completion;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SnapshotAccountResolverTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testNewSnapshotSwappedIn() throws Exception {
+        Path snapshot = directory.resolve("accounts.csv");
+        Path indexDirectory = directory.resolve("index");
+        SnapshotAccountResolver resolver = new SnapshotAccountResolver(snapshot, indexDirectory, Duration.ZERO,
+            Completion.STABLE);
+        try {
+            Assertions.assertEquals(Optional.empty(), resolver.resolveAccountNumber("1000000001"));
+
+            writeSnapshot(snapshot, "1000000001,ACC1\n", "2022-01-03T10:00:00Z");
+            resolver.checkSnapshot();
+            resolver.checkSnapshot();
+            Assertions.assertEquals(Optional.of("ACC1"), resolver.resolveAccountNumber("1000000001"));
+
+            writeSnapshot(snapshot, "1000000001,ACC1-NEW\n1000000002,ACC2\n", "2022-01-04T10:00:00Z");
+            resolver.checkSnapshot();
+            resolver.checkSnapshot();
+            Assertions.assertEquals(Optional.of("ACC1-NEW"), resolver.resolveAccountNumber("1000000001"));
+            Assertions.assertEquals(Optional.of("ACC2"), resolver.resolveAccountNumber("1000000002"));
+            Assertions.assertEquals(1, countIndexFiles(indexDirectory));
+
+            writeSnapshot(snapshot, "broken\n", "2022-01-05T10:00:00Z");
+            resolver.checkSnapshot();
+            resolver.checkSnapshot();
+            Assertions.assertEquals(Optional.of("ACC2"), resolver.resolveAccountNumber("1000000002"));
+            Assertions.assertEquals(1, countIndexFiles(indexDirectory));
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    void testSnapshotStillWrittenNotIndexed() throws Exception {
+        Path snapshot = directory.resolve("accounts.csv");
+        SnapshotAccountResolver resolver = new SnapshotAccountResolver(snapshot, directory.resolve("index"),
+            Duration.ZERO, Completion.STABLE);
+        try {
+            writeSnapshot(snapshot, "1000000001,ACC1\n1000000002,", "2022-01-03T10:00:00Z");
+            resolver.checkSnapshot();
+            Assertions.assertEquals(Optional.empty(), resolver.resolveAccountNumber("1000000001"));
+
+            writeSnapshot(snapshot, "1000000001,ACC1\n1000000002,ACC2\n", "2022-01-03T10:00:01Z");
+            resolver.checkSnapshot();
+            Assertions.assertEquals(Optional.empty(), resolver.resolveAccountNumber("1000000001"));
+
+            resolver.checkSnapshot();
+            Assertions.assertEquals(Optional.of("ACC2"), resolver.resolveAccountNumber("1000000002"));
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    void testSnapshotIndexedOnceDoneMarkerWritten() throws Exception {
+        Path snapshot = directory.resolve("accounts.csv");
+        Path marker = directory.resolve("accounts.csv.done");
+        SnapshotAccountResolver resolver = new SnapshotAccountResolver(snapshot, directory.resolve("index"),
+            Duration.ZERO, Completion.DONE_MARKER);
+        try {
+            writeSnapshot(snapshot, "1000000001,ACC1\n", "2022-01-03T10:00:00Z");
+            writeSnapshot(marker, "", "2022-01-02T10:00:00Z");
+            resolver.checkSnapshot();
+            Assertions.assertEquals(Optional.empty(), resolver.resolveAccountNumber("1000000001"));
+
+            writeSnapshot(marker, "", "2022-01-03T10:00:00Z");
+            resolver.checkSnapshot();
+            Assertions.assertEquals(Optional.of("ACC1"), resolver.resolveAccountNumber("1000000001"));
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    void testLeftoverIndexFilesDeleted() throws Exception {
+        Path snapshot = directory.resolve("accounts.csv");
+        Path indexDirectory = Files.createDirectory(directory.resolve("index"));
+        Files.writeString(indexDirectory.resolve("accounts-1000.idx"), "stale");
+        Files.writeString(indexDirectory.resolve("accounts-2000.idx.tmp"), "partial");
+        writeSnapshot(snapshot, "1000000001,ACC1\n", "2022-01-03T10:00:00Z");
+
+        SnapshotAccountResolver resolver = new SnapshotAccountResolver(snapshot, indexDirectory, Duration.ZERO,
+            Completion.RENAMED);
+        try {
+            Assertions.assertEquals(Optional.of("ACC1"), resolver.resolveAccountNumber("1000000001"));
+            Assertions.assertFalse(Files.exists(indexDirectory.resolve("accounts-1000.idx")));
+            Assertions.assertFalse(Files.exists(indexDirectory.resolve("accounts-2000.idx.tmp")));
+            Assertions.assertEquals(1, countIndexFiles(indexDirectory));
+        } finally {
+            resolver.close();
+        }
+    }
+
+    private static void writeSnapshot(Path file, String content, String modifiedAt) throws Exception {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse(modifiedAt)));
+    }
+
+    private static long countIndexFiles(Path indexDirectory) throws Exception {
+        try (Stream<Path> indexFiles = Files.list(indexDirectory)) {
+            return indexFiles.count();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.mybank.payments.batches.integration.executor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class AdaptivePageSizerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(800);
+
+    @Test
+    void testFixedPageSize() {
+        AdaptivePageSizer pageSizer = new AdaptivePageSizer(settings(false), new SimpleMeterRegistry(), "RestTemplate");
+
+        pageSizer.record(100, FAST, 100);
+
+        Assertions.assertEquals(100, pageSizer.getPageSize());
+    }
+
+    @Test
+    void testGrowsOnFastFullPagesUpToMaximum() {
+        AdaptivePageSizer pageSizer = new AdaptivePageSizer(settings(true), new SimpleMeterRegistry(), "RestTemplate");
+
+        pageSizer.record(100, FAST, 100);
+        Assertions.assertEquals(200, pageSizer.getPageSize());
+        pageSizer.record(200, FAST, 200);
+        Assertions.assertEquals(400, pageSizer.getPageSize());
+        pageSizer.record(400, FAST, 400);
+        pageSizer.record(800, FAST, 800);
+        Assertions.assertEquals(1000, pageSizer.getPageSize());
+    }
+
+    @Test
+    void testKeepsPageSizeOnPartialPage() {
+        AdaptivePageSizer pageSizer = new AdaptivePageSizer(settings(true), new SimpleMeterRegistry(), "RestTemplate");
+
+        pageSizer.record(100, FAST, 42);
+
+        Assertions.assertEquals(100, pageSizer.getPageSize());
+    }
+
+    @Test
+    void testReturnsToBestPageSizeWhenSlow() {
+        AdaptivePageSizer pageSizer = new AdaptivePageSizer(settings(true), new SimpleMeterRegistry(), "RestTemplate");
+
+        pageSizer.record(100, FAST, 100);
+        pageSizer.record(200, FAST, 200);
+        pageSizer.record(400, SLOW, 400);
+        Assertions.assertEquals(200, pageSizer.getPageSize());
+
+        // stale page of a batch order started with the larger page size
+        pageSizer.record(400, SLOW, 400);
+        Assertions.assertEquals(200, pageSizer.getPageSize());
+
+        pageSizer.record(200, SLOW, 200);
+        Assertions.assertEquals(100, pageSizer.getPageSize());
+        pageSizer.record(100, SLOW, 100);
+        Assertions.assertEquals(100, pageSizer.getPageSize());
+    }
+
+    @Test
+    void testExportsMetrics() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AdaptivePageSizer pageSizer = new AdaptivePageSizer(settings(true), meterRegistry, "WebClient");
+
+        pageSizer.record(100, FAST, 100);
+
+        Assertions.assertEquals(200,
+            meterRegistry.get("batch.payments.page.size").tag("mode", "WebClient").gauge().value());
+        Assertions.assertEquals(1,
+            meterRegistry.get("batch.payments.page.latency").tag("mode", "WebClient").timer().count());
+    }
+
+    private static AdaptivePageSizer.Settings settings(boolean adaptive) {
+        AdaptivePageSizer.Settings settings = new AdaptivePageSizer.Settings();
+        settings.setAdaptive(adaptive);
+        settings.setTargetLatency(Duration.ofMillis(500));
+        return settings;
+    }
+}
@@ -0,0 +1,67 @@
+package com.mybank.payments.batches.integration.executor;
+
+import com.mybank.payments.batches.integration.executor.BatchLifecycleMeters.Stage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BatchLifecycleMetersTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BatchLifecycleMeters meters = new BatchLifecycleMeters(meterRegistry, "RestTemplate");
+
+    @Test
+    void testStageTaggedWithOutcome() {
+        Assertions.assertEquals("order", meters.time(Stage.GET_BATCH_ORDER, () -> "order"));
+        Assertions.assertThrows(IllegalStateException.class, () -> meters.time(Stage.GET_BATCH_ORDER, () -> {
+            throw new IllegalStateException();
+        }));
+
+        Assertions.assertEquals(1, stageCount("getBatchOrder", BatchLifecycleMeters.SUCCESS));
+        Assertions.assertEquals(1, stageCount("getBatchOrder", BatchLifecycleMeters.ERROR));
+    }
+
+    @Test
+    void testTransitionTaggedWithStatus() {
+        meters.timeTransition("DOWNLOADING", () -> null);
+        meters.timeTransition("PROCESSED", () -> null);
+        meters.timeTransition("PROCESSED", () -> null);
+
+        Assertions.assertEquals(2, meterRegistry.get("batch.status.transition.latency")
+            .tag("mode", "RestTemplate")
+            .tag("status", "PROCESSED")
+            .tag("outcome", BatchLifecycleMeters.SUCCESS)
+            .timer()
+            .count());
+    }
+
+    @Test
+    void testCompletedBatchOrdersAndPayments() {
+        meters.batchOrderCompleted(BatchLifecycleMeters.PROCESSED, 98, 2);
+        meters.batchOrderCompleted(BatchLifecycleMeters.REJECTED, 0, 0);
+        meters.batchOrdersCompleted(BatchLifecycleMeters.PROCESSED, 3, 10, 0);
+
+        Assertions.assertEquals(4, completed("batch.orders.completed", BatchLifecycleMeters.PROCESSED));
+        Assertions.assertEquals(1, completed("batch.orders.completed", BatchLifecycleMeters.REJECTED));
+        Assertions.assertEquals(108, completed("batch.payments.completed", BatchLifecycleMeters.PROCESSED));
+        Assertions.assertEquals(2, completed("batch.payments.completed", BatchLifecycleMeters.REJECTED));
+    }
+
+    private long stageCount(String stage, String outcome) {
+        return meterRegistry.get("batch.stage.latency")
+            .tag("mode", "RestTemplate")
+            .tag("stage", stage)
+            .tag("outcome", outcome)
+            .timer()
+            .count();
+    }
+
+    private double completed(String name, String outcome) {
+        return meterRegistry.get(name)
+            .tag("mode", "RestTemplate")
+            .tag("outcome", outcome)
+            .counter()
+            .count();
+    }
+}
@@ -0,0 +1,95 @@
+package com.mybank.payments.batches.integration.executor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ExecutorLoopTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testTriggersCoalescedIntoTheScheduledRun() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch ran = new CountDownLatch(1);
+        ExecutorLoop loop = new ExecutorLoop("test", () -> {
+            runs.incrementAndGet();
+            ran.countDown();
+        }, meterRegistry);
+
+        for (int i = 0; i < 10; i++) {
+            loop.trigger(100);
+        }
+
+        Assertions.assertTrue(ran.await(5, TimeUnit.SECONDS));
+        loop.shutdown();
+        Assertions.assertTrue(loop.awaitTermination());
+        Assertions.assertEquals(1, runs.get());
+    }
+
+    @Test
+    void testRunsOverlapUpToConcurrency() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        AtomicInteger overlapping = new AtomicInteger();
+        ExecutorLoop loop = new ExecutorLoop("concurrent", () -> {
+            started.countDown();
+            try {
+                if (started.await(5, TimeUnit.SECONDS)) {
+                    overlapping.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 2, meterRegistry);
+
+        loop.trigger(0);
+        while (started.getCount() == 2) {
+            sleep(5);
+        }
+        loop.trigger(0);
+
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        loop.shutdown();
+        Assertions.assertTrue(loop.awaitTermination());
+        Assertions.assertEquals(2, overlapping.get());
+    }
+
+    @Test
+    void testRunsAndBusyTimeOfFailingRunsRecorded() throws Exception {
+        ExecutorLoop loop = new ExecutorLoop("failing", () -> {
+            sleep(20);
+            throw new IllegalStateException("run failed");
+        }, meterRegistry);
+
+        loop.trigger(0);
+        loop.shutdown();
+        Assertions.assertTrue(loop.awaitTermination());
+
+        Assertions.assertEquals(1, meterRegistry.get("batch.executor.loop.run").tag("loop", "failing").timer().count());
+        Assertions.assertTrue(meterRegistry.get("batch.executor.loop.busy").tag("loop", "failing").functionCounter().count()
+            >= 0.02);
+    }
+
+    @Test
+    void testTriggerIgnoredAfterShutdown() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        ExecutorLoop loop = new ExecutorLoop("stopped", runs::incrementAndGet, meterRegistry);
+        loop.shutdown();
+
+        loop.trigger(0);
+
+        Assertions.assertTrue(loop.awaitTermination());
+        Assertions.assertEquals(0, runs.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
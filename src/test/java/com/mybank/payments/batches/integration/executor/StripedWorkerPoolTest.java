@@ -0,0 +1,152 @@
+package com.mybank.payments.batches.integration.executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.mybank.payments.batches.integration.ExampleMode;
+
+class StripedWorkerPoolTest {
+
+    private final StripedWorkerPool workerPool = new StripedWorkerPool(4, 100);
+
+    @AfterEach
+    void shutdown() {
+        workerPool.shutdown();
+    }
+
+    @Test
+    void testBatchOrdersOfCompanyKeepArrivalOrder() throws InterruptedException {
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        for (int i = 0; i < 50; i++) {
+            batchRequestQueue.add(batchOrder("C" + (i % 5), "BATCH" + i));
+        }
+        RecordingBatchOrderExecutor executor = new RecordingBatchOrderExecutor(50);
+
+        workerPool.dispatch(batchRequestQueue, executor);
+
+        Assertions.assertTrue(executor.done.await(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(batchRequestQueue.isEmpty());
+        for (int company = 0; company < 5; company++) {
+            List<Integer> processed = executor.processed.get("C" + company);
+            List<Integer> sorted = new ArrayList<>(processed);
+            Collections.sort(sorted);
+            Assertions.assertEquals(10, processed.size());
+            Assertions.assertEquals(sorted, processed);
+        }
+    }
+
+    @Test
+    void testSlowCompanyDoesNotHoldUpOtherLanes() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingBatchOrderExecutor executor = new RecordingBatchOrderExecutor(2) {
+            @Override
+            protected void process(PostBatchOrderRequest batchOrder) throws InterruptedException {
+                if ("SLOW".equals(batchOrder.getCompanyId())) {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                super.process(batchOrder);
+            }
+        };
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        batchRequestQueue.add(batchOrder("SLOW", "BATCH0"));
+        // find a company which is striped to another lane than the slow one
+        String otherCompany = "C0";
+        for (int i = 1; Math.floorMod("SLOW".hashCode(), 4) == Math.floorMod(otherCompany.hashCode(), 4); i++) {
+            otherCompany = "C" + i;
+        }
+        batchRequestQueue.add(batchOrder(otherCompany, "BATCH1"));
+
+        workerPool.dispatch(batchRequestQueue, executor);
+
+        Assertions.assertFalse(executor.done.await(200, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(1, executor.done.getCount());
+        Assertions.assertNotNull(executor.processed.get(otherCompany));
+        release.countDown();
+        Assertions.assertTrue(executor.done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testBatchOrdersLeftInQueueWhileLaneFull() throws InterruptedException {
+        StripedWorkerPool boundedWorkerPool = new StripedWorkerPool(1, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingBatchOrderExecutor executor = new RecordingBatchOrderExecutor(5) {
+            @Override
+            protected void process(PostBatchOrderRequest batchOrder) throws InterruptedException {
+                release.await(10, TimeUnit.SECONDS);
+                super.process(batchOrder);
+            }
+        };
+        Queue<PostBatchOrderRequest> batchRequestQueue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < 5; i++) {
+            batchRequestQueue.add(batchOrder("C" + i, "BATCH" + i));
+        }
+        try {
+            boundedWorkerPool.dispatch(batchRequestQueue, executor);
+
+            Assertions.assertEquals(3, batchRequestQueue.size());
+            release.countDown();
+            // the lane dispatches the batch orders left behind once it drained its own
+            Assertions.assertTrue(executor.done.await(10, TimeUnit.SECONDS));
+            Assertions.assertTrue(batchRequestQueue.isEmpty());
+        } finally {
+            boundedWorkerPool.shutdown();
+        }
+    }
+
+    private static PostBatchOrderRequest batchOrder(String companyId, String id) {
+        return new PostBatchOrderRequest().id(id).companyId(companyId);
+    }
+
+    private static class RecordingBatchOrderExecutor implements BatchOrderExecutor {
+
+        private final Map<String, List<Integer>> processed = new ConcurrentHashMap<>();
+        private final CountDownLatch done;
+
+        private RecordingBatchOrderExecutor(int expected) {
+            this.done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void execute(Queue<PostBatchOrderRequest> batchOrders) {
+            PostBatchOrderRequest batchOrder;
+            while ((batchOrder = batchOrders.poll()) != null) {
+                try {
+                    process(batchOrder);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        protected void process(PostBatchOrderRequest batchOrder) throws InterruptedException {
+            processed.computeIfAbsent(batchOrder.getCompanyId(), companyId -> Collections.synchronizedList(new ArrayList<>()))
+                .add(Integer.parseInt(batchOrder.getId().substring("BATCH".length())));
+            done.countDown();
+        }
+
+        @Override
+        public void execute() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ExampleMode getType() {
+            return ExampleMode.REST_TEMPLATE;
+        }
+    }
+
+}
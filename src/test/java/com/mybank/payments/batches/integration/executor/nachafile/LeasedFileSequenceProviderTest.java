@@ -0,0 +1,135 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import com.backbase.batches.nacha.dataprovider.FileSequenceProvider;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LeasedFileSequenceProviderTest {
+
+    private static final String SEQUENCE = FileSequenceProvider.SEQUENCE_VALUES;
+
+    @TempDir
+    Path directory;
+
+    private Instant now = Instant.parse("2022-01-03T10:00:00Z");
+
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    };
+
+    private final List<FileSequenceStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void closeStores() throws IOException {
+        for (FileSequenceStore store : stores) {
+            store.close();
+        }
+    }
+
+    @Test
+    void testDailyIdsFollowEachOtherAcrossLeases() {
+        LeasedFileSequenceProvider provider = createProvider(4);
+
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals(SEQUENCE.charAt(i), provider.getDailyId("1000000000"));
+        }
+        Assertions.assertEquals(SEQUENCE.charAt(0), provider.getDailyId("2000000000"));
+        provider.next("2000000000");
+        Assertions.assertEquals(SEQUENCE.charAt(2), provider.getDailyId("2000000000"));
+    }
+
+    @Test
+    void testUnusedLeaseSkippedAfterRestart() {
+        LeasedFileSequenceProvider provider = createProvider(4);
+        Assertions.assertEquals(SEQUENCE.charAt(0), provider.getDailyId("1000000000"));
+
+        LeasedFileSequenceProvider restarted = createProvider(4);
+        Assertions.assertEquals(SEQUENCE.charAt(4), restarted.getDailyId("1000000000"));
+    }
+
+    @Test
+    void testSequenceStartsOverOnNewDay() {
+        LeasedFileSequenceProvider provider = createProvider(4);
+        Assertions.assertEquals(SEQUENCE.charAt(0), provider.getDailyId("1000000000"));
+        Assertions.assertEquals(SEQUENCE.charAt(1), provider.getDailyId("1000000000"));
+
+        now = now.plus(Duration.ofDays(1));
+        Assertions.assertEquals(SEQUENCE.charAt(0), provider.getDailyId("1000000000"));
+    }
+
+    @Test
+    void testExhaustedSequence() {
+        LeasedFileSequenceProvider provider = createProvider(5);
+        for (int i = 0; i < SEQUENCE.length(); i++) {
+            Assertions.assertEquals(SEQUENCE.charAt(i), provider.getDailyId("1000000000"));
+        }
+
+        Assertions.assertThrows(RuntimeException.class, () -> provider.getDailyId("1000000000"));
+    }
+
+    @Test
+    void testNodesSharingTheStoreNeverHandOutTheSameDailyId() throws Exception {
+        List<LeasedFileSequenceProvider> nodes = List.of(createProvider(2), createProvider(3), createProvider(1));
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<Character>> dailyIds = new ArrayList<>();
+        for (int i = 0; i < SEQUENCE.length(); i++) {
+            LeasedFileSequenceProvider node = nodes.get(i % nodes.size());
+            dailyIds.add(executor.submit((Callable<Character>) () -> node.getDailyId("1000000000")));
+        }
+
+        Set<Character> unique = new HashSet<>();
+        List<Character> handedOut = new ArrayList<>();
+        int exhausted = 0;
+        for (Future<Character> dailyId : dailyIds) {
+            try {
+                handedOut.add(dailyId.get());
+            } catch (ExecutionException e) {
+                // only the sequence may be exhausted, by the indexes left in the leases of the other nodes
+                Assertions.assertTrue(e.getCause().getMessage().startsWith("Daily file sequence has exhausted"),
+                    e.getCause().getMessage());
+                exhausted++;
+            }
+        }
+        executor.shutdown();
+        unique.addAll(handedOut);
+        Assertions.assertEquals(handedOut.size(), unique.size());
+        Assertions.assertEquals(SEQUENCE.length(), handedOut.size() + exhausted);
+        Assertions.assertTrue(exhausted <= 2 * nodes.size());
+    }
+
+    private LeasedFileSequenceProvider createProvider(int leaseSize) {
+        FileSequenceStore store = new FileSequenceStore(directory.resolve("sequence.dat"), 16);
+        stores.add(store);
+        return new LeasedFileSequenceProvider(store, leaseSize, clock);
+    }
+}
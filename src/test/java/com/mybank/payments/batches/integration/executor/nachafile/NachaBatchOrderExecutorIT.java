@@ -27,6 +27,9 @@ import com.backbase.batches.service.integration.inbound.model.PutBatchOrderReque
 import com.backbase.batches.service.integration.inbound.model.PutBatchPaymentsRequest;
 import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
 import com.mybank.payments.batches.integration.executor.nachafile.NachaBatchOrderExecutorIT.NachaBatchOrderExecutorITConfiguration;
+import com.mybank.payments.batches.integration.executor.nachafile.output.NachaOutputSinkConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.LinkedList;
@@ -37,6 +40,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
@@ -52,6 +56,9 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
     NachaBatchOrderExecutor.class,
     ProcessedNachaFilesResultsExecutor.class,
     SimpleFileSequenceProvider.class,
+    NachaFileSplitPolicy.class,
+    NachaFileMappingStoreConfiguration.class,
+    NachaOutputSinkConfiguration.class,
     NachaBatchOrderExecutorITConfiguration.class
 })
 @TestPropertySource(value = {"/application-nacha-writer.properties"})
@@ -85,7 +92,7 @@ class NachaBatchOrderExecutorIT {
 
         //Pass result to queue after bank PROCESSED NACHA file
         processedNachaFilesExecutor.getProcessedResultsPerFileQueue().add(
-            Pair.of("BFT000A", mockProcessedBankResult())
+            Pair.of(NachaFileKey.of("1000000000", LocalDate.now(), "BFT000A"), mockProcessedBankResult())
         );
         //Execute action on PROCESSED Nacha files queue
         processedNachaFilesExecutor.execute();
@@ -219,7 +226,7 @@ class NachaBatchOrderExecutorIT {
         LinkedList<Pair<String, BankResult>> queue = new LinkedList<>();
         //Pass result to queue after bank PROCESSED NACHA file
         queue.add(
-            Pair.of("BFT000A", mockProcessedBankResult())
+            Pair.of(NachaFileKey.of("1000000000", LocalDate.now(), "BFT000A"), mockProcessedBankResult())
         );
         return queue;
     }
@@ -231,6 +238,7 @@ class NachaBatchOrderExecutorIT {
     }
 
     @TestConfiguration
+    @EnableConfigurationProperties(NachaFileSplitProperties.class)
     public static class NachaBatchOrderExecutorITConfiguration {
 
         @Bean
@@ -253,6 +261,11 @@ class NachaBatchOrderExecutorIT {
             return new LinkedList<>();
         }
 
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
     }
 
 }
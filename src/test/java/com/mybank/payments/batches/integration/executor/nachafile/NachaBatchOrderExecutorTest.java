@@ -0,0 +1,266 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.backbase.batches.nacha.NachaHandler;
+import com.backbase.batches.nacha.dataprovider.FileSequenceProvider;
+import com.backbase.batches.nacha.model.FileRequest;
+import com.backbase.batches.nacha.model.result.HandlerResult;
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.mybank.payments.batches.integration.BatchOrderFailedEvent;
+import com.mybank.payments.batches.integration.executor.nachafile.output.DirectBufferNachaOutputSink;
+import com.mybank.payments.batches.integration.executor.nachafile.output.NachaOutputSink;
+import com.mybank.payments.batches.integration.executor.nachafile.output.OutboxDirectoryUploadTransport;
+import com.mybank.payments.batches.integration.executor.nachafile.output.StreamingUploadNachaOutputSink;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+
+class NachaBatchOrderExecutorTest {
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final NachaHandler nachaHandler = mock(NachaHandler.class);
+    private final ProcessedNachaFilesResultsExecutor processedNachaFilesExecutor =
+        mock(ProcessedNachaFilesResultsExecutor.class);
+
+    private NachaBatchOrderExecutor nachaBatchOrderExecutor;
+
+    @AfterEach
+    void shutdown() {
+        nachaBatchOrderExecutor.shutdown();
+    }
+
+    @Test
+    void testSingleDailyIdPerCompany() {
+        nachaBatchOrderExecutor = createExecutor(4);
+        Queue<PostBatchOrderRequest> batchOrders = batchOrders("BATCH1:1000000000", "BATCH2:1000000000",
+            "BATCH3:2000000000", "BATCH4:1000000000");
+
+        List<FileRequest> fileRequests = nachaBatchOrderExecutor.groupByUsers(batchOrders);
+
+        char firstDailyId = FileSequenceProvider.SEQUENCE_VALUES.charAt(0);
+        Assertions.assertEquals(2, fileRequests.size());
+        Assertions.assertEquals(List.of("BATCH1", "BATCH2", "BATCH4"), fileRequests.get(0).getBatchOrderIds());
+        Assertions.assertEquals(firstDailyId, fileRequests.get(0).getFileDailyId());
+        Assertions.assertEquals("BFT000" + firstDailyId, fileRequests.get(0).getFileReferenceCode());
+        Assertions.assertEquals(List.of("BATCH3"), fileRequests.get(1).getBatchOrderIds());
+        Assertions.assertEquals(firstDailyId, fileRequests.get(1).getFileDailyId());
+
+        List<FileRequest> nextFileRequests = nachaBatchOrderExecutor.groupByUsers(batchOrders("BATCH5:1000000000"));
+        Assertions.assertEquals(FileSequenceProvider.SEQUENCE_VALUES.charAt(1),
+            nextFileRequests.get(0).getFileDailyId());
+    }
+
+    @Test
+    void testDailyIdOfFileWaitingForResultSkipped() {
+        nachaBatchOrderExecutor = createExecutor(1);
+        LocalDate fileCreationDate = LocalDate.of(2022, 1, 3);
+        String sequence = FileSequenceProvider.SEQUENCE_VALUES;
+        // the files generated before a restart of the day are still waiting for their bank result
+        when(processedNachaFilesExecutor.isWaitingForResult(
+            NachaFileKey.of("1000000000", fileCreationDate, "BFT000" + sequence.charAt(0)))).thenReturn(true);
+        when(processedNachaFilesExecutor.isWaitingForResult(
+            NachaFileKey.of("1000000000", fileCreationDate, "BFT000" + sequence.charAt(1)))).thenReturn(true);
+
+        List<FileRequest> fileRequests = nachaBatchOrderExecutor.groupByUsers(
+            batchOrders("BATCH1:1000000000", "BATCH2:2000000000"), fileCreationDate);
+
+        Assertions.assertEquals(sequence.charAt(2), fileRequests.get(0).getFileDailyId());
+        Assertions.assertEquals("BFT000" + sequence.charAt(2), fileRequests.get(0).getFileReferenceCode());
+        Assertions.assertEquals(sequence.charAt(0), fileRequests.get(1).getFileDailyId());
+    }
+
+    @Test
+    void testFilesGeneratedConcurrently() throws InterruptedException {
+        nachaBatchOrderExecutor = createExecutor(4);
+        CountDownLatch allStarted = new CountDownLatch(4);
+        Set<String> generatedCompanies = ConcurrentHashMap.newKeySet();
+        when(nachaHandler.handle(any(), any(), any())).thenAnswer(invocation -> {
+            allStarted.countDown();
+            // only returns when the 4 files are generated at the same time
+            Assertions.assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+            generatedCompanies.add(invocation.<FileRequest>getArgument(0).getCompanyId());
+            return HandlerResult.builder().build();
+        });
+
+        nachaBatchOrderExecutor.execute(batchOrders("BATCH1:1000000000", "BATCH2:2000000000",
+            "BATCH3:3000000000", "BATCH4:4000000000"));
+
+        Assertions.assertEquals(Set.of("1000000000", "2000000000", "3000000000", "4000000000"), generatedCompanies);
+        verify(processedNachaFilesExecutor, times(4)).saveNachaHandlerResult(any(), any());
+    }
+
+    @Test
+    void testFailedFileDoesNotStopOtherCompanies() {
+        nachaBatchOrderExecutor = createExecutor(1);
+        Set<String> generatedCompanies = ConcurrentHashMap.newKeySet();
+        when(nachaHandler.handle(any(), any(), any())).thenAnswer(invocation -> {
+            FileRequest fileRequest = invocation.getArgument(0);
+            if (fileRequest.getCompanyId().equals("2000000000")) {
+                throw new IllegalStateException("Generation failed");
+            }
+            generatedCompanies.add(fileRequest.getCompanyId());
+            return HandlerResult.builder().build();
+        });
+
+        nachaBatchOrderExecutor.execute(batchOrders("BATCH1:1000000000", "BATCH2:2000000000",
+            "BATCH3:3000000000"));
+
+        Assertions.assertEquals(Set.of("1000000000", "3000000000"), generatedCompanies);
+        verify(processedNachaFilesExecutor, times(2)).saveNachaHandlerResult(any(), any());
+        verify(eventPublisher).publishEvent(new BatchOrderFailedEvent("BATCH2"));
+    }
+
+    @Test
+    void testGenerationMeters() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        nachaBatchOrderExecutor = new NachaBatchOrderExecutor(new LinkedList<>(), eventPublisher, nachaHandler,
+            processedNachaFilesExecutor, new SimpleFileSequenceProvider(),
+            new DirectBufferNachaOutputSink(1024, 16, new SimpleMeterRegistry()),
+            new NachaFileSplitPolicy(new NachaFileSplitProperties()), Optional.empty(), 1, meterRegistry);
+        when(nachaHandler.handle(any(), any(), any())).thenAnswer(invocation -> {
+            if (invocation.<FileRequest>getArgument(0).getCompanyId().equals("2000000000")) {
+                throw new IllegalStateException("Generation failed");
+            }
+            return HandlerResult.builder().build();
+        });
+
+        nachaBatchOrderExecutor.execute(batchOrders("BATCH1:1000000000", "BATCH2:2000000000",
+            "BATCH3:2000000000"));
+
+        Assertions.assertEquals(1, meterRegistry.get("nacha.file.generation")
+            .tags("mode", "NachaFile", "outcome", "success").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("nacha.file.generation")
+            .tags("mode", "NachaFile", "outcome", "error").timer().count());
+        // the batch orders of the failed file are counted together
+        Assertions.assertEquals(2, meterRegistry.get("batch.orders.completed")
+            .tags("mode", "NachaFile", "outcome", "error").counter().count());
+    }
+
+    @Test
+    void testFailedFileIsNotDelivered(@TempDir Path outbox) throws IOException {
+        nachaBatchOrderExecutor = createExecutor(1, new NachaFileSplitProperties(),
+            new StreamingUploadNachaOutputSink(new OutboxDirectoryUploadTransport(outbox), 16,
+                new SimpleMeterRegistry()));
+        when(nachaHandler.handle(any(), any(), any())).thenAnswer(invocation -> {
+            Writer output = invocation.getArgument(1);
+            output.write("101 091000019 1234567891907021200A094101BANK                   COMPANY\n");
+            output.flush();
+            throw new IllegalStateException("Generation failed");
+        });
+
+        nachaBatchOrderExecutor.execute(batchOrders("BATCH1:1000000000"));
+
+        try (Stream<Path> files = Files.list(outbox)) {
+            Assertions.assertEquals(List.of(), files.collect(Collectors.toList()));
+        }
+        verify(processedNachaFilesExecutor, never()).saveNachaHandlerResult(any(), any());
+    }
+
+    @Test
+    void testAggregatedBatchOrdersAcknowledgedOnceGenerated() {
+        NachaFileAggregator nachaFileAggregator = mock(NachaFileAggregator.class);
+        nachaBatchOrderExecutor = new NachaBatchOrderExecutor(new LinkedList<>(), eventPublisher, nachaHandler,
+            processedNachaFilesExecutor, new SimpleFileSequenceProvider(),
+            new DirectBufferNachaOutputSink(1024, 16, new SimpleMeterRegistry()),
+            new NachaFileSplitPolicy(new NachaFileSplitProperties()), Optional.of(nachaFileAggregator), 1,
+            new SimpleMeterRegistry());
+        Queue<PostBatchOrderRequest> batchOrders = batchOrders("BATCH1:1000000000", "BATCH2:2000000000");
+        when(nachaFileAggregator.aggregate(batchOrders)).thenReturn(List.copyOf(batchOrders));
+        when(nachaHandler.handle(any(), any(), any())).thenAnswer(invocation -> {
+            if (invocation.<FileRequest>getArgument(0).getCompanyId().equals("2000000000")) {
+                throw new IllegalStateException("Generation failed");
+            }
+            return HandlerResult.builder().build();
+        });
+
+        nachaBatchOrderExecutor.execute(batchOrders);
+
+        verify(nachaFileAggregator).acknowledge(List.of("BATCH1"));
+        verify(nachaFileAggregator).retry(List.of("BATCH2"));
+        // held by the aggregator, a notification sent again for the batch order stays a duplicate
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void testCompanyBatchOrdersSplitIntoFileParts() {
+        NachaFileSplitProperties splitProperties = new NachaFileSplitProperties();
+        splitProperties.setMaxBatches(2);
+        nachaBatchOrderExecutor = createExecutor(4, splitProperties);
+        Queue<PostBatchOrderRequest> batchOrders = batchOrders("BATCH1:1000000000", "BATCH2:1000000000",
+            "BATCH3:2000000000", "BATCH4:1000000000", "BATCH5:1000000000", "BATCH6:1000000000");
+
+        LocalDate fileCreationDate = LocalDate.of(2022, 1, 3);
+        List<FileRequest> fileRequests = nachaBatchOrderExecutor.groupByUsers(batchOrders, fileCreationDate);
+
+        String sequence = FileSequenceProvider.SEQUENCE_VALUES;
+        Assertions.assertEquals(4, fileRequests.size());
+        Assertions.assertEquals(List.of("BATCH1", "BATCH2"), fileRequests.get(0).getBatchOrderIds());
+        Assertions.assertEquals("BFT000" + sequence.charAt(0), fileRequests.get(0).getFileReferenceCode());
+        Assertions.assertEquals(List.of("BATCH4", "BATCH5"), fileRequests.get(1).getBatchOrderIds());
+        Assertions.assertEquals("BFT000" + sequence.charAt(1), fileRequests.get(1).getFileReferenceCode());
+        Assertions.assertEquals(List.of("BATCH6"), fileRequests.get(2).getBatchOrderIds());
+        Assertions.assertEquals("BFT000" + sequence.charAt(2), fileRequests.get(2).getFileReferenceCode());
+        Assertions.assertEquals("2000000000", fileRequests.get(3).getCompanyId());
+        List<String> fileKeys = fileRequests.stream()
+            .map(fileRequest -> NachaFileKey.of(fileRequest, fileCreationDate))
+            .collect(Collectors.toList());
+        // the reference code of the other company is the same as the one of the first part, its key is not
+        Assertions.assertEquals(fileRequests.get(0).getFileReferenceCode(), fileRequests.get(3).getFileReferenceCode());
+        Assertions.assertEquals(4, Set.copyOf(fileKeys).size());
+        verify(processedNachaFilesExecutor).registerFileParts(fileKeys.subList(0, 3));
+    }
+
+    private NachaBatchOrderExecutor createExecutor(int generationConcurrency) {
+        return createExecutor(generationConcurrency, new NachaFileSplitProperties());
+    }
+
+    private NachaBatchOrderExecutor createExecutor(int generationConcurrency,
+                                                   NachaFileSplitProperties splitProperties) {
+        return createExecutor(generationConcurrency, splitProperties,
+            new DirectBufferNachaOutputSink(1024, 16, new SimpleMeterRegistry()));
+    }
+
+    private NachaBatchOrderExecutor createExecutor(int generationConcurrency,
+                                                   NachaFileSplitProperties splitProperties,
+                                                   NachaOutputSink nachaOutputSink) {
+        return new NachaBatchOrderExecutor(new LinkedList<>(), eventPublisher, nachaHandler,
+            processedNachaFilesExecutor, new SimpleFileSequenceProvider(), nachaOutputSink,
+            new NachaFileSplitPolicy(splitProperties), Optional.empty(), generationConcurrency,
+            new SimpleMeterRegistry());
+    }
+
+    private static Queue<PostBatchOrderRequest> batchOrders(String... batchOrderAndCompanyIds) {
+        return Stream.of(batchOrderAndCompanyIds)
+            .map(batchOrderAndCompanyId -> batchOrderAndCompanyId.split(":"))
+            .map(ids -> new PostBatchOrderRequest()
+                .id(ids[0])
+                .companyId(ids[1])
+                .companyName("Company " + ids[1]))
+            .collect(Collectors.toCollection(LinkedList::new));
+    }
+}
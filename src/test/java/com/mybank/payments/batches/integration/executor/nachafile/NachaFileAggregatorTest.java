@@ -0,0 +1,155 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NachaFileAggregatorTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new Jdk8Module())
+        .registerModule(new JavaTimeModule());
+
+    private final NachaFileAggregationProperties properties = new NachaFileAggregationProperties();
+
+    // 09:00 in New York
+    private Instant now = Instant.parse("2022-01-03T14:00:00Z");
+
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        properties.setEnabled(true);
+        properties.setBufferFile(directory.resolve("buffer.json").toString());
+    }
+
+    @Test
+    void testNextCutOff() {
+        NachaFileAggregator aggregator = new NachaFileAggregator(properties, objectMapper, clock);
+
+        Assertions.assertEquals(Instant.parse("2022-01-03T15:00:00Z"), aggregator.nextCutOff(now));
+        Assertions.assertEquals(Instant.parse("2022-01-03T19:00:00Z"),
+            aggregator.nextCutOff(Instant.parse("2022-01-03T15:00:00Z")));
+        Assertions.assertEquals(Instant.parse("2022-01-04T15:00:00Z"),
+            aggregator.nextCutOff(Instant.parse("2022-01-03T23:00:00Z")));
+    }
+
+    @Test
+    void testHeldUntilCutOff() {
+        NachaFileAggregator aggregator = new NachaFileAggregator(properties, objectMapper, clock);
+
+        Assertions.assertTrue(aggregator.aggregate(batchOrders("BATCH1:1000000000", "BATCH2:2000000000")).isEmpty());
+        now = now.plus(Duration.ofMinutes(30));
+        Assertions.assertTrue(aggregator.aggregate(batchOrders("BATCH3:1000000000")).isEmpty());
+        Assertions.assertEquals(3, aggregator.getHeldBatchOrders());
+
+        now = now.plus(Duration.ofMinutes(30));
+        List<PostBatchOrderRequest> released = aggregator.aggregate(new LinkedList<>());
+
+        Assertions.assertEquals(List.of("BATCH1", "BATCH3", "BATCH2"), ids(released));
+        Assertions.assertEquals(3, aggregator.getHeldBatchOrders());
+
+        aggregator.acknowledge(ids(released));
+        Assertions.assertEquals(0, aggregator.getHeldBatchOrders());
+    }
+
+    @Test
+    void testReleasedAtThreshold() {
+        properties.setReleaseBatches(2);
+        NachaFileAggregator aggregator = new NachaFileAggregator(properties, objectMapper, clock);
+
+        Assertions.assertTrue(aggregator.aggregate(batchOrders("BATCH1:1000000000", "BATCH2:2000000000")).isEmpty());
+        List<PostBatchOrderRequest> released = aggregator.aggregate(batchOrders("BATCH3:1000000000"));
+
+        Assertions.assertEquals(List.of("BATCH1", "BATCH3"), ids(released));
+        aggregator.acknowledge(ids(released));
+        Assertions.assertEquals(1, aggregator.getHeldBatchOrders());
+    }
+
+    @Test
+    void testReleasedBatchOrdersHeldUntilAcknowledged() {
+        NachaFileAggregator aggregator = new NachaFileAggregator(properties, objectMapper, clock);
+        aggregator.aggregate(batchOrders("BATCH1:1000000000", "BATCH2:2000000000"));
+        now = now.plus(Duration.ofHours(1));
+
+        Assertions.assertEquals(List.of("BATCH1", "BATCH2"), ids(aggregator.aggregate(new LinkedList<>())));
+        // not released twice while the nacha files are generated
+        Assertions.assertTrue(aggregator.aggregate(new LinkedList<>()).isEmpty());
+
+        // the file of the first company failed, the one of the second company was generated
+        aggregator.retry(List.of("BATCH1"));
+        aggregator.acknowledge(List.of("BATCH2"));
+        Assertions.assertEquals(1, aggregator.getHeldBatchOrders());
+        Assertions.assertEquals(1, new NachaFileAggregator(properties, objectMapper, clock).getHeldBatchOrders());
+
+        Assertions.assertEquals(List.of("BATCH1"), ids(aggregator.aggregate(new LinkedList<>())));
+        aggregator.acknowledge(List.of("BATCH1"));
+        Assertions.assertEquals(0, new NachaFileAggregator(properties, objectMapper, clock).getHeldBatchOrders());
+    }
+
+    @Test
+    void testHeldBatchOrdersSurviveRestart() {
+        NachaFileAggregator aggregator = new NachaFileAggregator(properties, objectMapper, clock);
+        aggregator.aggregate(batchOrders("BATCH1:1000000000", "BATCH2:1000000000"));
+
+        NachaFileAggregator reopened = new NachaFileAggregator(properties, objectMapper, clock);
+        Assertions.assertEquals(2, reopened.getHeldBatchOrders());
+
+        now = now.plus(Duration.ofHours(1));
+        Assertions.assertEquals(List.of("BATCH1", "BATCH2"), ids(reopened.aggregate(new LinkedList<>())));
+        // a crash before the nacha file is generated releases the batch orders again
+        Assertions.assertEquals(List.of("BATCH1", "BATCH2"),
+            ids(new NachaFileAggregator(properties, objectMapper, clock).aggregate(new LinkedList<>())));
+
+        reopened.acknowledge(List.of("BATCH1", "BATCH2"));
+        Assertions.assertEquals(0, new NachaFileAggregator(properties, objectMapper, clock).getHeldBatchOrders());
+    }
+
+    private static Queue<PostBatchOrderRequest> batchOrders(String... batchOrderAndCompanyIds) {
+        return Stream.of(batchOrderAndCompanyIds)
+            .map(batchOrderAndCompanyId -> batchOrderAndCompanyId.split(":"))
+            .map(ids -> new PostBatchOrderRequest()
+                .id(ids[0])
+                .companyId(ids[1])
+                .companyName("Company " + ids[1])
+                .totalTransactionsCount(1))
+            .collect(Collectors.toCollection(LinkedList::new));
+    }
+
+    private static List<String> ids(List<PostBatchOrderRequest> batchOrders) {
+        return batchOrders.stream().map(PostBatchOrderRequest::getId).collect(Collectors.toList());
+    }
+}
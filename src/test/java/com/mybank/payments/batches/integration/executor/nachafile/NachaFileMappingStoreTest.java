@@ -0,0 +1,147 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NachaFileMappingStoreTest {
+
+    private static final Duration TIME_TO_LIVE = Duration.ofDays(7);
+
+    @TempDir
+    Path directory;
+
+    private Instant now = Instant.parse("2022-01-03T10:00:00Z");
+
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    };
+
+    @Test
+    void testOlderFilesSpilledAndReadBack() {
+        NachaFileMappingStore store = new NachaFileMappingStore(directory, 4096, 30, TIME_TO_LIVE, clock);
+
+        store.put(mappings("BFT000A", 2, 5));
+        store.put(mappings("BFT000B", 2, 5));
+        store.put(mappings("BFT000C", 2, 5));
+
+        // 12 mappings per file, the oldest file no longer fits on the heap
+        Assertions.assertEquals(24, store.getHotMappings());
+        Assertions.assertEquals(3, store.size());
+        Assertions.assertEquals(mappings("BFT000A", 2, 5), store.get("BFT000A"));
+        Assertions.assertEquals(3, store.size());
+        Assertions.assertEquals(mappings("BFT000A", 2, 5), store.remove("BFT000A"));
+        Assertions.assertEquals(mappings("BFT000C", 2, 5), store.remove("BFT000C"));
+        Assertions.assertEquals(12, store.getHotMappings());
+        Assertions.assertNull(store.remove("BFT000A"));
+        Assertions.assertEquals(1, store.size());
+    }
+
+    @Test
+    void testRecoveredAfterRestart() {
+        NachaFileMappingStore store = new NachaFileMappingStore(directory, 4096, 1000, TIME_TO_LIVE, clock);
+        store.put(mappings("BFT000A", 1, 3));
+        store.put(mappings("BFT000B", 2, 2));
+        store.remove("BFT000A");
+        store.close();
+
+        NachaFileMappingStore reopened = new NachaFileMappingStore(directory, 4096, 1000, TIME_TO_LIVE, clock);
+
+        Assertions.assertEquals(1, reopened.size());
+        Assertions.assertEquals(0, reopened.getHotMappings());
+        Assertions.assertNull(reopened.remove("BFT000A"));
+        Assertions.assertEquals(mappings("BFT000B", 2, 2), reopened.remove("BFT000B"));
+    }
+
+    @Test
+    void testSegmentsDeletedOnceRemoved() {
+        NachaFileMappingStore store = new NachaFileMappingStore(directory, 512, 1000, TIME_TO_LIVE, clock);
+        for (char dailyId = 'A'; dailyId <= 'J'; dailyId++) {
+            store.put(mappings("BFT000" + dailyId, 1, 5));
+        }
+        Assertions.assertTrue(store.getSegmentCount() > 2);
+
+        for (char dailyId = 'A'; dailyId <= 'J'; dailyId++) {
+            Assertions.assertNotNull(store.remove("BFT000" + dailyId));
+        }
+
+        Assertions.assertEquals(0, store.size());
+        Assertions.assertEquals(1, store.getSegmentCount());
+        Assertions.assertEquals(0, new NachaFileMappingStore(directory, 512, 1000, TIME_TO_LIVE, clock).size());
+    }
+
+    @Test
+    void testExpiredFilesEvicted() {
+        NachaFileMappingStore store = new NachaFileMappingStore(directory, 4096, 1000, TIME_TO_LIVE, clock);
+        store.put(mappings("BFT000A", 1, 1));
+        now = now.plus(Duration.ofDays(2));
+        store.put(mappings("BFT000B", 1, 1));
+
+        now = now.plus(Duration.ofDays(6));
+        Assertions.assertEquals(List.of("BFT000A"), store.evictExpired());
+
+        Assertions.assertEquals(1, store.size());
+        Assertions.assertEquals(1, new NachaFileMappingStore(directory, 4096, 1000, TIME_TO_LIVE, clock).size());
+    }
+
+    @Test
+    void testHeapOnlyStore() {
+        NachaFileMappingStore store = new NachaFileMappingStore(null, 0, 0, TIME_TO_LIVE, clock);
+        store.put(mappings("BFT000A", 2, 5));
+
+        Assertions.assertEquals(12, store.getHotMappings());
+        Assertions.assertEquals(mappings("BFT000A", 2, 5), store.remove("BFT000A"));
+    }
+
+    @Test
+    void testSameReferenceCodeOfOtherCompaniesAndDaysKeptApart() {
+        NachaFileMappingStore store = new NachaFileMappingStore(directory, 4096, 1000, TIME_TO_LIVE, clock);
+        LocalDate today = LocalDate.of(2022, 1, 3);
+        String firstCompany = NachaFileKey.of("1000000000", today, "BFT000A");
+        String secondCompany = NachaFileKey.of("2000000000", today, "BFT000A");
+        String nextDay = NachaFileKey.of("1000000000", today.plusDays(1), "BFT000A");
+        store.put(mappings(firstCompany, 1, 3));
+        store.put(mappings(secondCompany, 2, 2));
+        store.put(mappings(nextDay, 1, 1));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> store.put(mappings(secondCompany, 1, 1)));
+        Assertions.assertFalse(store.contains(NachaFileKey.of("1000000000", today, "BFT000B")));
+        NachaFileMappingStore reopened = new NachaFileMappingStore(directory, 4096, 1000, TIME_TO_LIVE, clock);
+        Assertions.assertEquals(3, reopened.size());
+        Assertions.assertTrue(reopened.contains(firstCompany));
+        Assertions.assertEquals(mappings(secondCompany, 2, 2), reopened.remove(secondCompany));
+        Assertions.assertEquals(mappings(firstCompany, 1, 3), reopened.remove(firstCompany));
+        Assertions.assertEquals(mappings(nextDay, 1, 1), reopened.remove(nextDay));
+    }
+
+    private static NachaFileMappings mappings(String fileKey, int batches, int paymentItems) {
+        NachaFileMappings.Builder builder = NachaFileMappings.builder(fileKey);
+        for (int b = 1; b <= batches; b++) {
+            builder.batch("BATCH" + b + "REF", fileKey + "-BATCH" + b);
+            for (int p = 1; p <= paymentItems; p++) {
+                builder.paymentItem(String.format("%d%07d", b, p), fileKey + "-PAYMENT" + b + p);
+            }
+        }
+        return builder.build();
+    }
+}
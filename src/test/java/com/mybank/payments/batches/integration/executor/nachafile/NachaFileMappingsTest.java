@@ -0,0 +1,58 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import com.mybank.payments.batches.integration.executor.nachafile.NachaFileMappings.BatchMappings;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class NachaFileMappingsTest {
+
+    @Test
+    void testNumbersLookedUpRegardlessOfLeadingZeros() {
+        NachaFileMappings mappings = NachaFileMappings.builder("BFT000A")
+            .batch("1", "BATCH1")
+            .paymentItem("091000010000001", "PAYMENT1")
+            .paymentItem("091000010000002", "PAYMENT2")
+            .batch("2", "BATCH2")
+            .paymentItem("091000010000003", "PAYMENT3")
+            .build();
+
+        BatchMappings batch = mappings.getBatch("0000001");
+        Assertions.assertEquals("BATCH1", batch.getBatchOrderId());
+        Assertions.assertEquals("PAYMENT2", batch.getPaymentItemId("91000010000002"));
+        Assertions.assertNull(batch.getPaymentItemId("091000010000003"));
+        Assertions.assertEquals("PAYMENT3", mappings.getBatch("2").getPaymentItemId("091000010000003"));
+        Assertions.assertNull(mappings.getBatch("3"));
+        Assertions.assertEquals(5, mappings.getMappingCount());
+    }
+
+    @Test
+    void testNonNumericNumbersLookedUpAsIs() {
+        NachaFileMappings mappings = NachaFileMappings.builder("BFT000A")
+            .batch("BATCH1REF", "BATCH1")
+            .paymentItem("C1B1P1", "PAYMENT1")
+            .paymentItem("1234567890123456789", "PAYMENT2")
+            .paymentItem("42", "PAYMENT3")
+            .build();
+
+        BatchMappings batch = mappings.getBatch("BATCH1REF");
+        Assertions.assertEquals("PAYMENT1", batch.getPaymentItemId("C1B1P1"));
+        Assertions.assertEquals("PAYMENT2", batch.getPaymentItemId("1234567890123456789"));
+        Assertions.assertEquals("PAYMENT3", batch.getPaymentItemId("42"));
+        Assertions.assertNull(batch.getPaymentItemId("c1b1p1"));
+        Assertions.assertEquals(3, batch.getPaymentItemCount());
+    }
+
+    @Test
+    void testLargeBatchIndexed() {
+        NachaFileMappings.Builder builder = NachaFileMappings.builder("BFT000A").batch("1", "BATCH1");
+        for (int i = 0; i < 100_000; i++) {
+            builder.paymentItem(String.format("09100001%07d", i), "PAYMENT" + i);
+        }
+        BatchMappings batch = builder.build().getBatch("1");
+
+        Assertions.assertEquals(100_000, batch.getPaymentItemCount());
+        for (int i = 0; i < 100_000; i += 997) {
+            Assertions.assertEquals("PAYMENT" + i, batch.getPaymentItemId(String.format("09100001%07d", i)));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+class NachaFileSplitPolicyTest {
+
+    @Test
+    void testSplitOnEntries() {
+        NachaFileSplitProperties properties = new NachaFileSplitProperties();
+        properties.setMaxEntries(100);
+        NachaFileSplitPolicy policy = new NachaFileSplitPolicy(properties);
+
+        List<List<String>> files = ids(policy.split(List.of(
+            batchOrder("BATCH1", 60), batchOrder("BATCH2", 40), batchOrder("BATCH3", 1),
+            batchOrder("BATCH4", 250), batchOrder("BATCH5", 10))));
+
+        // a batch order above the limit on its own still gets a file
+        Assertions.assertEquals(List.of(List.of("BATCH1", "BATCH2"), List.of("BATCH3"), List.of("BATCH4"),
+            List.of("BATCH5")), files);
+    }
+
+    @Test
+    void testSplitOnEstimatedSize() {
+        Assertions.assertEquals(10 * 95, NachaFileSplitPolicy.estimateFileSize(1, 1));
+        Assertions.assertEquals(20 * 95, NachaFileSplitPolicy.estimateFileSize(2, 7));
+
+        NachaFileSplitProperties properties = new NachaFileSplitProperties();
+        properties.setMaxEntries(0);
+        properties.setMaxBytes(DataSize.ofBytes(100 * 95));
+        NachaFileSplitPolicy policy = new NachaFileSplitPolicy(properties);
+
+        List<List<String>> files = ids(policy.split(List.of(
+            batchOrder("BATCH1", 50), batchOrder("BATCH2", 50), batchOrder("BATCH3", null))));
+
+        Assertions.assertEquals(List.of(List.of("BATCH1"), List.of("BATCH2", "BATCH3")), files);
+    }
+
+    @Test
+    void testSplitOnBatches() {
+        NachaFileSplitProperties properties = new NachaFileSplitProperties();
+        properties.setMaxBatches(2);
+        NachaFileSplitPolicy policy = new NachaFileSplitPolicy(properties);
+
+        List<List<String>> files = ids(policy.split(List.of(
+            batchOrder("BATCH1", 1), batchOrder("BATCH2", 1), batchOrder("BATCH3", 1))));
+
+        Assertions.assertEquals(List.of(List.of("BATCH1", "BATCH2"), List.of("BATCH3")), files);
+    }
+
+    private static PostBatchOrderRequest batchOrder(String id, Integer totalTransactionsCount) {
+        return new PostBatchOrderRequest()
+            .id(id)
+            .companyId("1000000000")
+            .totalTransactionsCount(totalTransactionsCount);
+    }
+
+    private static List<List<String>> ids(List<List<PostBatchOrderRequest>> files) {
+        return files.stream()
+            .map(file -> file.stream().map(PostBatchOrderRequest::getId).collect(Collectors.toList()))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,290 @@
+package com.mybank.payments.batches.integration.executor.nachafile;
+
+import static com.backbase.batches.nacha.statusmanager.BatchStatusManager.BatchExpectedStatus.ACCEPTED;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.backbase.batches.nacha.model.result.BankResult;
+import com.backbase.batches.nacha.model.result.BankResult.BankBatchOrderResult;
+import com.backbase.batches.nacha.model.result.BankResult.BankPaymentItemResult;
+import com.backbase.batches.nacha.model.result.StatusInfo;
+import com.backbase.batches.nacha.statusmanager.BatchStatusManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class ProcessedNachaFilesResultsExecutorTest {
+
+    private static final String FILE_KEY = NachaFileKey.of("1000000000", LocalDate.of(2022, 1, 3), "BFT000A");
+
+    private final Queue<Pair<String, BankResult>> queue = new ConcurrentLinkedQueue<>();
+    private final BatchStatusManager batchStatusManager = mock(BatchStatusManager.class);
+    private final NachaFileMappingStore nachaFileMappingStore =
+        new NachaFileMappingStore(null, 0, 0, Duration.ofDays(7), Clock.systemUTC());
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ProcessedNachaFilesResultsExecutor executor =
+        new ProcessedNachaFilesResultsExecutor(queue, batchStatusManager, nachaFileMappingStore, 4, 3, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void testRejectedPaymentsChunked() {
+        NachaFileMappings.Builder mappings = NachaFileMappings.builder(FILE_KEY).batch("1", "BATCH1");
+        Set<String> paymentItemIds = new HashSet<>();
+        BankBatchOrderResult.BankBatchOrderResultBuilder batchResult = BankBatchOrderResult.builder()
+            .batchNumber("1")
+            .statusInfo(StatusInfo.builder().rejected(Boolean.FALSE).build());
+        for (int i = 0; i < 2500; i++) {
+            mappings.paymentItem("99999999" + i, "PAYMENT" + i);
+            paymentItemIds.add("PAYMENT" + i);
+            batchResult.entry("99999999" + i, BankPaymentItemResult.builder()
+                .traceNumber("99999999" + i)
+                .statusInfo(StatusInfo.builder().rejected(Boolean.TRUE).build())
+                .build());
+        }
+        nachaFileMappingStore.put(mappings.build());
+        queue.add(Pair.of(FILE_KEY, BankResult.builder().batch("1", batchResult.build()).build()));
+
+        executor.execute();
+
+        verify(batchStatusManager).markBatchProcessed(eq("BATCH1"), any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, StatusInfo>> chunks = ArgumentCaptor.forClass(Map.class);
+        verify(batchStatusManager, times(3)).rejectPaymentItems(eq(ACCEPTED), eq("BATCH1"), chunks.capture());
+        Set<String> rejectedPaymentItems = new HashSet<>();
+        chunks.getAllValues().forEach(chunk -> {
+            Assertions.assertTrue(chunk.size() <= ProcessedNachaFilesResultsExecutor.MAX_PAYMENT_ITEMS_PER_UPDATE);
+            rejectedPaymentItems.addAll(chunk.keySet());
+        });
+        Assertions.assertEquals(paymentItemIds, rejectedPaymentItems);
+    }
+
+    @Test
+    void testOnlyFailedRejectedPaymentsRetried() {
+        NachaFileMappings.Builder mappings = NachaFileMappings.builder(FILE_KEY).batch("1", "BATCH1");
+        BankBatchOrderResult.BankBatchOrderResultBuilder batchResult = BankBatchOrderResult.builder()
+            .batchNumber("1")
+            .statusInfo(StatusInfo.builder().rejected(Boolean.FALSE).build());
+        for (int i = 0; i < 2500; i++) {
+            mappings.paymentItem("99999999" + i, "PAYMENT" + i);
+            batchResult.entry("99999999" + i, BankPaymentItemResult.builder()
+                .traceNumber("99999999" + i)
+                .statusInfo(StatusInfo.builder().rejected(Boolean.TRUE).build())
+                .build());
+        }
+        nachaFileMappingStore.put(mappings.build());
+        queue.add(Pair.of(FILE_KEY, BankResult.builder().batch("1", batchResult.build()).build()));
+        doThrow(new IllegalStateException("payment-order-service unavailable"))
+            .doNothing()
+            .when(batchStatusManager).rejectPaymentItems(eq(ACCEPTED), eq("BATCH1"), anyMap());
+
+        executor.execute();
+
+        // the batch status was sent, only the failed chunk is left
+        Assertions.assertEquals(1, queue.size());
+        BankBatchOrderResult failedSteps = queue.peek().getValue().getBatches().get("1");
+        Assertions.assertNull(failedSteps.getStatusInfo());
+        Assertions.assertTrue(failedSteps.getEntries().size() <= ProcessedNachaFilesResultsExecutor.MAX_PAYMENT_ITEMS_PER_UPDATE);
+
+        executor.execute();
+
+        verify(batchStatusManager).markBatchProcessed(eq("BATCH1"), any());
+        verify(batchStatusManager, times(4)).rejectPaymentItems(eq(ACCEPTED), eq("BATCH1"), anyMap());
+        Assertions.assertTrue(queue.isEmpty());
+        Assertions.assertEquals(0, nachaFileMappingStore.size());
+    }
+
+    @Test
+    void testResultAbandonedAfterMaxAttempts() {
+        nachaFileMappingStore.put(NachaFileMappings.builder(FILE_KEY).batch("1", "BATCH1").build());
+        queue.add(Pair.of(FILE_KEY, acceptedBatch("1")));
+        doThrow(new IllegalStateException("payment-order-service unavailable"))
+            .when(batchStatusManager).markBatchProcessed(eq("BATCH1"), any());
+
+        for (int run = 0; run < 5; run++) {
+            executor.execute();
+        }
+
+        verify(batchStatusManager, times(3)).markBatchProcessed(eq("BATCH1"), any());
+        Assertions.assertTrue(queue.isEmpty());
+        Assertions.assertEquals(0, nachaFileMappingStore.size());
+        Assertions.assertEquals(1, meterRegistry.get("nacha.result.abandoned")
+            .tags("mode", "NachaFile").counter().count());
+    }
+
+    @Test
+    void testFailingBatchDoesNotStopTheFile() {
+        NachaFileMappings.Builder mappings = NachaFileMappings.builder(FILE_KEY);
+        BankResult.BankResultBuilder bankResult = BankResult.builder();
+        for (int i = 1; i <= 20; i++) {
+            mappings.batch(Integer.toString(i), "BATCH" + i);
+            bankResult.batch(Integer.toString(i), BankBatchOrderResult.builder()
+                .batchNumber(Integer.toString(i))
+                .statusInfo(StatusInfo.builder().rejected(Boolean.FALSE).build())
+                .build());
+        }
+        nachaFileMappingStore.put(mappings.build());
+        queue.add(Pair.of(FILE_KEY, bankResult.build()));
+        doThrow(new IllegalStateException("payment-order-service unavailable"))
+            .when(batchStatusManager).markBatchProcessed(eq("BATCH7"), any());
+
+        executor.execute();
+
+        for (int i = 1; i <= 20; i++) {
+            verify(batchStatusManager).markBatchProcessed(eq("BATCH" + i), any());
+        }
+        verify(batchStatusManager, times(0)).rejectPaymentItems(any(), any(), anyMap());
+        // only the failed batch is retried, the mappings of the file are kept for it
+        Assertions.assertEquals(1, queue.size());
+        Assertions.assertEquals(Set.of("7"), queue.peek().getValue().getBatches().keySet());
+        Assertions.assertEquals(1, nachaFileMappingStore.size());
+    }
+
+    @Test
+    void testFailedBatchRetriedBeforeFilePartCompleted() {
+        String otherPart = NachaFileKey.of("1000000000", LocalDate.of(2022, 1, 3), "BFT000B");
+        executor.registerFileParts(List.of(FILE_KEY, otherPart));
+        nachaFileMappingStore.put(NachaFileMappings.builder(FILE_KEY)
+            .batch("1", "BATCH1")
+            .batch("2", "BATCH2")
+            .build());
+        queue.add(Pair.of(FILE_KEY, BankResult.builder()
+            .batch("1", acceptedBatch("1").getBatches().get("1"))
+            .batch("2", acceptedBatch("2").getBatches().get("2"))
+            .build()));
+        doThrow(new IllegalStateException("payment-order-service unavailable"))
+            .doNothing()
+            .when(batchStatusManager).markBatchProcessed(eq("BATCH2"), any());
+
+        executor.execute();
+
+        Assertions.assertEquals(Set.of(FILE_KEY, otherPart), executor.getPendingFileParts(FILE_KEY));
+        Assertions.assertEquals(1, queue.size());
+
+        executor.execute();
+
+        verify(batchStatusManager).markBatchProcessed(eq("BATCH1"), any());
+        verify(batchStatusManager, times(2)).markBatchProcessed(eq("BATCH2"), any());
+        Assertions.assertEquals(Set.of(otherPart), executor.getPendingFileParts(otherPart));
+        Assertions.assertTrue(queue.isEmpty());
+        Assertions.assertEquals(0, nachaFileMappingStore.size());
+    }
+
+    @Test
+    void testSingleResultAppliedWithoutDrainingTheQueue() {
+        String queuedFileKey = NachaFileKey.of("2000000000", LocalDate.of(2022, 1, 3), "BFT000A");
+        nachaFileMappingStore.put(NachaFileMappings.builder(FILE_KEY).batch("1", "BATCH1").build());
+        nachaFileMappingStore.put(NachaFileMappings.builder(queuedFileKey).batch("1", "BATCH2").build());
+        queue.add(Pair.of(queuedFileKey, acceptedBatch("1")));
+
+        executor.applyResult(FILE_KEY, acceptedBatch("1"));
+
+        verify(batchStatusManager).markBatchProcessed(eq("BATCH1"), any());
+        verify(batchStatusManager, never()).markBatchProcessed(eq("BATCH2"), any());
+        Assertions.assertEquals(1, queue.size());
+        Assertions.assertEquals(1, nachaFileMappingStore.size());
+    }
+
+    @Test
+    void testResultLagRecorded() {
+        nachaFileMappingStore.put(NachaFileMappings.builder(FILE_KEY).batch("1", "BATCH1").build());
+        doThrow(new IllegalStateException("payment-order-service unavailable"))
+            .doNothing()
+            .when(batchStatusManager).markBatchProcessed(eq("BATCH1"), any());
+
+        executor.applyResult(FILE_KEY, acceptedBatch("1"));
+        executor.applyResult(FILE_KEY, acceptedBatch("1"));
+
+        Assertions.assertEquals(1, meterRegistry.get("nacha.result.lag")
+            .tags("mode", "NachaFile", "outcome", "error").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("nacha.result.lag")
+            .tags("mode", "NachaFile", "outcome", "success").timer().count());
+        Assertions.assertEquals(0, meterRegistry.get("nacha.result.evicted")
+            .tags("mode", "NachaFile").counter().count());
+    }
+
+    @Test
+    void testFilePartsCorrelated() {
+        LocalDate fileCreationDate = LocalDate.of(2022, 1, 3);
+        String partA = NachaFileKey.of("1000000000", fileCreationDate, "BFT000A");
+        String partB = NachaFileKey.of("1000000000", fileCreationDate, "BFT000B");
+        String partC = NachaFileKey.of("1000000000", fileCreationDate, "BFT000C");
+        // same reference code, but a file of another company
+        String otherCompany = NachaFileKey.of("2000000000", fileCreationDate, "BFT000A");
+
+        executor.registerFileParts(List.of(partA, partB, partC));
+        Assertions.assertEquals(Set.of(partA, partB, partC), executor.getPendingFileParts(partB));
+        Assertions.assertTrue(executor.getPendingFileParts(otherCompany).isEmpty());
+
+        executor.discardFilePart(otherCompany);
+        executor.discardFilePart(partB);
+        Assertions.assertEquals(Set.of(partA, partC), executor.getPendingFileParts(partA));
+
+        executor.discardFilePart(partA);
+        executor.discardFilePart(partC);
+        Assertions.assertTrue(executor.getPendingFileParts(partA).isEmpty());
+    }
+
+    @Test
+    void testReturnedEntriesCorrelatedByTraceNumber() {
+        LocalDate fileCreationDate = LocalDate.of(2022, 1, 3);
+        String firstFile = NachaFileKey.of("1000000000", fileCreationDate, "BFT000A");
+        String secondFile = NachaFileKey.of("1000000000", fileCreationDate, "BFT000B");
+        String otherCompany = NachaFileKey.of("2000000000", fileCreationDate, "BFT000A");
+        nachaFileMappingStore.put(NachaFileMappings.builder(firstFile)
+            .batch("1", "BATCH1").paymentItem("091000010000001", "PAYMENT1").paymentItem("091000010000002", "PAYMENT2")
+            .build());
+        nachaFileMappingStore.put(NachaFileMappings.builder(secondFile)
+            .batch("1", "BATCH2").paymentItem("091000010000003", "PAYMENT3")
+            .build());
+        nachaFileMappingStore.put(NachaFileMappings.builder(otherCompany)
+            .batch("1", "BATCH3").paymentItem("091000010000003", "PAYMENT4")
+            .build());
+        StatusInfo returned = new StatusInfo(true, "Returned", "R01", "Insufficient Funds", null);
+
+        List<String> fileKeys = executor.applyReturnedEntries("1000000000", Map.of(
+            "091000010000001", BankPaymentItemResult.builder().traceNumber("091000010000001").statusInfo(returned).build(),
+            "091000010000003", BankPaymentItemResult.builder().traceNumber("091000010000003").statusInfo(returned).build(),
+            "091000010000009", BankPaymentItemResult.builder().traceNumber("091000010000009").statusInfo(returned).build()));
+
+        Assertions.assertEquals(Set.of(firstFile, secondFile), Set.copyOf(fileKeys));
+        verify(batchStatusManager).rejectPaymentItems(ACCEPTED, "BATCH1", Map.of("PAYMENT1", returned));
+        verify(batchStatusManager).rejectPaymentItems(ACCEPTED, "BATCH2", Map.of("PAYMENT3", returned));
+        verify(batchStatusManager, never()).rejectPaymentItems(eq(ACCEPTED), eq("BATCH3"), anyMap());
+        // the batches are left to the bank result of their file, which is still expected
+        verify(batchStatusManager, never()).markBatchProcessed(any(), any());
+        verify(batchStatusManager, never()).rejectBatch(any(), any(), any());
+        Assertions.assertEquals(3, nachaFileMappingStore.size());
+    }
+
+    private static BankResult acceptedBatch(String batchNumber) {
+        return BankResult.builder()
+            .batch(batchNumber, BankBatchOrderResult.builder()
+                .batchNumber(batchNumber)
+                .statusInfo(StatusInfo.builder().rejected(Boolean.FALSE).build())
+                .build())
+            .build();
+    }
+}
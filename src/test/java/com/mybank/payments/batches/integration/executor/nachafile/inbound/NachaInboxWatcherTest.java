@@ -0,0 +1,88 @@
+package com.mybank.payments.batches.integration.executor.nachafile.inbound;
+
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.batchHeader;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.fileHeader;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.COMPANY_ID;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.mybank.payments.batches.integration.executor.nachafile.ProcessedNachaFilesResultsExecutor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NachaInboxWatcherTest {
+
+    @TempDir
+    Path inbox;
+
+    private final ProcessedNachaFilesResultsExecutor resultsExecutor = mock(ProcessedNachaFilesResultsExecutor.class);
+    private NachaInboxWatcher watcher;
+
+    @AfterEach
+    void tearDown() {
+        watcher.shutdown();
+    }
+
+    @Test
+    void testFilesRenamedIntoTheInboxProcessed() throws Exception {
+        watcher = new NachaInboxWatcher(inbox, new NachaReturnFileProcessor(resultsExecutor));
+        watcher.start();
+        Path file = inbox.resolve("returns.ach.part");
+        Files.writeString(file, fileHeader("REF00001") + "\n" + batchHeader("1") + "\n", StandardCharsets.US_ASCII);
+
+        Files.move(file, inbox.resolve("returns.ach"), StandardCopyOption.ATOMIC_MOVE);
+
+        awaitFile(inbox.resolve(NachaInboxWatcher.PROCESSED).resolve("returns.ach"));
+        // only the result of the file is applied, the queued results are left to the scheduled runs
+        verify(resultsExecutor).applyReturnedEntries(eq(COMPANY_ID), any());
+        verify(resultsExecutor, never()).execute();
+        Assertions.assertFalse(Files.exists(inbox.resolve("returns.ach")));
+    }
+
+    @Test
+    void testUnparsableFilesMovedToFailed() throws Exception {
+        watcher = new NachaInboxWatcher(inbox, new NachaReturnFileProcessor(resultsExecutor));
+        watcher.start();
+
+        Files.writeString(inbox.resolve(".garbage.ach"), "not a nacha file");
+        Files.move(inbox.resolve(".garbage.ach"), inbox.resolve("garbage.ach"), StandardCopyOption.ATOMIC_MOVE);
+
+        awaitFile(inbox.resolve(NachaInboxWatcher.FAILED).resolve("garbage.ach"));
+        verify(resultsExecutor, never()).applyReturnedEntries(any(), any());
+    }
+
+    @Test
+    void testFilesLeftOverByAnEarlierRunProcessedOnStart() throws Exception {
+        Files.createDirectories(inbox.resolve(NachaInboxWatcher.PROCESSING));
+        Files.writeString(inbox.resolve(NachaInboxWatcher.PROCESSING).resolve("interrupted.ach"),
+            fileHeader("REF00002") + "\n" + batchHeader("1") + "\n", StandardCharsets.US_ASCII);
+        Files.writeString(inbox.resolve("landed.ach"), fileHeader("REF00003") + "\n" + batchHeader("1") + "\n",
+            StandardCharsets.US_ASCII);
+
+        watcher = new NachaInboxWatcher(inbox, new NachaReturnFileProcessor(resultsExecutor));
+        Assertions.assertTrue(Files.exists(inbox.resolve("landed.ach")));
+        watcher.start();
+
+        awaitFile(inbox.resolve(NachaInboxWatcher.PROCESSED).resolve("interrupted.ach"));
+        awaitFile(inbox.resolve(NachaInboxWatcher.PROCESSED).resolve("landed.ach"));
+        verify(resultsExecutor, times(2)).applyReturnedEntries(eq(COMPANY_ID), any());
+    }
+
+    private static void awaitFile(Path file) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!Files.exists(file) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertTrue(Files.exists(file), file + " not found");
+    }
+}
@@ -0,0 +1,101 @@
+package com.mybank.payments.batches.integration.executor.nachafile.inbound;
+
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.addenda;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.batchControl;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.batchHeader;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.entry;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.fileControl;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.fileHeader;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.traceNumber;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the records per second the return file parser reads, on a return file of a large originator with 100 000
+ * entries spread over 100 batches, the given share of them returned.
+ * <p>Run it from the main method.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NachaReturnFileParserBenchmark {
+
+    private static final int BATCHES = 100;
+    private static final int ENTRIES_PER_BATCH = 1000;
+    private static final int RECORDS = 2 + BATCHES * (2 + ENTRIES_PER_BATCH * 2);
+
+    @Param({"1", "100"})
+    int returnedPercentage;
+
+    private final NachaReturnFileParser parser = new NachaReturnFileParser();
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("returns_", ".ach");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            writer.write(fileHeader("REF00001"));
+            writer.newLine();
+            int entry = 0;
+            for (int batch = 1; batch <= BATCHES; batch++) {
+                writer.write(batchHeader(Integer.toString(batch)));
+                writer.newLine();
+                for (int i = 0; i < ENTRIES_PER_BATCH; i++) {
+                    entry++;
+                    writer.write(entry(traceNumber(entry)));
+                    writer.newLine();
+                    writer.write(entry % 100 < returnedPercentage
+                        ? addenda("99", "R01", traceNumber(entry), "")
+                        : addenda("05", "   ", "               ", ""));
+                    writer.newLine();
+                }
+                writer.write(batchControl());
+                writer.newLine();
+            }
+            writer.write(fileControl());
+            writer.newLine();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public NachaReturnFile parse() throws IOException {
+        return parser.parse(file);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(NachaReturnFileParserBenchmark.class.getSimpleName())
+            .build())
+            .run();
+    }
+}
@@ -0,0 +1,118 @@
+package com.mybank.payments.batches.integration.executor.nachafile.inbound;
+
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.COMPANY_ID;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.addenda;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.batchControl;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.batchHeader;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.entry;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.fileControl;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.fileHeader;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.fileKey;
+import static com.mybank.payments.batches.integration.executor.nachafile.inbound.NachaReturnFiles.traceNumber;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.backbase.batches.nacha.model.result.BankResult.BankPaymentItemResult;
+import com.mybank.payments.batches.integration.executor.nachafile.ProcessedNachaFilesResultsExecutor;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NachaReturnFileParserTest {
+
+    private final NachaReturnFileParser parser = new NachaReturnFileParser();
+
+    @Test
+    void testReturnsAndNotificationsOfChange(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("returns.ach");
+        Files.writeString(file, String.join("\r\n",
+            fileHeader("REF00001"),
+            batchHeader("1"),
+            entry("091000010000001"),
+            addenda("99", "R01", traceNumber(1), "INSUFFICIENT FUNDS"),
+            entry("091000010000002"),
+            addenda("98", "C01", traceNumber(2), "987654321"),
+            batchControl(),
+            batchHeader("2"),
+            batchControl(),
+            fileControl()) + "\r\n", StandardCharsets.US_ASCII);
+
+        NachaReturnFile result = parser.parse(file);
+
+        Assertions.assertEquals("REF00001", result.getFileReferenceCode());
+        Assertions.assertEquals(LocalDate.of(2026, 10, 18), result.getFileCreationDate());
+        // the entries of both batches of the company are returned together, by their original trace number
+        Assertions.assertEquals(Set.of(COMPANY_ID), result.getEntriesPerCompany().keySet());
+        Map<String, BankPaymentItemResult> entries = result.getEntriesPerCompany().get(COMPANY_ID);
+        Assertions.assertEquals(2, entries.size());
+        BankPaymentItemResult returned = entries.get(traceNumber(1));
+        Assertions.assertTrue(returned.isRejected());
+        Assertions.assertEquals(traceNumber(1), returned.getTraceNumber());
+        Assertions.assertEquals("R01", returned.getStatusInfo().getReasonCode());
+        Assertions.assertEquals("Insufficient Funds", returned.getStatusInfo().getReasonText());
+        Assertions.assertEquals("INSUFFICIENT FUNDS", returned.getStatusInfo().getReasonDescription());
+        BankPaymentItemResult changed = entries.get(traceNumber(2));
+        Assertions.assertFalse(changed.isRejected());
+        Assertions.assertEquals("C01", changed.getStatusInfo().getReasonCode());
+    }
+
+    @Test
+    void testRecordsWithoutLineBreaks() {
+        String records = fileHeader("REF00002") + batchHeader("7") + entry("091000010000003")
+            + addenda("99", "R03", traceNumber(3), "") + batchControl() + fileControl()
+            + "9".repeat(NachaReturnFileParser.RECORD_LENGTH);
+
+        NachaReturnFile result = parser.parse(ByteBuffer.wrap(records.getBytes(StandardCharsets.US_ASCII)));
+
+        Assertions.assertEquals("REF00002", result.getFileReferenceCode());
+        Assertions.assertEquals(1, result.getEntryCount());
+        BankPaymentItemResult returned = result.getEntriesPerCompany().get(COMPANY_ID).get(traceNumber(3));
+        Assertions.assertTrue(returned.isRejected());
+        Assertions.assertEquals("No Account/Unable to Locate Account", returned.getStatusInfo().getReasonText());
+    }
+
+    @Test
+    void testTruncatedFileRejected() {
+        String records = fileHeader("REF00003") + batchHeader("1").substring(0, 50);
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> parser.parse(ByteBuffer.wrap(records.getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    @Test
+    void testFileWithoutBatchesRejected() {
+        String records = fileHeader("REF00005") + fileControl();
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> parser.parse(ByteBuffer.wrap(records.getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    @Test
+    void testProcessorAppliesTheReturnedEntries(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("returns.ach");
+        Files.writeString(file, fileHeader("REF00004") + "\n" + batchHeader("1") + "\n" + entry("091000010000001")
+            + "\n" + addenda("99", "R01", traceNumber(1), "") + "\n", StandardCharsets.US_ASCII);
+        ProcessedNachaFilesResultsExecutor resultsExecutor = mock(ProcessedNachaFilesResultsExecutor.class);
+        when(resultsExecutor.applyReturnedEntries(eq(COMPANY_ID), any())).thenReturn(List.of(fileKey("BFT000A")));
+
+        List<String> fileKeys = new NachaReturnFileProcessor(resultsExecutor).process(file);
+
+        Assertions.assertEquals(List.of(fileKey("BFT000A")), fileKeys);
+        verify(resultsExecutor).applyReturnedEntries(eq(COMPANY_ID),
+            argThat(entries -> entries.keySet().equals(Set.of(traceNumber(1)))));
+        verify(resultsExecutor, never()).applyResult(any(), any());
+    }
+}
@@ -0,0 +1,65 @@
+package com.mybank.payments.batches.integration.executor.nachafile.inbound;
+
+import static org.apache.commons.lang3.StringUtils.leftPad;
+import static org.apache.commons.lang3.StringUtils.rightPad;
+
+import com.mybank.payments.batches.integration.executor.nachafile.NachaFileKey;
+import java.time.LocalDate;
+
+/**
+ * Builds the records of NACHA return files for the parser tests and benchmark.
+ */
+final class NachaReturnFiles {
+
+    private NachaReturnFiles() {
+    }
+
+    static final String COMPANY_ID = "1234567890";
+
+    /**
+     * @return key of an original file of the company of the return files, generated on the day they were created
+     */
+    static String fileKey(String referenceCode) {
+        return NachaFileKey.of(COMPANY_ID, LocalDate.of(2026, 10, 18), referenceCode);
+    }
+
+    static String fileHeader(String referenceCode) {
+        return record("101 091000019 123456789" + "261018" + "1200" + "A094101"
+            + rightPad("MY BANK", 23) + rightPad("ORIGINATOR", 23) + rightPad(referenceCode, 8));
+    }
+
+    static String batchHeader(String batchNumber) {
+        return record("5200" + rightPad("COMPANY", 16) + rightPad("", 20) + COMPANY_ID + "PPD"
+            + rightPad("RETURNS", 10) + "261018" + "261018" + "   " + "1" + "09100001"
+            + leftPad(batchNumber, 7, '0'));
+    }
+
+    static String entry(String traceNumber) {
+        return record("626" + "09100001" + "9" + rightPad("123456789", 17) + leftPad("1000", 10, '0')
+            + rightPad("ID", 15) + rightPad("RECEIVER", 22) + "  " + "1" + traceNumber);
+    }
+
+    static String addenda(String typeCode, String reasonCode, String originalTraceNumber, String information) {
+        return record("7" + typeCode + reasonCode + originalTraceNumber + "      " + "09100001"
+            + rightPad(information, 44) + "091000010000001");
+    }
+
+    static String batchControl() {
+        return record(rightPad("8200", 94));
+    }
+
+    static String fileControl() {
+        return record(rightPad("9000001", 94));
+    }
+
+    static String traceNumber(int entry) {
+        return "09100001" + leftPad(Integer.toString(entry), 7, '0');
+    }
+
+    private static String record(String record) {
+        if (record.length() != NachaReturnFileParser.RECORD_LENGTH) {
+            throw new IllegalArgumentException("Record of " + record.length() + " characters: " + record);
+        }
+        return record;
+    }
+}
@@ -0,0 +1,163 @@
+package com.mybank.payments.batches.integration.executor.nachafile.output;
+
+import static com.backbase.batches.nacha.model.FileRequest.FileMode.USER;
+
+import com.backbase.batches.nacha.model.FileRequest;
+import com.mybank.payments.batches.integration.executor.nachafile.output.DirectBufferNachaOutputSink.DirectBufferNachaOutput;
+import com.mybank.payments.batches.integration.executor.nachafile.output.FileChannelNachaOutputSink.FileChannelNachaOutput;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NachaOutputSinkTest {
+
+    private static final String RECORD = "101 091000019 1234567891907021200A094101BANK                   COMPANY\n";
+
+    private static final FileRequest FILE_REQUEST = FileRequest.builder()
+        .fileMode(USER)
+        .companyId("1000000000")
+        .companyName("First Company")
+        .fileDailyId('A')
+        .fileReferenceCode("BFT000A")
+        .build();
+
+    @TempDir
+    Path directory;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testFileChannelSink() throws IOException {
+        FileChannelNachaOutputSink sink = new FileChannelNachaOutputSink(directory, 64, meterRegistry);
+
+        FileChannelNachaOutput output = (FileChannelNachaOutput) sink.open(FILE_REQUEST);
+        String content = write(output, 10);
+
+        Assertions.assertEquals(directory, output.getFile().getParent());
+        Assertions.assertTrue(output.getFile().getFileName().toString().startsWith("BFT000A_A_"));
+        Assertions.assertEquals(content, Files.readString(output.getFile()));
+        Assertions.assertEquals(content.length(), output.getBytesWritten());
+        Assertions.assertEquals(content.length(),
+            meterRegistry.get("nacha.output.bytes").tag("sink", "FILE_CHANNEL").counter().count());
+        Assertions.assertEquals(1,
+            meterRegistry.get("nacha.output.throughput").tag("sink", "FILE_CHANNEL").summary().count());
+
+        output.release();
+        Assertions.assertFalse(Files.exists(output.getFile()));
+    }
+
+    @Test
+    void testFileChannelSinkAbortDeletesTempFile() throws IOException {
+        FileChannelNachaOutputSink sink = new FileChannelNachaOutputSink(directory, 64, meterRegistry);
+
+        FileChannelNachaOutput output = (FileChannelNachaOutput) sink.open(FILE_REQUEST);
+        output.write(RECORD);
+        output.flush();
+        output.discard();
+
+        Assertions.assertFalse(Files.exists(output.getFile()));
+    }
+
+    @Test
+    void testDirectBufferSinkReusesChunks() throws IOException {
+        DirectBufferNachaOutputSink sink = new DirectBufferNachaOutputSink(64, 16, meterRegistry);
+
+        DirectBufferNachaOutput output = (DirectBufferNachaOutput) sink.open(FILE_REQUEST);
+        String content = write(output, 10);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        output.writeTo(Channels.newChannel(bytes));
+
+        Assertions.assertEquals(content, bytes.toString(StandardCharsets.US_ASCII));
+        int chunks = output.getContent().size();
+        Assertions.assertEquals((content.length() + 63) / 64, chunks);
+
+        output.release();
+        Assertions.assertTrue(output.getContent().isEmpty());
+        int pooled = sink.getPooledChunks();
+        Assertions.assertEquals(chunks + 1, pooled);
+
+        DirectBufferNachaOutput next = (DirectBufferNachaOutput) sink.open(FILE_REQUEST);
+        write(next, 10);
+        next.release();
+        Assertions.assertEquals(pooled, sink.getPooledChunks());
+    }
+
+    @Test
+    void testDirectBufferSinkPoolIsBounded() throws IOException {
+        DirectBufferNachaOutputSink sink = new DirectBufferNachaOutputSink(64, 2, meterRegistry);
+
+        NachaOutput output = sink.open(FILE_REQUEST);
+        write(output, 10);
+        output.release();
+
+        Assertions.assertEquals(2, sink.getPooledChunks());
+    }
+
+    @Test
+    void testStreamingUploadSink() throws IOException {
+        Path outbox = directory.resolve("outbox");
+        StreamingUploadNachaOutputSink sink = new StreamingUploadNachaOutputSink(
+            new OutboxDirectoryUploadTransport(outbox), 64, meterRegistry);
+
+        NachaOutput output = sink.open(FILE_REQUEST);
+        output.write(RECORD);
+        output.flush();
+        Assertions.assertTrue(Files.exists(outbox.resolve("1000000000_BFT000A_A.ach.part")));
+        Assertions.assertFalse(Files.exists(outbox.resolve("1000000000_BFT000A_A.ach")));
+
+        String content = RECORD + write(output, 9);
+
+        Assertions.assertEquals(content, Files.readString(outbox.resolve("1000000000_BFT000A_A.ach")));
+        Assertions.assertFalse(Files.exists(outbox.resolve("1000000000_BFT000A_A.ach.part")));
+        Assertions.assertEquals(content.length(),
+            meterRegistry.get("nacha.output.bytes").tag("sink", "STREAMING_UPLOAD").counter().count());
+    }
+
+    @Test
+    void testStreamingUploadSinkAbortDiscardsPartialFile() throws IOException {
+        Path outbox = directory.resolve("outbox");
+        StreamingUploadNachaOutputSink sink = new StreamingUploadNachaOutputSink(
+            new OutboxDirectoryUploadTransport(outbox), 64, meterRegistry);
+
+        NachaOutput output = sink.open(FILE_REQUEST);
+        output.write(RECORD);
+        output.flush();
+        output.abort();
+
+        Assertions.assertFalse(Files.exists(outbox.resolve("1000000000_BFT000A_A.ach.part")));
+        Assertions.assertFalse(Files.exists(outbox.resolve("1000000000_BFT000A_A.ach")));
+    }
+
+    @Test
+    void testNonAsciiCharactersAreReplaced() throws IOException {
+        DirectBufferNachaOutputSink sink = new DirectBufferNachaOutputSink(64, 16, meterRegistry);
+
+        DirectBufferNachaOutput output = (DirectBufferNachaOutput) sink.open(FILE_REQUEST);
+        output.write("Café Müller");
+        output.close();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        output.writeTo(Channels.newChannel(bytes));
+
+        Assertions.assertEquals("Caf? M?ller", bytes.toString(StandardCharsets.US_ASCII));
+        Assertions.assertThrows(IOException.class, () -> output.write("late"));
+    }
+
+    private static String write(Writer writer, int records) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < records; i++) {
+            writer.write(RECORD);
+            content.append(RECORD);
+        }
+        writer.close();
+        return content.toString();
+    }
+}
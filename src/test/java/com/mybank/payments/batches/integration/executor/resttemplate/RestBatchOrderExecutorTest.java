@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Queue;
 import java.util.UUID;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,6 +18,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import com.backbase.payments.batches.integration.inbound.model.BatchStatus;
 import com.backbase.payments.batches.integration.inbound.model.GetBatchOrderResponse;
@@ -26,6 +28,10 @@ import com.backbase.payments.batches.integration.inbound.model.PutBatchOrderRequ
 import com.backbase.payments.batches.integration.inbound.model.PutBatchOrderResponse;
 import com.backbase.payments.batches.integration.inbound.resttemplate.api.BatchOrdersApi;
 import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.mybank.payments.batches.integration.BatchOrderFailedEvent;
+import com.mybank.payments.batches.integration.ExampleMode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(MockitoExtension.class)
 class RestBatchOrderExecutorTest {
@@ -34,6 +40,18 @@ class RestBatchOrderExecutorTest {
     @Mock
     BatchOrdersApi batchOrdersApi;
 
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    PageFetchPool pageFetchPool;
+
+    @AfterEach
+    void shutdown() {
+        if (pageFetchPool != null) {
+            pageFetchPool.shutdown();
+        }
+    }
+
     @ParameterizedTest
     @ValueSource(ints = {1, 99, 100, 101})
     void testValid(int paymentItemCount) {
@@ -64,7 +82,104 @@ class RestBatchOrderExecutorTest {
         mockStatusTransition(batchOrderId, BatchStatus.ACCEPTED, BatchStatus.PROCESSED);
 
         // execute
-        RestBatchOrderExecutor batchOrderExecutor = new RestBatchOrderExecutor(batchOrdersApi, batchRequestQueue);
+        RestBatchOrderExecutor batchOrderExecutor = newBatchOrderExecutor(batchRequestQueue, new RestTemplateExecutorProperties(),
+            new SimpleMeterRegistry());
+        batchOrderExecutor.execute();
+
+        // validate
+        Mockito.verify(batchOrdersApi, Mockito.times(pageCount))
+            .getBatchPayments(Mockito.eq(batchOrderId), Mockito.any(), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE));
+
+        ArgumentCaptor<PutBatchOrderRequest> putBatchOrderRequestCaptor = ArgumentCaptor.forClass(PutBatchOrderRequest.class);
+        Mockito.verify(batchOrdersApi)
+            .putBatchOrder(Mockito.eq(batchOrderId), Mockito.eq(BatchStatus.ACCEPTED.getValue()), putBatchOrderRequestCaptor.capture());
+
+        Assertions.assertEquals(BatchStatus.PROCESSED, putBatchOrderRequestCaptor.getValue().getStatus());
+    }
+
+    @Test
+    void testLifecycleMeters() {
+        final int paymentItemCount = 150;
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        String batchOrderId = UUID.randomUUID().toString();
+        batchRequestQueue.add(
+            new PostBatchOrderRequest()
+                .id(batchOrderId)
+        );
+
+        // prepare mock
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.eq(batchOrderId))).thenReturn(
+            new GetBatchOrderResponse()
+                .id(batchOrderId)
+                .status(BatchStatus.ACKNOWLEDGED)
+                .totalTransactionsCount(BigDecimal.valueOf(paymentItemCount))
+        );
+        for (int pageNumber = 0; pageNumber < 2; pageNumber++) {
+            Mockito.when(batchOrdersApi.getBatchPayments(Mockito.eq(batchOrderId), Mockito.eq(pageNumber), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE))).thenReturn(
+                new GetBatchPaymentsResponse()
+                    .batchPayments(generatePaymentItems(pageNumber, PAYMENT_ITEMS_PAGE_SIZE, paymentItemCount))
+                    .totalBatchPayments((long)paymentItemCount)
+            );
+        }
+        mockStatusTransition(batchOrderId, BatchStatus.ACKNOWLEDGED, BatchStatus.DOWNLOADING);
+        mockStatusTransition(batchOrderId, BatchStatus.DOWNLOADING, BatchStatus.ACCEPTED);
+        mockStatusTransition(batchOrderId, BatchStatus.ACCEPTED, BatchStatus.PROCESSED);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        // execute
+        RestBatchOrderExecutor batchOrderExecutor = newBatchOrderExecutor(batchRequestQueue,
+            new RestTemplateExecutorProperties(), meterRegistry);
+        batchOrderExecutor.execute();
+
+        // validate
+        Assertions.assertEquals(1, meterRegistry.get("batch.stage.latency")
+            .tags("mode", "RestTemplate", "stage", "getBatchOrder", "outcome", "success").timer().count());
+        Assertions.assertEquals(2, meterRegistry.get("batch.stage.latency")
+            .tags("mode", "RestTemplate", "stage", "getBatchPayments", "outcome", "success").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("batch.stage.latency")
+            .tags("mode", "RestTemplate", "stage", "processing", "outcome", "success").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("batch.status.transition.latency")
+            .tags("mode", "RestTemplate", "status", "PROCESSED", "outcome", "success").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("batch.orders.completed")
+            .tags("mode", "RestTemplate", "outcome", "processed").counter().count());
+        Assertions.assertEquals(paymentItemCount, meterRegistry.get("batch.payments.completed")
+            .tags("mode", "RestTemplate", "outcome", "processed").counter().count());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 101, 1050})
+    void testStreamingValid(int paymentItemCount) {
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        String batchOrderId = UUID.randomUUID().toString();
+        batchRequestQueue.add(
+            new PostBatchOrderRequest()
+                .id(batchOrderId)
+        );
+
+        // prepare mock
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.eq(batchOrderId))).thenReturn(
+            new GetBatchOrderResponse()
+                .id(batchOrderId)
+                .status(BatchStatus.ACKNOWLEDGED)
+                .totalTransactionsCount(BigDecimal.valueOf(paymentItemCount))
+        );
+        int pageCount = (int)Math.ceil((double)paymentItemCount/PAYMENT_ITEMS_PAGE_SIZE);
+        for (int pageNumber = 0; pageNumber < pageCount; pageNumber++) {
+            Mockito.when(batchOrdersApi.getBatchPayments(Mockito.eq(batchOrderId), Mockito.eq(pageNumber), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE))).thenReturn(
+                new GetBatchPaymentsResponse()
+                    .batchPayments(generatePaymentItems(pageNumber, PAYMENT_ITEMS_PAGE_SIZE, paymentItemCount))
+                    .totalBatchPayments((long)paymentItemCount)
+            );
+        }
+        mockStatusTransition(batchOrderId, BatchStatus.ACKNOWLEDGED, BatchStatus.DOWNLOADING);
+        mockStatusTransition(batchOrderId, BatchStatus.DOWNLOADING, BatchStatus.ACCEPTED);
+        mockStatusTransition(batchOrderId, BatchStatus.ACCEPTED, BatchStatus.PROCESSED);
+        RestTemplateExecutorProperties properties = new RestTemplateExecutorProperties();
+        properties.setStreaming(true);
+
+        // execute
+        RestBatchOrderExecutor batchOrderExecutor = newBatchOrderExecutor(batchRequestQueue, properties,
+            new SimpleMeterRegistry());
         batchOrderExecutor.execute();
 
         // validate
@@ -78,6 +193,149 @@ class RestBatchOrderExecutorTest {
         Assertions.assertEquals(BatchStatus.PROCESSED, putBatchOrderRequestCaptor.getValue().getStatus());
     }
 
+    @Test
+    void testStreamingRejected() {
+        final int reportedPaymentItemCount = 1;
+        final int returnedPaymentItemCount = 2;
+
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        String batchOrderId = UUID.randomUUID().toString();
+        batchRequestQueue.add(
+            new PostBatchOrderRequest()
+                .id(batchOrderId)
+        );
+
+        // prepare mock
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.eq(batchOrderId))).thenReturn(
+            new GetBatchOrderResponse()
+                .id(batchOrderId)
+                .status(BatchStatus.ACKNOWLEDGED)
+                .totalTransactionsCount(BigDecimal.valueOf(reportedPaymentItemCount))
+        );
+        Mockito.when(batchOrdersApi.getBatchPayments(Mockito.eq(batchOrderId), Mockito.eq(0), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE))).thenReturn(
+            new GetBatchPaymentsResponse()
+                .batchPayments(generatePaymentItems(0, PAYMENT_ITEMS_PAGE_SIZE, returnedPaymentItemCount))
+                .totalBatchPayments((long)returnedPaymentItemCount)
+        );
+        mockStatusTransition(batchOrderId, BatchStatus.ACKNOWLEDGED, BatchStatus.DOWNLOADING);
+        mockStatusTransition(batchOrderId, BatchStatus.DOWNLOADING, BatchStatus.REJECTED);
+        RestTemplateExecutorProperties properties = new RestTemplateExecutorProperties();
+        properties.setStreaming(true);
+
+        // execute
+        RestBatchOrderExecutor batchOrderExecutor = newBatchOrderExecutor(batchRequestQueue, properties,
+            new SimpleMeterRegistry());
+        batchOrderExecutor.execute();
+
+        // validate
+        ArgumentCaptor<PutBatchOrderRequest> putBatchOrderRequestCaptor = ArgumentCaptor.forClass(PutBatchOrderRequest.class);
+        Mockito.verify(batchOrdersApi)
+            .putBatchOrder(Mockito.eq(batchOrderId), Mockito.eq(BatchStatus.DOWNLOADING.getValue()), putBatchOrderRequestCaptor.capture());
+
+        Assertions.assertEquals(BatchStatus.REJECTED, putBatchOrderRequestCaptor.getValue().getStatus());
+        Mockito.verify(batchOrdersApi, Mockito.never()).putBatchPayments(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void testPrefetchedPagesInOrder() {
+        final int paymentItemCount = 1050;
+        String batchOrderId = UUID.randomUUID().toString();
+
+        // prepare mock, early pages answer slower than later ones
+        int pageCount = (int)Math.ceil((double)paymentItemCount/PAYMENT_ITEMS_PAGE_SIZE);
+        for (int pageNumber = 0; pageNumber < pageCount; pageNumber++) {
+            int page = pageNumber;
+            List<IntegrationBatchPayment> paymentItems = generatePaymentItems(page, PAYMENT_ITEMS_PAGE_SIZE, paymentItemCount);
+            Mockito.when(batchOrdersApi.getBatchPayments(Mockito.eq(batchOrderId), Mockito.eq(pageNumber), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE))).thenAnswer(invocation -> {
+                Thread.sleep(5L * (pageCount - page));
+                return new GetBatchPaymentsResponse()
+                    .batchPayments(paymentItems)
+                    .totalBatchPayments((long)paymentItemCount);
+            });
+        }
+        RestTemplateExecutorProperties properties = new RestTemplateExecutorProperties();
+        properties.setPageFetchConcurrency(4);
+
+        // execute
+        pageFetchPool = new PageFetchPool(properties);
+        RestBatchOrderProcessor batchOrderProcessor = new RestBatchOrderProcessor(batchOrdersApi, eventPublisher, properties,
+            new SimpleMeterRegistry(), ExampleMode.REST_TEMPLATE, pageFetchPool.getExecutor());
+        List<IntegrationBatchPayment> paymentItems = new ArrayList<>();
+        long totalBatchPayments = batchOrderProcessor.fetchBatchPayments(batchOrderId, paymentItems::addAll);
+
+        // validate
+        Assertions.assertEquals(paymentItemCount, totalBatchPayments);
+        Assertions.assertEquals(paymentItemCount, paymentItems.size());
+        for (int i = 0; i < paymentItemCount; i++) {
+            Assertions.assertEquals("paymentItem#" + i, paymentItems.get(i).getDescription());
+        }
+        Mockito.verify(batchOrdersApi, Mockito.times(pageCount))
+            .getBatchPayments(Mockito.eq(batchOrderId), Mockito.any(), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE));
+    }
+
+    @Test
+    void testPrefetchStopsOnceAllReceived() {
+        final int reportedPaymentItemCount = 1050;
+        final int shortPage = 2;
+        String batchOrderId = UUID.randomUUID().toString();
+
+        // prepare mock, the batch order shrank to 250 payment items after the first page
+        for (int pageNumber = 0; pageNumber < shortPage; pageNumber++) {
+            Mockito.when(batchOrdersApi.getBatchPayments(Mockito.eq(batchOrderId), Mockito.eq(pageNumber), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE))).thenReturn(
+                new GetBatchPaymentsResponse()
+                    .batchPayments(generatePaymentItems(pageNumber, PAYMENT_ITEMS_PAGE_SIZE, reportedPaymentItemCount))
+                    .totalBatchPayments((long)reportedPaymentItemCount)
+            );
+        }
+        Mockito.when(batchOrdersApi.getBatchPayments(Mockito.eq(batchOrderId), Mockito.eq(shortPage), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE))).thenReturn(
+            new GetBatchPaymentsResponse()
+                .batchPayments(generatePaymentItems(shortPage, PAYMENT_ITEMS_PAGE_SIZE, 250))
+                .totalBatchPayments(250L)
+        );
+        Mockito.lenient().when(batchOrdersApi.getBatchPayments(Mockito.eq(batchOrderId), Mockito.intThat(page -> page > shortPage), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE))).thenReturn(
+            new GetBatchPaymentsResponse()
+                .batchPayments(Collections.emptyList())
+                .totalBatchPayments(250L)
+        );
+        RestTemplateExecutorProperties properties = new RestTemplateExecutorProperties();
+        properties.setPageFetchConcurrency(4);
+
+        // execute
+        pageFetchPool = new PageFetchPool(properties);
+        RestBatchOrderProcessor batchOrderProcessor = new RestBatchOrderProcessor(batchOrdersApi, eventPublisher, properties,
+            new SimpleMeterRegistry(), ExampleMode.REST_TEMPLATE, pageFetchPool.getExecutor());
+        List<IntegrationBatchPayment> paymentItems = new ArrayList<>();
+        long totalBatchPayments = batchOrderProcessor.fetchBatchPayments(batchOrderId, paymentItems::addAll);
+
+        // validate, only the pages prefetched before the last payment item was received are requested
+        Assertions.assertEquals(250, totalBatchPayments);
+        Assertions.assertEquals(250, paymentItems.size());
+        Mockito.verify(batchOrdersApi, Mockito.never())
+            .getBatchPayments(Mockito.eq(batchOrderId), Mockito.intThat(page -> page > shortPage + 3), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE));
+    }
+
+    @Test
+    void testFailedBatchOrderPublished() {
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        String batchOrderId = UUID.randomUUID().toString();
+        batchRequestQueue.add(
+            new PostBatchOrderRequest()
+                .id(batchOrderId)
+        );
+
+        // prepare mock
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.eq(batchOrderId)))
+            .thenThrow(new IllegalStateException("payment-order-service unavailable"));
+
+        // execute
+        RestBatchOrderExecutor batchOrderExecutor = newBatchOrderExecutor(batchRequestQueue, new RestTemplateExecutorProperties(),
+            new SimpleMeterRegistry());
+        Assertions.assertThrows(IllegalStateException.class, batchOrderExecutor::execute);
+
+        // validate
+        Mockito.verify(eventPublisher).publishEvent(new BatchOrderFailedEvent(batchOrderId));
+    }
+
     @Test
     void testRejected() {
         final int reportedPaymentItemCount = 1;
@@ -112,7 +370,8 @@ class RestBatchOrderExecutorTest {
         mockStatusTransition(batchOrderId, BatchStatus.DOWNLOADING, BatchStatus.REJECTED);
 
         // execute
-        RestBatchOrderExecutor batchOrderExecutor = new RestBatchOrderExecutor(batchOrdersApi, batchRequestQueue);
+        RestBatchOrderExecutor batchOrderExecutor = newBatchOrderExecutor(batchRequestQueue, new RestTemplateExecutorProperties(),
+            new SimpleMeterRegistry());
         batchOrderExecutor.execute();
 
         // validate
@@ -126,6 +385,13 @@ class RestBatchOrderExecutorTest {
         Assertions.assertEquals(BatchStatus.REJECTED, putBatchOrderRequestCaptor.getValue().getStatus());
     }
 
+    private RestBatchOrderExecutor newBatchOrderExecutor(Queue<PostBatchOrderRequest> batchRequestQueue,
+        RestTemplateExecutorProperties properties, MeterRegistry meterRegistry) {
+        pageFetchPool = new PageFetchPool(properties);
+        return new RestBatchOrderExecutor(batchOrdersApi, batchRequestQueue, eventPublisher, properties, meterRegistry,
+            pageFetchPool);
+    }
+
     private void mockStatusTransition(String batchOrderId, BatchStatus expectedStatus, BatchStatus status) {
         Mockito.when(batchOrdersApi.putBatchOrder(Mockito.eq(batchOrderId), Mockito.eq(expectedStatus.getValue()), Mockito.argThat(p->p.getStatus() == status))).thenReturn(
             new PutBatchOrderResponse()
@@ -0,0 +1,126 @@
+package com.mybank.payments.batches.integration.executor.virtualthread;
+
+import java.math.BigDecimal;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.backbase.payments.batches.integration.inbound.model.BatchStatus;
+import com.backbase.payments.batches.integration.inbound.model.GetBatchOrderResponse;
+import com.backbase.payments.batches.integration.inbound.model.GetBatchPaymentsResponse;
+import com.backbase.payments.batches.integration.inbound.model.IntegrationBatchPayment;
+import com.backbase.payments.batches.integration.inbound.model.PutBatchOrderRequest;
+import com.backbase.payments.batches.integration.inbound.model.PutBatchOrderResponse;
+import com.backbase.payments.batches.integration.inbound.resttemplate.api.BatchOrdersApi;
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.mybank.payments.batches.integration.executor.BatchOrderExecutor;
+import com.mybank.payments.batches.integration.executor.resttemplate.PageFetchPool;
+import com.mybank.payments.batches.integration.executor.resttemplate.RestBatchOrderExecutor;
+import com.mybank.payments.batches.integration.executor.resttemplate.RestTemplateExecutorProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares the platform-thread RestTemplate executor with the virtual-thread executor on a tick of batch orders,
+ * against a payment-order-service answering every request after a fixed latency.
+ * <p>Run it from the main method, on Java 21 or later to measure virtual threads rather than the platform-thread
+ * fallback.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadBatchOrderExecutorBenchmark {
+
+    @Param({"RestTemplate", "VirtualThreads"})
+    String mode;
+
+    @Param({"64"})
+    int batchOrders;
+
+    @Param({"2"})
+    long latencyMillis;
+
+    private final Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+    private final PageFetchPool pageFetchPool = new PageFetchPool(new RestTemplateExecutorProperties());
+    private BatchOrderExecutor batchOrderExecutor;
+
+    @Setup
+    public void setUp() {
+        BatchOrdersApi batchOrdersApi = Mockito.mock(BatchOrdersApi.class);
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.any())).thenAnswer(delayed(invocation ->
+            new GetBatchOrderResponse()
+                .id(invocation.getArgument(0))
+                .status(BatchStatus.ACKNOWLEDGED)
+                .totalTransactionsCount(BigDecimal.ONE)));
+        Mockito.when(batchOrdersApi.getBatchPayments(Mockito.any(), Mockito.any(), Mockito.any())).thenAnswer(delayed(invocation ->
+            new GetBatchPaymentsResponse()
+                .batchPayments(List.of(new IntegrationBatchPayment().id(UUID.randomUUID().toString()).hidden(false)))
+                .totalBatchPayments(1L)));
+        Mockito.when(batchOrdersApi.putBatchOrder(Mockito.any(), Mockito.any(), Mockito.any())).thenAnswer(delayed(invocation ->
+            new PutBatchOrderResponse()
+                .id(invocation.getArgument(0))
+                .status(invocation.<PutBatchOrderRequest>getArgument(2).getStatus())));
+        batchOrderExecutor = "VirtualThreads".equals(mode)
+            ? new VirtualThreadBatchOrderExecutor(batchOrdersApi, batchRequestQueue, event -> { },
+                new RestTemplateExecutorProperties(), new SimpleMeterRegistry(), batchOrders)
+            : new RestBatchOrderExecutor(batchOrdersApi, batchRequestQueue, event -> { },
+                new RestTemplateExecutorProperties(), new SimpleMeterRegistry(), pageFetchPool);
+    }
+
+    @Setup(Level.Invocation)
+    public void fillQueue() {
+        for (int i = 0; i < batchOrders; i++) {
+            batchRequestQueue.add(new PostBatchOrderRequest().id(UUID.randomUUID().toString()));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (batchOrderExecutor instanceof VirtualThreadBatchOrderExecutor) {
+            ((VirtualThreadBatchOrderExecutor) batchOrderExecutor).shutdown();
+        }
+        pageFetchPool.shutdown();
+    }
+
+    @Benchmark
+    public void executeTick() {
+        batchOrderExecutor.execute();
+    }
+
+    private <T> Answer<T> delayed(Answer<T> answer) {
+        return invocation -> {
+            Thread.sleep(latencyMillis);
+            return answer.answer(invocation);
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(VirtualThreadBatchOrderExecutorBenchmark.class.getSimpleName())
+            .build())
+            .run();
+    }
+}
@@ -0,0 +1,175 @@
+package com.mybank.payments.batches.integration.executor.virtualthread;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import com.backbase.payments.batches.integration.inbound.model.BatchStatus;
+import com.backbase.payments.batches.integration.inbound.model.GetBatchOrderResponse;
+import com.backbase.payments.batches.integration.inbound.model.GetBatchPaymentsResponse;
+import com.backbase.payments.batches.integration.inbound.model.IntegrationBatchPayment;
+import com.backbase.payments.batches.integration.inbound.model.PutBatchOrderRequest;
+import com.backbase.payments.batches.integration.inbound.model.PutBatchOrderResponse;
+import com.backbase.payments.batches.integration.inbound.resttemplate.api.BatchOrdersApi;
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.mybank.payments.batches.integration.executor.resttemplate.RestTemplateExecutorProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class VirtualThreadBatchOrderExecutorTest {
+    final int PAYMENT_ITEMS_PAGE_SIZE = 100;
+
+    @Mock
+    BatchOrdersApi batchOrdersApi;
+
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void testProcessesAllBatchOrders() {
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        List<String> batchOrderIds = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String batchOrderId = UUID.randomUUID().toString();
+            batchOrderIds.add(batchOrderId);
+            batchRequestQueue.add(new PostBatchOrderRequest().id(batchOrderId));
+        }
+        mockBatchOrders(() -> { });
+
+        // execute
+        VirtualThreadBatchOrderExecutor batchOrderExecutor =
+            new VirtualThreadBatchOrderExecutor(batchOrdersApi, batchRequestQueue, eventPublisher,
+                new RestTemplateExecutorProperties(), new SimpleMeterRegistry(), 4);
+        batchOrderExecutor.execute();
+        batchOrderExecutor.shutdown();
+
+        // validate
+        Assertions.assertTrue(batchRequestQueue.isEmpty());
+        batchOrderIds.forEach(batchOrderId -> Mockito.verify(batchOrdersApi).putBatchOrder(Mockito.eq(batchOrderId),
+            Mockito.eq(BatchStatus.ACCEPTED.getValue()), Mockito.argThat(p -> p.getStatus() == BatchStatus.PROCESSED)));
+    }
+
+    @Test
+    void testCapsOutboundConcurrency() {
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        for (int i = 0; i < 16; i++) {
+            batchRequestQueue.add(new PostBatchOrderRequest().id(UUID.randomUUID().toString()).companyId("company-" + i));
+        }
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        mockBatchOrders(() -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+        });
+
+        // execute
+        VirtualThreadBatchOrderExecutor batchOrderExecutor =
+            new VirtualThreadBatchOrderExecutor(batchOrdersApi, batchRequestQueue, eventPublisher,
+                new RestTemplateExecutorProperties(), new SimpleMeterRegistry(), 2);
+        batchOrderExecutor.execute();
+        batchOrderExecutor.shutdown();
+
+        // validate
+        Assertions.assertTrue(maxInFlight.get() <= 2, "max in flight " + maxInFlight.get());
+        Mockito.verify(batchOrdersApi, Mockito.times(16)).getBatchOrder(Mockito.any());
+    }
+
+    @Test
+    void testKeepsBatchOrdersOfCompanyInOrder() {
+        Queue<PostBatchOrderRequest> lane = new LinkedList<>();
+        Map<String, String> companyOfBatchOrder = new HashMap<>();
+        List<String> expectedBatchOrderIds = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String batchOrderId = UUID.randomUUID().toString();
+            String companyId = "company-" + (i % 3);
+            companyOfBatchOrder.put(batchOrderId, companyId);
+            expectedBatchOrderIds.add(batchOrderId);
+            lane.add(new PostBatchOrderRequest().id(batchOrderId).companyId(companyId));
+        }
+        Map<String, List<String>> processedBatchOrderIds = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        AtomicInteger maxInFlightOfCompany = new AtomicInteger();
+        mockBatchOrders(() -> { });
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.any())).thenAnswer(invocation -> {
+            String batchOrderId = invocation.getArgument(0);
+            String companyId = companyOfBatchOrder.get(batchOrderId);
+            processedBatchOrderIds.computeIfAbsent(companyId, id -> new CopyOnWriteArrayList<>()).add(batchOrderId);
+            AtomicInteger companyInFlight = inFlight.computeIfAbsent(companyId, id -> new AtomicInteger());
+            maxInFlightOfCompany.accumulateAndGet(companyInFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            companyInFlight.decrementAndGet();
+            return new GetBatchOrderResponse()
+                .id(batchOrderId)
+                .status(BatchStatus.ACKNOWLEDGED)
+                .totalTransactionsCount(BigDecimal.ONE);
+        });
+
+        // execute, as a worker lane does
+        VirtualThreadBatchOrderExecutor batchOrderExecutor =
+            new VirtualThreadBatchOrderExecutor(batchOrdersApi, new LinkedList<>(), eventPublisher,
+                new RestTemplateExecutorProperties(), new SimpleMeterRegistry(), 8);
+        batchOrderExecutor.execute(lane);
+        batchOrderExecutor.shutdown();
+
+        // validate
+        Assertions.assertEquals(1, maxInFlightOfCompany.get());
+        for (int company = 0; company < 3; company++) {
+            List<String> expected = new ArrayList<>();
+            for (int i = company; i < expectedBatchOrderIds.size(); i += 3) {
+                expected.add(expectedBatchOrderIds.get(i));
+            }
+            Assertions.assertEquals(expected, processedBatchOrderIds.get("company-" + company));
+        }
+    }
+
+    private void mockBatchOrders(Runnable latency) {
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.any())).thenAnswer(invocation -> {
+            latency.run();
+            return new GetBatchOrderResponse()
+                .id(invocation.getArgument(0))
+                .status(BatchStatus.ACKNOWLEDGED)
+                .totalTransactionsCount(BigDecimal.ONE);
+        });
+        Mockito.when(batchOrdersApi.getBatchPayments(Mockito.any(), Mockito.eq(0), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE)))
+            .thenAnswer(invocation -> {
+                latency.run();
+                return new GetBatchPaymentsResponse()
+                    .batchPayments(List.of(new IntegrationBatchPayment()
+                        .id(UUID.randomUUID().toString())
+                        .hidden(false)))
+                    .totalBatchPayments(1L);
+            });
+        Mockito.when(batchOrdersApi.putBatchOrder(Mockito.any(), Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+            latency.run();
+            return new PutBatchOrderResponse()
+                .id(invocation.getArgument(0))
+                .status(invocation.<PutBatchOrderRequest>getArgument(2).getStatus());
+        });
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.mybank.payments.batches.integration.executor.webclient;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.channel.nio.NioEventLoopGroup;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class EventLoopBlockingMonitorTest {
+
+    @Test
+    void testRecordsBlockedEventLoop() throws Exception {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        NioEventLoopGroup eventLoopGroup = new NioEventLoopGroup(1);
+        EventLoopBlockingMonitor monitor =
+            new EventLoopBlockingMonitor(eventLoopGroup, Duration.ofMillis(10), meterRegistry);
+        try {
+            // block the only event loop
+            eventLoopGroup.submit(() -> {
+                Thread.sleep(300);
+                return null;
+            }).get();
+            Thread.sleep(50);
+
+            Timer blocked = meterRegistry.get("batch.event.loop.blocked").timer();
+            Assertions.assertTrue(blocked.count() > 0);
+            Assertions.assertTrue(blocked.max(TimeUnit.MILLISECONDS) >= 200,
+                "max blocked " + blocked.max(TimeUnit.MILLISECONDS));
+        } finally {
+            monitor.shutdown();
+            eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -3,11 +3,17 @@ package com.mybank.payments.batches.integration.executor.webclient;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -18,6 +24,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import com.backbase.payments.batches.integration.inbound.model.BatchStatus;
 import com.backbase.payments.batches.integration.inbound.model.GetBatchOrderResponse;
@@ -27,6 +34,9 @@ import com.backbase.payments.batches.integration.inbound.model.PutBatchOrderRequ
 import com.backbase.payments.batches.integration.inbound.model.PutBatchOrderResponse;
 import com.backbase.payments.batches.integration.inbound.webclient.api.BatchOrdersApi;
 import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.mybank.payments.batches.integration.BatchOrderFailedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(MockitoExtension.class)
 class WebClientBatchOrderExecutorTest {
@@ -35,6 +45,9 @@ class WebClientBatchOrderExecutorTest {
     @Mock
     BatchOrdersApi batchOrdersApi;
 
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+
     @ParameterizedTest
     @ValueSource(ints = {1, 99, 100, 101})
     void testValid(int paymentItemCount) {
@@ -65,7 +78,8 @@ class WebClientBatchOrderExecutorTest {
         mockStatusTransition(batchOrderId, BatchStatus.ACCEPTED, BatchStatus.PROCESSED);
 
         // execute
-        WebClientBatchOrderExecutor webClientBatchOrderExecutor = new WebClientBatchOrderExecutor(batchOrdersApi, batchRequestQueue);
+        WebClientBatchOrderExecutor webClientBatchOrderExecutor = new WebClientBatchOrderExecutor(batchOrdersApi, batchRequestQueue, eventPublisher,
+            new WebClientExecutorProperties(), new SimpleMeterRegistry());
         webClientBatchOrderExecutor.execute();
 
         // validate
@@ -81,6 +95,301 @@ class WebClientBatchOrderExecutorTest {
         Assertions.assertEquals(BatchStatus.PROCESSED, putBatchOrderRequestCaptor.getValue().getStatus());
     }
 
+    @Test
+    void testLifecycleMeters() {
+        final int paymentItemCount = 150;
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        String batchOrderId = UUID.randomUUID().toString();
+        batchRequestQueue.add(
+                new PostBatchOrderRequest()
+                        .id(batchOrderId));
+
+        // prepare mock
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.eq(batchOrderId))).thenReturn(
+                Mono.just(
+                        new GetBatchOrderResponse()
+                                .id(batchOrderId)
+                                .status(BatchStatus.ACKNOWLEDGED)
+                                .totalTransactionsCount(BigDecimal.valueOf(paymentItemCount))));
+        for (int pageNumber = 0; pageNumber < 2; pageNumber++) {
+            Mockito.when(batchOrdersApi.getBatchPayments(Mockito.eq(batchOrderId), Mockito.eq(pageNumber),
+                    Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE))).thenReturn(
+                            Mono.just(new GetBatchPaymentsResponse()
+                                    .batchPayments(
+                                            generatePaymentItems(pageNumber, PAYMENT_ITEMS_PAGE_SIZE, paymentItemCount))
+                                    .totalBatchPayments((long) paymentItemCount)));
+        }
+        mockStatusTransition(batchOrderId, BatchStatus.ACKNOWLEDGED, BatchStatus.DOWNLOADING);
+        mockStatusTransition(batchOrderId, BatchStatus.DOWNLOADING, BatchStatus.ACCEPTED);
+        mockStatusTransition(batchOrderId, BatchStatus.ACCEPTED, BatchStatus.PROCESSED);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        // execute
+        WebClientBatchOrderExecutor webClientBatchOrderExecutor = new WebClientBatchOrderExecutor(batchOrdersApi, batchRequestQueue, eventPublisher,
+            new WebClientExecutorProperties(), meterRegistry);
+        webClientBatchOrderExecutor.execute();
+
+        // validate
+        Assertions.assertEquals(1, meterRegistry.get("batch.stage.latency")
+                .tags("mode", "WebClient", "stage", "getBatchOrder", "outcome", "success").timer().count());
+        Assertions.assertEquals(2, meterRegistry.get("batch.stage.latency")
+                .tags("mode", "WebClient", "stage", "getBatchPayments", "outcome", "success").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("batch.status.transition.latency")
+                .tags("mode", "WebClient", "status", "PROCESSED", "outcome", "success").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("batch.orders.completed")
+                .tags("mode", "WebClient", "outcome", "processed").counter().count());
+        Assertions.assertEquals(paymentItemCount, meterRegistry.get("batch.payments.completed")
+                .tags("mode", "WebClient", "outcome", "processed").counter().count());
+    }
+
+    @Test
+    void testValidOnParallelRails() {
+        final int paymentItemCount = 250;
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        String batchOrderId = UUID.randomUUID().toString();
+        batchRequestQueue.add(
+                new PostBatchOrderRequest()
+                        .id(batchOrderId));
+
+        // prepare mock
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.eq(batchOrderId))).thenReturn(
+                Mono.just(
+                        new GetBatchOrderResponse()
+                                .id(batchOrderId)
+                                .status(BatchStatus.ACKNOWLEDGED)
+                                .totalTransactionsCount(BigDecimal.valueOf(paymentItemCount))));
+        int pageCount = (int) Math.ceil((double) paymentItemCount / PAYMENT_ITEMS_PAGE_SIZE);
+        for (int pageNumber = 0; pageNumber < pageCount; pageNumber++) {
+            Mockito.when(batchOrdersApi.getBatchPayments(Mockito.eq(batchOrderId), Mockito.eq(pageNumber),
+                    Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE))).thenReturn(
+                            Mono.just(new GetBatchPaymentsResponse()
+                                    .batchPayments(
+                                            generatePaymentItems(pageNumber, PAYMENT_ITEMS_PAGE_SIZE, paymentItemCount))
+                                    .totalBatchPayments((long) paymentItemCount)));
+        }
+        mockStatusTransition(batchOrderId, BatchStatus.ACKNOWLEDGED, BatchStatus.DOWNLOADING);
+        mockStatusTransition(batchOrderId, BatchStatus.DOWNLOADING, BatchStatus.ACCEPTED);
+        mockStatusTransition(batchOrderId, BatchStatus.ACCEPTED, BatchStatus.PROCESSED);
+        WebClientExecutorProperties properties = new WebClientExecutorProperties();
+        properties.setProcessingThreads(4);
+        properties.setParallelThreshold(100);
+
+        // execute
+        WebClientBatchOrderExecutor webClientBatchOrderExecutor =
+                new WebClientBatchOrderExecutor(batchOrdersApi, batchRequestQueue, eventPublisher, properties,
+                    new SimpleMeterRegistry());
+        webClientBatchOrderExecutor.execute();
+        webClientBatchOrderExecutor.shutdown();
+
+        // validate
+        Mockito.verify(batchOrdersApi)
+                .putBatchOrder(Mockito.eq(batchOrderId), Mockito.eq(BatchStatus.ACCEPTED.getValue()),
+                        Mockito.argThat(p -> p.getStatus() == BatchStatus.PROCESSED));
+        Mockito.verify(batchOrdersApi, Mockito.never()).putBatchPayments(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 101})
+    void testStreamingValid(int paymentItemCount) {
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        String batchOrderId = UUID.randomUUID().toString();
+        batchRequestQueue.add(
+                new PostBatchOrderRequest()
+                        .id(batchOrderId));
+
+        // prepare mock
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.eq(batchOrderId))).thenReturn(
+                Mono.just(
+                        new GetBatchOrderResponse()
+                                .id(batchOrderId)
+                                .status(BatchStatus.ACKNOWLEDGED)
+                                .totalTransactionsCount(BigDecimal.valueOf(paymentItemCount))));
+        int pageCount = (int) Math.ceil((double) paymentItemCount / PAYMENT_ITEMS_PAGE_SIZE);
+        for (int pageNumber = 0; pageNumber < pageCount; pageNumber++) {
+            Mockito.when(batchOrdersApi.getBatchPayments(Mockito.eq(batchOrderId), Mockito.eq(pageNumber),
+                    Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE))).thenReturn(
+                            Mono.just(new GetBatchPaymentsResponse()
+                                    .batchPayments(
+                                            generatePaymentItems(pageNumber, PAYMENT_ITEMS_PAGE_SIZE, paymentItemCount))
+                                    .totalBatchPayments((long) paymentItemCount)));
+        }
+        mockStatusTransition(batchOrderId, BatchStatus.ACKNOWLEDGED, BatchStatus.DOWNLOADING);
+        mockStatusTransition(batchOrderId, BatchStatus.DOWNLOADING, BatchStatus.ACCEPTED);
+        mockStatusTransition(batchOrderId, BatchStatus.ACCEPTED, BatchStatus.PROCESSED);
+        WebClientExecutorProperties properties = new WebClientExecutorProperties();
+        properties.setStreaming(true);
+
+        // execute
+        WebClientBatchOrderExecutor webClientBatchOrderExecutor =
+                new WebClientBatchOrderExecutor(batchOrdersApi, batchRequestQueue, eventPublisher, properties,
+                    new SimpleMeterRegistry());
+        webClientBatchOrderExecutor.execute();
+
+        // validate
+        ArgumentCaptor<PutBatchOrderRequest> putBatchOrderRequestCaptor =
+                ArgumentCaptor.forClass(PutBatchOrderRequest.class);
+        Mockito.verify(batchOrdersApi)
+                .putBatchOrder(Mockito.eq(batchOrderId), Mockito.eq(BatchStatus.ACCEPTED.getValue()),
+                        putBatchOrderRequestCaptor.capture());
+
+        Assertions.assertEquals(BatchStatus.PROCESSED, putBatchOrderRequestCaptor.getValue().getStatus());
+    }
+
+    @Test
+    void testCompletesAllBatchOrdersBeforeReturning() {
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        List<String> batchOrderIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String batchOrderId = UUID.randomUUID().toString();
+            batchOrderIds.add(batchOrderId);
+            batchRequestQueue.add(new PostBatchOrderRequest().id(batchOrderId).companyId("company-" + i));
+        }
+        String failingBatchOrderId = batchOrderIds.get(3);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        // prepare mock, every response is delayed
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.any())).thenAnswer(invocation -> {
+            String batchOrderId = invocation.getArgument(0);
+            if (batchOrderId.equals(failingBatchOrderId)) {
+                return Mono.error(new IllegalStateException("Batch order not available"));
+            }
+            return Mono.delay(Duration.ofMillis(5))
+                    .doOnSubscribe(subscription -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+                    .map(tick -> new GetBatchOrderResponse()
+                            .id(batchOrderId)
+                            .status(BatchStatus.ACKNOWLEDGED)
+                            .totalTransactionsCount(BigDecimal.ONE));
+        });
+        Mockito.when(batchOrdersApi.getBatchPayments(Mockito.any(), Mockito.eq(0), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE)))
+                .thenAnswer(invocation -> Mono.delay(Duration.ofMillis(5))
+                        .map(tick -> new GetBatchPaymentsResponse()
+                                .batchPayments(generatePaymentItems(0, PAYMENT_ITEMS_PAGE_SIZE, 1))
+                                .totalBatchPayments(1L)));
+        Mockito.when(batchOrdersApi.putBatchOrder(Mockito.any(), Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+            PutBatchOrderRequest putBatchOrderRequest = invocation.getArgument(2);
+            return Mono.delay(Duration.ofMillis(5))
+                    .doOnNext(tick -> {
+                        if (putBatchOrderRequest.getStatus() == BatchStatus.PROCESSED) {
+                            inFlight.decrementAndGet();
+                        }
+                    })
+                    .map(tick -> new PutBatchOrderResponse()
+                            .id(invocation.getArgument(0))
+                            .status(putBatchOrderRequest.getStatus()));
+        });
+        WebClientExecutorProperties properties = new WebClientExecutorProperties();
+        properties.setBatchOrderConcurrency(4);
+
+        // execute
+        WebClientBatchOrderExecutor webClientBatchOrderExecutor =
+                new WebClientBatchOrderExecutor(batchOrdersApi, batchRequestQueue, eventPublisher, properties,
+                    new SimpleMeterRegistry());
+        webClientBatchOrderExecutor.execute();
+
+        // validate
+        Assertions.assertTrue(batchRequestQueue.isEmpty());
+        Assertions.assertTrue(maxInFlight.get() <= 4, "max in flight " + maxInFlight.get());
+        batchOrderIds.stream()
+                .filter(batchOrderId -> !batchOrderId.equals(failingBatchOrderId))
+                .forEach(batchOrderId -> Mockito.verify(batchOrdersApi).putBatchOrder(Mockito.eq(batchOrderId),
+                        Mockito.eq(BatchStatus.ACCEPTED.getValue()),
+                        Mockito.argThat(p -> p.getStatus() == BatchStatus.PROCESSED)));
+    }
+
+    @Test
+    void testKeepsBatchOrdersOfCompanyInOrder() {
+        Queue<PostBatchOrderRequest> lane = new LinkedList<>();
+        Map<String, String> companyOfBatchOrder = new HashMap<>();
+        List<String> batchOrderIds = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            String batchOrderId = UUID.randomUUID().toString();
+            String companyId = "company-" + (i % 3);
+            companyOfBatchOrder.put(batchOrderId, companyId);
+            batchOrderIds.add(batchOrderId);
+            lane.add(new PostBatchOrderRequest().id(batchOrderId).companyId(companyId));
+        }
+        Map<String, List<String>> processedBatchOrderIds = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        AtomicInteger maxInFlightOfCompany = new AtomicInteger();
+
+        // prepare mock, every response is delayed
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.any())).thenAnswer(invocation -> {
+            String batchOrderId = invocation.getArgument(0);
+            String companyId = companyOfBatchOrder.get(batchOrderId);
+            return Mono.delay(Duration.ofMillis(5))
+                    .doOnSubscribe(subscription -> {
+                        processedBatchOrderIds.computeIfAbsent(companyId, id -> new CopyOnWriteArrayList<>())
+                                .add(batchOrderId);
+                        maxInFlightOfCompany.accumulateAndGet(
+                                inFlight.computeIfAbsent(companyId, id -> new AtomicInteger()).incrementAndGet(),
+                                Math::max);
+                    })
+                    .map(tick -> new GetBatchOrderResponse()
+                            .id(batchOrderId)
+                            .status(BatchStatus.ACKNOWLEDGED)
+                            .totalTransactionsCount(BigDecimal.ONE));
+        });
+        Mockito.when(batchOrdersApi.getBatchPayments(Mockito.any(), Mockito.eq(0), Mockito.eq(PAYMENT_ITEMS_PAGE_SIZE)))
+                .thenAnswer(invocation -> Mono.delay(Duration.ofMillis(5))
+                        .map(tick -> new GetBatchPaymentsResponse()
+                                .batchPayments(generatePaymentItems(0, PAYMENT_ITEMS_PAGE_SIZE, 1))
+                                .totalBatchPayments(1L)));
+        Mockito.when(batchOrdersApi.putBatchOrder(Mockito.any(), Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+            String batchOrderId = invocation.getArgument(0);
+            PutBatchOrderRequest putBatchOrderRequest = invocation.getArgument(2);
+            return Mono.delay(Duration.ofMillis(5))
+                    .doOnNext(tick -> {
+                        if (putBatchOrderRequest.getStatus() == BatchStatus.PROCESSED) {
+                            inFlight.get(companyOfBatchOrder.get(batchOrderId)).decrementAndGet();
+                        }
+                    })
+                    .map(tick -> new PutBatchOrderResponse()
+                            .id(batchOrderId)
+                            .status(putBatchOrderRequest.getStatus()));
+        });
+        WebClientExecutorProperties properties = new WebClientExecutorProperties();
+        properties.setBatchOrderConcurrency(8);
+
+        // execute, as a worker lane does
+        WebClientBatchOrderExecutor webClientBatchOrderExecutor =
+                new WebClientBatchOrderExecutor(batchOrdersApi, new LinkedList<>(), eventPublisher, properties,
+                    new SimpleMeterRegistry());
+        webClientBatchOrderExecutor.execute(lane);
+
+        // validate
+        Assertions.assertTrue(lane.isEmpty());
+        Assertions.assertEquals(1, maxInFlightOfCompany.get());
+        for (int company = 0; company < 3; company++) {
+            List<String> expected = new ArrayList<>();
+            for (int i = company; i < batchOrderIds.size(); i += 3) {
+                expected.add(batchOrderIds.get(i));
+            }
+            Assertions.assertEquals(expected, processedBatchOrderIds.get("company-" + company));
+        }
+    }
+
+    @Test
+    void testFailedBatchOrderPublished() {
+        Queue<PostBatchOrderRequest> batchRequestQueue = new LinkedList<>();
+        String batchOrderId = UUID.randomUUID().toString();
+        batchRequestQueue.add(
+                new PostBatchOrderRequest()
+                        .id(batchOrderId));
+
+        // prepare mock
+        Mockito.when(batchOrdersApi.getBatchOrder(Mockito.eq(batchOrderId))).thenReturn(
+                Mono.error(new IllegalStateException("payment-order-service unavailable")));
+
+        // execute
+        WebClientBatchOrderExecutor webClientBatchOrderExecutor = new WebClientBatchOrderExecutor(batchOrdersApi, batchRequestQueue, eventPublisher,
+            new WebClientExecutorProperties(), new SimpleMeterRegistry());
+        webClientBatchOrderExecutor.execute();
+
+        // validate
+        Mockito.verify(eventPublisher).publishEvent(new BatchOrderFailedEvent(batchOrderId));
+    }
+
     @Test
     void testRejected() {
         final int reportedPaymentItemCount = 1;
@@ -108,9 +417,11 @@ class WebClientBatchOrderExecutorTest {
                                         .totalBatchPayments((long) returnedPaymentItemCount)));
         mockStatusTransition(batchOrderId, BatchStatus.ACKNOWLEDGED, BatchStatus.DOWNLOADING);
         mockStatusTransition(batchOrderId, BatchStatus.DOWNLOADING, BatchStatus.REJECTED);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
         // execute
-        WebClientBatchOrderExecutor webClientBatchOrderExecutor = new WebClientBatchOrderExecutor(batchOrdersApi, batchRequestQueue);
+        WebClientBatchOrderExecutor webClientBatchOrderExecutor = new WebClientBatchOrderExecutor(batchOrdersApi, batchRequestQueue, eventPublisher,
+            new WebClientExecutorProperties(), meterRegistry);
         webClientBatchOrderExecutor.execute();
 
         // validate
@@ -124,6 +435,8 @@ class WebClientBatchOrderExecutorTest {
                         putBatchOrderRequestCaptor.capture());
 
         Assertions.assertEquals(BatchStatus.REJECTED, putBatchOrderRequestCaptor.getValue().getStatus());
+        Assertions.assertEquals(1, meterRegistry.get("batch.orders.completed")
+                .tags("mode", "WebClient", "outcome", "rejected").counter().count());
     }
 
     private void mockStatusTransition(String batchOrderId, BatchStatus expectedStatus, BatchStatus status) {
@@ -0,0 +1,134 @@
+package com.mybank.payments.batches.integration.queue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.LinkedList;
+import java.util.Queue;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+
+class DeduplicatingQueueTest {
+
+    private static final Duration TIME_TO_LIVE = Duration.ofMinutes(10);
+
+    private Instant now = Instant.parse("2022-01-01T10:00:00Z");
+
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    };
+
+    @Test
+    void testDuplicateOfQueuedBatchOrderIsAcknowledgedOnce() {
+        Queue<PostBatchOrderRequest> delegate = new LinkedList<>();
+        DeduplicatingQueue<PostBatchOrderRequest> queue = createQueue(delegate);
+
+        Assertions.assertTrue(queue.offer(batchOrder("BATCH1")));
+        Assertions.assertTrue(queue.offer(batchOrder("BATCH1")));
+        Assertions.assertTrue(queue.offer(batchOrder("BATCH2")));
+
+        Assertions.assertEquals(2, delegate.size());
+        Assertions.assertEquals(1, queue.getDuplicates());
+    }
+
+    @Test
+    void testDuplicateCollapsesOntoInFlightBatchOrderUntilExpiry() {
+        DeduplicatingQueue<PostBatchOrderRequest> queue = createQueue(new LinkedList<>());
+        queue.offer(batchOrder("BATCH1"));
+        Assertions.assertEquals("BATCH1", queue.poll().getId());
+
+        now = now.plus(TIME_TO_LIVE).minusSeconds(1);
+        queue.offer(batchOrder("BATCH1"));
+        Assertions.assertTrue(queue.isEmpty());
+
+        now = now.plusSeconds(1);
+        queue.offer(batchOrder("BATCH1"));
+        Assertions.assertEquals("BATCH1", queue.poll().getId());
+    }
+
+    @Test
+    void testFailedBatchOrderQueuedAgain() {
+        DeduplicatingQueue<PostBatchOrderRequest> queue = createQueue(new LinkedList<>());
+        queue.offer(batchOrder("BATCH1"));
+        Assertions.assertEquals("BATCH1", queue.poll().getId());
+        Assertions.assertTrue(queue.isDuplicate(batchOrder("BATCH1")));
+
+        queue.forget("BATCH1");
+
+        Assertions.assertFalse(queue.isDuplicate(batchOrder("BATCH1")));
+        queue.offer(batchOrder("BATCH1"));
+        Assertions.assertEquals("BATCH1", queue.poll().getId());
+        Assertions.assertEquals(0, queue.getDuplicates());
+    }
+
+    @Test
+    void testRefusedBatchOrderCanBeRetried() {
+        Queue<PostBatchOrderRequest> delegate = new RingBufferQueue<>(2);
+        DeduplicatingQueue<PostBatchOrderRequest> queue = createQueue(delegate);
+        queue.offer(batchOrder("BATCH1"));
+        queue.offer(batchOrder("BATCH2"));
+
+        Assertions.assertFalse(queue.offer(batchOrder("BATCH3")));
+
+        queue.poll();
+        Assertions.assertTrue(queue.offer(batchOrder("BATCH3")));
+        Assertions.assertEquals(2, delegate.size());
+    }
+
+    @Test
+    void testQueuedBatchOrdersAreRegisteredOnCreation() {
+        Queue<PostBatchOrderRequest> delegate = new LinkedList<>();
+        delegate.add(batchOrder("BATCH1"));
+        DeduplicatingQueue<PostBatchOrderRequest> queue = createQueue(delegate);
+
+        queue.offer(batchOrder("BATCH1"));
+
+        Assertions.assertEquals(1, delegate.size());
+    }
+
+    @Test
+    void testIdSetGrowsAndPurgesExpiredEntries() {
+        OffHeapIdSet ids = new OffHeapIdSet(16);
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertTrue(ids.add("BATCH" + i, 100, 0));
+        }
+        Assertions.assertTrue(ids.getCapacity() >= 2000);
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertTrue(ids.contains("BATCH" + i, 99));
+        }
+
+        int capacity = ids.getCapacity();
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertTrue(ids.add("OTHER" + i, 200, 100));
+        }
+        Assertions.assertEquals(capacity, ids.getCapacity());
+        Assertions.assertFalse(ids.contains("BATCH1", 100));
+        Assertions.assertTrue(ids.contains("OTHER1", 100));
+    }
+
+    private DeduplicatingQueue<PostBatchOrderRequest> createQueue(Queue<PostBatchOrderRequest> delegate) {
+        return new DeduplicatingQueue<>(delegate, PostBatchOrderRequest::getId, TIME_TO_LIVE, 16, clock);
+    }
+
+    private static PostBatchOrderRequest batchOrder(String id) {
+        return new PostBatchOrderRequest().id(id);
+    }
+
+}
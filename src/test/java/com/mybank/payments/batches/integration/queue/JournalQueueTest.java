@@ -0,0 +1,162 @@
+package com.mybank.payments.batches.integration.queue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.backbase.payments.batches.integration.outbound.model.PostBatchOrderRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+class JournalQueueTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper om = new ObjectMapper()
+            .registerModule(new Jdk8Module())
+            .registerModule(new JavaTimeModule());
+
+    private JournalQueue<PostBatchOrderRequest> queue;
+
+    @AfterEach
+    void close() {
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    @Test
+    void testFifo() {
+        queue = open();
+        queue.offer(batchOrder("BATCH1"));
+        queue.offer(batchOrder("BATCH2"));
+
+        Assertions.assertEquals(2, queue.size());
+        Assertions.assertEquals("BATCH1", queue.peek().getId());
+        Assertions.assertEquals("BATCH1", queue.poll().getId());
+        Assertions.assertEquals("BATCH2", queue.poll().getId());
+        Assertions.assertNull(queue.poll());
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testPendingElementsSurviveRestart() {
+        queue = open();
+        queue.offer(batchOrder("BATCH1"));
+        queue.offer(batchOrder("BATCH2"));
+        queue.offer(batchOrder("BATCH3"));
+        Assertions.assertEquals("BATCH1", queue.poll().getId());
+        queue.close();
+
+        queue = open();
+
+        Assertions.assertEquals(2, queue.size());
+        Assertions.assertEquals("BATCH2", queue.poll().getId());
+        Assertions.assertEquals("BATCH3", queue.poll().getId());
+        Assertions.assertNull(queue.poll());
+    }
+
+    @Test
+    void testConsumedSegmentsAreDeleted() throws IOException {
+        queue = open();
+        for (int i = 0; i < 100; i++) {
+            queue.offer(batchOrder("BATCH" + i));
+        }
+        Assertions.assertTrue(segmentCount() > 1);
+
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals("BATCH" + i, queue.poll().getId());
+        }
+
+        Assertions.assertEquals(1, segmentCount());
+    }
+
+    @Test
+    void testTornRecordIsTruncated() throws IOException {
+        queue = open();
+        queue.offer(batchOrder("BATCH1"));
+        queue.close();
+        // simulate a crash in the middle of appending the next record
+        Path segment = firstSegment();
+        byte[] content = Files.readAllBytes(segment);
+        int end = 0;
+        while (content[end] != 0 || content[end + 1] != 0 || content[end + 2] != 0 || content[end + 3] != 0) {
+            end++;
+        }
+        content[end + 3] = 42;
+        Files.write(segment, content);
+
+        queue = open();
+        queue.offer(batchOrder("BATCH2"));
+
+        Assertions.assertEquals(2, queue.size());
+        Assertions.assertEquals("BATCH1", queue.poll().getId());
+        Assertions.assertEquals("BATCH2", queue.poll().getId());
+    }
+
+    @Test
+    void testCorruptRecordInEarlierSegmentIsSkipped() throws IOException {
+        queue = open();
+        for (int i = 0; i < 100; i++) {
+            queue.offer(batchOrder("BATCH" + i));
+        }
+        Assertions.assertTrue(segmentCount() > 1);
+        queue.close();
+        // flip a payload byte of the second record of the first segment
+        Path segment = firstSegment();
+        byte[] content = Files.readAllBytes(segment);
+        int secondRecord = 2 * Integer.BYTES + ByteBuffer.wrap(content).getInt(0);
+        content[secondRecord + 2 * Integer.BYTES] ^= 1;
+        Files.write(segment, content);
+
+        queue = open();
+
+        Assertions.assertEquals("BATCH0", queue.poll().getId());
+        int remaining = queue.size();
+        for (int i = 0; i < remaining; i++) {
+            Assertions.assertNotEquals("BATCH1", queue.poll().getId());
+        }
+        Assertions.assertNull(queue.poll());
+    }
+
+    private JournalQueue<PostBatchOrderRequest> open() {
+        return new JournalQueue<>(directory, SEGMENT_SIZE, Duration.ofMillis(1), true, om,
+                PostBatchOrderRequest.class);
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> segments = segments()) {
+            return segments.count();
+        }
+    }
+
+    private Path firstSegment() throws IOException {
+        try (Stream<Path> segments = segments()) {
+            return segments.sorted().findFirst().orElseThrow();
+        }
+    }
+
+    private Stream<Path> segments() throws IOException {
+        return Files.list(directory).filter(file -> file.toString().endsWith(".segment"));
+    }
+
+    private static PostBatchOrderRequest batchOrder(String id) {
+        return new PostBatchOrderRequest()
+                .id(id)
+                .companyId("1000000000")
+                .companyName("First Company");
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.mybank.payments.batches.integration.queue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RingBufferQueueTest {
+
+    @Test
+    void testCapacityIsRoundedUpToPowerOfTwo() {
+        Assertions.assertEquals(2, new RingBufferQueue<>(1).getCapacity());
+        Assertions.assertEquals(8, new RingBufferQueue<>(5).getCapacity());
+        Assertions.assertEquals(16, new RingBufferQueue<>(16).getCapacity());
+    }
+
+    @Test
+    void testOfferRejectedWhenFull() {
+        RingBufferQueue<String> queue = new RingBufferQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(queue.offer("BATCH" + i));
+        }
+
+        Assertions.assertFalse(queue.offer("BATCH4"));
+        Assertions.assertEquals(4, queue.size());
+
+        Assertions.assertEquals("BATCH0", queue.poll());
+        Assertions.assertTrue(queue.offer("BATCH4"));
+        for (int i = 1; i <= 4; i++) {
+            Assertions.assertEquals("BATCH" + i, queue.poll());
+        }
+        Assertions.assertNull(queue.poll());
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testConcurrentProducers() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 10_000;
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!queue.offer(producer * perProducer + i)) {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        Set<Integer> received = new HashSet<>();
+        while (received.size() < producers * perProducer) {
+            Integer element = queue.poll();
+            if (element != null) {
+                Assertions.assertTrue(received.add(element));
+            }
+        }
+        Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        Assertions.assertNull(queue.poll());
+    }
+
+}